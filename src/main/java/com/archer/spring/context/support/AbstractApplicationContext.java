@@ -11,6 +11,9 @@ import com.archer.spring.context.event.ApplicationEventMulticaster;
 import com.archer.spring.context.event.ContextClosedEvent;
 import com.archer.spring.context.event.ContextRefreshedEvent;
 import com.archer.spring.context.event.DefaultApplicationEventMulticaster;
+import com.archer.spring.factory.BeanHandle;
+import com.archer.spring.factory.BeanWrapper;
+import com.archer.spring.factory.ObjectProvider;
 import com.archer.spring.factory.BeansException;
 import com.archer.spring.factory.config.BeanFactoryPostProcessor;
 import com.archer.spring.factory.config.BeanPostProcessor;
@@ -101,6 +104,11 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader i
         System.out.println("正在关闭" + getDisplayName());
         // 销毁所有缓存的singleton bean
         getBeanFactory().destroySingletons();
+        // 只有框架类加载器的子加载器加载的类才可能被单独卸载，这时不再缓存它们；
+        // 否则清理的是所有ApplicationContext共享的缓存，而这些类根本不会被卸载
+        if (isChildOfFrameworkClassLoader(getClassLoader())) {
+            BeanWrapper.clearClassLoader(getClassLoader());
+        }
         // 发出ContextClosedEvent
         publishEvent(new ContextClosedEvent(this));
     }
@@ -158,6 +166,11 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader i
         return getBeanFactory().getBeansOfType(type, includePrototypes, includeFactoryBeans);
     }
 
+    @Override
+    public <T> ObjectProvider<T> getBeanProvider(Class<T> type) throws BeansException {
+        return getBeanFactory().getBeanProvider(type);
+    }
+
     @Override
     public Object getBean(String beanName) throws BeansException {
         return getBeanFactory().getBean(beanName);
@@ -168,6 +181,12 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader i
         return getBeanFactory().getBean(beanName, requiredType);
     }
 
+    @Override
+    public <T> BeanHandle<T> getBeanHandle(String beanName, Class<T> requiredType) throws BeansException {
+        // 句柄绑定的是当前的BeanFactory，refresh之后需要重新获取
+        return getBeanFactory().getBeanHandle(beanName, requiredType);
+    }
+
     @Override
     public boolean containsBean(String beanName) {
         return getBeanFactory().containsBean(beanName);
@@ -284,4 +303,21 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader i
         publishEvent(new ContextRefreshedEvent(this));
     }
 
+    /**
+     * classLoader是否是加载框架的类加载器的子加载器(不包括它本身)。
+     */
+    private static boolean isChildOfFrameworkClassLoader(ClassLoader classLoader) {
+        ClassLoader frameworkClassLoader = BeanWrapper.class.getClassLoader();
+        if (classLoader == null || classLoader == frameworkClassLoader) {
+            return false;
+        }
+        for (ClassLoader cl = classLoader.getParent(); cl != null; cl = cl.getParent()) {
+            if (cl == frameworkClassLoader) {
+                return true;
+            }
+        }
+        // 框架由启动类加载器加载时，其他类加载器都是它的子加载器
+        return (frameworkClassLoader == null);
+    }
+
 }
@@ -0,0 +1,24 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+import com.archer.spring.factory.BeansException;
+
+/**
+ * Converter无法转换给定的值，或者找不到合适的Converter。
+ */
+public class ConversionFailedException extends BeansException {
+
+    public ConversionFailedException(String message) {
+        super(message);
+    }
+
+    public ConversionFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
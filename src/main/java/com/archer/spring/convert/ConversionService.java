@@ -0,0 +1,28 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+import com.sun.istack.internal.Nullable;
+
+/**
+ * 类型转换服务，线程安全，可以被所有BeanWrapper共享。
+ * TypeConverterDelegate在没有自定义PropertyEditor时优先使用它，找不到Converter时才退回到PropertyEditor。
+ */
+public interface ConversionService {
+
+    /**
+     * 是否可以把sourceType类型的对象转换成targetType类型。
+     */
+    boolean canConvert(Class<?> sourceType, Class<?> targetType);
+
+    /**
+     * 把source转换成targetType类型，source为null时返回null。
+     */
+    @Nullable
+    Object convert(@Nullable Object source, Class<?> targetType) throws ConversionFailedException;
+
+}
@@ -0,0 +1,23 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+/**
+ * 把S类型的对象转换成T类型。
+ *
+ * 和PropertyEditor不同，Converter必须是无状态、线程安全的，
+ * 同一个实例会被所有线程同时使用。
+ */
+@FunctionalInterface
+public interface Converter<S, T> {
+
+    /**
+     * 转换source，source不会为null。无法转换时抛出IllegalArgumentException。
+     */
+    T convert(S source);
+
+}
@@ -0,0 +1,20 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+/**
+ * Converter注册器。
+ */
+public interface ConverterRegistry {
+
+    /**
+     * 注册一个从sourceType到targetType的Converter，已有的同类型Converter会被替换。
+     * targetType可以是基本类型，表示此Converter不会返回null。
+     */
+    <S, T> void addConverter(Class<S> sourceType, Class<T> targetType, Converter<? super S, ? extends T> converter);
+
+}
@@ -0,0 +1,269 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+import com.archer.spring.utils.ClassUtils;
+import com.archer.spring.utils.NumberUtils;
+import com.archer.spring.utils.StringUtils;
+import com.sun.istack.internal.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConversionService的默认实现，预先注册了和默认PropertyEditor对应的Converter：
+ * String到基本类型及其包装类、BigInteger、BigDecimal、Class的转换，以及Number之间的转换。
+ *
+ * 查找Converter时先按sourceType本身、再按它的父类和接口查找，targetType必须完全一致。
+ * 查找的结果按(sourceType, targetType)缓存，找不到的结果也会缓存，注册新的Converter时清空缓存。
+ * 卸载类加载器时需要调用clearCache(BeanWrapper.clearClassLoader会清理共享的实例)，否则缓存会一直持有这些类。
+ */
+public class DefaultConversionService implements ConversionService, ConverterRegistry {
+
+    /// MARK - Properties
+
+    // 表示没有合适的Converter
+    private static final Converter<Object, Object> NO_MATCH = source -> {
+        throw new IllegalStateException("NO_MATCH不应该被调用");
+    };
+
+    // 表示sourceType本身就可以赋值给targetType，不需要转换
+    private static final Converter<Object, Object> NO_OP = source -> source;
+
+    private static volatile DefaultConversionService sharedInstance;
+
+    // sourceType -> targetType -> 注册的Converter
+    private final Map<Class<?>, Map<Class<?>, Converter<Object, Object>>> converters = new ConcurrentHashMap<>(32);
+
+    // sourceType -> targetType -> 查找到的Converter(或者NO_MATCH/NO_OP)
+    private final Map<Class<?>, Map<Class<?>, Converter<Object, Object>>> converterCache = new ConcurrentHashMap<>(64);
+
+    // 构造时注册的默认Converter，之后被覆盖的不再算在内
+    private final Set<Converter<Object, Object>> defaultConverters;
+
+    /// MARK - Initializers
+
+    public DefaultConversionService() {
+        addDefaultConverters(this);
+        Set<Converter<Object, Object>> registered = Collections.newSetFromMap(new IdentityHashMap<>(64));
+        for (Map<Class<?>, Converter<Object, Object>> targets : converters.values()) {
+            registered.addAll(targets.values());
+        }
+        this.defaultConverters = Collections.unmodifiableSet(registered);
+    }
+
+    /**
+     * 返回一个共享的实例，BeanFactory默认使用它。不要向共享的实例注册Converter，
+     * 需要自定义Converter时新建一个DefaultConversionService。
+     */
+    public static DefaultConversionService getSharedInstance() {
+        DefaultConversionService instance = sharedInstance;
+        if (instance == null) {
+            synchronized (DefaultConversionService.class) {
+                instance = sharedInstance;
+                if (instance == null) {
+                    instance = new DefaultConversionService();
+                    sharedInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 清除共享实例中和classLoader及其子加载器加载的类有关的缓存，共享实例还没有创建的话什么都不做。
+     */
+    public static void clearClassLoader(ClassLoader classLoader) {
+        DefaultConversionService instance = sharedInstance;
+        if (instance != null) {
+            instance.clearCache(classLoader);
+        }
+    }
+
+    /**
+     * 清除sourceType或者targetType由classLoader及其子加载器加载的缓存，注册的Converter不受影响。
+     */
+    public void clearCache(ClassLoader classLoader) {
+        Objects.requireNonNull(classLoader, "classLoader不能为空");
+        for (Iterator<Map.Entry<Class<?>, Map<Class<?>, Converter<Object, Object>>>> it =
+             converterCache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Class<?>, Map<Class<?>, Converter<Object, Object>>> entry = it.next();
+            if (ClassUtils.isUnderneathClassLoader(entry.getKey(), classLoader)) {
+                it.remove();
+            } else {
+                entry.getValue().keySet().removeIf(targetType -> ClassUtils.isUnderneathClassLoader(targetType, classLoader));
+            }
+        }
+    }
+
+    /// MARK - ConverterRegistry
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S, T> void addConverter(Class<S> sourceType, Class<T> targetType,
+                                    Converter<? super S, ? extends T> converter) {
+        Objects.requireNonNull(sourceType, "sourceType不能为空");
+        Objects.requireNonNull(targetType, "targetType不能为空");
+        Objects.requireNonNull(converter, "Converter不能为空");
+        converters.computeIfAbsent(sourceType, key -> new ConcurrentHashMap<>(16))
+                .put(targetType, (Converter<Object, Object>) converter);
+        converterCache.clear();
+    }
+
+    /// MARK - ConversionService
+
+    @Override
+    public boolean canConvert(Class<?> sourceType, Class<?> targetType) {
+        return getConverter(sourceType, targetType) != NO_MATCH;
+    }
+
+    @Override
+    public Object convert(@Nullable Object source, Class<?> targetType) throws ConversionFailedException {
+        if (source == null) {
+            return null;
+        }
+        Converter<Object, Object> converter = getConverter(source.getClass(), targetType);
+        if (converter == NO_MATCH) {
+            throw new ConversionFailedException("找不到将[" + source.getClass().getName() +
+                    "]转换成[" + targetType.getName() + "]的Converter");
+        }
+        try {
+            return converter.convert(source);
+        } catch (IllegalArgumentException ex) {
+            throw new ConversionFailedException("无法将[" + source + "]转换成[" + targetType.getName() + "]类型", ex);
+        }
+    }
+
+    /**
+     * 从sourceType到targetType的转换是否仍然由默认的Converter完成，
+     * 也就是说结果和默认的PropertyEditor一致。调用方可以据此使用不装箱的快速路径。
+     */
+    public boolean isDefaultConverter(Class<?> sourceType, Class<?> targetType) {
+        return defaultConverters.contains(getConverter(sourceType, targetType));
+    }
+
+    /// MARK - Internal
+
+    private Converter<Object, Object> getConverter(Class<?> sourceType, Class<?> targetType) {
+        Map<Class<?>, Converter<Object, Object>> cached = converterCache.get(sourceType);
+        if (cached != null) {
+            Converter<Object, Object> converter = cached.get(targetType);
+            if (converter != null) {
+                return converter;
+            }
+        } else {
+            cached = converterCache.computeIfAbsent(sourceType, key -> new ConcurrentHashMap<>(16));
+        }
+        Converter<Object, Object> converter = findConverter(sourceType, targetType);
+        cached.put(targetType, converter);
+        return converter;
+    }
+
+    private Converter<Object, Object> findConverter(Class<?> sourceType, Class<?> targetType) {
+        if (ClassUtils.isAssignable(targetType, sourceType)) {
+            return NO_OP;
+        }
+        for (Class<?> candidate : getClassHierarchy(sourceType)) {
+            Map<Class<?>, Converter<Object, Object>> targets = converters.get(candidate);
+            if (targets != null) {
+                Converter<Object, Object> converter = targets.get(targetType);
+                if (converter != null) {
+                    return converter;
+                }
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * 返回clazz、它的父类和接口，最后是Object，越具体的越靠前。
+     */
+    private static List<Class<?>> getClassHierarchy(Class<?> clazz) {
+        Set<Class<?>> hierarchy = new LinkedHashSet<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(current);
+        }
+        List<Class<?>> result = new ArrayList<>(hierarchy);
+        for (Class<?> current : hierarchy) {
+            collectInterfaces(current, result);
+        }
+        result.add(Object.class);
+        return result;
+    }
+
+    private static void collectInterfaces(Class<?> clazz, List<Class<?>> result) {
+        for (Class<?> ifc : clazz.getInterfaces()) {
+            if (!result.contains(ifc)) {
+                result.add(ifc);
+                collectInterfaces(ifc, result);
+            }
+        }
+    }
+
+    /// MARK - Default converters
+
+    /**
+     * 注册和默认PropertyEditor行为一致的Converter：包装类型接受空字符串并转换成null，基本类型不接受。
+     */
+    public static void addDefaultConverters(ConverterRegistry registry) {
+        addNumberConverters(registry, byte.class, Byte.class);
+        addNumberConverters(registry, short.class, Short.class);
+        addNumberConverters(registry, int.class, Integer.class);
+        addNumberConverters(registry, long.class, Long.class);
+        addNumberConverters(registry, float.class, Float.class);
+        addNumberConverters(registry, double.class, Double.class);
+        addNumberConverters(registry, null, BigInteger.class);
+        addNumberConverters(registry, null, BigDecimal.class);
+
+        registry.addConverter(String.class, boolean.class, DefaultConversionService::parseBoolean);
+        registry.addConverter(String.class, Boolean.class,
+                source -> (isBlank(source) ? null : parseBoolean(source)));
+
+        registry.addConverter(String.class, char.class, DefaultConversionService::parseCharacter);
+        registry.addConverter(String.class, Character.class,
+                source -> (source.isEmpty() ? null : parseCharacter(source)));
+
+        registry.addConverter(String.class, Class.class, source -> {
+            try {
+                return Class.forName(source);
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalArgumentException("[" + source + "]必须是全限定的类名");
+            }
+        });
+    }
+
+    private static <T extends Number> void addNumberConverters(ConverterRegistry registry,
+                                                               Class<T> primitiveType, Class<T> wrapperType) {
+        registry.addConverter(String.class, wrapperType,
+                source -> (StringUtils.hasText(source) ? NumberUtils.parseNumber(source, wrapperType) : null));
+        registry.addConverter(Number.class, wrapperType,
+                source -> NumberUtils.convertNumberToTargetClass(source, wrapperType));
+        if (primitiveType != null) {
+            registry.addConverter(String.class, primitiveType, source -> NumberUtils.parseNumber(source, wrapperType));
+            registry.addConverter(Number.class, primitiveType,
+                    source -> NumberUtils.convertNumberToTargetClass(source, wrapperType));
+        }
+    }
+
+    // 和CustomBooleanEditor一样，去掉首尾空白后为空的字符串视为空值
+    private static boolean isBlank(String source) {
+        return StringUtils.trimStart(source, 0, source.length()) == source.length();
+    }
+
+    private static Boolean parseBoolean(String source) {
+        return StringUtils.parseBoolean(source);
+    }
+
+    private static Character parseCharacter(String source) {
+        if (source.length() != 1) {
+            throw new IllegalArgumentException("只有长度为1的字符串才能转换成字符: [" + source + "]");
+        }
+        return source.charAt(0);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import com.archer.spring.factory.BeansException;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 一个完整的#{...}表达式，第一次计算时把语法树编译成MethodHandle，之后每次计算只调用这个MethodHandle。
+ * 可以在多个线程中使用，并发的第一次计算可能各自编译一次，结果相同。
+ */
+final class CompiledExpression implements Expression {
+
+    /// MARK - Properties
+
+    private final String expressionString;
+
+    private final Node root;
+
+    private final Set<String> beanReferences;
+
+    // (EvaluationContext)Object
+    private volatile MethodHandle handle;
+
+    /// MARK - Initializers
+
+    CompiledExpression(String expressionString, Node root) {
+        this.expressionString = expressionString;
+        this.root = root;
+        Set<String> references = new LinkedHashSet<>(4);
+        root.collectBeanReferences(references);
+        this.beanReferences = Collections.unmodifiableSet(references);
+    }
+
+    /// MARK - Expression
+
+    @Override
+    public Object getValue(EvaluationContext context) throws ExpressionException {
+        MethodHandle h = handle;
+        if (h == null) {
+            try {
+                h = root.compile();
+            } catch (BeansException ex) {
+                throw wrap(ex);
+            } catch (RuntimeException ex) {
+                throw new ExpressionException("无法编译表达式[" + expressionString + "]: " + ex.getMessage(), ex);
+            }
+            handle = h;
+        }
+        try {
+            return (Object) h.invokeExact(context);
+        } catch (BeansException ex) {
+            throw wrap(ex);
+        } catch (Throwable ex) {
+            throw new ExpressionException("计算表达式[" + expressionString + "]失败: " + ex, ex);
+        }
+    }
+
+    @Override
+    public String getExpressionString() {
+        return expressionString;
+    }
+
+    @Override
+    public Set<String> getBeanReferences() {
+        return beanReferences;
+    }
+
+    /**
+     * 是否已经编译过。
+     */
+    boolean isCompiled() {
+        return handle != null;
+    }
+
+    @Override
+    public String toString() {
+        return expressionString;
+    }
+
+    /// MARK - Internal
+
+    private ExpressionException wrap(BeansException ex) {
+        return new ExpressionException("计算表达式[" + expressionString + "]失败: " + ex.getMessage(), ex);
+    }
+}
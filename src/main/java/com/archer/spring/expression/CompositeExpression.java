@@ -0,0 +1,70 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 文本和#{...}混合的模板，比如"jdbc:h2:#{@config.name}"，计算结果总是String。
+ * parts中是String(文本)或者CompiledExpression。
+ */
+final class CompositeExpression implements Expression {
+
+    /// MARK - Properties
+
+    private final String expressionString;
+
+    private final Object[] parts;
+
+    private final Set<String> beanReferences;
+
+    /// MARK - Initializers
+
+    CompositeExpression(String expressionString, Object[] parts) {
+        this.expressionString = expressionString;
+        this.parts = parts;
+        Set<String> references = new LinkedHashSet<>(4);
+        for (Object part : parts) {
+            if (part instanceof Expression) {
+                references.addAll(((Expression) part).getBeanReferences());
+            }
+        }
+        this.beanReferences = Collections.unmodifiableSet(references);
+    }
+
+    /// MARK - Expression
+
+    @Override
+    public Object getValue(EvaluationContext context) throws ExpressionException {
+        StringBuilder sb = new StringBuilder(expressionString.length() + 16);
+        for (Object part : parts) {
+            if (part instanceof String) {
+                sb.append((String) part);
+            } else {
+                sb.append(((Expression) part).getValue(context));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getExpressionString() {
+        return expressionString;
+    }
+
+    @Override
+    public Set<String> getBeanReferences() {
+        return beanReferences;
+    }
+
+    @Override
+    public String toString() {
+        return expressionString;
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import com.archer.spring.factory.BeansException;
+
+/**
+ * 计算表达式时的上下文，表达式通过它引用其他bean，通常由BeanFactory提供。
+ */
+@FunctionalInterface
+public interface EvaluationContext {
+
+    /**
+     * 返回名为beanName的bean。
+     */
+    Object getBean(String beanName) throws BeansException;
+
+}
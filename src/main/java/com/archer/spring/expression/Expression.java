@@ -0,0 +1,34 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import java.util.Set;
+
+/**
+ * 解析好的#{...}表达式，可以反复计算。
+ * 第一次计算时编译成MethodHandle，之后的计算不再解释语法树。
+ *
+ * @see ExpressionParser
+ */
+public interface Expression {
+
+    /**
+     * 在context中计算表达式的值。
+     */
+    Object getValue(EvaluationContext context) throws ExpressionException;
+
+    /**
+     * 解析前的原始文本。
+     */
+    String getExpressionString();
+
+    /**
+     * 表达式中直接引用的bean的名称。
+     */
+    Set<String> getBeanReferences();
+
+}
@@ -0,0 +1,24 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import com.archer.spring.factory.BeansException;
+
+/**
+ * 解析或者计算表达式失败。
+ */
+public class ExpressionException extends BeansException {
+
+    public ExpressionException(String message) {
+        super(message);
+    }
+
+    public ExpressionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
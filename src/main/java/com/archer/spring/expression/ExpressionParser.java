@@ -0,0 +1,510 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import com.archer.spring.utils.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把#{...}表达式解析成语法树，支持：
+ * 1、字面量：123、123L、1.5、'text'、"text"(引号写两次表示引号本身)、true、false、null
+ * 2、运算符：+ - * / %、== != < > <= >=、and(&&) or(||) not(!)、?:、括号
+ * 3、bean引用：@beanName、@'bean-name'，以及开头的标识符
+ * 4、属性、方法和下标：a.b、a.b(1, 2)、a[0]、a['key']
+ * 5、类型引用：T(java.lang.Math).max(1, 2)，java.lang下的类可以省略包名
+ *
+ * 相同的文本只解析一次，返回同一个Expression，编译结果也随之共享。可以在多个线程中使用。
+ */
+public class ExpressionParser {
+
+    /// MARK - Properties
+
+    public static final String EXPRESSION_PREFIX = "#{";
+
+    public static final String EXPRESSION_SUFFIX = "}";
+
+    // 最多缓存多少个解析结果
+    private static final int MAX_CACHED_EXPRESSIONS = 1024;
+
+    private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>(64);
+
+    private final Map<String, Expression> templateCache = new ConcurrentHashMap<>(64);
+
+    /// MARK - Parse
+
+    /**
+     * text中是否有#{，有的话应当按模板解析。
+     */
+    public static boolean isTemplate(String text) {
+        return text != null && text.contains(EXPRESSION_PREFIX);
+    }
+
+    /**
+     * 解析不带#{}的表达式。
+     */
+    public Expression parseExpression(String expressionString) throws ExpressionException {
+        Expression expression = expressionCache.get(expressionString);
+        if (expression == null) {
+            expression = new CompiledExpression(expressionString, new Parser(expressionString, 0,
+                    expressionString.length()).parse());
+            cache(expressionCache, expressionString, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * 解析包含#{...}的模板。整个文本就是一个#{...}时计算结果是表达式的值本身，
+     * 否则是文本和各个表达式的值拼接成的String。
+     */
+    public Expression parseTemplate(String template) throws ExpressionException {
+        Expression expression = templateCache.get(template);
+        if (expression == null) {
+            expression = doParseTemplate(template);
+            cache(templateCache, template, expression);
+        }
+        return expression;
+    }
+
+    /// MARK - Internal
+
+    private static void cache(Map<String, Expression> cache, String key, Expression expression) {
+        if (cache.size() < MAX_CACHED_EXPRESSIONS) {
+            cache.putIfAbsent(key, expression);
+        }
+    }
+
+    private Expression doParseTemplate(String template) {
+        List<Object> parts = new ArrayList<>(4);
+        int literalStart = 0;
+        int index = template.indexOf(EXPRESSION_PREFIX);
+        while (index >= 0) {
+            int start = index + EXPRESSION_PREFIX.length();
+            int end = findExpressionEnd(template, start);
+            if (index > literalStart) {
+                parts.add(template.substring(literalStart, index));
+            }
+            parts.add(new CompiledExpression(template, new Parser(template, start, end).parse()));
+            literalStart = end + EXPRESSION_SUFFIX.length();
+            index = template.indexOf(EXPRESSION_PREFIX, literalStart);
+        }
+        if (literalStart < template.length()) {
+            parts.add(template.substring(literalStart));
+        }
+        if (parts.size() == 1 && parts.get(0) instanceof Expression) {
+            return (Expression) parts.get(0);
+        }
+        return new CompositeExpression(template, parts.toArray());
+    }
+
+    /**
+     * 和start之前的#{配对的}的位置，跳过字符串和嵌套的大括号。
+     */
+    private static int findExpressionEnd(String template, int start) {
+        int nesting = 0;
+        for (int i = start; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '\'' || c == '"') {
+                int close = template.indexOf(c, i + 1);
+                // 引号写两次表示引号本身
+                while (close >= 0 && close + 1 < template.length() && template.charAt(close + 1) == c) {
+                    close = template.indexOf(c, close + 2);
+                }
+                if (close < 0) {
+                    break;
+                }
+                i = close;
+            } else if (c == '{') {
+                nesting++;
+            } else if (c == '}') {
+                if (nesting == 0) {
+                    return i;
+                }
+                nesting--;
+            }
+        }
+        throw new ExpressionException("表达式[" + template + "]中位置" + (start - EXPRESSION_PREFIX.length()) +
+                "处的#{没有对应的}");
+    }
+
+    /// MARK - Internal class
+
+    /**
+     * 递归下降解析text[start, end)，优先级从低到高：
+     * ?:、or、and、== !=、< > <= >=、+ -、* / %、- !(一元)、. []、基本项
+     */
+    private static final class Parser {
+
+        private final String text;
+
+        private final int end;
+
+        private int pos;
+
+        Parser(String text, int start, int end) {
+            this.text = text;
+            this.pos = start;
+            this.end = end;
+        }
+
+        Node parse() {
+            skipWhitespace();
+            if (pos >= end) {
+                throw error("表达式不能为空");
+            }
+            Node node = parseTernary();
+            skipWhitespace();
+            if (pos < end) {
+                throw error("无法识别的字符'" + text.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        private Node parseTernary() {
+            Node condition = parseOr();
+            int position = pos;
+            if (accept("?")) {
+                Node ifTrue = parseTernary();
+                expect(":");
+                Node ifFalse = parseTernary();
+                return new Node.Ternary(position, condition, ifTrue, ifFalse);
+            }
+            return condition;
+        }
+
+        private Node parseOr() {
+            Node left = parseAnd();
+            int position = pos;
+            while (acceptKeyword("or") || accept("||")) {
+                left = new Node.Binary(position, false, left, parseAnd());
+                position = pos;
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseEquality();
+            int position = pos;
+            while (acceptKeyword("and") || accept("&&")) {
+                left = new Node.Binary(position, true, left, parseEquality());
+                position = pos;
+            }
+            return left;
+        }
+
+        private Node parseEquality() {
+            Node left = parseRelational();
+            while (true) {
+                int position = pos;
+                if (accept("==")) {
+                    left = new Node.Binary(position, Operators.EQUAL, left, parseRelational());
+                } else if (accept("!=")) {
+                    left = new Node.Binary(position, Operators.NOT_EQUAL, left, parseRelational());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node parseRelational() {
+            Node left = parseAdditive();
+            while (true) {
+                int position = pos;
+                MethodHandle operator;
+                if (accept("<=")) {
+                    operator = Operators.LESS_THAN_OR_EQUAL;
+                } else if (accept(">=")) {
+                    operator = Operators.GREATER_THAN_OR_EQUAL;
+                } else if (accept("<")) {
+                    operator = Operators.LESS_THAN;
+                } else if (accept(">")) {
+                    operator = Operators.GREATER_THAN;
+                } else {
+                    return left;
+                }
+                left = new Node.Binary(position, operator, left, parseAdditive());
+            }
+        }
+
+        private Node parseAdditive() {
+            Node left = parseMultiplicative();
+            while (true) {
+                int position = pos;
+                if (accept("+")) {
+                    left = new Node.Binary(position, Operators.ADD, left, parseMultiplicative());
+                } else if (accept("-")) {
+                    left = new Node.Binary(position, Operators.SUBTRACT, left, parseMultiplicative());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node parseMultiplicative() {
+            Node left = parseUnary();
+            while (true) {
+                int position = pos;
+                MethodHandle operator;
+                if (accept("*")) {
+                    operator = Operators.MULTIPLY;
+                } else if (accept("/")) {
+                    operator = Operators.DIVIDE;
+                } else if (accept("%")) {
+                    operator = Operators.MODULUS;
+                } else {
+                    return left;
+                }
+                left = new Node.Binary(position, operator, left, parseUnary());
+            }
+        }
+
+        private Node parseUnary() {
+            int position = pos;
+            if (accept("-")) {
+                return new Node.Unary(position, Operators.NEGATE, parseUnary());
+            }
+            if (peek("!") && !peek("!=") && accept("!") || acceptKeyword("not")) {
+                return new Node.Unary(position, Operators.NOT, parseUnary());
+            }
+            return parsePostfix();
+        }
+
+        private Node parsePostfix() {
+            Node node = parsePrimary();
+            while (true) {
+                int position = pos;
+                if (accept(".")) {
+                    String name = parseIdentifier();
+                    if (accept("(")) {
+                        node = new Node.Member(position, node, name, parseArguments(), true);
+                    } else {
+                        node = new Node.Member(position, node, name, new Node[0], false);
+                    }
+                } else if (accept("[")) {
+                    Node index = parseTernary();
+                    expect("]");
+                    node = new Node.Index(position, node, index);
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        /**
+         * (之后的参数列表，包括)。
+         */
+        private Node[] parseArguments() {
+            List<Node> arguments = new ArrayList<>(4);
+            if (!accept(")")) {
+                do {
+                    arguments.add(parseTernary());
+                } while (accept(","));
+                expect(")");
+            }
+            return arguments.toArray(new Node[0]);
+        }
+
+        private Node parsePrimary() {
+            skipWhitespace();
+            if (pos >= end) {
+                throw error("表达式不完整");
+            }
+            int position = pos;
+            char c = text.charAt(pos);
+            if (Character.isDigit(c) || (c == '.' && pos + 1 < end && Character.isDigit(text.charAt(pos + 1)))) {
+                return parseNumber();
+            }
+            if (c == '\'' || c == '"') {
+                return new Node.Literal(position, parseString());
+            }
+            if (accept("(")) {
+                Node node = parseTernary();
+                expect(")");
+                return node;
+            }
+            if (accept("@")) {
+                skipWhitespace();
+                String beanName = (pos < end && (text.charAt(pos) == '\'' || text.charAt(pos) == '"') ?
+                        parseString() : parseIdentifier());
+                return new Node.BeanRef(position, beanName);
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                String identifier = parseIdentifier();
+                switch (identifier) {
+                    case "true":
+                        return new Node.Literal(position, Boolean.TRUE);
+                    case "false":
+                        return new Node.Literal(position, Boolean.FALSE);
+                    case "null":
+                        return new Node.Literal(position, null);
+                    case "T":
+                        if (accept("(")) {
+                            return parseTypeReference(position);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                return new Node.BeanRef(position, identifier);
+            }
+            throw error("无法识别的字符'" + c + "'");
+        }
+
+        /**
+         * T(之后的类名，包括)。
+         */
+        private Node parseTypeReference(int position) {
+            skipWhitespace();
+            StringBuilder className = new StringBuilder(parseIdentifier());
+            while (accept(".")) {
+                className.append('.').append(parseIdentifier());
+            }
+            expect(")");
+            String name = className.toString();
+            ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+            try {
+                return new Node.TypeRef(position, Class.forName(name, false, classLoader));
+            } catch (ClassNotFoundException ex) {
+                if (name.indexOf('.') < 0) {
+                    try {
+                        return new Node.TypeRef(position, Class.forName("java.lang." + name, false, classLoader));
+                    } catch (ClassNotFoundException ignored) {
+                        // 下面统一报错
+                    }
+                }
+                throw new ExpressionException("表达式[" + text + "]中位置" + position + "处的类型[" + name + "]不存在", ex);
+            }
+        }
+
+        private Node parseNumber() {
+            int position = pos;
+            boolean decimal = false;
+            while (pos < end) {
+                char c = text.charAt(pos);
+                if (Character.isDigit(c)) {
+                    pos++;
+                } else if (c == '.' && !decimal && pos + 1 < end && Character.isDigit(text.charAt(pos + 1))) {
+                    // 1.toString()之类的写法不支持，小数点后面必须是数字
+                    decimal = true;
+                    pos++;
+                } else if ((c == 'e' || c == 'E') && pos + 1 < end) {
+                    decimal = true;
+                    pos++;
+                    if (text.charAt(pos) == '+' || text.charAt(pos) == '-') {
+                        pos++;
+                    }
+                } else {
+                    break;
+                }
+            }
+            String number = text.substring(position, pos);
+            try {
+                if (pos < end && (text.charAt(pos) == 'L' || text.charAt(pos) == 'l')) {
+                    pos++;
+                    return new Node.Literal(position, Long.parseLong(number));
+                }
+                if (pos < end && (text.charAt(pos) == 'd' || text.charAt(pos) == 'D')) {
+                    pos++;
+                    return new Node.Literal(position, Double.parseDouble(number));
+                }
+                if (decimal) {
+                    return new Node.Literal(position, Double.parseDouble(number));
+                }
+                long value = Long.parseLong(number);
+                return new Node.Literal(position, (value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value));
+            } catch (NumberFormatException ex) {
+                throw new ExpressionException("表达式[" + text + "]中位置" + position + "处的数字[" + number + "]格式不正确", ex);
+            }
+        }
+
+        /**
+         * 以'或者"开始的字符串，引号写两次表示引号本身。
+         */
+        private String parseString() {
+            int position = pos;
+            char quote = text.charAt(pos++);
+            StringBuilder sb = new StringBuilder();
+            while (pos < end) {
+                char c = text.charAt(pos++);
+                if (c == quote) {
+                    if (pos < end && text.charAt(pos) == quote) {
+                        sb.append(quote);
+                        pos++;
+                    } else {
+                        return sb.toString();
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            pos = position;
+            throw error("字符串没有结束的引号");
+        }
+
+        private String parseIdentifier() {
+            skipWhitespace();
+            int start = pos;
+            if (pos < end && Character.isJavaIdentifierStart(text.charAt(pos))) {
+                pos++;
+                while (pos < end && Character.isJavaIdentifierPart(text.charAt(pos))) {
+                    pos++;
+                }
+                return text.substring(start, pos);
+            }
+            throw error("需要一个名称");
+        }
+
+        /// MARK - Tokens
+
+        private void skipWhitespace() {
+            while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean peek(String token) {
+            skipWhitespace();
+            return text.startsWith(token, pos) && pos + token.length() <= end;
+        }
+
+        private boolean accept(String token) {
+            if (peek(token)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 和accept相同，但要求后面不是标识符的一部分，这样order不会被当成or。
+         */
+        private boolean acceptKeyword(String keyword) {
+            if (peek(keyword)) {
+                int next = pos + keyword.length();
+                if (next >= end || !Character.isJavaIdentifierPart(text.charAt(next))) {
+                    pos = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("需要'" + token + "'");
+            }
+        }
+
+        private ExpressionException error(String message) {
+            return new ExpressionException("表达式[" + text + "]中位置" + pos + "处" + message);
+        }
+    }
+}
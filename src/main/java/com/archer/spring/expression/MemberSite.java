@@ -0,0 +1,342 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+/**
+ * 表达式中一次属性访问或者方法调用的调用点，类型是(Object receiver, Object... args)Object。
+ *
+ * 第一次调用时按receiver的实际类型查找成员并链接成MethodHandle，用receiver的类作为守卫；
+ * 方法有重载时守卫还包括每个参数的类。之后类型相同时直接调用链接好的MethodHandle，不再反射查找。
+ * 遇到新的类型时在守卫链前面追加一个分支，超过MAX_RELINKS个类型后不再追加，每次都重新查找。
+ *
+ * T(type).method(args)的staticType是type，查找type上的静态方法，receiver被忽略。
+ */
+final class MemberSite extends MutableCallSite {
+
+    /// MARK - Properties
+
+    // 最多为多少个不同的receiver类型链接
+    private static final int MAX_RELINKS = 8;
+
+    private static final MethodHandle FALLBACK;
+
+    private static final MethodHandle CLASS_CHECK;
+
+    private static final MethodHandle CLASSES_CHECK;
+
+    private static final MethodHandle MAP_GET;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            FALLBACK = lookup.findVirtual(MemberSite.class, "fallback",
+                    MethodType.methodType(Object.class, Object[].class));
+            CLASS_CHECK = lookup.findStatic(MemberSite.class, "isClass",
+                    MethodType.methodType(boolean.class, Class.class, Object.class));
+            CLASSES_CHECK = lookup.findStatic(MemberSite.class, "isClasses",
+                    MethodType.methodType(boolean.class, Class[].class, Object[].class));
+            MAP_GET = lookup.findVirtual(Map.class, "get", MethodType.methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final String name;
+
+    private final int argumentCount;
+
+    // name后面是否有括号，没有括号时按属性访问
+    private final boolean methodCall;
+
+    // 调用静态方法时是方法所在的类，否则为null
+    private final Class<?> staticType;
+
+    private int relinkCount;
+
+    /// MARK - Initializers
+
+    MemberSite(String name, int argumentCount, boolean methodCall, Class<?> staticType) {
+        super(MethodType.genericMethodType(argumentCount + 1));
+        this.name = name;
+        this.argumentCount = argumentCount;
+        this.methodCall = methodCall;
+        this.staticType = staticType;
+        setTarget(FALLBACK.bindTo(this).asCollector(Object[].class, argumentCount + 1).asType(type()));
+    }
+
+    /// MARK - Static members
+
+    /**
+     * 编译时解析T(type)上的静态字段，(Object)Object，receiver被忽略。不是静态字段时返回null，
+     * 由调用方按Class对象上的实例属性处理。
+     */
+    static MethodHandle resolveStaticField(Class<?> type, String name) {
+        try {
+            Field field = type.getField(name);
+            if (Modifier.isStatic(field.getModifiers())) {
+                MethodHandle getter = MethodHandles.publicLookup().unreflectGetter(field);
+                return MethodHandles.dropArguments(getter.asType(MethodType.genericMethodType(0)), 0, Object.class);
+            }
+        } catch (NoSuchFieldException | IllegalAccessException ex) {
+            // 按实例属性处理
+        }
+        return null;
+    }
+
+    static boolean isStaticFinalField(Class<?> type, String name) {
+        try {
+            int modifiers = type.getField(name).getModifiers();
+            return Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers);
+        } catch (NoSuchFieldException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * type上是否有接受argumentCount个参数的静态方法name。
+     */
+    static boolean hasStaticMethod(Class<?> type, String name, int argumentCount) {
+        return countMethods(type, name, argumentCount, true) > 0;
+    }
+
+    /// MARK - Linking
+
+    /**
+     * 没有匹配的守卫时调用，args[0]是receiver。
+     */
+    private Object fallback(Object[] args) throws Throwable {
+        Object receiver = args[0];
+        if (receiver == null) {
+            throw new ExpressionException("不能在null上访问[" + name + "]");
+        }
+        Class<?> receiverClass = receiver.getClass();
+        MethodHandle member = link(receiverClass, args);
+        synchronized (this) {
+            if (relinkCount < MAX_RELINKS) {
+                relinkCount++;
+                setTarget(MethodHandles.guardWithTest(guard(receiverClass, args), member, getTarget()));
+            }
+        }
+        return member.invokeWithArguments(args);
+    }
+
+    /**
+     * 链接的成员适用于哪些调用，(Object receiver, Object... args)boolean。
+     */
+    private MethodHandle guard(Class<?> receiverClass, Object[] args) {
+        Class<?> type = (staticType != null ? staticType : receiverClass);
+        if (methodCall && argumentCount > 0 && countMethods(type, name, argumentCount, staticType != null) > 1) {
+            // 有重载时选中的方法取决于参数的类型
+            Class<?>[] classes = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                classes[i] = (args[i] != null ? args[i].getClass() : null);
+            }
+            return CLASSES_CHECK.bindTo(classes).asCollector(Object[].class, args.length).asType(
+                    type().changeReturnType(boolean.class));
+        }
+        return MethodHandles.dropArguments(CLASS_CHECK.bindTo(receiverClass), 1,
+                type().parameterList().subList(1, type().parameterCount()));
+    }
+
+    /**
+     * 按receiver的类型查找成员，返回(Object receiver, Object... args)Object。
+     */
+    private MethodHandle link(Class<?> receiverClass, Object[] args) {
+        if (!methodCall) {
+            if (Map.class.isAssignableFrom(receiverClass)) {
+                return MethodHandles.insertArguments(MAP_GET.asType(MethodType.genericMethodType(2)), 1, name);
+            }
+            Method getter = findGetter(receiverClass);
+            if (getter != null) {
+                return unreflect(getter).asType(type());
+            }
+            try {
+                Field field = receiverClass.getField(name);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return MethodHandles.publicLookup().unreflectGetter(field).asType(type());
+                }
+            } catch (NoSuchFieldException | IllegalAccessException ex) {
+                // 下面统一报错
+            }
+            throw new ExpressionException("[" + receiverClass.getName() + "]上没有可读的属性[" + name + "]");
+        }
+        if (staticType != null) {
+            Method method = findMethod(staticType, name, argumentCount, args, true);
+            if (method == null) {
+                throw new ExpressionException("[" + staticType.getName() + "]上没有静态方法[" + name + "]接受这些参数");
+            }
+            return MethodHandles.dropArguments(adapt(unreflect(method), method.getParameterTypes()), 0, Object.class);
+        }
+        Method method = findMethod(receiverClass, name, argumentCount, args, false);
+        if (method == null) {
+            throw new ExpressionException("[" + receiverClass.getName() + "]上没有方法[" + name + "]接受这些参数");
+        }
+        Class<?>[] parameterTypes = new Class<?>[argumentCount + 1];
+        parameterTypes[0] = method.getDeclaringClass();
+        System.arraycopy(method.getParameterTypes(), 0, parameterTypes, 1, argumentCount);
+        return adapt(unreflect(method), parameterTypes);
+    }
+
+    private Method findGetter(Class<?> type) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String prefix : new String[] { "get", "is" }) {
+            try {
+                Method method = type.getMethod(prefix + suffix);
+                if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+                    return method;
+                }
+            } catch (NoSuchMethodException ex) {
+                // 继续查找
+            }
+        }
+        return null;
+    }
+
+    /// MARK - Internal
+
+    private static boolean isClass(Class<?> type, Object receiver) {
+        return receiver != null && receiver.getClass() == type;
+    }
+
+    /**
+     * classes中为null的位置要求参数也是null。
+     */
+    private static boolean isClasses(Class<?>[] classes, Object[] args) {
+        for (int i = 0; i < classes.length; i++) {
+            Object arg = args[i];
+            if ((arg == null ? null : arg.getClass()) != classes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countMethods(Class<?> type, String name, int argumentCount, boolean statics) {
+        int count = 0;
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == argumentCount &&
+                    Modifier.isStatic(method.getModifiers()) == statics) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 在type的public方法中按名字和参数个数查找；有多个时选参数类型和args最匹配的一个，都不匹配时返回null。
+     */
+    private static Method findMethod(Class<?> type, String name, int argumentCount, Object[] args, boolean statics) {
+        Method best = null;
+        int bestScore = -1;
+        for (Method method : type.getMethods()) {
+            if (!method.getName().equals(name) || method.getParameterCount() != argumentCount ||
+                    Modifier.isStatic(method.getModifiers()) != statics) {
+                continue;
+            }
+            int score = score(method.getParameterTypes(), args);
+            if (score > bestScore) {
+                best = method;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 参数类型和实际参数的匹配程度，类型完全相同得3分，可以赋值或者数值的拓宽转换得2分，
+     * 数值的窄化转换得1分，不匹配返回-1。
+     */
+    private static int score(Class<?>[] parameterTypes, Object[] args) {
+        int score = 0;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Object arg = args[i + 1];
+            Class<?> parameterType = parameterTypes[i];
+            if (arg == null) {
+                if (parameterType.isPrimitive()) {
+                    return -1;
+                }
+            } else if (arg.getClass() == parameterType || wrap(parameterType) == arg.getClass()) {
+                score += 3;
+            } else if (parameterType.isInstance(arg) ||
+                    Operators.numericRank(arg.getClass()) >= 0 &&
+                    Operators.numericRank(arg.getClass()) < Operators.numericRank(parameterType)) {
+                score += 2;
+            } else if (arg instanceof Number && Operators.isNumeric(parameterType)) {
+                score += 1;
+            } else {
+                return -1;
+            }
+        }
+        return score;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return (type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type);
+    }
+
+    /**
+     * 非public的类实现的方法(比如HashMap内部的迭代器)无法直接调用，改为查找public的父类或者接口中声明的同一个方法。
+     */
+    private static MethodHandle unreflect(Method method) {
+        Method accessible = findPublicDeclaration(method, method.getDeclaringClass());
+        if (accessible == null) {
+            throw new ExpressionException("无法访问方法[" + method + "]");
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(accessible);
+        } catch (IllegalAccessException ex) {
+            throw new ExpressionException("无法访问方法[" + method + "]", ex);
+        }
+    }
+
+    private static Method findPublicDeclaration(Method method, Class<?> type) {
+        if (type == null) {
+            return null;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                return type.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+        for (Class<?> ifc : type.getInterfaces()) {
+            Method found = findPublicDeclaration(method, ifc);
+            if (found != null) {
+                return found;
+            }
+        }
+        return findPublicDeclaration(method, type.getSuperclass());
+    }
+
+    /**
+     * 把handle的参数和返回值都改成Object，数值参数接受任意的Number。
+     */
+    private static MethodHandle adapt(MethodHandle handle, Class<?>[] parameterTypes) {
+        MethodHandle[] filters = new MethodHandle[parameterTypes.length];
+        Class<?>[] generic = new Class<?>[parameterTypes.length];
+        int offset = handle.type().parameterCount() - parameterTypes.length;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = handle.type().parameterType(i + offset);
+            if (Operators.isNumeric(parameterType)) {
+                filters[i] = Operators.coercion(parameterType);
+            }
+            generic[i] = Object.class;
+        }
+        handle = MethodHandles.filterArguments(handle, offset, filters);
+        return handle.asType(MethodType.methodType(Object.class, generic));
+    }
+}
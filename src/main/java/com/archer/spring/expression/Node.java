@@ -0,0 +1,401 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Set;
+
+/**
+ * 表达式的语法树节点。
+ *
+ * 每个节点编译成类型为(EvaluationContext)Object的MethodHandle，父节点用filterArguments把子节点的
+ * MethodHandle接到运算符的参数上，再用permuteArguments让它们共用同一个context，
+ * 最终整棵树是一个MethodHandle，计算时不再遍历节点。
+ * 不依赖context和成员访问的子树在编译时直接算出结果，编译成常量。
+ */
+abstract class Node {
+
+    /// MARK - Properties
+
+    static final MethodType CONTEXT_TYPE = MethodType.methodType(Object.class, EvaluationContext.class);
+
+    private static final MethodHandle GET_BEAN;
+
+    static {
+        try {
+            GET_BEAN = MethodHandles.publicLookup().findVirtual(EvaluationContext.class, "getBean",
+                    MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    // 在表达式中的位置，用于错误信息
+    final int position;
+
+    Node(int position) {
+        this.position = position;
+    }
+
+    /// MARK - Compile
+
+    /**
+     * 编译成(EvaluationContext)Object，常量子树在这里折叠。
+     */
+    final MethodHandle compile() {
+        MethodHandle handle = doCompile();
+        if (isConstant()) {
+            try {
+                return constant((Object) handle.invokeExact((EvaluationContext) null));
+            } catch (Throwable ex) {
+                // 比如1 / 0，留到计算时再报错
+            }
+        }
+        return handle;
+    }
+
+    abstract MethodHandle doCompile();
+
+    /**
+     * 结果是否只取决于字面量。
+     */
+    abstract boolean isConstant();
+
+    /**
+     * 把直接引用的bean的名称加入references。
+     */
+    void collectBeanReferences(Set<String> references) {
+    }
+
+    /// MARK - Helpers
+
+    static MethodHandle constant(Object value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(Object.class, value), 0, EvaluationContext.class);
+    }
+
+    /**
+     * 用operands的结果作为operator的参数，返回(EvaluationContext)Object。
+     */
+    static MethodHandle combine(MethodHandle operator, Node... operands) {
+        MethodHandle[] filters = new MethodHandle[operands.length];
+        for (int i = 0; i < operands.length; i++) {
+            filters[i] = operands[i].compile();
+        }
+        return share(MethodHandles.filterArguments(operator, 0, filters));
+    }
+
+    /**
+     * 把(EvaluationContext, EvaluationContext, ...)R合并成(EvaluationContext)R。
+     */
+    private static MethodHandle share(MethodHandle handle) {
+        return MethodHandles.permuteArguments(handle,
+                MethodType.methodType(handle.type().returnType(), EvaluationContext.class),
+                new int[handle.type().parameterCount()]);
+    }
+
+    static MethodHandle predicate(Node node) {
+        return MethodHandles.filterReturnValue(node.compile(), Operators.TRUTH);
+    }
+
+    static boolean allConstant(Node... nodes) {
+        for (Node node : nodes) {
+            if (!node.isConstant()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// MARK - Internal static class
+
+    static final class Literal extends Node {
+
+        final Object value;
+
+        Literal(int position, Object value) {
+            super(position);
+            this.value = value;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            return constant(value);
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    /**
+     * @beanName或者表达式开头的标识符，通过EvaluationContext获取bean。
+     */
+    static final class BeanRef extends Node {
+
+        final String beanName;
+
+        BeanRef(int position, String beanName) {
+            super(position);
+            this.beanName = beanName;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            return MethodHandles.insertArguments(GET_BEAN, 1, beanName);
+        }
+
+        @Override
+        boolean isConstant() {
+            return false;
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            references.add(beanName);
+        }
+    }
+
+    /**
+     * T(java.lang.Math)，值是对应的Class。
+     */
+    static final class TypeRef extends Node {
+
+        final Class<?> type;
+
+        TypeRef(int position, Class<?> type) {
+            super(position);
+            this.type = type;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            return constant(type);
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    /**
+     * target.name或者target.name(args)。target是TypeRef时优先查找静态成员。
+     */
+    static final class Member extends Node {
+
+        final Node target;
+
+        final String name;
+
+        final Node[] arguments;
+
+        final boolean methodCall;
+
+        Member(int position, Node target, String name, Node[] arguments, boolean methodCall) {
+            super(position);
+            this.target = target;
+            this.name = name;
+            this.arguments = arguments;
+            this.methodCall = methodCall;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            Class<?> staticType = null;
+            if (target instanceof TypeRef) {
+                Class<?> type = ((TypeRef) target).type;
+                if (!methodCall) {
+                    MethodHandle field = MemberSite.resolveStaticField(type, name);
+                    if (field != null) {
+                        return combine(field, target);
+                    }
+                } else if (MemberSite.hasStaticMethod(type, name, arguments.length)) {
+                    staticType = type;
+                }
+            }
+            Node[] operands = new Node[arguments.length + 1];
+            operands[0] = target;
+            System.arraycopy(arguments, 0, operands, 1, arguments.length);
+            return combine(new MemberSite(name, arguments.length, methodCall, staticType).dynamicInvoker(), operands);
+        }
+
+        @Override
+        boolean isConstant() {
+            // 方法的返回值可能每次都不同，只有T(type)上的静态常量可以折叠
+            return !methodCall && target instanceof TypeRef &&
+                    MemberSite.isStaticFinalField(((TypeRef) target).type, name);
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            target.collectBeanReferences(references);
+            for (Node argument : arguments) {
+                argument.collectBeanReferences(references);
+            }
+        }
+    }
+
+    static final class Index extends Node {
+
+        final Node target;
+
+        final Node index;
+
+        Index(int position, Node target, Node index) {
+            super(position);
+            this.target = target;
+            this.index = index;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            return combine(Operators.INDEX, target, index);
+        }
+
+        @Override
+        boolean isConstant() {
+            // 静态常量字段引用的数组和集合本身是可变的，只有字面量可以折叠
+            return target instanceof Literal && index.isConstant();
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            target.collectBeanReferences(references);
+            index.collectBeanReferences(references);
+        }
+    }
+
+    /**
+     * 二元运算符，operator为null时是短路的and/or。
+     */
+    static final class Binary extends Node {
+
+        final MethodHandle operator;
+
+        // true: and，false: or，只在operator为null时使用
+        final boolean and;
+
+        final Node left;
+
+        final Node right;
+
+        Binary(int position, MethodHandle operator, Node left, Node right) {
+            this(position, operator, false, left, right);
+        }
+
+        Binary(int position, boolean and, Node left, Node right) {
+            this(position, null, and, left, right);
+        }
+
+        private Binary(int position, MethodHandle operator, boolean and, Node left, Node right) {
+            super(position);
+            this.operator = operator;
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            if (operator != null) {
+                return combine(operator, left, right);
+            }
+            MethodHandle shortCircuit = MethodHandles.dropArguments(
+                    MethodHandles.constant(boolean.class, !and), 0, EvaluationContext.class);
+            MethodHandle result = (and ?
+                    MethodHandles.guardWithTest(predicate(left), predicate(right), shortCircuit) :
+                    MethodHandles.guardWithTest(predicate(left), shortCircuit, predicate(right)));
+            return result.asType(CONTEXT_TYPE);
+        }
+
+        @Override
+        boolean isConstant() {
+            return allConstant(left, right);
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            left.collectBeanReferences(references);
+            right.collectBeanReferences(references);
+        }
+    }
+
+    static final class Unary extends Node {
+
+        final MethodHandle operator;
+
+        final Node operand;
+
+        Unary(int position, MethodHandle operator, Node operand) {
+            super(position);
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            return MethodHandles.filterReturnValue(operand.compile(), operator);
+        }
+
+        @Override
+        boolean isConstant() {
+            return operand.isConstant();
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            operand.collectBeanReferences(references);
+        }
+    }
+
+    /**
+     * condition ? ifTrue : ifFalse，条件是常量时只编译选中的分支。
+     */
+    static final class Ternary extends Node {
+
+        final Node condition;
+
+        final Node ifTrue;
+
+        final Node ifFalse;
+
+        Ternary(int position, Node condition, Node ifTrue, Node ifFalse) {
+            super(position);
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+
+        @Override
+        MethodHandle doCompile() {
+            MethodHandle test = predicate(condition);
+            if (condition.isConstant()) {
+                try {
+                    return ((boolean) test.invokeExact((EvaluationContext) null) ? ifTrue : ifFalse).compile();
+                } catch (Throwable ex) {
+                    // 条件不是boolean，留到计算时再报错
+                }
+            }
+            return MethodHandles.guardWithTest(test, ifTrue.compile(), ifFalse.compile());
+        }
+
+        @Override
+        boolean isConstant() {
+            return allConstant(condition, ifTrue, ifFalse);
+        }
+
+        @Override
+        void collectBeanReferences(Set<String> references) {
+            condition.collectBeanReferences(references);
+            ifTrue.collectBeanReferences(references);
+            ifFalse.collectBeanReferences(references);
+        }
+    }
+}
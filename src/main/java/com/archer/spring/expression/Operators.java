@@ -0,0 +1,384 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 表达式中运算符的实现，编译时被组合进MethodHandle。
+ *
+ * 数值运算按Java的规则提升类型：有BigDecimal或BigInteger时用BigDecimal，
+ * 有double或float时用double，有long时用long，否则用int。
+ * +的任意一边是字符串时做字符串拼接。
+ */
+final class Operators {
+
+    /// MARK - Method handles
+
+    // (Object, Object)Object
+    static final MethodHandle ADD;
+    static final MethodHandle SUBTRACT;
+    static final MethodHandle MULTIPLY;
+    static final MethodHandle DIVIDE;
+    static final MethodHandle MODULUS;
+    static final MethodHandle EQUAL;
+    static final MethodHandle NOT_EQUAL;
+    static final MethodHandle LESS_THAN;
+    static final MethodHandle LESS_THAN_OR_EQUAL;
+    static final MethodHandle GREATER_THAN;
+    static final MethodHandle GREATER_THAN_OR_EQUAL;
+    static final MethodHandle INDEX;
+
+    // (Object)Object
+    static final MethodHandle NEGATE;
+    static final MethodHandle NOT;
+
+    // (Object)boolean
+    static final MethodHandle TRUTH;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType binary = MethodType.genericMethodType(2);
+        MethodType unary = MethodType.genericMethodType(1);
+        try {
+            ADD = lookup.findStatic(Operators.class, "add", binary);
+            SUBTRACT = lookup.findStatic(Operators.class, "subtract", binary);
+            MULTIPLY = lookup.findStatic(Operators.class, "multiply", binary);
+            DIVIDE = lookup.findStatic(Operators.class, "divide", binary);
+            MODULUS = lookup.findStatic(Operators.class, "modulus", binary);
+            EQUAL = lookup.findStatic(Operators.class, "equal", binary);
+            NOT_EQUAL = lookup.findStatic(Operators.class, "notEqual", binary);
+            LESS_THAN = lookup.findStatic(Operators.class, "lessThan", binary);
+            LESS_THAN_OR_EQUAL = lookup.findStatic(Operators.class, "lessThanOrEqual", binary);
+            GREATER_THAN = lookup.findStatic(Operators.class, "greaterThan", binary);
+            GREATER_THAN_OR_EQUAL = lookup.findStatic(Operators.class, "greaterThanOrEqual", binary);
+            INDEX = lookup.findStatic(Operators.class, "index", binary);
+            NEGATE = lookup.findStatic(Operators.class, "negate", unary);
+            NOT = lookup.findStatic(Operators.class, "not", unary);
+            TRUTH = lookup.findStatic(Operators.class, "truth", MethodType.methodType(boolean.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    // 数值类型的提升等级
+    private static final int INT = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int BIG_DECIMAL = 3;
+
+    private Operators() { }
+
+    /// MARK - Arithmetic
+
+    static Object add(Object left, Object right) {
+        if (left instanceof String || right instanceof String) {
+            return String.valueOf(left) + right;
+        }
+        switch (promote(left, right, "+")) {
+            case INT:
+                return ((Number) left).intValue() + ((Number) right).intValue();
+            case LONG:
+                return ((Number) left).longValue() + ((Number) right).longValue();
+            case DOUBLE:
+                return ((Number) left).doubleValue() + ((Number) right).doubleValue();
+            default:
+                return toBigDecimal(left).add(toBigDecimal(right));
+        }
+    }
+
+    static Object subtract(Object left, Object right) {
+        switch (promote(left, right, "-")) {
+            case INT:
+                return ((Number) left).intValue() - ((Number) right).intValue();
+            case LONG:
+                return ((Number) left).longValue() - ((Number) right).longValue();
+            case DOUBLE:
+                return ((Number) left).doubleValue() - ((Number) right).doubleValue();
+            default:
+                return toBigDecimal(left).subtract(toBigDecimal(right));
+        }
+    }
+
+    static Object multiply(Object left, Object right) {
+        switch (promote(left, right, "*")) {
+            case INT:
+                return ((Number) left).intValue() * ((Number) right).intValue();
+            case LONG:
+                return ((Number) left).longValue() * ((Number) right).longValue();
+            case DOUBLE:
+                return ((Number) left).doubleValue() * ((Number) right).doubleValue();
+            default:
+                return toBigDecimal(left).multiply(toBigDecimal(right));
+        }
+    }
+
+    static Object divide(Object left, Object right) {
+        try {
+            switch (promote(left, right, "/")) {
+                case INT:
+                    return ((Number) left).intValue() / ((Number) right).intValue();
+                case LONG:
+                    return ((Number) left).longValue() / ((Number) right).longValue();
+                case DOUBLE:
+                    return ((Number) left).doubleValue() / ((Number) right).doubleValue();
+                default:
+                    return toBigDecimal(left).divide(toBigDecimal(right), java.math.MathContext.DECIMAL128);
+            }
+        } catch (ArithmeticException ex) {
+            throw new ExpressionException("无法计算[" + left + " / " + right + "]: " + ex.getMessage(), ex);
+        }
+    }
+
+    static Object modulus(Object left, Object right) {
+        try {
+            switch (promote(left, right, "%")) {
+                case INT:
+                    return ((Number) left).intValue() % ((Number) right).intValue();
+                case LONG:
+                    return ((Number) left).longValue() % ((Number) right).longValue();
+                case DOUBLE:
+                    return ((Number) left).doubleValue() % ((Number) right).doubleValue();
+                default:
+                    return toBigDecimal(left).remainder(toBigDecimal(right));
+            }
+        } catch (ArithmeticException ex) {
+            throw new ExpressionException("无法计算[" + left + " % " + right + "]: " + ex.getMessage(), ex);
+        }
+    }
+
+    static Object negate(Object operand) {
+        switch (promote(operand, 0, "-")) {
+            case INT:
+                return -((Number) operand).intValue();
+            case LONG:
+                return -((Number) operand).longValue();
+            case DOUBLE:
+                return -((Number) operand).doubleValue();
+            default:
+                return toBigDecimal(operand).negate();
+        }
+    }
+
+    /// MARK - Relational & logical
+
+    static Object equal(Object left, Object right) {
+        return isEqual(left, right);
+    }
+
+    static Object notEqual(Object left, Object right) {
+        return !isEqual(left, right);
+    }
+
+    static Object lessThan(Object left, Object right) {
+        return compare(left, right, "<") < 0;
+    }
+
+    static Object lessThanOrEqual(Object left, Object right) {
+        return compare(left, right, "<=") <= 0;
+    }
+
+    static Object greaterThan(Object left, Object right) {
+        return compare(left, right, ">") > 0;
+    }
+
+    static Object greaterThanOrEqual(Object left, Object right) {
+        return compare(left, right, ">=") >= 0;
+    }
+
+    static Object not(Object operand) {
+        return !truth(operand);
+    }
+
+    static boolean truth(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new ExpressionException("需要boolean类型的值，实际是[" + value + "]");
+    }
+
+    /// MARK - Indexing
+
+    @SuppressWarnings("rawtypes")
+    static Object index(Object target, Object key) {
+        if (target instanceof Map) {
+            return ((Map) target).get(key);
+        }
+        if (target == null) {
+            throw new ExpressionException("不能对null取下标[" + key + "]");
+        }
+        if (!(key instanceof Number)) {
+            throw new ExpressionException("[" + target.getClass().getName() + "]的下标必须是整数，实际是[" + key + "]");
+        }
+        int index = ((Number) key).intValue();
+        try {
+            if (target instanceof List) {
+                return ((List) target).get(index);
+            } else if (target.getClass().isArray()) {
+                return Array.get(target, index);
+            } else if (target instanceof CharSequence) {
+                return String.valueOf(((CharSequence) target).charAt(index));
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            throw new ExpressionException("下标[" + index + "]越界", ex);
+        }
+        throw new ExpressionException("[" + target.getClass().getName() + "]不支持下标访问");
+    }
+
+    /// MARK - Coercion
+
+    /**
+     * 把表达式中的数值转换成方法参数需要的基本类型或包装类型，(Object)type。
+     */
+    static MethodHandle coercion(Class<?> type) {
+        Class<?> primitive = (type.isPrimitive() ? type : unwrap(type));
+        try {
+            MethodHandle handle = MethodHandles.lookup().findStatic(Operators.class, "to" + capitalize(primitive),
+                    MethodType.methodType(primitive, Object.class));
+            return handle.asType(MethodType.methodType(type, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static boolean isNumeric(Class<?> type) {
+        Class<?> primitive = (type.isPrimitive() ? type : unwrap(type));
+        return (primitive != null && primitive != boolean.class && primitive != char.class && primitive != void.class);
+    }
+
+    /**
+     * 数值类型在拓宽转换中的顺序，byte < short < int < long < float < double，不是数值类型时返回-1。
+     */
+    static int numericRank(Class<?> type) {
+        Class<?> primitive = (type.isPrimitive() ? type : unwrap(type));
+        if (primitive == byte.class) {
+            return 0;
+        } else if (primitive == short.class) {
+            return 1;
+        } else if (primitive == int.class) {
+            return 2;
+        } else if (primitive == long.class) {
+            return 3;
+        } else if (primitive == float.class) {
+            return 4;
+        } else if (primitive == double.class) {
+            return 5;
+        }
+        return -1;
+    }
+
+    private static byte toByte(Object value) {
+        return ((Number) value).byteValue();
+    }
+
+    private static short toShort(Object value) {
+        return ((Number) value).shortValue();
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static float toFloat(Object value) {
+        return ((Number) value).floatValue();
+    }
+
+    private static double toDouble(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    private static String capitalize(Class<?> primitive) {
+        String name = primitive.getName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Class<?> unwrap(Class<?> type) {
+        if (type == Integer.class) {
+            return int.class;
+        } else if (type == Long.class) {
+            return long.class;
+        } else if (type == Double.class) {
+            return double.class;
+        } else if (type == Float.class) {
+            return float.class;
+        } else if (type == Short.class) {
+            return short.class;
+        } else if (type == Byte.class) {
+            return byte.class;
+        }
+        return null;
+    }
+
+    /// MARK - Internal
+
+    private static int promote(Object left, Object right, String operator) {
+        return Math.max(rank(left, operator), rank(right, operator));
+    }
+
+    private static int rank(Object value, String operator) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double || value instanceof Float) {
+            return DOUBLE;
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return BIG_DECIMAL;
+        }
+        throw new ExpressionException("运算符[" + operator + "]不支持[" + value + "]" +
+                (value != null ? "(" + value.getClass().getName() + ")" : ""));
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        return BigDecimal.valueOf(((Number) value).longValue());
+    }
+
+    private static boolean isEqual(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return compare(left, right, "==") == 0;
+        }
+        return Objects.equals(left, right);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static int compare(Object left, Object right, String operator) {
+        if (left instanceof Number && right instanceof Number) {
+            switch (promote(left, right, operator)) {
+                case INT:
+                case LONG:
+                    return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+                case DOUBLE:
+                    return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+                default:
+                    return toBigDecimal(left).compareTo(toBigDecimal(right));
+            }
+        }
+        if (left instanceof Comparable && right != null && left.getClass() == right.getClass()) {
+            return ((Comparable) left).compareTo(right);
+        }
+        throw new ExpressionException("运算符[" + operator + "]无法比较[" + left + "]和[" + right + "]");
+    }
+}
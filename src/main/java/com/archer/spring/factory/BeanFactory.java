@@ -32,6 +32,13 @@ public interface BeanFactory {
     @NotNull
     <T> T getBean(@NotNull String beanName, @Nullable Class<T> requiredType) throws BeansException;
 
+    /**
+     * 返回名称为beanName的对象的句柄。解析工作在这里一次完成，
+     * 之后通过句柄反复获取对象时不再需要查找。
+     */
+    @NotNull
+    <T> BeanHandle<T> getBeanHandle(@NotNull String beanName, @NotNull Class<T> requiredType) throws BeansException;
+
     /**
      * BeanFactory中是否存在名称为beanName的对象。
      * 该算法会查看BeanFactory持有的BeanDefinition来
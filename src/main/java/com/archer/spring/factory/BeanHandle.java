@@ -0,0 +1,29 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/22.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+/**
+ * 预先解析好的bean句柄，通过BeanFactory.getBeanHandle()获取。
+ *
+ * 句柄在创建时就完成了bean name的解析和BeanDefinition的查找，
+ * 单例bean第一次获取后还会被缓存在句柄中，之后的get()不再做任何查找，
+ * 也不会分配任何对象，适合在热点路径上反复获取同一个bean。
+ * 工厂销毁单例后，句柄会自动重新解析。
+ */
+public interface BeanHandle<T> {
+
+    /**
+     * 返回句柄对应的bean name。
+     */
+    String getBeanName();
+
+    /**
+     * 返回句柄对应的bean，效果等同于BeanFactory.getBean(beanName, requiredType)。
+     */
+    T get() throws BeansException;
+
+}
@@ -0,0 +1,23 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/24.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.beans.PropertyDescriptor;
+
+/**
+ * 从bean的类中找出属性(getter/setter对)的策略，BeanWrapper通过它获得PropertyDescriptor。
+ *
+ * 实现必须是无状态的，同一个类在不同线程、不同时刻得到的结果应当相同，
+ * 结果由BeanWrapper按类缓存。
+ */
+public interface BeanIntrospector {
+
+    /**
+     * 返回beanClass的所有属性，按属性名排序。
+     */
+    PropertyDescriptor[] getPropertyDescriptors(Class<?> beanClass) throws BeansException;
+}
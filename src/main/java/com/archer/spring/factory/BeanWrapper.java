@@ -6,21 +6,40 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.convert.DefaultConversionService;
 import com.archer.spring.utils.ClassUtils;
+import com.archer.spring.utils.LambdaUtils;
+import com.archer.spring.utils.NumberUtils;
+import com.archer.spring.utils.StringUtils;
 import com.sun.istack.internal.NotNull;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
  * JavaBean的包装类。
+ * 属性的读写通过IntrospectionResults中缓存的访问器完成，频繁访问的属性会被编译成lambda。
+ * int/long/double/boolean属性的字符串值按默认规则转换时，直接解析成基本类型并调用对应的setter，不会装箱。
+ *
+ * 嵌套的属性路径(比如a.b[2].c)被解析成一串访问器，按(根对象的类, 路径)缓存在IntrospectionResults中，
+ * 每一步记住上一次遇到的类及其属性访问器，重复访问同一个路径时只剩下访问器本身的调用。
  */
 public final class BeanWrapper extends TypeConverterSupport implements PropertyAccessor {
 
@@ -32,14 +51,33 @@ public final class BeanWrapper extends TypeConverterSupport implements PropertyA
     // 为object缓存的自省信息
     private IntrospectionResults cachedIntrospectionResults;
 
+    // 从bean的类中找出属性的策略
+    private BeanIntrospector beanIntrospector = SimpleBeanIntrospector.INSTANCE;
+
     /// MARK - Getters & Setters
 
+    public BeanIntrospector getBeanIntrospector() {
+        return beanIntrospector;
+    }
+
+    /**
+     * 设置找出属性的策略，应当在setWrappedInstance之前调用，否则要重新自省一次。
+     */
+    public void setBeanIntrospector(BeanIntrospector beanIntrospector) {
+        Objects.requireNonNull(beanIntrospector, "BeanIntrospector不能为空");
+        if (this.beanIntrospector != beanIntrospector) {
+            this.beanIntrospector = beanIntrospector;
+            cachedIntrospectionResults = (object != null ?
+                    IntrospectionResults.forClass(object.getClass(), beanIntrospector) : null);
+        }
+    }
+
     public void setWrappedInstance(Object object) {
         Objects.requireNonNull(object, "object不能为空");
         this.object = object;
         if (cachedIntrospectionResults == null ||
-                cachedIntrospectionResults.getBeanClass().equals(object.getClass())) {
-            cachedIntrospectionResults = IntrospectionResults.forClass(object.getClass());
+                !cachedIntrospectionResults.getBeanClass().equals(object.getClass())) {
+            cachedIntrospectionResults = IntrospectionResults.forClass(object.getClass(), beanIntrospector);
         }
     }
 
@@ -69,60 +107,234 @@ public final class BeanWrapper extends TypeConverterSupport implements PropertyA
 
     @Override
     public void setPropertyValue(String propertyName, Object propertyValue) throws BeansException {
-        PropertyDescriptor pd = getPropertyDescriptor(propertyName);
-        if (pd == null) {
-            throw new BeansException("找不到[" + propertyName + "]属性对应的PropertyDescriptor");
+        if (PropertyPath.isNested(propertyName)) {
+            AccessorChain chain = getAccessorChain(propertyName);
+            chain.getLastStep().set(this, chain.getParent(this, object), propertyValue);
+            return;
+        }
+        writeConverted(object, getPropertyHandler(propertyName), propertyValue);
+    }
+
+    /**
+     * 属性值是字符串字面量时，转换结果缓存在PropertyValue上，
+     * 之后按同一个BeanDefinition创建bean时直接使用，不再重新解析。
+     */
+    @Override
+    public void setPropertyValue(PropertyValue propertyValue) throws BeansException {
+        Object value = propertyValue.getValue();
+        if (!isCacheableLiteral(value)) {
+            setPropertyValue(propertyValue.getName(), value);
+        } else if (PropertyPath.isNested(propertyValue.getName())) {
+            setPropertyValue(getAccessorChain(propertyValue.getName()), propertyValue);
+        } else {
+            writeLiteral(object, getPropertyHandler(propertyValue.getName()), propertyValue);
+        }
+    }
+
+    @Override
+    public Object getPropertyValue(String propertyName) throws BeansException {
+        if (PropertyPath.isNested(propertyName)) {
+            AccessorChain chain = getAccessorChain(propertyName);
+            return chain.getLastStep().get(this, chain.getParent(this, object));
+        }
+        return readProperty(object, getPropertyHandler(propertyName));
+    }
+
+    /**
+     * 嵌套的路径按当前对象上的值找到最后一个属性所属的类，路径以下标或key结尾时抛出BeansException。
+     */
+    @Override
+    public PropertyDescriptor getPropertyDescriptor(String propertyName) throws BeansException {
+        Objects.requireNonNull(propertyName, "属性名不能为空");
+        if (PropertyPath.isNested(propertyName)) {
+            AccessorChain chain = getAccessorChain(propertyName);
+            Step lastStep = chain.getLastStep();
+            if (!(lastStep instanceof PropertyStep)) {
+                throw new BeansException("属性路径[" + propertyName + "]以下标或key结尾，没有对应的属性");
+            }
+            return ((PropertyStep) lastStep).resolve(this, chain.getParent(this, object)).getDescriptor();
+        }
+        return getPropertyHandler(propertyName).getDescriptor();
+    }
+
+    @Override
+    public PropertyDescriptor[] getPropertyDescriptors() throws BeansException {
+        Objects.requireNonNull(cachedIntrospectionResults, "object必须已被设置");
+        return cachedIntrospectionResults.getPropertyDescriptors().clone();
+    }
+
+    /// MARK - Binding support
+
+    /**
+     * 通过事先准备好的访问器链写入，propertyValue.getName()不再被解析。供PropertyBinder使用。
+     */
+    void setPropertyValue(AccessorChain chain, PropertyValue propertyValue) throws BeansException {
+        Object target = chain.getParent(this, object);
+        Step lastStep = chain.getLastStep();
+        if (lastStep instanceof PropertyStep && isCacheableLiteral(propertyValue.getValue())) {
+            writeLiteral(target, ((PropertyStep) lastStep).resolve(this, target), propertyValue);
+        } else {
+            lastStep.set(this, target, propertyValue.getValue());
         }
-        Method writeMethod = pd.getWriteMethod();
-        if (writeMethod == null) {
-            throw new BeansException("找不到[" + propertyName + "]属性对应的setter方法");
+    }
+
+    /**
+     * 为path准备一条可以反复使用的访问器链，不经过IntrospectionResults的缓存。
+     * 集合和Map的元素类型按rootClass中声明的类型确定，属性本身仍按访问时对象的实际类型查找。
+     */
+    static AccessorChain prepareAccessorChain(String path, Class<?> rootClass, BeanIntrospector introspector)
+            throws BeansException {
+        return new AccessorChain(PropertyPath.parse(path), rootClass, introspector);
+    }
+
+    /**
+     * 查找clazz中名为propertyName的属性，没有的话返回null。
+     */
+    static PropertyDescriptor findPropertyDescriptor(Class<?> clazz, BeanIntrospector introspector, String propertyName) {
+        return IntrospectionResults.forClass(clazz, introspector).findPropertyDescriptor(propertyName);
+    }
+
+    /// MARK - Introspection cache
+
+    /**
+     * 清除classLoader及其子加载器加载的类的自省信息，以及共享的DefaultConversionService
+     * 缓存的Converter查找结果，在卸载这些类(比如关闭ApplicationContext、重新部署)时调用，
+     * 否则缓存会一直持有它们。
+     */
+    public static void clearClassLoader(ClassLoader classLoader) {
+        if (classLoader != null) {
+            IntrospectionResults.clearClassLoader(classLoader);
+            DefaultConversionService.clearClassLoader(classLoader);
+        }
+    }
+
+    /**
+     * 自省信息缓存的命中情况。
+     */
+    public static IntrospectionCacheStatistics getIntrospectionCacheStatistics() {
+        return IntrospectionResults.getStatistics();
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 把value转换成属性的类型。
+     */
+    private Object convertForProperty(PropertyHandler handler, Object value) throws BeansException {
+        PropertyDescriptor pd = handler.getDescriptor();
+        if (handler.getWriteMethod() == null) {
+            throw new BeansException("找不到[" + pd.getName() + "]属性对应的setter方法");
         }
         try {
             // 获取要转换成的类型
-            Class<?> propertyType = pd.getPropertyType();
-            // 做转换
-            Object newValue = convertIfNecessary(propertyValue, pd);
+            Class<?> propertyType = handler.getPropertyType();
+            if (propertyType.isPrimitive() && value == null) {
+                throw new IllegalArgumentException("属性[" + pd.getName() + "]的类型是基本类型[" + propertyType + "]，不能为null");
+            }
+            // 做转换，集合和Map按setter参数的泛型类型转换元素
+            Object newValue = getTypeConverterDelegate().convertIfNecessary(value, pd, handler.getGenericType());
             if (propertyType.isPrimitive() &&
                     (newValue == null || "".equals(newValue))) {
-                throw new IllegalArgumentException("属性[" + propertyName + "]的类型是基本类型[" + propertyType + "]");
+                throw new IllegalArgumentException("属性[" + pd.getName() + "]的类型是基本类型[" + propertyType + "]");
             }
-            // 调用setter设置进去
-            writeMethod.invoke(object, newValue);
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            throw new BeansException("无法调用此getter - " + writeMethod.getName());
+            return newValue;
         } catch (IllegalArgumentException e) {
             throw new BeansException(e);
         }
     }
 
-    @Override
-    public Object getPropertyValue(String propertyName) throws BeansException {
-        PropertyDescriptor pd = getPropertyDescriptor(propertyName);
-        if (pd == null) {
-            throw new BeansException("找不到[" + propertyName + "]属性对应的PropertyDescriptor");
+    /**
+     * 写入字符串字面量，转换结果缓存在PropertyValue上。
+     */
+    private void writeLiteral(Object target, PropertyHandler handler, PropertyValue propertyValue) throws BeansException {
+        Object value = propertyValue.getValue();
+        PropertyDescriptor pd = handler.getDescriptor();
+        ConvertedLiteral literal = propertyValue.getConvertedLiteral();
+        if (literal == null || !literal.matches(pd, getSharedEditors(), getConversionService())) {
+            Object convertedValue = convertForProperty(handler, value);
+            literal = ConvertedLiteral.of(pd, getSharedEditors(), getConversionService(), convertedValue);
+            if (literal == null) {
+                writeProperty(target, handler, convertedValue);
+                return;
+            }
+            propertyValue.setConvertedLiteral(literal);
         }
-        Method readMethod = pd.getReadMethod();
+        writeProperty(target, handler, literal.getValue());
+    }
+
+    /**
+     * 把value转换成属性的类型，再通过setter写入target。
+     */
+    private void writeConverted(Object target, PropertyHandler handler, Object value) throws BeansException {
+        if (value instanceof String && handler.hasPrimitiveWriter() &&
+                getTypeConverterDelegate().isDefaultTextConversion(handler.getPropertyType(), handler.getDescriptor())) {
+            writePrimitive(target, handler, (String) value);
+            return;
+        }
+        writeProperty(target, handler, convertForProperty(handler, value));
+    }
+
+    /**
+     * 调用getter读取target的属性。
+     */
+    private Object readProperty(Object target, PropertyHandler handler) throws BeansException {
+        Method readMethod = handler.getReadMethod();
         if (readMethod == null) {
-            throw new BeansException("找不到[" + propertyName + "]属性对应的getter方法");
+            throw new BeansException("找不到[" + handler.getDescriptor().getName() + "]属性对应的getter方法");
         }
         try {
             // 调用getter来获取
-            return readMethod.invoke(object);
+            return handler.getValue(target);
         } catch (InvocationTargetException | IllegalAccessException e) {
-            throw new BeansException("无法调用此getter - " + readMethod.getName());
+            throw new BeansException("无法调用此getter - " + readMethod.getName(), e);
         }
     }
 
-    @Override
-    public PropertyDescriptor getPropertyDescriptor(String propertyName) throws BeansException {
+    /**
+     * 调用setter设置已经转换好的值。
+     */
+    private void writeProperty(Object target, PropertyHandler handler, Object value) throws BeansException {
+        try {
+            handler.setValue(target, value);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new BeansException("无法调用此setter - " + handler.getWriteMethod().getName(), e);
+        } catch (IllegalArgumentException e) {
+            throw new BeansException(e);
+        }
+    }
+
+    /**
+     * 把text直接解析成属性的基本类型并调用setter，解析规则和默认的PropertyEditor一致。
+     */
+    private void writePrimitive(Object target, PropertyHandler handler, String text) throws BeansException {
+        Class<?> propertyType = handler.getPropertyType();
+        try {
+            if (propertyType == int.class) {
+                handler.setInt(target, NumberUtils.parseInt(text));
+            } else if (propertyType == long.class) {
+                handler.setLong(target, NumberUtils.parseLong(text));
+            } else if (propertyType == double.class) {
+                handler.setDouble(target, NumberUtils.parseDouble(text));
+            } else {
+                handler.setBoolean(target, StringUtils.parseBoolean(text));
+            }
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new BeansException("无法调用此setter - " + handler.getWriteMethod().getName(), e);
+        } catch (IllegalArgumentException e) {
+            throw new BeansException("无法将[" + text + "]转换成属性[" + handler.getDescriptor().getName() +
+                    "]的类型[" + propertyType + "]", e);
+        }
+    }
+
+    private PropertyHandler getPropertyHandler(String propertyName) throws BeansException {
         Objects.requireNonNull(propertyName, "属性名不能为空");
         Objects.requireNonNull(cachedIntrospectionResults, "object必须已被设置");
-        return cachedIntrospectionResults.getPropertyDescriptor(propertyName);
+        return cachedIntrospectionResults.getPropertyHandler(propertyName);
     }
 
-    @Override
-    public PropertyDescriptor[] getPropertyDescriptors() throws BeansException {
-        return cachedIntrospectionResults.getBeanInfo().getPropertyDescriptors();
+    private AccessorChain getAccessorChain(String path) throws BeansException {
+        Objects.requireNonNull(cachedIntrospectionResults, "object必须已被设置");
+        return cachedIntrospectionResults.getAccessorChain(path);
     }
 
     /// MARK - Internal static class
@@ -132,46 +344,691 @@ public final class BeanWrapper extends TypeConverterSupport implements PropertyA
      */
     private static class IntrospectionResults {
 
-        private static final Map<Class<?>, IntrospectionResults> cache = new HashMap<>();
+        // 值是同一个类按不同的BeanIntrospector得到的结果，每种策略一个槽位
+
+        // BeanWrapper所在的类加载器及其父加载器加载的类，和BeanWrapper的生命周期一样长，直接强引用
+        private static final Map<Class<?>, IntrospectionResults[]> strongCache = new ConcurrentHashMap<>(64);
+
+        // 其它类加载器加载的类，key是弱引用，value是软引用，不会因为缓存而阻止类加载器被回收
+        private static final Map<Class<?>, Reference<IntrospectionResults[]>> softCache =
+                Collections.synchronizedMap(new WeakHashMap<>(64));
 
-        static IntrospectionResults forClass(Class<?> clazz) {
-            IntrospectionResults results = cache.get(clazz);
-            if (results == null) {
-                results = new IntrospectionResults(clazz);
-                cache.put(clazz, results);
+        private static final LongAdder hits = new LongAdder();
+
+        private static final LongAdder misses = new LongAdder();
+
+        // 每个类最多缓存多少条嵌套的属性路径
+        private static final int MAX_ACCESSOR_CHAINS = 256;
+
+        // 每个类最多为几种BeanIntrospector缓存结果，再多的策略每次都重新自省
+        private static final int MAX_INTROSPECTORS = 4;
+
+        /**
+         * 按(类, 策略)缓存结果。BeanFactory和PropertyBinder等交替使用不同的策略时，
+         * 各自的结果互不替换，编译好的访问器和访问器链都会保留下来。
+         */
+        static IntrospectionResults forClass(Class<?> clazz, BeanIntrospector introspector) {
+            IntrospectionResults[] cached = strongCache.get(clazz);
+            if (cached == null) {
+                Reference<IntrospectionResults[]> ref = softCache.get(clazz);
+                cached = (ref != null ? ref.get() : null);
+            }
+            IntrospectionResults results = find(cached, introspector);
+            if (results != null) {
+                hits.increment();
+                return results;
             }
-            return results;
+            misses.increment();
+            // 自省可能比较慢，不在锁内进行，并发时重复自省的结果是等价的，以先放入缓存的为准
+            IntrospectionResults created = new IntrospectionResults(clazz, introspector);
+            if (isCacheSafe(clazz)) {
+                IntrospectionResults[] slots = strongCache.compute(clazz, (key, old) -> withSlot(old, created));
+                results = find(slots, introspector);
+            } else {
+                synchronized (softCache) {
+                    Reference<IntrospectionResults[]> ref = softCache.get(clazz);
+                    IntrospectionResults[] slots = withSlot(ref != null ? ref.get() : null, created);
+                    if (ref == null || ref.get() != slots) {
+                        softCache.put(clazz, new SoftReference<>(slots));
+                    }
+                    results = find(slots, introspector);
+                }
+            }
+            return (results != null ? results : created);
         }
 
-        private BeanInfo beanInfo;
+        private static IntrospectionResults find(IntrospectionResults[] slots, BeanIntrospector introspector) {
+            if (slots != null) {
+                for (IntrospectionResults results : slots) {
+                    if (results.introspector == introspector) {
+                        return results;
+                    }
+                }
+            }
+            return null;
+        }
 
-        private Map<String, PropertyDescriptor> propertyDescriptorMap;
+        /**
+         * 在slots后面追加results的槽位，返回新的数组；已经有这个策略的槽位或者槽位已满时返回slots本身。
+         */
+        private static IntrospectionResults[] withSlot(IntrospectionResults[] slots, IntrospectionResults results) {
+            if (slots == null) {
+                return new IntrospectionResults[] { results };
+            }
+            if (find(slots, results.introspector) != null || slots.length >= MAX_INTROSPECTORS) {
+                return slots;
+            }
+            IntrospectionResults[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+            newSlots[slots.length] = results;
+            return newSlots;
+        }
 
-        BeanInfo getBeanInfo() {
-            return beanInfo;
+        /**
+         * 移除classLoader及其子加载器加载的类的自省信息。
+         */
+        static void clearClassLoader(ClassLoader classLoader) {
+            removeUnderneathClassLoader(strongCache.keySet(), classLoader);
+            synchronized (softCache) {
+                removeUnderneathClassLoader(softCache.keySet(), classLoader);
+            }
+        }
+
+        static IntrospectionCacheStatistics getStatistics() {
+            return new IntrospectionCacheStatistics(hits.sum(), misses.sum(), strongCache.size(), softCache.size());
+        }
+
+        /**
+         * clazz的类加载器是否是BeanWrapper的类加载器或者它的祖先。
+         */
+        private static boolean isCacheSafe(Class<?> clazz) {
+            ClassLoader target = clazz.getClassLoader();
+            if (target == null) {
+                return true;
+            }
+            for (ClassLoader cl = BeanWrapper.class.getClassLoader(); cl != null; cl = cl.getParent()) {
+                if (cl == target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void removeUnderneathClassLoader(Set<Class<?>> classes, ClassLoader classLoader) {
+            for (Iterator<Class<?>> it = classes.iterator(); it.hasNext(); ) {
+                Class<?> clazz = it.next();
+                if (ClassUtils.isUnderneathClassLoader(clazz, classLoader)) {
+                    it.remove();
+                    // JDK自己也按ThreadGroup缓存了BeanInfo
+                    Introspector.flushFromCaches(clazz);
+                }
+            }
+        }
+
+        private final Class<?> beanClass;
+
+        // 得到这份结果时使用的策略
+        private final BeanIntrospector introspector;
+
+        private final PropertyDescriptor[] propertyDescriptors;
+
+        // 属性名 -> 属性的访问器
+        private final Map<String, PropertyHandler> propertyHandlerMap;
+
+        // 嵌套的属性路径 -> 解析好的访问器链
+        private final Map<String, AccessorChain> accessorChains = new ConcurrentHashMap<>(16);
+
+        PropertyDescriptor[] getPropertyDescriptors() {
+            return propertyDescriptors;
         }
 
         Class<?> getBeanClass() {
-            return getBeanInfo().getBeanDescriptor().getBeanClass();
+            return beanClass;
         }
 
-        PropertyDescriptor getPropertyDescriptor(String propertyName) throws BeansException {
-            PropertyDescriptor pd = propertyDescriptorMap.get(propertyName);
-            if (pd == null) {
+        PropertyDescriptor findPropertyDescriptor(String propertyName) {
+            PropertyHandler handler = propertyHandlerMap.get(propertyName);
+            return (handler != null ? handler.getDescriptor() : null);
+        }
+
+        PropertyHandler getPropertyHandler(String propertyName) throws BeansException {
+            PropertyHandler handler = propertyHandlerMap.get(propertyName);
+            if (handler == null) {
                 throw new BeansException("[" + getBeanClass().getName() + "]没有名为[" + propertyName + "]的属性");
             }
-            return pd;
+            return handler;
+        }
+
+        /**
+         * 返回path对应的访问器链。下标不同的路径是不同的key，为了防止缓存无限增长，
+         * 超过MAX_ACCESSOR_CHAINS之后新的路径不再缓存。
+         */
+        AccessorChain getAccessorChain(String path) throws BeansException {
+            AccessorChain chain = accessorChains.get(path);
+            if (chain == null) {
+                chain = new AccessorChain(PropertyPath.parse(path), beanClass, introspector);
+                if (accessorChains.size() < MAX_ACCESSOR_CHAINS) {
+                    AccessorChain existing = accessorChains.putIfAbsent(path, chain);
+                    if (existing != null) {
+                        chain = existing;
+                    }
+                }
+            }
+            return chain;
+        }
+
+        private IntrospectionResults(Class<?> clazz, BeanIntrospector introspector) {
+            this.beanClass = clazz;
+            this.introspector = introspector;
+            this.propertyDescriptors = introspector.getPropertyDescriptors(clazz);
+            this.propertyHandlerMap = new HashMap<>(propertyDescriptors.length * 2);
+            for (PropertyDescriptor pd : propertyDescriptors) {
+                propertyHandlerMap.put(pd.getName(), new PropertyHandler(pd));
+            }
+        }
+    }
+
+    /**
+     * 一条嵌套属性路径对应的访问器链，每一段对应一个Step。
+     * 创建时从根对象的类出发，沿着路径确定每个下标或key所在的集合、Map声明的泛型类型。
+     */
+    static final class AccessorChain {
+
+        private final PropertyPath path;
+
+        private final Step[] steps;
+
+        AccessorChain(PropertyPath path, Class<?> rootClass, BeanIntrospector introspector) {
+            this.path = path;
+            PropertyPath.Element[] elements = path.getElements();
+            this.steps = new Step[elements.length];
+            // 当前这一段所属对象声明的类型，无法确定时为null
+            Type currentType = rootClass;
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i].isKey()) {
+                    KeyStep step = new KeyStep(elements[i], currentType);
+                    steps[i] = step;
+                    currentType = step.valueType;
+                } else {
+                    steps[i] = new PropertyStep(elements[i]);
+                    currentType = getDeclaredType(currentType, elements[i].getName(), introspector);
+                }
+            }
         }
 
-        private IntrospectionResults(Class<?> clazz) {
+        /**
+         * ownerType中属性name声明的泛型类型，优先取getter的返回类型。
+         */
+        private static Type getDeclaredType(Type ownerType, String name, BeanIntrospector introspector) {
+            Class<?> ownerClass = TypeConverterDelegate.resolveClass(ownerType);
+            if (ownerClass == null || ownerClass == Object.class) {
+                return null;
+            }
+            PropertyDescriptor pd = IntrospectionResults.forClass(ownerClass, introspector).findPropertyDescriptor(name);
+            if (pd == null) {
+                return null;
+            }
+            Method readMethod = pd.getReadMethod();
+            if (readMethod != null) {
+                return readMethod.getGenericReturnType();
+            }
+            Method writeMethod = pd.getWriteMethod();
+            return (writeMethod != null ? writeMethod.getGenericParameterTypes()[0] : pd.getPropertyType());
+        }
+
+        Step getLastStep() {
+            return steps[steps.length - 1];
+        }
+
+        /**
+         * 从root出发依次访问除最后一段以外的所有段，返回最后一段所属的对象。
+         */
+        Object getParent(BeanWrapper wrapper, Object root) throws BeansException {
+            Object current = root;
+            for (int i = 0; i < steps.length - 1; i++) {
+                current = steps[i].get(wrapper, current);
+                if (current == null) {
+                    throw new BeansException("属性路径[" + path.getPath() + "]中的[" +
+                            steps[i].element.getPrefix() + "]为null");
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 访问器链中的一段。
+     */
+    private abstract static class Step {
+
+        final PropertyPath.Element element;
+
+        Step(PropertyPath.Element element) {
+            this.element = element;
+        }
+
+        abstract Object get(BeanWrapper wrapper, Object target) throws BeansException;
+
+        abstract void set(BeanWrapper wrapper, Object target, Object value) throws BeansException;
+    }
+
+    /**
+     * 访问target的一个属性。记住上一次遇到的类和对应的PropertyHandler，
+     * 同一条路径上的对象通常总是同一个类，这时不需要再查找。
+     */
+    private static final class PropertyStep extends Step {
+
+        private volatile ResolvedHandler resolved;
+
+        PropertyStep(PropertyPath.Element element) {
+            super(element);
+        }
+
+        PropertyHandler resolve(BeanWrapper wrapper, Object target) throws BeansException {
+            ResolvedHandler current = resolved;
+            Class<?> targetClass = target.getClass();
+            if (current == null || current.targetClass != targetClass ||
+                    current.introspector != wrapper.beanIntrospector) {
+                BeanIntrospector introspector = wrapper.beanIntrospector;
+                PropertyHandler handler = IntrospectionResults.forClass(targetClass, introspector)
+                        .getPropertyHandler(element.getName());
+                current = new ResolvedHandler(targetClass, introspector, handler);
+                resolved = current;
+            }
+            return current.handler;
+        }
+
+        @Override
+        Object get(BeanWrapper wrapper, Object target) throws BeansException {
+            return wrapper.readProperty(target, resolve(wrapper, target));
+        }
+
+        @Override
+        void set(BeanWrapper wrapper, Object target, Object value) throws BeansException {
+            wrapper.writeConverted(target, resolve(wrapper, target), value);
+        }
+
+        private static final class ResolvedHandler {
+
+            private final Class<?> targetClass;
+
+            private final BeanIntrospector introspector;
+
+            private final PropertyHandler handler;
+
+            ResolvedHandler(Class<?> targetClass, BeanIntrospector introspector, PropertyHandler handler) {
+                this.targetClass = targetClass;
+                this.introspector = introspector;
+                this.handler = handler;
+            }
+        }
+    }
+
+    /**
+     * 访问数组、List的下标或者Map的key。
+     * 写入时把值转换成数组的元素类型，或者List、Map声明的元素类型；Map的key同样按声明的key类型转换。
+     * 声明的类型无法确定时(比如Object或者没有泛型参数的List)原样写入。
+     * 写入List时下标等于长度表示追加。
+     */
+    private static final class KeyStep extends Step {
+
+        // 集合、数组的元素或者Map的value声明的泛型类型，无法确定时为null
+        final Type valueType;
+
+        // valueType对应的类，为null或者Object时不需要转换
+        private final Class<?> valueClass;
+
+        // Map的key声明的类型，为null、Object或者String时直接使用路径中的文本
+        private final Class<?> keyClass;
+
+        private final Type keyType;
+
+        KeyStep(PropertyPath.Element element, Type containerType) {
+            super(element);
+            Class<?> containerClass = TypeConverterDelegate.resolveClass(containerType);
+            Type keyType = null;
+            Type valueType = null;
+            if (containerClass != null && containerClass.isArray()) {
+                valueType = (containerType instanceof GenericArrayType ?
+                        ((GenericArrayType) containerType).getGenericComponentType() : containerClass.getComponentType());
+            } else if (containerClass != null && Collection.class.isAssignableFrom(containerClass)) {
+                valueType = getTypeArgument(containerType, 0);
+            } else if (containerClass != null && Map.class.isAssignableFrom(containerClass)) {
+                keyType = getTypeArgument(containerType, 0);
+                valueType = getTypeArgument(containerType, 1);
+            }
+            this.valueType = valueType;
+            this.valueClass = TypeConverterDelegate.resolveClass(valueType);
+            this.keyType = keyType;
+            Class<?> keyClass = TypeConverterDelegate.resolveClass(keyType);
+            this.keyClass = (keyClass == Object.class || keyClass == String.class ? null : keyClass);
+        }
+
+        private static Type getTypeArgument(Type type, int index) {
+            if (type instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+                if (index < arguments.length) {
+                    return arguments[index];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        Object get(BeanWrapper wrapper, Object target) throws BeansException {
+            if (target instanceof Map) {
+                return ((Map) target).get(convertKey(wrapper));
+            }
+            int index = checkIndex(target, false);
+            // 引用类型的数组直接访问，Array.get是native方法，无法被内联
+            if (target instanceof Object[]) {
+                return ((Object[]) target)[index];
+            }
+            if (target.getClass().isArray()) {
+                return Array.get(target, index);
+            }
+            return ((List) target).get(index);
+        }
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        void set(BeanWrapper wrapper, Object target, Object value) throws BeansException {
+            if (target instanceof Map) {
+                Object key = convertKey(wrapper);
+                try {
+                    ((Map) target).put(key, convertElement(wrapper, value, valueClass, valueType));
+                } catch (IllegalArgumentException | UnsupportedOperationException | ClassCastException e) {
+                    throw new BeansException("无法写入[" + element.getPrefix() + "]", e);
+                }
+                return;
+            }
+            int index = checkIndex(target, true);
+            try {
+                if (target.getClass().isArray()) {
+                    // 按数组实际的元素类型转换，声明的类型相同时带上泛型参数
+                    Class<?> componentType = target.getClass().getComponentType();
+                    Object convertedValue = convertElement(wrapper, value, componentType,
+                            (componentType == valueClass ? valueType : componentType));
+                    if (componentType.isPrimitive() && convertedValue == null) {
+                        throw new IllegalArgumentException("[" + element.getPrefix() + "]的类型是基本类型[" + componentType + "]");
+                    }
+                    Array.set(target, index, convertedValue);
+                } else if (index == ((List) target).size()) {
+                    ((List) target).add(convertElement(wrapper, value, valueClass, valueType));
+                } else {
+                    ((List) target).set(index, convertElement(wrapper, value, valueClass, valueType));
+                }
+            } catch (IllegalArgumentException | UnsupportedOperationException | ClassCastException e) {
+                throw new BeansException("无法写入[" + element.getPrefix() + "]", e);
+            }
+        }
+
+        /**
+         * 按声明的元素类型转换value，和数组元素一样经过TypeConverterDelegate。
+         */
+        private Object convertElement(BeanWrapper wrapper, Object value, Class<?> requiredType, Type genericType) {
+            if (requiredType == null || requiredType == Object.class) {
+                return value;
+            }
+            return wrapper.getTypeConverterDelegate().convertIfNecessary(element.getPrefix(), value, requiredType, genericType);
+        }
+
+        /**
+         * 把路径中的key转换成Map声明的key类型。
+         */
+        private Object convertKey(BeanWrapper wrapper) throws BeansException {
+            if (keyClass == null) {
+                return element.getName();
+            }
+            try {
+                return wrapper.getTypeConverterDelegate().convertIfNecessary(element.getPrefix(), element.getName(),
+                        keyClass, keyType);
+            } catch (IllegalArgumentException e) {
+                throw new BeansException("无法将[" + element.getPrefix() + "]的key转换成[" + keyClass.getName() + "]", e);
+            }
+        }
+
+        /**
+         * target必须是数组或者List，并且下标在范围内(写入List时允许等于长度)。
+         */
+        private int checkIndex(Object target, boolean forWrite) throws BeansException {
+            boolean isArray = target.getClass().isArray();
+            if (!isArray && !(target instanceof List)) {
+                throw new BeansException("[" + element.getPrefix() + "]所属的对象既不是数组、List，也不是Map: " +
+                        target.getClass().getName());
+            }
+            int index = element.getIndex();
+            if (index < 0) {
+                throw new BeansException("[" + element.getPrefix() + "]的下标必须是非负整数");
+            }
+            int size = (target instanceof Object[] ? ((Object[]) target).length :
+                    isArray ? Array.getLength(target) : ((List<?>) target).size());
+            boolean append = (forWrite && !isArray && index == size);
+            if (index >= size && !append) {
+                throw new BeansException("[" + element.getPrefix() + "]的下标越界，长度为" + size);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 单个属性的访问器。
+     *
+     * 刚开始通过Method.invoke访问，同一个属性被访问了COMPILE_THRESHOLD次之后，
+     * 用LambdaUtils把getter/setter编译成Function/BiConsumer，之后直接调用。
+     * 只访问几次的属性(比如单例的属性)不值得为它生成一个类。
+     * 无法编译的(比如非公有的类)一直使用反射。
+     *
+     * int/long/double/boolean类型的属性另有一个按参数类型编译的setter，
+     * 比如int属性编译成ObjIntConsumer，写入解析好的基本类型值时不需要装箱。
+     */
+    private static final class PropertyHandler {
+
+        // 和JDK中Method.invoke从native切换到生成字节码的阈值保持一致
+        private static final int COMPILE_THRESHOLD = 16;
+
+        private final PropertyDescriptor descriptor;
+
+        // PropertyDescriptor.getReadMethod()/getWriteMethod()是同步方法，每次都要解析软引用，这里缓存一份
+        private final Method readMethod;
+
+        private final Method writeMethod;
+
+        // PropertyDescriptor.getPropertyType()也是同步方法
+        private final Class<?> propertyType;
+
+        // setter参数的泛型类型，没有setter时就是propertyType
+        private final Type genericType;
+
+        private final Accessor<BiConsumer<Object, Object>> writer;
+
+        private final Accessor<Function<Object, Object>> reader;
+
+        // 编译好的ObjIntConsumer/ObjLongConsumer/ObjDoubleConsumer/ObjBooleanConsumer，
+        // 属性不是这四种类型或者没有setter时为null
+        private final Accessor<Object> primitiveWriter;
+
+        PropertyHandler(PropertyDescriptor descriptor) {
+            this.descriptor = descriptor;
+            this.readMethod = descriptor.getReadMethod();
+            this.writeMethod = descriptor.getWriteMethod();
+            this.propertyType = descriptor.getPropertyType();
+            this.genericType = (writeMethod != null ? writeMethod.getGenericParameterTypes()[0] : propertyType);
+            this.writer = new Accessor<>(writeMethod, LambdaUtils::compileSetter);
+            this.reader = new Accessor<>(readMethod, LambdaUtils::compileGetter);
+            this.primitiveWriter = (writeMethod != null && isSpecializedType(propertyType) ?
+                    new Accessor<>(writeMethod, PropertyHandler::compilePrimitiveSetter) : null);
+        }
+
+        private static boolean isSpecializedType(Class<?> type) {
+            return (type == int.class || type == long.class || type == double.class || type == boolean.class);
+        }
+
+        private static Object compilePrimitiveSetter(Method method) throws BeansException {
+            Class<?> type = method.getParameterTypes()[0];
+            if (type == int.class) {
+                return LambdaUtils.compileIntSetter(method);
+            } else if (type == long.class) {
+                return LambdaUtils.compileLongSetter(method);
+            } else if (type == double.class) {
+                return LambdaUtils.compileDoubleSetter(method);
+            }
+            return LambdaUtils.compileBooleanSetter(method);
+        }
+
+        PropertyDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        Method getReadMethod() {
+            return readMethod;
+        }
+
+        Method getWriteMethod() {
+            return writeMethod;
+        }
+
+        Class<?> getPropertyType() {
+            return propertyType;
+        }
+
+        Type getGenericType() {
+            return genericType;
+        }
+
+        /**
+         * 是否可以通过setInt/setLong/setDouble/setBoolean写入。
+         */
+        boolean hasPrimitiveWriter() {
+            return primitiveWriter != null;
+        }
+
+        void setValue(Object bean, Object value) throws InvocationTargetException, IllegalAccessException {
+            BiConsumer<Object, Object> compiled = writer.get();
+            if (compiled == null) {
+                writeMethod.invoke(bean, value);
+                return;
+            }
             try {
-                beanInfo = Introspector.getBeanInfo(clazz);
-                propertyDescriptorMap = new HashMap<>();
-                for (PropertyDescriptor pd : beanInfo.getPropertyDescriptors()) {
-                    propertyDescriptorMap.put(pd.getName(), pd);
+                compiled.accept(bean, value);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void setInt(Object bean, int value) throws InvocationTargetException, IllegalAccessException {
+            ObjIntConsumer<Object> compiled = (ObjIntConsumer<Object>) primitiveWriter.get();
+            if (compiled == null) {
+                writeMethod.invoke(bean, value);
+                return;
+            }
+            try {
+                compiled.accept(bean, value);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void setLong(Object bean, long value) throws InvocationTargetException, IllegalAccessException {
+            ObjLongConsumer<Object> compiled = (ObjLongConsumer<Object>) primitiveWriter.get();
+            if (compiled == null) {
+                writeMethod.invoke(bean, value);
+                return;
+            }
+            try {
+                compiled.accept(bean, value);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void setDouble(Object bean, double value) throws InvocationTargetException, IllegalAccessException {
+            ObjDoubleConsumer<Object> compiled = (ObjDoubleConsumer<Object>) primitiveWriter.get();
+            if (compiled == null) {
+                writeMethod.invoke(bean, value);
+                return;
+            }
+            try {
+                compiled.accept(bean, value);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void setBoolean(Object bean, boolean value) throws InvocationTargetException, IllegalAccessException {
+            LambdaUtils.ObjBooleanConsumer<Object> compiled =
+                    (LambdaUtils.ObjBooleanConsumer<Object>) primitiveWriter.get();
+            if (compiled == null) {
+                writeMethod.invoke(bean, value);
+                return;
+            }
+            try {
+                compiled.accept(bean, value);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        Object getValue(Object bean) throws InvocationTargetException, IllegalAccessException {
+            Function<Object, Object> compiled = reader.get();
+            if (compiled == null) {
+                return readMethod.invoke(bean);
+            }
+            try {
+                return compiled.apply(bean);
+            } catch (Throwable ex) {
+                throw wrapTargetException(ex);
+            }
+        }
+
+        /**
+         * 和反射保持一致，getter/setter抛出的异常包装成InvocationTargetException，包括绕过编译检查抛出的受检异常；
+         * Error原样抛出。
+         */
+        private static InvocationTargetException wrapTargetException(Throwable ex) {
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+            return new InvocationTargetException(ex);
+        }
+
+        /**
+         * 延迟编译的访问器，还没有编译或者无法编译时返回null。
+         */
+        private static final class Accessor<T> {
+
+            private final Method method;
+
+            private final Function<Method, T> compiler;
+
+            private final AtomicInteger invocations = new AtomicInteger();
+
+            private volatile T compiled;
+
+            // 编译失败过，不再尝试
+            private volatile boolean unsupported;
+
+            Accessor(Method method, Function<Method, T> compiler) {
+                this.method = method;
+                this.compiler = compiler;
+            }
+
+            T get() {
+                T result = compiled;
+                if (result == null && !unsupported && method != null &&
+                        invocations.incrementAndGet() == COMPILE_THRESHOLD) {
+                    try {
+                        result = compiler.apply(method);
+                        compiled = result;
+                    } catch (BeansException ex) {
+                        unsupported = true;
+                    }
                 }
-            } catch (IntrospectionException ex) {
-                throw new BeansException("无法从[" + clazz.getName() + "]类中获得自省信息", ex);
+                return result;
             }
         }
     }
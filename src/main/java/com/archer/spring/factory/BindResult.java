@@ -0,0 +1,89 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/28.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PropertyBinder一次绑定的结果。
+ * 绑定不会因为个别的key失败而中止，所有找不到的属性和转换失败都汇总在这里。
+ */
+public final class BindResult<T> {
+
+    /// MARK - Properties
+
+    private final T target;
+
+    // 成功写入的key的个数
+    private final int boundCount;
+
+    // 目标类型中不存在或者不可写的key
+    private final List<String> unknownKeys;
+
+    // key -> 写入时抛出的异常，按绑定的顺序排列
+    private final Map<String, BeansException> failures;
+
+    /// MARK - Initializers
+
+    BindResult(T target, int boundCount, List<String> unknownKeys, Map<String, BeansException> failures) {
+        this.target = target;
+        this.boundCount = boundCount;
+        this.unknownKeys = Collections.unmodifiableList(unknownKeys);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /// MARK - Getters
+
+    /**
+     * 被绑定的对象，即使有错误也会返回，其中成功的key已经写入。
+     */
+    public T getTarget() {
+        return target;
+    }
+
+    public int getBoundCount() {
+        return boundCount;
+    }
+
+    public List<String> getUnknownKeys() {
+        return unknownKeys;
+    }
+
+    public Map<String, BeansException> getFailures() {
+        return failures;
+    }
+
+    public boolean hasErrors() {
+        return !unknownKeys.isEmpty() || !failures.isEmpty();
+    }
+
+    /**
+     * 没有错误时返回被绑定的对象，否则抛出一个汇总了所有错误的BeansException。
+     */
+    public T getValidTarget() throws BeansException {
+        if (!hasErrors()) {
+            return target;
+        }
+        StringBuilder sb = new StringBuilder("绑定[").append(target.getClass().getName()).append("]失败");
+        if (!unknownKeys.isEmpty()) {
+            sb.append("，未知的属性: ").append(unknownKeys);
+        }
+        for (Map.Entry<String, BeansException> entry : failures.entrySet()) {
+            sb.append("\n  [").append(entry.getKey()).append("]: ").append(entry.getValue().getMessage());
+        }
+        BeansException cause = (failures.isEmpty() ? null : failures.values().iterator().next());
+        throw (cause != null ? new BeansException(sb.toString(), cause) : new BeansException(sb.toString()));
+    }
+
+    @Override
+    public String toString() {
+        return "BindResult{target=" + target.getClass().getName() + ", bound=" + boundCount +
+                ", unknownKeys=" + unknownKeys + ", failures=" + failures.keySet() + "}";
+    }
+}
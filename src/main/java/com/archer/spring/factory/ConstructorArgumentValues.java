@@ -51,6 +51,16 @@ public class ConstructorArgumentValues {
         this.indexedArgumentValues.put(index, new ValueHolder(value, type));
     }
 
+    /**
+     * 添加一个带位置的参数值，通常是已经解析过的ValueHolder。
+     */
+    public void addIndexedArgumentValue(int index, ValueHolder valueHolder) {
+        if (index < 0) {
+            throw new IllegalArgumentException("下标从0开始");
+        }
+        this.indexedArgumentValues.put(index, valueHolder);
+    }
+
     /**
      * 获取指定位置的参数值，如果参数值没有指定类型信息，那么requiredType会被忽略，
      * 否则比对requiredType和ValueHolder.type是否相同。
@@ -79,6 +89,13 @@ public class ConstructorArgumentValues {
         this.genericArgumentValues.add(new ValueHolder(value, type));
     }
 
+    /**
+     * 添加一个不带位置的参数值，通常是已经解析过的ValueHolder。
+     */
+    public void addGenericArgumentValue(ValueHolder valueHolder) {
+        this.genericArgumentValues.add(valueHolder);
+    }
+
     /**
      * 返回匹配指定类型的参数值。
      */
@@ -144,6 +161,12 @@ public class ConstructorArgumentValues {
 
         private String type;
 
+        // 解析前的ValueHolder，本身就是原始的ValueHolder时为null
+        private ValueHolder source;
+
+        // value是字符串字面量时，转换后的值
+        private volatile ConvertedLiteral convertedLiteral;
+
         private ValueHolder(Object value) {
             this.value = value;
         }
@@ -155,6 +178,7 @@ public class ConstructorArgumentValues {
 
         public void setValue(Object value) {
             this.value = value;
+            this.convertedLiteral = null;
         }
 
         public Object getValue() {
@@ -164,6 +188,30 @@ public class ConstructorArgumentValues {
         public String getType() {
             return type;
         }
+
+        /**
+         * 返回解析前的原始ValueHolder，没有经过解析的话返回自己。
+         */
+        public ValueHolder getSource() {
+            return (source != null ? source : this);
+        }
+
+        ConvertedLiteral getConvertedLiteral() {
+            return convertedLiteral;
+        }
+
+        void setConvertedLiteral(ConvertedLiteral convertedLiteral) {
+            this.convertedLiteral = convertedLiteral;
+        }
+
+        /**
+         * 返回一个持有解析后的值的副本，类型保持不变，getSource()指向原始的ValueHolder。
+         */
+        public ValueHolder withResolvedValue(Object resolvedValue) {
+            ValueHolder resolved = new ValueHolder(resolvedValue, type);
+            resolved.source = getSource();
+            return resolved;
+        }
     }
 
 }
@@ -0,0 +1,76 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.convert.ConversionService;
+import com.archer.spring.utils.ClassUtils;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 字符串字面量(比如XML中的value属性)转换后的值，缓存在PropertyValue和ValueHolder上，
+ * 同一个BeanDefinition再次创建bean时直接使用，不再重新解析。
+ *
+ * 转换结果取决于转换的目标(属性对应的PropertyDescriptor或者构造函数参数的类型)
+ * 以及当时使用的PropertyEditor和ConversionService，这三者中任何一个变了，缓存都不再有效。
+ * 只缓存不可变的结果；元素不可变的数组也会缓存，但每次使用时返回一个副本。
+ */
+final class ConvertedLiteral {
+
+    // PropertyDescriptor或者Class
+    private final Object target;
+
+    private final PropertyEditorSnapshot editors;
+
+    private final ConversionService conversionService;
+
+    private final Object value;
+
+    private ConvertedLiteral(Object target, PropertyEditorSnapshot editors,
+                             ConversionService conversionService, Object value) {
+        this.target = target;
+        this.editors = editors;
+        this.conversionService = conversionService;
+        this.value = value;
+    }
+
+    /**
+     * 结果可以缓存的话返回对应的ConvertedLiteral，否则返回null。
+     */
+    static ConvertedLiteral of(Object target, PropertyEditorSnapshot editors,
+                               ConversionService conversionService, Object value) {
+        if (value != null && !isImmutable(value.getClass()) &&
+                !(value.getClass().isArray() && isImmutable(value.getClass().getComponentType()))) {
+            return null;
+        }
+        return new ConvertedLiteral(target, editors, conversionService, value);
+    }
+
+    boolean matches(Object target, PropertyEditorSnapshot editors, ConversionService conversionService) {
+        return (this.target == target && this.editors == editors && this.conversionService == conversionService);
+    }
+
+    /**
+     * 返回转换后的值，数组返回副本。
+     */
+    Object getValue() {
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        return value;
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return (ClassUtils.isPrimitiveOrWrapper(type) || type == String.class ||
+                type == BigInteger.class || type == BigDecimal.class || type == Class.class || type.isEnum());
+    }
+}
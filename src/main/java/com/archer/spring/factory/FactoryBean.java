@@ -32,7 +32,8 @@ public interface FactoryBean {
      * 这个FactoryBean管理的bean是singleton还是prototype？
      * FactoryBean本身的scope由BeanFactory管理。
      *
-     * 如果返回true，也必须保证getObject()永远返回同一对象。
+     * 如果返回true，BeanFactory只会调用一次getObject()并缓存其结果，
+     * 实现类不需要再自己做缓存。
      */
     boolean isSingleton();
 
@@ -0,0 +1,73 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/24.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+/**
+ * BeanWrapper自省信息缓存的统计信息。
+ */
+public class IntrospectionCacheStatistics {
+
+    /// MARK - Properties
+
+    // 命中缓存的次数
+    private final long hitCount;
+
+    // 未命中缓存、需要重新自省的次数
+    private final long missCount;
+
+    // 强引用缓存中的类的数量
+    private final int strongCacheSize;
+
+    // 软引用缓存中的类的数量(其中一部分可能已被回收)
+    private final int softCacheSize;
+
+    /// MARK - Initializers
+
+    IntrospectionCacheStatistics(long hitCount, long missCount, int strongCacheSize, int softCacheSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.strongCacheSize = strongCacheSize;
+        this.softCacheSize = softCacheSize;
+    }
+
+    /// MARK - Getters
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public int getStrongCacheSize() {
+        return strongCacheSize;
+    }
+
+    public int getSoftCacheSize() {
+        return softCacheSize;
+    }
+
+    /**
+     * 命中率，还没有查询过时为0。
+     */
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return (total == 0 ? 0.0 : (double) hitCount / total);
+    }
+
+    @Override
+    public String toString() {
+        return "IntrospectionCacheStatistics{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", strongCacheSize=" + strongCacheSize +
+                ", softCacheSize=" + softCacheSize +
+                ", hitRatio=" + String.format("%.2f", getHitRatio()) +
+                '}';
+    }
+}
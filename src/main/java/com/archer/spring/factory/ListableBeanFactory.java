@@ -6,6 +6,7 @@
 
 package com.archer.spring.factory;
 
+import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
 import java.util.Map;
@@ -47,4 +48,11 @@ public interface ListableBeanFactory extends BeanFactory  {
                                        boolean includePrototypes,
                                        boolean includeFactoryBeans) throws BeansException;
 
+    /**
+     * 返回给定类型(包含子类型)的bean的延迟查找器，匹配规则和按类型自动装配相同。
+     * 只有真正消费到的bean才会被创建，适合只需要其中一个或一部分bean的场景。
+     */
+    @NotNull
+    <T> ObjectProvider<T> getBeanProvider(@NotNull Class<T> type) throws BeansException;
+
 }
@@ -24,11 +24,12 @@ public class MutablePropertyValues {
 
     public MutablePropertyValues() { }
 
+    /**
+     * 复制other，PropertyValue本身是不可变的，直接共享，这样缓存在上面的转换结果也能继续使用。
+     */
     public MutablePropertyValues(MutablePropertyValues other) {
         if (other != null) {
-            for (PropertyValue value : other.getPropertyValues()) {
-                addPropertyValue(new PropertyValue(value.getName(), value.getValue()));
-            }
+            managedPropertyValues.addAll(other.managedPropertyValues);
         }
     }
 
@@ -52,7 +53,7 @@ public class MutablePropertyValues {
     }
 
     /**
-     * 如果PropertyValue.value是RuntimeBeanReference或ManagedList，
+     * 如果PropertyValue.value是RuntimeBeanReference或ManagedList等集合，
      * 是需要进一步解析的，解析得到的值才是最终需要注入的值，因此，在解析完成
      * 之后，需要进行一次替换。
      */
@@ -79,6 +80,32 @@ public class MutablePropertyValues {
         return managedPropertyValues.toArray(new PropertyValue[0]);
     }
 
+    /**
+     * 按添加的顺序返回所有属性名。
+     */
+    public String[] getPropertyNames() {
+        String[] names = new String[managedPropertyValues.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = managedPropertyValues.get(i).getName();
+        }
+        return names;
+    }
+
+    /**
+     * 是否按顺序恰好持有propertyNames这些属性，不会分配新的数组。
+     */
+    public boolean hasPropertyNames(String[] propertyNames) {
+        if (propertyNames.length != managedPropertyValues.size()) {
+            return false;
+        }
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (!propertyNames[i].equals(managedPropertyValues.get(i).getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 对于给定的属性名，是否有<property>标签与其对应。
      */
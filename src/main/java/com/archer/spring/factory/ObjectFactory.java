@@ -0,0 +1,23 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+/**
+ * 对象工厂，调用getObject()时才去获取(通常是创建)目标对象。
+ *
+ * 和FactoryBean不同，这个接口并不会被当做bean注册到容器中，
+ * 它通常作为回调使用，把"怎么创建"延迟到"真正需要"的时候。
+ */
+@FunctionalInterface
+public interface ObjectFactory<T> {
+
+    /**
+     * 返回此工厂管理的对象。
+     */
+    T getObject() throws BeansException;
+
+}
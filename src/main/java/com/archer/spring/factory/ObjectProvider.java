@@ -0,0 +1,81 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 某一类型的bean的延迟查找器，通过ListableBeanFactory.getBeanProvider()获取。
+ *
+ * 和getBeansOfType不同，这里不会一次性创建所有匹配的bean：
+ * beanNames()只根据BeanDefinition和FactoryBean.getObjectType()给出候选的名称，
+ * stream()和iterator()在真正消费到某个bean时才去获取它，
+ * 配合findFirst、limit等短路操作，没用到的bean就不会被创建。
+ */
+public interface ObjectProvider<T> extends ObjectFactory<T>, Iterable<T> {
+
+    /**
+     * 返回唯一匹配的bean，没有或者有多个时抛出异常。
+     */
+    @Override
+    T getObject() throws BeansException;
+
+    /**
+     * 返回唯一匹配的bean，没有的话返回null，有多个时抛出异常。
+     */
+    @Nullable
+    T getIfAvailable() throws BeansException;
+
+    /**
+     * 返回唯一匹配的bean，没有或者有多个时都返回null。
+     */
+    @Nullable
+    T getIfUnique() throws BeansException;
+
+    /**
+     * 存在唯一匹配的bean时，用它调用consumer。
+     */
+    default void ifAvailable(@NotNull Consumer<T> consumer) throws BeansException {
+        T object = getIfAvailable();
+        if (object != null) {
+            consumer.accept(object);
+        }
+    }
+
+    /**
+     * 恰好有一个匹配的bean时，用它调用consumer，否则什么也不做。
+     */
+    default void ifUnique(@NotNull Consumer<T> consumer) throws BeansException {
+        T object = getIfUnique();
+        if (object != null) {
+            consumer.accept(object);
+        }
+    }
+
+    /**
+     * 按定义的顺序返回所有匹配的bean的名称，不会创建任何bean(FactoryBean本身除外)。
+     */
+    @NotNull
+    Stream<String> beanNames();
+
+    /**
+     * 按定义的顺序返回所有匹配的bean，流中的每个bean在被消费时才去获取。
+     */
+    @NotNull
+    Stream<T> stream();
+
+    @Override
+    default Iterator<T> iterator() {
+        return stream().iterator();
+    }
+
+}
@@ -9,11 +9,21 @@ package com.archer.spring.factory;
 import java.beans.PropertyDescriptor;
 
 /**
- * 定义了访问JavaBean getter/setter 的方式，
- * 不支持级联属性。
+ * 定义了访问JavaBean getter/setter 的方式。
+ * 属性名可以是嵌套的路径，比如a.b[2].c，[]中可以是数组和List的下标，或者Map的key，
+ * key可以用单引号或双引号括起来。
  */
 public interface PropertyAccessor {
 
+    // 嵌套属性的分隔符，比如a.b
+    char NESTED_PROPERTY_SEPARATOR_CHAR = '.';
+
+    // 下标或者key的前缀，比如list[0]、map[key]
+    char PROPERTY_KEY_PREFIX_CHAR = '[';
+
+    // 下标或者key的后缀
+    char PROPERTY_KEY_SUFFIX_CHAR = ']';
+
     /**
      * 给bean的propertyName属性设置值propertyValue，相当于bean.setPropertyName(propertyValue)
      */
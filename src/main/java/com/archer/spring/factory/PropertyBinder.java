@@ -0,0 +1,330 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/28.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.convert.ConversionService;
+import com.archer.spring.convert.DefaultConversionService;
+import com.archer.spring.utils.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * 把Map/Properties中的大量值一次绑定到对象图上，key是相对于根对象的属性路径(比如pool.size、servers[0].host)。
+ *
+ * 绑定计划按(根对象的类, key的集合)缓存，最多MAX_PLANS个，超过时淘汰最久没有用过的：第一次绑定时解析所有的key，按声明的类型检查属性是否存在，
+ * 为每个key准备好访问器链并排好顺序；之后相同的绑定只剩下逐个写入。
+ * 每个key还记住上一次绑定的值，值没有变化时直接复用上一次的转换结果。
+ * 写入集合、数组和Map时，值和Map的key按路径上声明的泛型类型转换，比如Map<Long, Integer>的counts[7]=5
+ * 写入的是7L -> 5，而不是字符串。
+ *
+ * 找不到的属性和转换失败不会中止绑定，而是汇总在BindResult中。
+ * 可以在多个线程中使用同一个PropertyBinder，但配置方法应当在第一次绑定之前调用。
+ */
+public class PropertyBinder {
+
+    /// MARK - Properties
+
+    // 最多缓存多少个绑定计划
+    private static final int MAX_PLANS = 64;
+
+    private ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private PropertyEditorSnapshot sharedEditors = PropertyEditorSnapshot.EMPTY;
+
+    private BeanIntrospector beanIntrospector = SimpleBeanIntrospector.INSTANCE;
+
+    // 按访问顺序排列，超过MAX_PLANS时淘汰最久没有用过的计划
+    private final Map<PlanKey, BindingPlan> plans = Collections.synchronizedMap(
+            new LinkedHashMap<PlanKey, BindingPlan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PlanKey, BindingPlan> eldest) {
+                    return size() > MAX_PLANS;
+                }
+            });
+
+    /// MARK - Getters & Setters
+
+    public ConversionService getConversionService() {
+        return conversionService;
+    }
+
+    public void setConversionService(ConversionService conversionService) {
+        this.conversionService = conversionService;
+    }
+
+    public PropertyEditorSnapshot getSharedEditors() {
+        return sharedEditors;
+    }
+
+    public void setSharedEditors(PropertyEditorSnapshot sharedEditors) {
+        Objects.requireNonNull(sharedEditors, "PropertyEditorSnapshot不能为空");
+        this.sharedEditors = sharedEditors;
+    }
+
+    public BeanIntrospector getBeanIntrospector() {
+        return beanIntrospector;
+    }
+
+    public void setBeanIntrospector(BeanIntrospector beanIntrospector) {
+        Objects.requireNonNull(beanIntrospector, "BeanIntrospector不能为空");
+        if (this.beanIntrospector != beanIntrospector) {
+            this.beanIntrospector = beanIntrospector;
+            plans.clear();
+        }
+    }
+
+    /// MARK - Binding
+
+    /**
+     * 新建一个type的实例并把values绑定上去。
+     */
+    public <T> BindResult<T> bind(Map<String, ?> values, Class<T> type) throws BeansException {
+        Objects.requireNonNull(type, "type不能为空");
+        return bind(values, ClassUtils.instantiateClass(type));
+    }
+
+    /**
+     * 把values绑定到target上。
+     */
+    public <T> BindResult<T> bind(Map<String, ?> values, T target) throws BeansException {
+        Objects.requireNonNull(values, "values不能为空");
+        Objects.requireNonNull(target, "target不能为空");
+        BindingPlan plan = getBindingPlan(target.getClass(), values.keySet());
+        BeanWrapper wrapper = new BeanWrapper();
+        wrapper.setBeanIntrospector(beanIntrospector);
+        wrapper.setConversionService(conversionService);
+        wrapper.setSharedEditors(sharedEditors);
+        wrapper.setWrappedInstance(target);
+
+        int boundCount = 0;
+        Map<String, BeansException> failures = new LinkedHashMap<>();
+        for (Binding binding : plan.bindings) {
+            try {
+                wrapper.setPropertyValue(binding.chain, binding.propertyValueFor(values.get(binding.key)));
+                boundCount++;
+            } catch (BeansException ex) {
+                failures.put(binding.key, ex);
+            }
+        }
+        return new BindResult<>(target, boundCount, plan.unknownKeys, failures);
+    }
+
+    /**
+     * 新建一个type的实例并把properties(包括其中的默认值)绑定上去。
+     */
+    public <T> BindResult<T> bind(Properties properties, Class<T> type) throws BeansException {
+        return bind(toMap(properties), type);
+    }
+
+    /**
+     * 把properties(包括其中的默认值)绑定到target上。
+     */
+    public <T> BindResult<T> bind(Properties properties, T target) throws BeansException {
+        return bind(toMap(properties), target);
+    }
+
+    /// MARK - Internal
+
+    private static Map<String, String> toMap(Properties properties) {
+        Objects.requireNonNull(properties, "properties不能为空");
+        Set<String> names = properties.stringPropertyNames();
+        Map<String, String> values = new HashMap<>(names.size() * 2);
+        for (String name : names) {
+            values.put(name, properties.getProperty(name));
+        }
+        return values;
+    }
+
+    private BindingPlan getBindingPlan(Class<?> type, Set<String> keys) {
+        // 查找时直接使用调用方的keySet，只有新建计划时才复制一份
+        BindingPlan plan = plans.get(new PlanKey(type, keys));
+        if (plan == null) {
+            plan = new BindingPlan(type, keys, beanIntrospector);
+            plans.put(new PlanKey(type, new HashSet<>(keys)), plan);
+        }
+        return plan;
+    }
+
+    /// MARK - Internal static class
+
+    private static final class PlanKey {
+
+        private final Class<?> type;
+
+        private final Set<String> keys;
+
+        private final int hashCode;
+
+        PlanKey(Class<?> type, Set<String> keys) {
+            this.type = type;
+            this.keys = keys;
+            this.hashCode = 31 * type.hashCode() + keys.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey that = (PlanKey) other;
+            return type == that.type && hashCode == that.hashCode && keys.equals(that.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 一组key在某个类上的绑定计划。
+     */
+    private static final class BindingPlan {
+
+        // 按路径排好序，父路径在子路径之前，下标按数值从小到大
+        private final Binding[] bindings;
+
+        private final List<String> unknownKeys;
+
+        BindingPlan(Class<?> type, Set<String> keys, BeanIntrospector introspector) {
+            List<Binding> bindings = new ArrayList<>(keys.size());
+            List<String> unknownKeys = new ArrayList<>();
+            for (String key : keys) {
+                PropertyPath path = parseQuietly(key);
+                if (path != null && isKnown(type, path, introspector)) {
+                    bindings.add(new Binding(key, path, BeanWrapper.prepareAccessorChain(key, type, introspector)));
+                } else {
+                    unknownKeys.add(key);
+                }
+            }
+            bindings.sort(Binding.ORDER);
+            Collections.sort(unknownKeys);
+            this.bindings = bindings.toArray(new Binding[0]);
+            this.unknownKeys = Collections.unmodifiableList(unknownKeys);
+        }
+
+        /**
+         * 格式不对的key同样记为未知的key，不影响其他key的绑定。
+         */
+        private static PropertyPath parseQuietly(String key) {
+            try {
+                return PropertyPath.parse(key);
+            } catch (BeansException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * 按声明的类型检查路径上的每一段是否存在。声明的类型无法确定时(比如Object或者没有泛型参数的List)
+         * 认为存在，交给绑定时按实际的对象判断。
+         */
+        private static boolean isKnown(Class<?> type, PropertyPath path, BeanIntrospector introspector) {
+            Class<?> currentType = type;
+            Type currentGenericType = type;
+            PropertyPath.Element[] elements = path.getElements();
+            for (int i = 0; i < elements.length && currentType != null && currentType != Object.class; i++) {
+                PropertyPath.Element element = elements[i];
+                boolean last = (i == elements.length - 1);
+                if (element.isKey()) {
+                    if (currentType.isArray()) {
+                        currentGenericType = currentType = currentType.getComponentType();
+                    } else if (List.class.isAssignableFrom(currentType)) {
+                        currentGenericType = getTypeArgument(currentGenericType, 0);
+                        currentType = (currentGenericType instanceof Class ? (Class<?>) currentGenericType : null);
+                    } else if (Map.class.isAssignableFrom(currentType)) {
+                        currentGenericType = getTypeArgument(currentGenericType, 1);
+                        currentType = (currentGenericType instanceof Class ? (Class<?>) currentGenericType : null);
+                    } else {
+                        return false;
+                    }
+                    continue;
+                }
+                PropertyDescriptor pd = BeanWrapper.findPropertyDescriptor(currentType, introspector, element.getName());
+                if (pd == null) {
+                    return false;
+                }
+                Method readMethod = pd.getReadMethod();
+                if (last ? pd.getWriteMethod() == null : readMethod == null) {
+                    return false;
+                }
+                currentType = pd.getPropertyType();
+                currentGenericType = (readMethod != null ? readMethod.getGenericReturnType() : currentType);
+            }
+            return true;
+        }
+
+        private static Type getTypeArgument(Type type, int index) {
+            if (type instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+                if (index < arguments.length) {
+                    return arguments[index];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 计划中的一个key。
+     */
+    private static final class Binding {
+
+        static final Comparator<Binding> ORDER = (b1, b2) -> comparePaths(b1.path, b2.path);
+
+        private final String key;
+
+        private final PropertyPath path;
+
+        private final BeanWrapper.AccessorChain chain;
+
+        // 上一次绑定的值，值相同时复用它缓存的转换结果
+        private volatile PropertyValue lastValue;
+
+        Binding(String key, PropertyPath path, BeanWrapper.AccessorChain chain) {
+            this.key = key;
+            this.path = path;
+            this.chain = chain;
+        }
+
+        PropertyValue propertyValueFor(Object value) {
+            PropertyValue last = lastValue;
+            if (last != null && value instanceof String && value.equals(last.getValue())) {
+                return last;
+            }
+            PropertyValue propertyValue = new PropertyValue(key, value);
+            lastValue = propertyValue;
+            return propertyValue;
+        }
+
+        /**
+         * 逐段比较，前缀相同时短的在前；两段都是数字下标时按数值比较，这样list[2]在list[10]之前。
+         */
+        private static int comparePaths(PropertyPath p1, PropertyPath p2) {
+            PropertyPath.Element[] e1 = p1.getElements();
+            PropertyPath.Element[] e2 = p2.getElements();
+            for (int i = 0; i < Math.min(e1.length, e2.length); i++) {
+                int result;
+                if (e1[i].getIndex() >= 0 && e2[i].getIndex() >= 0) {
+                    result = Integer.compare(e1[i].getIndex(), e2[i].getIndex());
+                } else {
+                    result = e1[i].getName().compareTo(e2[i].getName());
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(e1.length, e2.length);
+        }
+    }
+}
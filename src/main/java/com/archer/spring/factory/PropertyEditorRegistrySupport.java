@@ -6,6 +6,7 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.convert.ConversionService;
 import com.archer.spring.factory.propertyeditor.ClassEditor;
 import com.archer.spring.factory.propertyeditor.CustomBooleanEditor;
 import com.archer.spring.factory.propertyeditor.CustomNumberEditor;
@@ -49,6 +50,32 @@ public abstract class PropertyEditorRegistrySupport implements PropertyEditorReg
     // 自定义属性编辑器
     private final Map<Class<?>, PropertyEditor> customEditors = new LinkedHashMap<>();
 
+    // BeanFactory共享的自定义属性编辑器，优先级低于customEditors
+    private PropertyEditorSnapshot sharedEditors = PropertyEditorSnapshot.EMPTY;
+
+    // 没有自定义属性编辑器时优先使用的转换服务，为null表示只使用属性编辑器
+    private ConversionService conversionService;
+
+    public ConversionService getConversionService() {
+        return conversionService;
+    }
+
+    public void setConversionService(ConversionService conversionService) {
+        this.conversionService = conversionService;
+    }
+
+    public PropertyEditorSnapshot getSharedEditors() {
+        return sharedEditors;
+    }
+
+    /**
+     * 引用一份共享的自定义属性编辑器，不会复制其中的内容。
+     */
+    public void setSharedEditors(PropertyEditorSnapshot sharedEditors) {
+        Objects.requireNonNull(sharedEditors, "PropertyEditorSnapshot不能为空");
+        this.sharedEditors = sharedEditors;
+    }
+
     @Override
     public void registerCustomEditor(Class<?> requiredType, PropertyEditor propertyEditor) {
         if (requiredType == null) {
@@ -57,13 +84,21 @@ public abstract class PropertyEditorRegistrySupport implements PropertyEditorReg
         customEditors.put(requiredType, propertyEditor);
     }
 
+    /**
+     * 是否直接在此对象上注册过PropertyEditor(不包括共享的快照)。
+     */
+    public boolean hasLocalCustomEditors() {
+        return !customEditors.isEmpty();
+    }
+
     public boolean containsCustomEditor(Class<?> requiredType) {
-        return customEditors.containsKey(requiredType);
+        return customEditors.containsKey(requiredType) || sharedEditors.containsEditor(requiredType);
     }
 
     @Override
     public PropertyEditor findCustomEditor(Class<?> requiredType) {
-        return customEditors.get(requiredType);
+        PropertyEditor editor = (customEditors.isEmpty() ? null : customEditors.get(requiredType));
+        return (editor != null ? editor : sharedEditors.findEditor(requiredType));
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.beans.PropertyEditor;
+import java.util.*;
+
+/**
+ * BeanFactory持有的自定义PropertyEditor的不可变快照。
+ *
+ * 所有PropertyEditorRegistrar只在构建快照时执行一次，之后所有的BeanWrapper都引用同一份快照，
+ * 不需要在每次创建bean时都重新注册、复制一遍。注册新的PropertyEditor或PropertyEditorRegistrar后，
+ * BeanFactory会丢弃旧的快照并在下次使用时重新构建。
+ *
+ * 快照中的PropertyEditor被所有线程共享，而PropertyEditor是有状态的，使用时需要以它自身为锁。
+ */
+public final class PropertyEditorSnapshot {
+
+    public static final PropertyEditorSnapshot EMPTY = new PropertyEditorSnapshot(Collections.emptyMap());
+
+    // 类型 -> 自定义PropertyEditor
+    private final Map<Class<?>, PropertyEditor> editors;
+
+    private PropertyEditorSnapshot(Map<Class<?>, PropertyEditor> editors) {
+        this.editors = editors;
+    }
+
+    /**
+     * 依次执行registrars，再加上customEditors(同一类型时customEditors优先)，构建一份快照。
+     */
+    public static PropertyEditorSnapshot build(Collection<PropertyEditorRegistrar> registrars,
+                                               Map<Class<?>, PropertyEditor> customEditors) {
+        if (registrars.isEmpty() && customEditors.isEmpty()) {
+            return EMPTY;
+        }
+        Map<Class<?>, PropertyEditor> editors = new HashMap<>();
+        PropertyEditorRegistry collector = new PropertyEditorRegistry() {
+            @Override
+            public void registerCustomEditor(Class<?> requiredType, PropertyEditor propertyEditor) {
+                if (requiredType == null) {
+                    throw new IllegalArgumentException("requiredType不能为空");
+                }
+                editors.put(requiredType, propertyEditor);
+            }
+
+            @Override
+            public PropertyEditor findCustomEditor(Class<?> requiredType) {
+                return editors.get(requiredType);
+            }
+        };
+        for (PropertyEditorRegistrar registrar : registrars) {
+            registrar.registerCustomEditors(collector);
+        }
+        editors.putAll(customEditors);
+        return new PropertyEditorSnapshot(Collections.unmodifiableMap(editors));
+    }
+
+    public PropertyEditor findEditor(Class<?> requiredType) {
+        return editors.get(requiredType);
+    }
+
+    public boolean containsEditor(Class<?> requiredType) {
+        return editors.containsKey(requiredType);
+    }
+
+    public boolean isEmpty() {
+        return editors.isEmpty();
+    }
+
+    /**
+     * 返回快照中的所有PropertyEditor，不可修改。
+     */
+    public Map<Class<?>, PropertyEditor> getEditors() {
+        return editors;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/28.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.archer.spring.factory.PropertyAccessor.*;
+
+/**
+ * 解析好的属性路径，比如a.b[2].c被解析成a、b、[2]、c四段。
+ * 只和路径的文本有关，和bean的类型无关。
+ */
+final class PropertyPath {
+
+    /// MARK - Properties
+
+    private final String path;
+
+    private final Element[] elements;
+
+    /// MARK - Getters
+
+    String getPath() {
+        return path;
+    }
+
+    Element[] getElements() {
+        return elements;
+    }
+
+    /// MARK - Initializers
+
+    private PropertyPath(String path, Element[] elements) {
+        this.path = path;
+        this.elements = elements;
+    }
+
+    /**
+     * propertyName是否是嵌套或者带下标的路径，不是的话就是普通的属性名。
+     */
+    static boolean isNested(String propertyName) {
+        return (propertyName.indexOf(NESTED_PROPERTY_SEPARATOR_CHAR) >= 0 ||
+                propertyName.indexOf(PROPERTY_KEY_PREFIX_CHAR) >= 0);
+    }
+
+    /**
+     * 解析path，格式不对时抛出BeansException。
+     */
+    static PropertyPath parse(String path) throws BeansException {
+        List<Element> elements = new ArrayList<>();
+        int length = path.length();
+        int index = 0;
+        while (index < length) {
+            // 属性名
+            int start = index;
+            while (index < length && path.charAt(index) != NESTED_PROPERTY_SEPARATOR_CHAR &&
+                    path.charAt(index) != PROPERTY_KEY_PREFIX_CHAR) {
+                index++;
+            }
+            if (index == start) {
+                throw invalidPath(path, "缺少属性名");
+            }
+            elements.add(new Element(path.substring(start, index), false, path.substring(0, index)));
+            // 任意多个[key]
+            while (index < length && path.charAt(index) == PROPERTY_KEY_PREFIX_CHAR) {
+                int end = path.indexOf(PROPERTY_KEY_SUFFIX_CHAR, index + 1);
+                if (end < 0) {
+                    throw invalidPath(path, "缺少" + PROPERTY_KEY_SUFFIX_CHAR);
+                }
+                String key = unquote(path.substring(index + 1, end));
+                if (key.isEmpty()) {
+                    throw invalidPath(path, "下标或key不能为空");
+                }
+                index = end + 1;
+                elements.add(new Element(key, true, path.substring(0, index)));
+            }
+            if (index < length) {
+                if (path.charAt(index) != NESTED_PROPERTY_SEPARATOR_CHAR) {
+                    throw invalidPath(path, "]后面只能是" + NESTED_PROPERTY_SEPARATOR_CHAR + "或者" + PROPERTY_KEY_PREFIX_CHAR);
+                }
+                if (++index == length) {
+                    throw invalidPath(path, "缺少属性名");
+                }
+            }
+        }
+        if (elements.isEmpty()) {
+            throw invalidPath(path, "缺少属性名");
+        }
+        return new PropertyPath(path, elements.toArray(new Element[0]));
+    }
+
+    /// MARK - Internal
+
+    private static String unquote(String key) {
+        if (key.length() >= 2) {
+            char first = key.charAt(0);
+            if ((first == '\'' || first == '"') && key.charAt(key.length() - 1) == first) {
+                return key.substring(1, key.length() - 1);
+            }
+        }
+        return key;
+    }
+
+    private static BeansException invalidPath(String path, String reason) {
+        return new BeansException("非法的属性路径[" + path + "]: " + reason);
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 路径中的一段，要么是属性名，要么是[]中的下标或key。
+     */
+    static final class Element {
+
+        private final String name;
+
+        private final boolean key;
+
+        // 数组和List的下标，name不是非负整数时为-1
+        private final int index;
+
+        // 从路径开头到这一段为止的部分，用于错误信息
+        private final String prefix;
+
+        Element(String name, boolean key, String prefix) {
+            this.name = name;
+            this.key = key;
+            this.index = (key ? parseIndex(name) : -1);
+            this.prefix = prefix;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isKey() {
+            return key;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        String getPrefix() {
+            return prefix;
+        }
+
+        private static int parseIndex(String name) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+            }
+            try {
+                return Integer.parseInt(name);
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+    }
+}
@@ -15,11 +15,10 @@ import java.util.Objects;
  * 注意到<ref>标签指向另一个<bean>，这种引用
  * 关系用RuntimeBeanReference来表达；属性值
  * 也可能是数组、字典等，这种情况用ManagedList、
- * ManagedMap来表达。
- *
- * 在tiny spring中，仅仅对<list>标签做了支持。
+ * ManagedSet、ManagedMap、ManagedProperties来表达。
  *
  * @see com.archer.spring.factory.support.ManagedList
+ * @see com.archer.spring.factory.support.ManagedMap
  * @see com.archer.spring.factory.support.RuntimeBeanReference
  */
 public class PropertyValue {
@@ -30,6 +29,9 @@ public class PropertyValue {
     // 属性值
     private final Object value;
 
+    // value是字符串字面量时，转换后的值
+    private volatile ConvertedLiteral convertedLiteral;
+
     public PropertyValue(String name, Object value) {
         Objects.requireNonNull(name);
         this.name = name;
@@ -44,6 +46,14 @@ public class PropertyValue {
         return value;
     }
 
+    ConvertedLiteral getConvertedLiteral() {
+        return convertedLiteral;
+    }
+
+    void setConvertedLiteral(ConvertedLiteral convertedLiteral) {
+        this.convertedLiteral = convertedLiteral;
+    }
+
     @Override
     public String toString() {
         return "PropertyValue: name='" + name + "'; value=[" + value + "]";
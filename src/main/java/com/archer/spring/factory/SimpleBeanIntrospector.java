@@ -0,0 +1,83 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/24.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 直接从getMethods()中找出getter/setter的策略，默认使用。
+ *
+ * 规则和Introspector一致：getXxx()/isXxx()(仅限boolean)是getter，返回void的setXxx(arg)是setter，
+ * 同名的getter和setter类型一致时组成一个可读写的属性。
+ * 不查找BeanInfo类，也不支持索引属性，需要这些的话使用StandardBeanIntrospector。
+ */
+public class SimpleBeanIntrospector implements BeanIntrospector {
+
+    public static final SimpleBeanIntrospector INSTANCE = new SimpleBeanIntrospector();
+
+    @Override
+    public PropertyDescriptor[] getPropertyDescriptors(Class<?> beanClass) throws BeansException {
+        // 属性名 -> getter
+        Map<String, Method> readMethods = new HashMap<>();
+        // 属性名 -> 所有同名的setter
+        Map<String, List<Method>> writeMethods = new HashMap<>();
+        for (Method method : beanClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge()) {
+                continue;
+            }
+            String name = method.getName();
+            int parameterCount = method.getParameterCount();
+            Class<?> returnType = method.getReturnType();
+            if (parameterCount == 0 && name.length() > 3 && name.startsWith("get") && returnType != void.class) {
+                readMethods.putIfAbsent(Introspector.decapitalize(name.substring(3)), method);
+            } else if (parameterCount == 0 && name.length() > 2 && name.startsWith("is") && returnType == boolean.class) {
+                // isXxx优先于getXxx
+                readMethods.put(Introspector.decapitalize(name.substring(2)), method);
+            } else if (parameterCount == 1 && name.length() > 3 && name.startsWith("set") && returnType == void.class) {
+                writeMethods.computeIfAbsent(Introspector.decapitalize(name.substring(3)),
+                        key -> new ArrayList<>(1)).add(method);
+            }
+        }
+        // 按属性名排序
+        Set<String> propertyNames = new TreeSet<>(readMethods.keySet());
+        propertyNames.addAll(writeMethods.keySet());
+        List<PropertyDescriptor> result = new ArrayList<>(propertyNames.size());
+        for (String propertyName : propertyNames) {
+            Method readMethod = readMethods.get(propertyName);
+            Method writeMethod = chooseWriteMethod(readMethod, writeMethods.get(propertyName));
+            try {
+                result.add(new PropertyDescriptor(propertyName, readMethod, writeMethod));
+            } catch (IntrospectionException ex) {
+                throw new BeansException("无法从[" + beanClass.getName() + "]类中获得属性[" + propertyName + "]", ex);
+            }
+        }
+        return result.toArray(new PropertyDescriptor[0]);
+    }
+
+    /**
+     * 有getter时选参数类型和它的返回值一致的setter，否则只在setter唯一时选它。
+     */
+    private Method chooseWriteMethod(Method readMethod, List<Method> candidates) {
+        if (candidates == null) {
+            return null;
+        }
+        if (readMethod == null) {
+            return (candidates.size() == 1 ? candidates.get(0) : null);
+        }
+        for (Method candidate : candidates) {
+            if (candidate.getParameterTypes()[0] == readMethod.getReturnType()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/24.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+
+/**
+ * 使用java.beans.Introspector的策略。
+ *
+ * 会在classpath上查找XxxBeanInfo类，并为每个父类都构建BeanInfo，
+ * 只有需要自定义BeanInfo时才值得使用。
+ */
+public class StandardBeanIntrospector implements BeanIntrospector {
+
+    public static final StandardBeanIntrospector INSTANCE = new StandardBeanIntrospector();
+
+    @Override
+    public PropertyDescriptor[] getPropertyDescriptors(Class<?> beanClass) throws BeansException {
+        try {
+            return Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+        } catch (IntrospectionException ex) {
+            throw new BeansException("无法从[" + beanClass.getName() + "]类中获得自省信息", ex);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Type;
 
 /**
  * 将PropertyValue.value转换成实际的类型，
@@ -23,6 +24,14 @@ public interface TypeConverter {
     Object convertIfNecessary(@Nullable Object value,
                               @NotNull Class<?> requiredType) throws BeansException;
 
+    /**
+     * 将value转换成requiredType类型的实例，genericType是requiredType带泛型参数的形式(比如构造函数参数的泛型类型)，
+     * 转换集合和Map时按其中的元素类型转换每个元素。
+     */
+    Object convertIfNecessary(@Nullable Object value,
+                              @NotNull Class<?> requiredType,
+                              @Nullable Type genericType) throws BeansException;
+
     /**
      * 将value转换成descriptor.getPropertyType()类型的实例。
      */
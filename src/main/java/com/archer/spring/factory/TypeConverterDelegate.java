@@ -6,16 +6,19 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.convert.ConversionService;
+import com.archer.spring.convert.DefaultConversionService;
 import com.archer.spring.utils.ClassUtils;
+import com.archer.spring.utils.NumberUtils;
+import com.archer.spring.utils.StringUtils;
 import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
 import java.beans.PropertyDescriptor;
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
-import java.lang.reflect.Array;
-import java.util.Collection;
-import java.util.Iterator;
+import java.lang.reflect.*;
+import java.util.*;
 
 /**
  * 类型转换的代理，TypeConverter将实际的转换工作代理给了此类。
@@ -23,6 +26,15 @@ import java.util.Iterator;
  */
 public class TypeConverterDelegate {
 
+    // PropertyEditorManager中是否有每个类型对应的PropertyEditor
+    // 使用ClassValue，不会阻止类被卸载
+    private static final ClassValue<Boolean> hasStandardEditor = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return (PropertyEditorManager.findEditor(type) != null);
+        }
+    };
+
     // 转换工作需要PropertyEditor的支持
     private final PropertyEditorRegistrySupport propertyEditorRegistry;
 
@@ -33,17 +45,67 @@ public class TypeConverterDelegate {
     @Nullable
     public Object convertIfNecessary(@Nullable Object value,
                                      @NotNull PropertyDescriptor descriptor) throws BeansException {
-        return convertIfNecessary(descriptor.getName(), value, descriptor.getPropertyType(), descriptor);
+        Class<?> propertyType = descriptor.getPropertyType();
+        Type genericType = propertyType;
+        // 只有集合和Map才需要泛型参数，PropertyDescriptor.getWriteMethod()是同步方法
+        if (isGenericContainer(propertyType)) {
+            Method writeMethod = descriptor.getWriteMethod();
+            if (writeMethod != null) {
+                genericType = writeMethod.getGenericParameterTypes()[0];
+            }
+        }
+        return convertIfNecessary(value, descriptor, genericType);
+    }
+
+    /**
+     * 和convertIfNecessary(value, descriptor)相同，属性的泛型类型(setter参数的泛型类型)由调用方给出。
+     */
+    @Nullable
+    public Object convertIfNecessary(@Nullable Object value, @NotNull PropertyDescriptor descriptor,
+                                     @Nullable Type genericType) throws BeansException {
+        return convertIfNecessary(descriptor.getName(), value, descriptor.getPropertyType(), genericType, descriptor);
     }
 
     public Object convertIfNecessary(String propertyName, Object value, Class<?> requiredType) {
-        return convertIfNecessary(propertyName, value, requiredType, null);
+        return convertIfNecessary(propertyName, value, requiredType, requiredType, null);
+    }
+
+    /**
+     * genericType是requiredType带泛型参数的形式，比如List<Integer>，转换集合和Map时按其中的元素类型转换每个元素。
+     */
+    public Object convertIfNecessary(String propertyName, Object value, Class<?> requiredType, @Nullable Type genericType) {
+        return convertIfNecessary(propertyName, value, requiredType, genericType, null);
+    }
+
+    /**
+     * type是否是需要泛型参数才能确定元素类型的集合或者Map。
+     */
+    public static boolean isGenericContainer(@Nullable Class<?> type) {
+        return (type != null && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)));
+    }
+
+    /**
+     * 把字符串转换成requiredType时，是否会使用默认的规则，即默认的PropertyEditor或者默认的Converter。
+     * 是的话调用方可以自己把字符串解析成基本类型，不必经过装箱的转换结果。
+     */
+    public boolean isDefaultTextConversion(@NotNull Class<?> requiredType, @Nullable PropertyDescriptor descriptor) {
+        if (propertyEditorRegistry.findCustomEditor(requiredType) != null ||
+                (descriptor != null && descriptor.getPropertyEditorClass() != null)) {
+            return false;
+        }
+        ConversionService conversionService = propertyEditorRegistry.getConversionService();
+        if (conversionService == null) {
+            return propertyEditorRegistry.findDefaultEditor(requiredType) != null;
+        }
+        return (conversionService instanceof DefaultConversionService &&
+                ((DefaultConversionService) conversionService).isDefaultConverter(String.class, requiredType));
     }
 
     /**
      * 类型转换的核心算法。
      */
-    private Object convertIfNecessary(String propertyName, Object value, Class<?> requiredType, PropertyDescriptor descriptor) {
+    private Object convertIfNecessary(String propertyName, Object value, Class<?> requiredType,
+                                      Type genericType, PropertyDescriptor descriptor) {
         Object convertedValue = value;
 
         // 查找一下这个类型有没有对应的PropertyEditor
@@ -58,20 +120,43 @@ public class TypeConverterDelegate {
         }
         // 仍没有
         if (editor == null) {
+            // 类型已经匹配，默认的PropertyEditor也只会原样返回，不需要转换
+            if (requiredType == null || ClassUtils.isAssignableValue(requiredType, convertedValue)) {
+                return postProcessConvertedValue(propertyName, value, convertedValue, requiredType, genericType);
+            }
+            // 优先使用无状态的ConversionService
+            ConversionService conversionService = propertyEditorRegistry.getConversionService();
+            if (conversionService != null && convertedValue != null &&
+                    conversionService.canConvert(convertedValue.getClass(), requiredType)) {
+                return postProcessConvertedValue(propertyName, value,
+                        conversionService.convert(convertedValue, requiredType), requiredType, genericType);
+            }
             // 获取默认的PropertyEditor
             editor = propertyEditorRegistry.findDefaultEditor(requiredType);
             // 也没有默认的PropertyEditor
             if (editor == null) {
                 // 查询标准JavaBean的PropertyEditor
-                editor = PropertyEditorManager.findEditor(requiredType);
+                editor = findStandardEditor(requiredType);
             }
         }
 
         // 若类型不匹配，执行转换
-        if (editor != null || (requiredType != null && !ClassUtils.isAssignableValue(requiredType, convertedValue))) {
-            convertedValue = doConvertValue(convertedValue, requiredType, editor);
+        if (editor != null) {
+            // 默认的和BeanFactory快照中的PropertyEditor是所有BeanWrapper共享的，
+            // PropertyEditorRegistrar通常也是把同一个实例注册给所有BeanWrapper，而PropertyEditor是有状态的
+            synchronized (editor) {
+                convertedValue = doConvertValue(convertedValue, requiredType, editor);
+            }
         }
 
+        return postProcessConvertedValue(propertyName, value, convertedValue, requiredType, genericType);
+    }
+
+    /**
+     * 对转换的结果做最后的处理，并检查它的类型。
+     */
+    private Object postProcessConvertedValue(String propertyName, Object value, Object convertedValue,
+                                             Class<?> requiredType, Type genericType) {
         if (requiredType != null) {
             if (convertedValue != null) {
                 if (String.class.equals(requiredType) && ClassUtils.isPrimitiveOrWrapper(convertedValue.getClass())) {
@@ -80,8 +165,15 @@ public class TypeConverterDelegate {
                 } else if (requiredType.isArray()) {
                     // 转数组
                     return convertToTypedArray(convertedValue, propertyName, requiredType.getComponentType());
-                } else {
-                    // handled above
+                } else if (genericType instanceof ParameterizedType) {
+                    // 按泛型参数转换集合和Map中的元素
+                    if (convertedValue instanceof Collection && Collection.class.isAssignableFrom(requiredType)) {
+                        convertedValue = convertToTypedCollection((Collection<?>) convertedValue, propertyName,
+                                requiredType, getTypeArgument(genericType, 0));
+                    } else if (convertedValue instanceof Map && Map.class.isAssignableFrom(requiredType)) {
+                        convertedValue = convertToTypedMap((Map<?, ?>) convertedValue, propertyName, requiredType,
+                                getTypeArgument(genericType, 0), getTypeArgument(genericType, 1));
+                    }
                 }
             }
 
@@ -92,6 +184,15 @@ public class TypeConverterDelegate {
         return convertedValue;
     }
 
+    /**
+     * 查找PropertyEditorManager中的PropertyEditor。
+     * findEditor是同步方法，找不到时还会尝试加载XxxEditor类，因此按类型缓存有没有找到，
+     * 找不到的类型不会再去查询。找到的PropertyEditor是新建的实例，不能缓存。
+     */
+    private static PropertyEditor findStandardEditor(Class<?> requiredType) {
+        return (hasStandardEditor.get(requiredType) ? PropertyEditorManager.findEditor(requiredType) : null);
+    }
+
     private Object doConvertValue(Object value, Class<?> requiredType, PropertyEditor editor) {
         Object convertedValue = value;
         if (editor != null) {
@@ -119,14 +220,30 @@ public class TypeConverterDelegate {
         return editor.getValue();
     }
 
-    private Object convertToTypedArray(Object input, String propertyName, Class componentType) {
+    /**
+     * 把集合、数组或者单个值转换成componentType的数组。元素的转换方式对每种元素类型只确定一次，
+     * 字符串转成基本类型时直接解析到基本类型的数组中，不经过装箱。
+     */
+    private Object convertToTypedArray(Object input, String propertyName, Class<?> componentType) {
         if (input instanceof Collection) {
-            Collection coll = (Collection) input;
+            Collection<?> coll = (Collection<?>) input;
             Object result = Array.newInstance(componentType, coll.size());
+            if (componentType.isPrimitive() && parseIntoPrimitiveArray(coll, result, propertyName)) {
+                return result;
+            }
+            ElementConverter converter = new ElementConverter(propertyName, componentType, componentType);
             int i = 0;
-            for (Iterator it = coll.iterator(); it.hasNext(); i++) {
-                Object value = convertIfNecessary(buildIndexedPropertyName(propertyName, i), it.next(), componentType);
-                Array.set(result, i, value);
+            if (result instanceof Object[]) {
+                Object[] array = (Object[]) result;
+                for (Object element : coll) {
+                    array[i] = converter.convert(element, i);
+                    i++;
+                }
+            } else {
+                for (Object element : coll) {
+                    Array.set(result, i, converter.convert(element, i));
+                    i++;
+                }
             }
             return result;
         } else if (input.getClass().isArray()) {
@@ -137,9 +254,13 @@ public class TypeConverterDelegate {
             }
             int arrayLength = Array.getLength(input);
             Object result = Array.newInstance(componentType, arrayLength);
+            if (componentType.isPrimitive() && input instanceof Object[] &&
+                    parseIntoPrimitiveArray(Arrays.asList((Object[]) input), result, propertyName)) {
+                return result;
+            }
+            ElementConverter converter = new ElementConverter(propertyName, componentType, componentType);
             for (int i = 0; i < arrayLength; i++) {
-                Object value = convertIfNecessary(buildIndexedPropertyName(propertyName, i), Array.get(input, i), componentType);
-                Array.set(result, i, value);
+                Array.set(result, i, converter.convert(Array.get(input, i), i));
             }
             return result;
         } else {
@@ -151,9 +272,298 @@ public class TypeConverterDelegate {
         }
     }
 
+    /**
+     * elements全部是字符串，并且按默认规则转换时，直接解析到基本类型的数组result中，返回true；否则什么也不做。
+     */
+    private boolean parseIntoPrimitiveArray(Collection<?> elements, Object result, String propertyName) {
+        Class<?> componentType = result.getClass().getComponentType();
+        if (componentType != int.class && componentType != long.class &&
+                componentType != double.class && componentType != boolean.class) {
+            return false;
+        }
+        for (Object element : elements) {
+            if (!(element instanceof String)) {
+                return false;
+            }
+        }
+        if (!isDefaultTextConversion(componentType, null)) {
+            return false;
+        }
+        int i = 0;
+        for (Object element : elements) {
+            String text = (String) element;
+            try {
+                if (componentType == int.class) {
+                    ((int[]) result)[i] = NumberUtils.parseInt(text);
+                } else if (componentType == long.class) {
+                    ((long[]) result)[i] = NumberUtils.parseLong(text);
+                } else if (componentType == double.class) {
+                    ((double[]) result)[i] = NumberUtils.parseDouble(text);
+                } else {
+                    ((boolean[]) result)[i] = StringUtils.parseBoolean(text);
+                }
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("无法将name = [" + buildIndexedPropertyName(propertyName, i) +
+                        "], value = [" + text + "]的属性转换成[" + componentType + "]类型", ex);
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * 按元素类型转换集合中的元素。所有元素都不需要转换并且原集合的类型符合要求时，返回原集合；
+     * 否则新建一个同样大小的集合。
+     */
+    @SuppressWarnings("unchecked")
+    private Object convertToTypedCollection(Collection<?> input, String propertyName,
+                                            Class<?> requiredType, Type elementType) {
+        Class<?> elementClass = resolveClass(elementType);
+        if (elementClass == null || elementClass == Object.class) {
+            return input;
+        }
+        ElementConverter converter = new ElementConverter(propertyName, elementClass, elementType);
+        if (requiredType.isInstance(input) && !converter.needsConversion(input)) {
+            return input;
+        }
+        Collection<Object> result = createCollection(requiredType, input.size());
+        if (result == null) {
+            return input;
+        }
+        int i = 0;
+        for (Object element : input) {
+            result.add(converter.convert(element, i++));
+        }
+        return result;
+    }
+
+    /**
+     * 按key和value的类型转换Map中的元素，规则同convertToTypedCollection。
+     */
+    @SuppressWarnings("unchecked")
+    private Object convertToTypedMap(Map<?, ?> input, String propertyName, Class<?> requiredType,
+                                     Type keyType, Type valueType) {
+        Class<?> keyClass = resolveClass(keyType);
+        Class<?> valueClass = resolveClass(valueType);
+        ElementConverter keyConverter = (keyClass != null && keyClass != Object.class ?
+                new ElementConverter(propertyName, keyClass, keyType) : null);
+        ElementConverter valueConverter = (valueClass != null && valueClass != Object.class ?
+                new ElementConverter(propertyName, valueClass, valueType) : null);
+        if (keyConverter == null && valueConverter == null) {
+            return input;
+        }
+        if (requiredType.isInstance(input) &&
+                (keyConverter == null || !keyConverter.needsConversion(input.keySet())) &&
+                (valueConverter == null || !valueConverter.needsConversion(input.values()))) {
+            return input;
+        }
+        Map<Object, Object> result = createMap(requiredType, input.size());
+        if (result == null) {
+            return input;
+        }
+        int i = 0;
+        for (Map.Entry<?, ?> entry : input.entrySet()) {
+            Object key = (keyConverter != null ? keyConverter.convert(entry.getKey(), i) : entry.getKey());
+            Object value = (valueConverter != null ? valueConverter.convert(entry.getValue(), i) : entry.getValue());
+            result.put(key, value);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * 按requiredType新建一个可以容纳size个元素的集合，无法新建时返回null。
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> createCollection(Class<?> requiredType, int size) {
+        if (requiredType.isInterface()) {
+            if (requiredType.isAssignableFrom(ArrayList.class)) {
+                return new ArrayList<>(size);
+            } else if (requiredType.isAssignableFrom(LinkedHashSet.class)) {
+                return new LinkedHashSet<>(Math.max((int) (size / .75f) + 1, 16));
+            } else if (requiredType.isAssignableFrom(TreeSet.class)) {
+                return new TreeSet<>();
+            }
+            return null;
+        }
+        if (requiredType == ArrayList.class) {
+            return new ArrayList<>(size);
+        }
+        return (Collection<Object>) instantiateContainer(requiredType);
+    }
+
+    /**
+     * 按requiredType新建一个可以容纳size个元素的Map，无法新建时返回null。
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> createMap(Class<?> requiredType, int size) {
+        if (requiredType.isInterface()) {
+            if (requiredType.isAssignableFrom(LinkedHashMap.class)) {
+                return new LinkedHashMap<>(Math.max((int) (size / .75f) + 1, 16));
+            } else if (requiredType.isAssignableFrom(TreeMap.class)) {
+                return new TreeMap<>();
+            }
+            return null;
+        }
+        return (Map<Object, Object>) instantiateContainer(requiredType);
+    }
+
+    private static Object instantiateContainer(Class<?> type) {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            return ClassUtils.instantiateClass(type);
+        } catch (BeansException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 泛型类型的第index个参数，没有的话返回null。
+     */
+    private static Type getTypeArgument(Type type, int index) {
+        Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+        return (index < arguments.length ? arguments[index] : null);
+    }
+
+    /**
+     * 泛型类型对应的类，类型变量等无法确定的返回null。
+     */
+    static Class<?> resolveClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return resolveClass(((ParameterizedType) type).getRawType());
+        } else if (type instanceof WildcardType) {
+            Type[] upperBounds = ((WildcardType) type).getUpperBounds();
+            return (upperBounds.length == 1 ? resolveClass(upperBounds[0]) : null);
+        } else if (type instanceof GenericArrayType) {
+            Class<?> componentType = resolveClass(((GenericArrayType) type).getGenericComponentType());
+            return (componentType != null ? Array.newInstance(componentType, 0).getClass() : null);
+        }
+        return null;
+    }
+
     private String buildIndexedPropertyName(String propertyName, int index) {
         return (propertyName != null ?
                 propertyName + "[" + index + "]" :
                 null);
     }
+
+    /// MARK - Internal class
+
+    /**
+     * 把一批元素转换成同一个元素类型。转换方式按元素的实际类型确定，元素类型和上一个相同时直接沿用，
+     * 不再逐个查找PropertyEditor和Converter。
+     */
+    private final class ElementConverter {
+
+        // 元素本身已经是需要的类型
+        private static final int NO_OP = 0;
+
+        // 使用ConversionService
+        private static final int CONVERSION_SERVICE = 1;
+
+        // 使用PropertyEditor
+        private static final int EDITOR = 2;
+
+        // 走完整的convertIfNecessary，比如元素本身也是数组或者集合
+        private static final int FULL = 3;
+
+        private final String propertyName;
+
+        private final Class<?> elementType;
+
+        private final Type genericElementType;
+
+        // 上一个元素的类型以及为它确定的转换方式
+        private Class<?> sourceType;
+
+        private int mode;
+
+        private PropertyEditor editor;
+
+        private ConversionService conversionService;
+
+        ElementConverter(String propertyName, Class<?> elementType, Type genericElementType) {
+            this.propertyName = propertyName;
+            this.elementType = elementType;
+            this.genericElementType = genericElementType;
+        }
+
+        /**
+         * elements中是否有需要转换的元素。
+         */
+        boolean needsConversion(Collection<?> elements) {
+            for (Object element : elements) {
+                if (element == null) {
+                    if (elementType.isPrimitive()) {
+                        return true;
+                    }
+                    continue;
+                }
+                resolve(element.getClass());
+                if (mode != NO_OP) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Object convert(Object element, int index) {
+            if (element == null) {
+                return convertIfNecessary(buildIndexedPropertyName(propertyName, index), element, elementType);
+            }
+            resolve(element.getClass());
+            Object convertedValue;
+            switch (mode) {
+                case NO_OP:
+                    return element;
+                case CONVERSION_SERVICE:
+                    convertedValue = conversionService.convert(element, elementType);
+                    break;
+                case EDITOR:
+                    synchronized (editor) {
+                        convertedValue = (element instanceof String ?
+                                doConvertTextValue((String) element, editor) : doConvertValue(element, elementType, editor));
+                    }
+                    break;
+                default:
+                    return convertIfNecessary(buildIndexedPropertyName(propertyName, index),
+                            element, elementType, genericElementType, null);
+            }
+            return postProcessConvertedValue(propertyName, element, convertedValue, elementType, elementType);
+        }
+
+        /**
+         * 按元素的实际类型确定转换方式，规则和convertIfNecessary一致。
+         */
+        private void resolve(Class<?> type) {
+            if (type == sourceType) {
+                return;
+            }
+            sourceType = type;
+            editor = propertyEditorRegistry.findCustomEditor(elementType);
+            conversionService = null;
+            if (editor != null) {
+                mode = EDITOR;
+            } else if (elementType.isArray() || isGenericContainer(elementType)) {
+                // 元素本身的元素可能也要转换
+                mode = FULL;
+            } else if (ClassUtils.isAssignable(elementType, type)) {
+                mode = NO_OP;
+            } else if ((conversionService = propertyEditorRegistry.getConversionService()) != null &&
+                    conversionService.canConvert(type, elementType)) {
+                mode = CONVERSION_SERVICE;
+            } else {
+                editor = propertyEditorRegistry.findDefaultEditor(elementType);
+                if (editor == null) {
+                    // 新建的实例只在这次转换中使用
+                    editor = findStandardEditor(elementType);
+                }
+                mode = (editor != null ? EDITOR : FULL);
+            }
+        }
+    }
 }
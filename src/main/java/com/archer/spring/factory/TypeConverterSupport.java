@@ -10,6 +10,7 @@ import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Type;
 import java.util.Objects;
 
 /**
@@ -37,8 +38,52 @@ public abstract class TypeConverterSupport extends PropertyEditorRegistrySupport
         return typeConverterDelegate.convertIfNecessary(null, value, requiredType);
     }
 
+    @Override
+    public Object convertIfNecessary(Object value, Class<?> requiredType, Type genericType) throws BeansException {
+        return typeConverterDelegate.convertIfNecessary(null, value, requiredType, genericType);
+    }
+
     @Override
     public Object convertIfNecessary(Object value, PropertyDescriptor descriptor) throws BeansException {
         return typeConverterDelegate.convertIfNecessary(value, descriptor);
     }
+
+    /**
+     * 转换构造函数的参数。参数是字符串字面量时，转换结果缓存在原始的ValueHolder上，
+     * 之后按同一个BeanDefinition创建bean时直接使用。
+     */
+    public Object convertIfNecessary(@NotNull ConstructorArgumentValues.ValueHolder valueHolder,
+                                     @NotNull Class<?> requiredType) throws BeansException {
+        return convertIfNecessary(valueHolder, requiredType, requiredType);
+    }
+
+    /**
+     * 同上，genericType是参数的泛型类型。
+     */
+    public Object convertIfNecessary(@NotNull ConstructorArgumentValues.ValueHolder valueHolder,
+                                     @NotNull Class<?> requiredType, Type genericType) throws BeansException {
+        Object value = valueHolder.getValue();
+        if (!isCacheableLiteral(value)) {
+            return convertIfNecessary(value, requiredType, genericType);
+        }
+        ConstructorArgumentValues.ValueHolder source = valueHolder.getSource();
+        ConvertedLiteral literal = source.getConvertedLiteral();
+        if (literal == null || !literal.matches(requiredType, getSharedEditors(), getConversionService())) {
+            Object convertedValue = convertIfNecessary(value, requiredType, genericType);
+            literal = ConvertedLiteral.of(requiredType, getSharedEditors(), getConversionService(), convertedValue);
+            if (literal == null) {
+                return convertedValue;
+            }
+            source.setConvertedLiteral(literal);
+        }
+        return literal.getValue();
+    }
+
+    /**
+     * value是否是可以缓存转换结果的字面量。在此对象上单独注册过PropertyEditor的话，
+     * 转换结果和其它对象不同，不能缓存。
+     */
+    protected boolean isCacheableLiteral(Object value) {
+        return (value instanceof String && !hasLocalCustomEditors());
+    }
 }
@@ -70,6 +70,16 @@ public class BeanDefinition {
     // 构造函数注入的相关信息
     private ConstructorArgumentValues constructorArgumentValues;
 
+    // 第一次成功创建后缓存的构造函数，影响构造函数选择的属性变化时会被清除
+    private volatile Constructor<?> resolvedConstructor;
+
+    // 与resolvedConstructor对应的每个参数的来源，
+    // 元素是ConstructorArgumentValues.ValueHolder或者指向自动装配的bean的RuntimeBeanReference
+    private volatile Object[] preparedConstructorArguments;
+
+    // 自动装配时需要注入的属性，由BeanFactory计算和校验，自动装配模式或PropertyValues被替换时会被清除
+    private volatile Object resolvedInjectionMetadata;
+
     /// MARK - Getters & Setters
 
     public Class<?> getBeanClass() {
@@ -98,6 +108,8 @@ public class BeanDefinition {
 
     public void setAutowireMode(int autowireMode) {
         this.autowireMode = autowireMode;
+        clearResolvedConstructor();
+        this.resolvedInjectionMetadata = null;
     }
 
     public String[] getDependsOn() {
@@ -130,6 +142,7 @@ public class BeanDefinition {
 
     public void setPropertyValues(MutablePropertyValues propertyValues) {
         this.propertyValues = propertyValues;
+        this.resolvedInjectionMetadata = null;
     }
 
     public ConstructorArgumentValues getConstructorArgumentValues() {
@@ -138,8 +151,27 @@ public class BeanDefinition {
 
     public void setConstructorArgumentValues(ConstructorArgumentValues constructorArgumentValues) {
         this.constructorArgumentValues = constructorArgumentValues;
+        clearResolvedConstructor();
+    }
+
+    public Constructor<?> getResolvedConstructor() {
+        return resolvedConstructor;
     }
 
+    public Object[] getPreparedConstructorArguments() {
+        return preparedConstructorArguments;
+    }
+
+    public Object getResolvedInjectionMetadata() {
+        return resolvedInjectionMetadata;
+    }
+
+    /**
+     * 缓存自动装配时需要注入的属性，由BeanFactory在第一次按名称或类型自动装配时调用。
+     */
+    public void setResolvedInjectionMetadata(Object resolvedInjectionMetadata) {
+        this.resolvedInjectionMetadata = resolvedInjectionMetadata;
+    }
 
     /// MARK - Initializers
 
@@ -187,6 +219,24 @@ public class BeanDefinition {
         }
     }
 
+    /**
+     * 缓存解析好的构造函数和参数来源，由BeanFactory在第一次成功创建bean后调用。
+     */
+    public void setResolvedConstructor(Constructor<?> constructor, Object[] preparedArguments) {
+        // 先写参数再写构造函数，读取时先读构造函数，保证读到构造函数时参数已经就绪
+        this.preparedConstructorArguments = preparedArguments;
+        this.resolvedConstructor = constructor;
+    }
+
+    /**
+     * 清除缓存的构造函数解析结果，下次创建时重新解析。
+     * 直接修改了ConstructorArgumentValues中的内容之后需要调用。
+     */
+    public void clearResolvedConstructor() {
+        this.resolvedConstructor = null;
+        this.preparedConstructorArguments = null;
+    }
+
     /**
      * 返回适当的装配模式。
      */
@@ -12,6 +12,7 @@
 
 package com.archer.spring.factory.config;
 
+import com.archer.spring.convert.ConversionService;
 import com.archer.spring.factory.BeanFactory;
 import com.archer.spring.factory.BeansException;
 import com.archer.spring.factory.PropertyEditorRegistrar;
@@ -37,6 +38,16 @@ public interface ConfigurableBeanFactory extends BeanFactory {
      */
     void registerCustomEditor(Class<?> requiredType, Class<? extends PropertyEditor> propertyEditorClass);
 
+    /**
+     * 设置类型转换服务，它在自定义PropertyEditor之后、默认PropertyEditor之前被使用，为null表示只使用PropertyEditor。
+     */
+    void setConversionService(ConversionService conversionService);
+
+    /**
+     * 返回类型转换服务。
+     */
+    ConversionService getConversionService();
+
     /**
      * 添加一个bean的后置处理器
      */
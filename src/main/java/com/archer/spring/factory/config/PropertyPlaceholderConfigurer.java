@@ -0,0 +1,388 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/29.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.config;
+
+import com.archer.spring.expression.Expression;
+import com.archer.spring.expression.ExpressionParser;
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.ConstructorArgumentValues;
+import com.archer.spring.factory.MutablePropertyValues;
+import com.archer.spring.factory.PropertyValue;
+import com.archer.spring.factory.support.ManagedList;
+import com.archer.spring.factory.support.ManagedMap;
+import com.archer.spring.factory.support.ManagedProperties;
+import com.archer.spring.factory.support.ManagedSet;
+import com.archer.spring.factory.support.RuntimeBeanReference;
+import com.archer.spring.io.Resource;
+import com.archer.spring.utils.PropertyPlaceholderHelper;
+import com.sun.istack.internal.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * 替换BeanDefinition中${name}、${name:default}形式的占位符的BeanFactory后置处理器。
+ * 处理PropertyValue、构造函数参数、<list>/<set>/<map>/<props>中的字符串、<ref>指向的bean名称以及#{...}表达式的文本，
+ * 替换后的#{...}解析成Expression。
+ *
+ * 占位符的值依次从以下几层中查找，由systemPropertiesMode决定系统属性所在的层：
+ * 1、系统属性和环境变量(SYSTEM_PROPERTIES_MODE_OVERRIDE)
+ * 2、locations指定的属性文件，后面的覆盖前面的；再被properties覆盖
+ * 3、系统属性和环境变量(SYSTEM_PROPERTIES_MODE_FALLBACK，默认)
+ *
+ * 每个不同的字符串只编译一次，替换结果按原字符串缓存；相同的结果只保留一个实例，
+ * 上千个BeanDefinition中相同的值共享同一个String。
+ */
+public class PropertyPlaceholderConfigurer implements BeanFactoryPostProcessor {
+
+    /// MARK - Properties
+
+    // 不查找系统属性和环境变量
+    public static final int SYSTEM_PROPERTIES_MODE_NEVER = 0;
+
+    // 属性文件中找不到时再查找系统属性和环境变量
+    public static final int SYSTEM_PROPERTIES_MODE_FALLBACK = 1;
+
+    // 先查找系统属性和环境变量
+    public static final int SYSTEM_PROPERTIES_MODE_OVERRIDE = 2;
+
+    public static final String DEFAULT_PLACEHOLDER_PREFIX = "${";
+
+    public static final String DEFAULT_PLACEHOLDER_SUFFIX = "}";
+
+    public static final String DEFAULT_VALUE_SEPARATOR = ":";
+
+    // 表示占位符没有对应的值，按引用比较
+    private static final String UNRESOLVED = new String();
+
+    private String placeholderPrefix = DEFAULT_PLACEHOLDER_PREFIX;
+
+    private String placeholderSuffix = DEFAULT_PLACEHOLDER_SUFFIX;
+
+    @Nullable
+    private String valueSeparator = DEFAULT_VALUE_SEPARATOR;
+
+    private int systemPropertiesMode = SYSTEM_PROPERTIES_MODE_FALLBACK;
+
+    private boolean searchSystemEnvironment = true;
+
+    private boolean ignoreUnresolvablePlaceholders = false;
+
+    private boolean ignoreResourceNotFound = false;
+
+    @Nullable
+    private Resource[] locations;
+
+    @Nullable
+    private Properties properties;
+
+    /// MARK - Getters & Setters
+
+    public void setPlaceholderPrefix(String placeholderPrefix) {
+        this.placeholderPrefix = placeholderPrefix;
+    }
+
+    public void setPlaceholderSuffix(String placeholderSuffix) {
+        this.placeholderSuffix = placeholderSuffix;
+    }
+
+    /**
+     * 占位符和默认值之间的分隔符，设置为null时不支持默认值。
+     */
+    public void setValueSeparator(@Nullable String valueSeparator) {
+        this.valueSeparator = valueSeparator;
+    }
+
+    public void setSystemPropertiesMode(int systemPropertiesMode) {
+        if (systemPropertiesMode < SYSTEM_PROPERTIES_MODE_NEVER || systemPropertiesMode > SYSTEM_PROPERTIES_MODE_OVERRIDE) {
+            throw new IllegalArgumentException("未知的systemPropertiesMode: " + systemPropertiesMode);
+        }
+        this.systemPropertiesMode = systemPropertiesMode;
+    }
+
+    /**
+     * 系统属性中找不到时是否查找同名的环境变量。
+     */
+    public void setSearchSystemEnvironment(boolean searchSystemEnvironment) {
+        this.searchSystemEnvironment = searchSystemEnvironment;
+    }
+
+    /**
+     * 找不到值的占位符是原样保留还是抛出异常。
+     */
+    public void setIgnoreUnresolvablePlaceholders(boolean ignoreUnresolvablePlaceholders) {
+        this.ignoreUnresolvablePlaceholders = ignoreUnresolvablePlaceholders;
+    }
+
+    public void setIgnoreResourceNotFound(boolean ignoreResourceNotFound) {
+        this.ignoreResourceNotFound = ignoreResourceNotFound;
+    }
+
+    public void setLocation(Resource location) {
+        this.locations = new Resource[] { location };
+    }
+
+    public void setLocations(Resource... locations) {
+        this.locations = locations;
+    }
+
+    /**
+     * 直接指定的属性，覆盖属性文件中的同名属性。
+     */
+    public void setProperties(Properties properties) {
+        this.properties = properties;
+    }
+
+    /// MARK - BeanFactoryPostProcessor
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        Properties merged = mergeProperties();
+        PlaceholderResolvingVisitor visitor = new PlaceholderResolvingVisitor(
+                new PropertyPlaceholderHelper(placeholderPrefix, placeholderSuffix, valueSeparator,
+                        ignoreUnresolvablePlaceholders), merged);
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            try {
+                visitor.visitBeanDefinition(beanFactory.getBeanDefinition(beanName));
+            } catch (IllegalArgumentException ex) {
+                throw new BeansException("无法替换[" + beanName + "]中的占位符: " + ex.getMessage(), ex);
+            }
+        }
+        System.out.println("占位符替换完成，编译了" + visitor.helper.getTemplateCount() + "个模板，" +
+                "共有" + visitor.valuePool.size() + "个不同的值");
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 按顺序加载locations中的属性文件，再用properties覆盖。每个文件只在这里读取一次。
+     */
+    private Properties mergeProperties() throws BeansException {
+        Properties merged = new Properties();
+        if (locations != null) {
+            for (Resource location : locations) {
+                if (!location.exists()) {
+                    if (ignoreResourceNotFound) {
+                        System.out.println("找不到属性文件[" + location + "]，已忽略");
+                        continue;
+                    }
+                    throw new BeansException("找不到属性文件[" + location + "]");
+                }
+                try (InputStream is = location.getInputStream()) {
+                    merged.load(is);
+                } catch (IOException ex) {
+                    throw new BeansException("无法加载属性文件[" + location + "]", ex);
+                }
+            }
+        }
+        if (properties != null) {
+            for (String name : properties.stringPropertyNames()) {
+                merged.setProperty(name, properties.getProperty(name));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 按systemPropertiesMode在各层中查找name对应的值。
+     */
+    private String resolvePlaceholder(String name, Properties merged) {
+        String value = null;
+        if (systemPropertiesMode == SYSTEM_PROPERTIES_MODE_OVERRIDE) {
+            value = resolveSystemProperty(name);
+        }
+        if (value == null) {
+            value = merged.getProperty(name);
+        }
+        if (value == null && systemPropertiesMode == SYSTEM_PROPERTIES_MODE_FALLBACK) {
+            value = resolveSystemProperty(name);
+        }
+        return value;
+    }
+
+    private String resolveSystemProperty(String name) {
+        try {
+            String value = System.getProperty(name);
+            if (value == null && searchSystemEnvironment) {
+                value = System.getenv(name);
+            }
+            return value;
+        } catch (SecurityException ex) {
+            return null;
+        }
+    }
+
+    /// MARK - Internal class
+
+    /**
+     * 遍历BeanDefinition中的值并替换占位符。只在一次postProcessBeanFactory中使用，不是线程安全的。
+     */
+    private final class PlaceholderResolvingVisitor {
+
+        private final PropertyPlaceholderHelper helper;
+
+        private final PropertyPlaceholderHelper.PlaceholderResolver resolver;
+
+        // 占位符的名字 -> 查找到的值，查找的结果在一次处理中不会变化
+        private final Map<String, String> resolvedPlaceholders = new HashMap<>(64);
+
+        // 原始字符串 -> 替换后的字符串
+        private final Map<String, String> resolvedValues = new HashMap<>(256);
+
+        // 替换后的字符串，相同的只保留一个实例
+        private final Map<String, String> valuePool = new HashMap<>(256);
+
+        // 文本中有占位符的表达式替换后重新解析
+        private final ExpressionParser expressionParser = new ExpressionParser();
+
+        PlaceholderResolvingVisitor(PropertyPlaceholderHelper helper, Properties merged) {
+            this.helper = helper;
+            this.resolver = name -> {
+                String value = resolvedPlaceholders.get(name);
+                if (value == null) {
+                    value = resolvePlaceholder(name, merged);
+                    resolvedPlaceholders.put(name, (value != null ? value : UNRESOLVED));
+                }
+                return (value == UNRESOLVED ? null : value);
+            };
+        }
+
+        void visitBeanDefinition(BeanDefinition beanDefinition) {
+            MutablePropertyValues pvs = beanDefinition.getPropertyValues();
+            if (pvs != null) {
+                PropertyValue[] pvArray = pvs.getPropertyValues();
+                for (int i = 0; i < pvArray.length; i++) {
+                    Object value = pvArray[i].getValue();
+                    Object resolvedValue = resolveValue(value);
+                    if (resolvedValue != value) {
+                        pvs.setPropertyValueAtIndex(i, new PropertyValue(pvArray[i].getName(), resolvedValue));
+                    }
+                }
+            }
+            ConstructorArgumentValues cargs = beanDefinition.getConstructorArgumentValues();
+            if (cargs != null) {
+                cargs.getIndexedArgumentValues().values().forEach(this::visitValueHolder);
+                cargs.getGenericArgumentValues().forEach(this::visitValueHolder);
+            }
+        }
+
+        private void visitValueHolder(ConstructorArgumentValues.ValueHolder valueHolder) {
+            Object value = valueHolder.getValue();
+            Object resolvedValue = resolveValue(value);
+            if (resolvedValue != value) {
+                valueHolder.setValue(resolvedValue);
+            }
+        }
+
+        /**
+         * 返回替换后的值，不需要替换时返回value本身；集合原地替换其中的元素。
+         * 不含占位符的字符串也会换成共享的实例。
+         */
+        @SuppressWarnings("unchecked")
+        private Object resolveValue(Object value) {
+            if (value instanceof String) {
+                String resolved = resolveStringValue((String) value);
+                // 含有占位符的#{...}在解析XML时保留为字符串，替换之后才能解析。
+                // resolved可能是值池中另一个相等的实例，按内容判断是否替换过，没有占位符的字符串保持原样
+                return (!resolved.equals(value) && ExpressionParser.isTemplate(resolved) ?
+                        expressionParser.parseTemplate(resolved) : resolved);
+            } else if (value instanceof RuntimeBeanReference) {
+                String beanName = ((RuntimeBeanReference) value).getBeanName();
+                String resolvedName = resolveStringValue(beanName);
+                return (resolvedName.equals(beanName) ? value : new RuntimeBeanReference(resolvedName));
+            } else if (value instanceof Expression) {
+                String expressionString = ((Expression) value).getExpressionString();
+                String resolvedString = resolveStringValue(expressionString);
+                return (resolvedString.equals(expressionString) ? value :
+                        expressionParser.parseTemplate(resolvedString));
+            } else if (value instanceof ManagedList) {
+                ManagedList<Object> list = (ManagedList<Object>) value;
+                for (int i = 0; i < list.size(); i++) {
+                    Object element = list.get(i);
+                    Object resolvedElement = resolveValue(element);
+                    if (resolvedElement != element) {
+                        list.set(i, resolvedElement);
+                    }
+                }
+            } else if (value instanceof ManagedSet) {
+                visitSet((ManagedSet<Object>) value);
+            } else if (value instanceof ManagedMap) {
+                visitMap((ManagedMap<Object, Object>) value);
+            } else if (value instanceof ManagedProperties) {
+                visitProperties((ManagedProperties) value);
+            }
+            return value;
+        }
+
+        /**
+         * 有元素被替换时按原来的顺序重建整个集合。
+         */
+        private void visitSet(ManagedSet<Object> set) {
+            List<Object> elements = new ArrayList<>(set.size());
+            boolean changed = false;
+            for (Object element : set) {
+                Object resolvedElement = resolveValue(element);
+                changed |= (resolvedElement != element);
+                elements.add(resolvedElement);
+            }
+            if (changed) {
+                set.clear();
+                set.addAll(elements);
+            }
+        }
+
+        /**
+         * key和value都可能有占位符，有变化时按原来的顺序重建整个Map。
+         */
+        private void visitMap(ManagedMap<Object, Object> map) {
+            List<Object> entries = new ArrayList<>(map.size() * 2);
+            boolean changed = false;
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                Object key = entry.getKey();
+                Object resolvedKey = resolveValue(key);
+                Object resolvedValue = resolveValue(entry.getValue());
+                changed |= (resolvedKey != key || resolvedValue != entry.getValue());
+                entries.add(resolvedKey);
+                entries.add(resolvedValue);
+            }
+            if (changed) {
+                map.clear();
+                for (int i = 0; i < entries.size(); i += 2) {
+                    map.put(entries.get(i), entries.get(i + 1));
+                }
+            }
+        }
+
+        private void visitProperties(ManagedProperties properties) {
+            for (String name : properties.stringPropertyNames()) {
+                String value = properties.getProperty(name);
+                String resolvedName = resolveStringValue(name);
+                String resolvedValue = resolveStringValue(value);
+                if (!resolvedName.equals(name)) {
+                    properties.remove(name);
+                    properties.setProperty(resolvedName, resolvedValue);
+                } else if (!resolvedValue.equals(value)) {
+                    properties.setProperty(name, resolvedValue);
+                }
+            }
+        }
+
+        private String resolveStringValue(String value) {
+            String resolved = resolvedValues.get(value);
+            if (resolved == null) {
+                resolved = helper.replacePlaceholders(value, resolver);
+                String shared = valuePool.putIfAbsent(resolved, resolved);
+                if (shared != null) {
+                    resolved = shared;
+                }
+                resolvedValues.put(value, resolved);
+            }
+            return resolved;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.config;
+
+import com.archer.spring.factory.BeansException;
+
+/**
+ * 能够参与循环依赖处理的bean后置处理器。
+ *
+ * 单例bean在填充属性之前会提前暴露一个引用，供循环依赖的其他bean注入。
+ * 如果后置处理器会把bean包装成代理，那么它需要在getEarlyBeanReference中
+ * 对提前暴露的引用做同样的包装，并在postProcessAfterInitialization中
+ * 原样返回已经包装过的bean，这样所有地方拿到的都是同一个对象。
+ */
+public interface SmartInstantiationAwareBeanPostProcessor extends BeanPostProcessor {
+
+    /**
+     * 返回提前暴露的引用，此时的bean还没有填充属性，也没有调用初始化方法。
+     */
+    default Object getEarlyBeanReference(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+}
@@ -52,23 +52,28 @@ public class CustomBooleanEditor extends PropertyEditorSupport {
     }
 
 
+    // 默认表示true和false的字面量
+    private static final String[] TRUE_VALUES = { VALUE_TRUE, VALUE_ON, VALUE_YES, VALUE_1 };
+
+    private static final String[] FALSE_VALUES = { VALUE_FALSE, VALUE_OFF, VALUE_NO, VALUE_0 };
+
     @Override
     public void setAsText(@Nullable String text) throws IllegalArgumentException {
-        String input = (text != null ? text.trim() : null);
-        if (this.allowEmpty && !StringUtils.hasText(input)) {
+        // 只记录去掉首尾空白后的范围，不生成trim之后的字符串
+        int start = (text != null ? StringUtils.trimStart(text, 0, text.length()) : 0);
+        int end = (text != null ? StringUtils.trimEnd(text, start, text.length()) : 0);
+        if (this.allowEmpty && start == end) {
             // Treat empty String as null value.
             setValue(null);
-        } else if (this.trueString != null && this.trueString.equalsIgnoreCase(input)) {
+        } else if (text == null) {
+            throw new IllegalArgumentException("Invalid boolean value [null]");
+        } else if (this.trueString != null && StringUtils.regionEqualsIgnoreCase(text, start, end, this.trueString)) {
             setValue(Boolean.TRUE);
-        } else if (this.falseString != null && this.falseString.equalsIgnoreCase(input)) {
+        } else if (this.falseString != null && StringUtils.regionEqualsIgnoreCase(text, start, end, this.falseString)) {
             setValue(Boolean.FALSE);
-        } else if (this.trueString == null &&
-                (VALUE_TRUE.equalsIgnoreCase(input) || VALUE_ON.equalsIgnoreCase(input) ||
-                        VALUE_YES.equalsIgnoreCase(input) || VALUE_1.equals(input))) {
+        } else if (this.trueString == null && StringUtils.matchesAny(text, start, end, TRUE_VALUES)) {
             setValue(Boolean.TRUE);
-        } else if (this.falseString == null &&
-                (VALUE_FALSE.equalsIgnoreCase(input) || VALUE_OFF.equalsIgnoreCase(input) ||
-                        VALUE_NO.equalsIgnoreCase(input) || VALUE_0.equals(input))) {
+        } else if (this.falseString == null && StringUtils.matchesAny(text, start, end, FALSE_VALUES)) {
             setValue(Boolean.FALSE);
         } else {
             throw new IllegalArgumentException("Invalid boolean value [" + text + "]");
@@ -6,16 +6,19 @@
 
 package com.archer.spring.factory.support;
 
+import com.archer.spring.expression.EvaluationContext;
+import com.archer.spring.expression.Expression;
 import com.archer.spring.factory.*;
 import com.archer.spring.factory.config.AutowireCapableBeanFactory;
 import com.archer.spring.factory.config.BeanDefinition;
 import com.archer.spring.factory.config.BeanPostProcessor;
+import com.archer.spring.factory.config.SmartInstantiationAwareBeanPostProcessor;
 import com.archer.spring.utils.ClassUtils;
 import com.sun.istack.internal.NotNull;
 
 import java.beans.PropertyDescriptor;
-import java.beans.PropertyEditor;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
 import java.util.*;
 
 /**
@@ -23,6 +26,45 @@ import java.util.*;
  */
 public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFactory implements AutowireCapableBeanFactory {
 
+    /// MARK - Properties
+
+    // 实例化、属性赋值和调用初始化方法的策略
+    private InstantiationStrategy instantiationStrategy = new TieredInstantiationStrategy();
+
+    // 从bean的类中找出属性的策略
+    private BeanIntrospector beanIntrospector = SimpleBeanIntrospector.INSTANCE;
+
+    // 表达式通过此工厂引用其他bean
+    private final EvaluationContext expressionContext = this::getBean;
+
+    /// MARK - Getters & Setters
+
+    public InstantiationStrategy getInstantiationStrategy() {
+        return instantiationStrategy;
+    }
+
+    /**
+     * 默认使用TieredInstantiationStrategy，频繁创建的prototype会切换到编译好的创建配方。
+     */
+    public void setInstantiationStrategy(InstantiationStrategy instantiationStrategy) {
+        Objects.requireNonNull(instantiationStrategy, "InstantiationStrategy不能为空");
+        this.instantiationStrategy = instantiationStrategy;
+    }
+
+    public BeanIntrospector getBeanIntrospector() {
+        return beanIntrospector;
+    }
+
+    /**
+     * 默认使用SimpleBeanIntrospector，直接从getMethods()中找出属性；
+     * 需要自定义BeanInfo类时设置为StandardBeanIntrospector。
+     */
+    public void setBeanIntrospector(BeanIntrospector beanIntrospector) {
+        Objects.requireNonNull(beanIntrospector, "BeanIntrospector不能为空");
+        // BeanDefinition上缓存的自动装配属性记录了计算它时的策略，换了策略之后会重新计算
+        this.beanIntrospector = beanIntrospector;
+    }
+
     /// MARK - Initializers
 
     public AbstractAutowireCapableBeanFactory() { }
@@ -49,15 +91,16 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             beanWrapper = autowireConstructor(beanName, mbd);
         } else {
             // 不是的话就走普通的解析赋值路线
-            beanWrapper = new BeanWrapper(mbd.getBeanClass());
-            registerPropertyEditors(beanWrapper);
+            beanWrapper = createBeanWrapper();
+            beanWrapper.setWrappedInstance(instantiationStrategy.instantiate(beanName, mbd));
         }
         Object bean = beanWrapper.getWrappedInstance();
 
-        // 提前缓存单实例bean
+        // 提前暴露单实例bean，只有当前线程能看到它
         // 只要保证都是先创建后赋值，就可以解决循环依赖
         if (mbd.isSingleton()) {
-            addSingleton(beanName, bean);
+            Object rawBean = bean;
+            addSingletonFactory(beanName, () -> getEarlyBeanReference(beanName, rawBean));
         }
 
         // 给属性赋值
@@ -72,18 +115,32 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                 ((BeanFactoryAware) bean).setBeanFactory(this);
             }
             bean = applyBeanPostProcessorsBeforeInitialization(bean, beanName);
-            invokeInitMethods(bean, mbd);
+            invokeInitMethods(beanName, bean, mbd);
             bean = applyBeanPostProcessorsAfterInitialization(bean, beanName);
         } catch (Exception e) {
             throw new BeansException("调用生命周期函数失败", e);
         }
 
+        // 提前暴露的引用已经被其他bean拿去了，最终返回的对象要和它保持一致
+        if (mbd.isSingleton()) {
+            Object earlyReference = getSingleton(beanName, false);
+            if (earlyReference != null) {
+                if (bean == beanWrapper.getWrappedInstance()) {
+                    bean = earlyReference;
+                } else {
+                    throw new BeansException("[" + beanName + "]的提前暴露的引用已经注入到了其他bean中，" +
+                            "但它最终又被BeanPostProcessor替换成了另一个对象");
+                }
+            }
+        }
+
         return bean;
     }
 
     @Override
     public void destroySingleton(String beanName, Object singletonObject) {
-        BeanDefinition mbd = getBeanDefinition(beanName);
+        // 通过registerSingleton直接注册的单例没有BeanDefinition
+        BeanDefinition mbd = (containsBeanDefinition(beanName) ? getBeanDefinition(beanName) : null);
         try {
             invokeDestroyMethod(singletonObject, mbd);
         } catch (Exception e) {
@@ -94,6 +151,16 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     @Override
     public abstract boolean containsBeanDefinition(String beanName);
 
+    /// MARK - FactoryBeanRegistrySupport
+
+    /**
+     * FactoryBean生产的对象不经过容器的初始化流程，只应用postProcessAfterInitialization。
+     */
+    @Override
+    protected Object postProcessObjectFromFactoryBean(Object object, String beanName) throws BeansException {
+        return applyBeanPostProcessorsAfterInitialization(object, beanName);
+    }
+
     /// MARK - AutowireCapableBeanFactory
 
     @Override
@@ -104,8 +171,8 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             return autowireConstructor(beanClass.getName(), mbd).getWrappedInstance();
         }
         Object bean = ClassUtils.instantiateClass(beanClass);
-        BeanWrapper beanWrapper = new BeanWrapper(bean);
-        registerPropertyEditors(beanWrapper);
+        BeanWrapper beanWrapper = createBeanWrapper();
+        beanWrapper.setWrappedInstance(bean);
         populateBean(beanClass.getName(), mbd, beanWrapper);
         return bean;
     }
@@ -117,8 +184,8 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         }
         BeanDefinition mbd = new BeanDefinition(existingBean.getClass());
         mbd.setAutowireMode(autowireMode);
-        BeanWrapper beanWrapper = new BeanWrapper(existingBean);
-        registerPropertyEditors(beanWrapper);
+        BeanWrapper beanWrapper = createBeanWrapper();
+        beanWrapper.setWrappedInstance(existingBean);
         populateBean(existingBean.getClass().getName(), mbd, beanWrapper);
     }
 
@@ -127,7 +194,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         // 这儿的顺序是定义的顺序
         Object bean = existingBean;
         for (BeanPostProcessor processor : getBeanPostProcessors()) {
-            bean = processor.postProcessBeforeInitialization(existingBean, name);
+            bean = processor.postProcessBeforeInitialization(bean, name);
         }
         return bean;
     }
@@ -136,22 +203,49 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     public Object applyBeanPostProcessorsAfterInitialization(Object existingBean, String name) throws BeansException {
         Object bean = existingBean;
         for (BeanPostProcessor processor : getBeanPostProcessors()) {
-            bean = processor.postProcessAfterInitialization(existingBean, name);
+            bean = processor.postProcessAfterInitialization(bean, name);
         }
         return bean;
     }
 
+    /// MARK - Protected
+
+    /**
+     * 获取提前暴露的引用，给SmartInstantiationAwareBeanPostProcessor一个包装它的机会。
+     */
+    protected Object getEarlyBeanReference(String beanName, Object bean) {
+        Object exposedObject = bean;
+        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+            if (processor instanceof SmartInstantiationAwareBeanPostProcessor) {
+                exposedObject = ((SmartInstantiationAwareBeanPostProcessor) processor).getEarlyBeanReference(exposedObject, beanName);
+            }
+        }
+        return exposedObject;
+    }
+
     /// MARK - Template method
 
     /**
-     * 自动装配时使用，返回工厂中所有与requiredType兼容的bean
+     * 自动装配时使用，返回工厂中所有与requiredType兼容的bean的名称及其类型。
+     * 只根据BeanDefinition和FactoryBean.getObjectType()判断，不会创建候选的bean。
      */
-    protected abstract Map<String, Object> findMatchingBeans(Class<?> requiredType) throws BeansException;
+    protected abstract Map<String, Class<?>> findAutowireCandidates(Class<?> requiredType) throws BeansException;
 
     /// MARK - Internals
 
     @NotNull
     private BeanWrapper autowireConstructor(String beanName, BeanDefinition mbd) {
+        BeanWrapper beanWrapper = createBeanWrapper();
+
+        // 之前已经成功创建过的话，直接按缓存的构造函数和参数来源准备参数
+        Constructor<?> resolvedCtor = mbd.getResolvedConstructor();
+        Object[] preparedArgs = mbd.getPreparedConstructorArguments();
+        if (resolvedCtor != null && preparedArgs != null) {
+            Object[] args = resolvePreparedArguments(beanName, mbd, beanWrapper, resolvedCtor, preparedArgs);
+            beanWrapper.setWrappedInstance(instantiationStrategy.instantiate(beanName, mbd, resolvedCtor, args));
+            return beanWrapper;
+        }
+
         // cargs中持有的是未解析的参数
         ConstructorArgumentValues cargs = mbd.getConstructorArgumentValues();
         // 保存cargs持有的参数对应的解析版本
@@ -168,12 +262,12 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                 // 执行解析并构造镜像版本
                 ConstructorArgumentValues.ValueHolder valueHolder = cargs.getIndexedArgumentValues().get(index);
                 Object resolvedValue = resolveValueIfNecessary(beanName, mbd, "ctor arg at " + index, valueHolder.getValue());
-                resolvedValues.addIndexedArgumentValue(index, resolvedValue, valueHolder.getType());
+                resolvedValues.addIndexedArgumentValue(index, valueHolder.withResolvedValue(resolvedValue));
             }
             // 执行解析并构造镜像版本
             for (ConstructorArgumentValues.ValueHolder valueHolder : cargs.getGenericArgumentValues()) {
                 Object resolvedValue = resolveValueIfNecessary(beanName, mbd, "ctor generic arg", valueHolder.getValue());
-                resolvedValues.addGenericArgumentValue(resolvedValue, valueHolder.getType());
+                resolvedValues.addGenericArgumentValue(valueHolder.withResolvedValue(resolvedValue));
             }
         }
 
@@ -186,14 +280,15 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             return c2Len - c1Len;
         });
 
-        BeanWrapper beanWrapper = new BeanWrapper();
-        registerPropertyEditors(beanWrapper);
         Constructor<?> selectedCtor = null;
         Object[] selectedArgs = null;
 
         // 类型的匹配程度
         int minTypeDiffWeight = Integer.MAX_VALUE;
+        // 选中的构造函数的每个参数的来源，用于缓存
+        Object[] selectedArgSources = null;
         // 遍历构造函数，查找第一个匹配的
+        // 这一步只确定候选bean的名称和类型，等选定了构造函数再去获取bean
         for (int i = 0; i < constructors.length; i++) {
             try {
                 Constructor constructor = constructors[i];
@@ -202,26 +297,35 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                 }
                 Class[] argTypes = constructor.getParameterTypes();
                 Object[] args = new Object[argTypes.length];
+                Class<?>[] valueTypes = new Class<?>[argTypes.length];
+                Object[] argSources = new Object[argTypes.length];
                 for (int j = 0; j < argTypes.length; j++) {
                     // 首先看看resolvedValues中是否有符合的
                     ConstructorArgumentValues.ValueHolder valueHolder = resolvedValues.getArgumentValue(j, argTypes[j]);
                     if (valueHolder != null) {
                         // 有的话解析以后可以使用
-                        args[j] = beanWrapper.convertIfNecessary(valueHolder.getValue(), argTypes[i]);
+                        args[j] = beanWrapper.convertIfNecessary(valueHolder.getValue(), argTypes[j],
+                                getGenericParameterType(constructor, argTypes, j));
+                        valueTypes[j] = (args[j] != null ? args[j].getClass() : null);
+                        argSources[j] = valueHolder.getSource();
                     } else {
                         // 没有的话就要在整个BeanFactory中查看一下有没有类型兼容的了
-                        Map<String, Object> matchingBeans = findMatchingBeans(argTypes[j]);
-                        if (matchingBeans == null || matchingBeans.size() != 1) {
-                            throw new IllegalStateException("使用自动装配时BeanFactory中只能有一个类型兼容的bean。");
+                        Map<String, Class<?>> candidates = findAutowireCandidates(argTypes[j]);
+                        if (candidates.size() != 1) {
+                            throw new BeansException("使用自动装配时BeanFactory中只能有一个类型兼容的bean，" +
+                                    "但[" + argTypes[j].getName() + "]的候选有" + candidates.keySet());
                         }
-                        args[j] = matchingBeans.values().iterator().next();
+                        Map.Entry<String, Class<?>> candidate = candidates.entrySet().iterator().next();
+                        argSources[j] = new RuntimeBeanReference(candidate.getKey());
+                        valueTypes[j] = candidate.getValue();
                     }
                 }
-                int typeDiffWeight = getTypeDifferenceWeight(argTypes, args);
+                int typeDiffWeight = getTypeDifferenceWeight(argTypes, valueTypes);
                 // 可能有多个匹配结果，删选出最精确的那一个
                 if (typeDiffWeight < minTypeDiffWeight) {
                     selectedCtor = constructor;
                     selectedArgs = args;
+                    selectedArgSources = argSources;
                     minTypeDiffWeight = typeDiffWeight;
                 }
             } catch (BeansException ex) {
@@ -235,30 +339,85 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         if (selectedCtor == null) {
             throw new BeansException("在[" + beanName + "]中找不到合适的构造函数");
         }
+        // 只创建选中的构造函数真正需要的bean
+        for (int j = 0; j < selectedArgSources.length; j++) {
+            if (selectedArgSources[j] instanceof RuntimeBeanReference) {
+                selectedArgs[j] = getBean(((RuntimeBeanReference) selectedArgSources[j]).getBeanName());
+            }
+        }
         // 根据推断的构造器和参数初始化新的对象
-        beanWrapper.setWrappedInstance(ClassUtils.instantiateClass(selectedCtor, selectedArgs));
+        beanWrapper.setWrappedInstance(instantiationStrategy.instantiate(beanName, mbd, selectedCtor, selectedArgs));
+        // 创建成功了再缓存，之后创建同一个bean时不用再推断
+        mbd.setResolvedConstructor(selectedCtor, selectedArgSources);
         return beanWrapper;
     }
 
     /**
-     * 用来确定arg和对应argType的远近关系，从来确定匹配结果。
+     * 按缓存的参数来源准备构造函数的参数。
+     * 引用的可能是prototype，每次都要重新解析拿到新的对象；字面量只在第一次使用时转换。
+     */
+    private Object[] resolvePreparedArguments(String beanName, BeanDefinition mbd, BeanWrapper beanWrapper,
+                                              Constructor<?> ctor, Object[] preparedArgs) {
+        Class<?>[] argTypes = ctor.getParameterTypes();
+        Object[] args = new Object[argTypes.length];
+        for (int i = 0; i < argTypes.length; i++) {
+            Object argSource = preparedArgs[i];
+            if (argSource instanceof ConstructorArgumentValues.ValueHolder) {
+                ConstructorArgumentValues.ValueHolder valueHolder = (ConstructorArgumentValues.ValueHolder) argSource;
+                if (isLiteral(valueHolder.getValue())) {
+                    // 字面量的转换结果缓存在ValueHolder上
+                    args[i] = beanWrapper.convertIfNecessary(valueHolder, argTypes[i],
+                            getGenericParameterType(ctor, argTypes, i));
+                } else {
+                    Object resolvedValue = resolveValueIfNecessary(beanName, mbd, "ctor arg at " + i,
+                            valueHolder.getValue(), argTypes[i]);
+                    args[i] = beanWrapper.convertIfNecessary(resolvedValue, argTypes[i],
+                            getGenericParameterType(ctor, argTypes, i));
+                }
+            } else {
+                args[i] = getBean(((RuntimeBeanReference) argSource).getBeanName());
+            }
+        }
+        return args;
+    }
+
+    /**
+     * 构造函数第index个参数的泛型类型。只有集合和Map需要按泛型参数转换元素，其它类型直接返回参数的类型，
+     * 不必每次都复制getGenericParameterTypes()返回的数组。
+     */
+    private static Type getGenericParameterType(Constructor<?> ctor, Class<?>[] argTypes, int index) {
+        if (!TypeConverterDelegate.isGenericContainer(argTypes[index])) {
+            return argTypes[index];
+        }
+        // 内部类等的构造函数，泛型参数可能不包括编译器生成的参数
+        Type[] genericTypes = ctor.getGenericParameterTypes();
+        return (genericTypes.length == argTypes.length ? genericTypes[index] : argTypes[index]);
+    }
+
+    /**
+     * 用来确定参数的实际类型和对应argType的远近关系，从来确定匹配结果。
+     * valueTypes中为null的表示参数值为null。
      */
-    private int getTypeDifferenceWeight(Class<?>[] argTypes, Object[] args) {
+    private int getTypeDifferenceWeight(Class<?>[] argTypes, Class<?>[] valueTypes) {
         int result = 0;
         for (int i = 0; i < argTypes.length; i++) {
-            if (!ClassUtils.isAssignableValue(argTypes[i], args[i])) {
+            if (valueTypes[i] == null) {
+                if (argTypes[i].isPrimitive()) {
+                    return Integer.MAX_VALUE;
+                }
+                continue;
+            }
+            if (!ClassUtils.isAssignable(argTypes[i], valueTypes[i])) {
                 return Integer.MAX_VALUE;
             }
-            if (args[i] != null) {
-                Class<?> superClass = args[i].getClass().getSuperclass();
-                while (superClass != null) {
-                    if (argTypes[i].isAssignableFrom(superClass)) {
-                        result++;
-                        superClass = superClass.getSuperclass();
-                    }
-                    else {
-                        superClass = null;
-                    }
+            Class<?> superClass = valueTypes[i].getSuperclass();
+            while (superClass != null) {
+                if (argTypes[i].isAssignableFrom(superClass)) {
+                    result++;
+                    superClass = superClass.getSuperclass();
+                }
+                else {
+                    superClass = null;
                 }
             }
         }
@@ -294,7 +453,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      */
     private void autowireByName(String beanName, BeanDefinition mbd,
                                   BeanWrapper bw, MutablePropertyValues pvs) {
-        String[] propertyNames = unsatisfiedObjectProperties(mbd, bw);
+        String[] propertyNames = findInjectionMetadata(mbd, bw).propertyNames;
         for (String propertyName : propertyNames) {
             if (containsBean(propertyName)) {
                 Object bean = getBean(propertyName);
@@ -308,78 +467,140 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      */
     private void autowireByType(String beanName, BeanDefinition mbd,
                                   BeanWrapper bw, MutablePropertyValues pvs) {
-        String[] propertyNames = unsatisfiedObjectProperties(mbd, bw);
-        for (String propertyName : propertyNames) {
-            Class<?> requiredType = bw.getPropertyDescriptor(propertyName).getPropertyType();
-            Map<String, Object> matchingBeans = findMatchingBeans(requiredType);
-            if (matchingBeans != null && matchingBeans.size() == 1) {
-                pvs.addPropertyValue(new PropertyValue(propertyName, matchingBeans.values().iterator().next()));
-            } else {
-                if (matchingBeans != null && matchingBeans.size() > 1) {
-                    throw new BeansException("给[" + beanName + "]应用自动装配时找到多个符合条件的bean");
-                }
+        InjectionMetadata metadata = findInjectionMetadata(mbd, bw);
+        String[] propertyNames = metadata.propertyNames;
+        Class<?>[] propertyTypes = metadata.propertyTypes;
+        for (int i = 0; i < propertyNames.length; i++) {
+            String propertyName = propertyNames[i];
+            Class<?> requiredType = propertyTypes[i];
+            Map<String, Class<?>> candidates = findAutowireCandidates(requiredType);
+            if (candidates.size() == 1) {
+                Object bean = getBean(candidates.keySet().iterator().next());
+                pvs.addPropertyValue(new PropertyValue(propertyName, bean));
+            } else if (candidates.size() > 1) {
+                throw new BeansException("给[" + beanName + "]应用自动装配时找到多个符合条件的bean" + candidates.keySet());
             }
         }
     }
 
     /**
-     * 返回bean中未赋值的属性(可写的且非简单类型)，用于自动装配
+     * 返回需要自动装配的属性，结果缓存在BeanDefinition上。
+     * 命中缓存时只比较bean的类、BeanIntrospector和显式配置的属性名，不分配任何对象；
+     * 直接修改了BeanDefinition中的MutablePropertyValues也能被发现。
      */
-    private String[] unsatisfiedObjectProperties(BeanDefinition mbd, BeanWrapper bw) {
-        Set<String> result = new TreeSet<>();
-        PropertyDescriptor[] pds = bw.getPropertyDescriptors();
-        for (PropertyDescriptor pd : pds) {
+    private InjectionMetadata findInjectionMetadata(BeanDefinition mbd, BeanWrapper bw) {
+        MutablePropertyValues pvs = mbd.getPropertyValues();
+        Object cached = mbd.getResolvedInjectionMetadata();
+        if (cached instanceof InjectionMetadata &&
+                ((InjectionMetadata) cached).matches(bw.getWrappedClass(), beanIntrospector, pvs)) {
+            return (InjectionMetadata) cached;
+        }
+        String[] explicitPropertyNames = (pvs != null ? pvs.getPropertyNames() : new String[0]);
+        InjectionMetadata metadata = buildInjectionMetadata(bw, explicitPropertyNames);
+        mbd.setResolvedInjectionMetadata(metadata);
+        return metadata;
+    }
+
+    /**
+     * 找出bean中未赋值的属性(可写的且非简单类型)，用于自动装配
+     */
+    private InjectionMetadata buildInjectionMetadata(BeanWrapper bw, String[] explicitPropertyNames) {
+        Set<String> explicitNames = new HashSet<>(Arrays.asList(explicitPropertyNames));
+        // getPropertyDescriptors已经按属性名排好序了
+        List<PropertyDescriptor> unsatisfied = new ArrayList<>();
+        for (PropertyDescriptor pd : bw.getPropertyDescriptors()) {
             if (pd.getWriteMethod() != null &&
                     !ClassUtils.isSimpleProperty(pd.getPropertyType()) &&
-                    mbd.getPropertyValues().getPropertyValue(pd.getName()) == null) {
-                result.add(pd.getName());
+                    !explicitNames.contains(pd.getName())) {
+                unsatisfied.add(pd);
             }
         }
-        return result.toArray(new String[0]);
+        String[] propertyNames = new String[unsatisfied.size()];
+        Class<?>[] propertyTypes = new Class<?>[unsatisfied.size()];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyNames[i] = unsatisfied.get(i).getName();
+            propertyTypes[i] = unsatisfied.get(i).getPropertyType();
+        }
+        return new InjectionMetadata(bw.getWrappedClass(), beanIntrospector, explicitPropertyNames,
+                propertyNames, propertyTypes);
     }
 
     /**
-     * 赋值方法，将属性值赋给对应属性
+     * 赋值方法，将属性值赋给对应属性。
+     * 字面量直接使用BeanDefinition中原来的PropertyValue，它们转换后的值缓存在上面；
+     * 只有存在需要解析的值时才复制一份MutablePropertyValues。
      */
     private void applyPropertyValues(String beanName, BeanDefinition mbd, BeanWrapper bw,
                                      MutablePropertyValues pvs) throws BeansException {
         if (pvs == null) return;
-        MutablePropertyValues deepCopy = new MutablePropertyValues(pvs);
-        PropertyValue[] pvals = deepCopy.getPropertyValues();
+        MutablePropertyValues resolvedPvs = pvs;
+        PropertyValue[] pvals = pvs.getPropertyValues();
         for (int i = 0; i < pvals.length; i++) {
-            Object value = resolveValueIfNecessary(beanName, mbd, pvals[i].getName(), pvals[i].getValue());
-            PropertyValue pv = new PropertyValue(pvals[i].getName(), value);
-            deepCopy.setPropertyValueAtIndex(i, pv);
+            if (isLiteral(pvals[i].getValue())) {
+                continue;
+            }
+            if (resolvedPvs == pvs) {
+                resolvedPvs = new MutablePropertyValues(pvs);
+            }
+            Object value = pvals[i].getValue();
+            Class<?> requiredType = (value instanceof ManagedList || value instanceof ManagedSet ||
+                    value instanceof ManagedMap ? findPropertyType(bw, pvals[i].getName()) : null);
+            value = resolveValueIfNecessary(beanName, mbd, pvals[i].getName(), value, requiredType);
+            resolvedPvs.setPropertyValueAtIndex(i, new PropertyValue(pvals[i].getName(), value));
         }
-        bw.setPropertyValues(deepCopy);
+        instantiationStrategy.applyPropertyValues(beanName, mbd, bw, resolvedPvs);
     }
 
     /**
-     * 将BeanFactory持有的PropertyEditor同步到BeanWrapper
+     * 属性声明的类型，嵌套的路径或者找不到属性时返回null
      */
-    private void registerPropertyEditors(BeanWrapper wrapper) {
-        // 1. 注册PropertyEditorRegistrar中的
-        for (PropertyEditorRegistrar registrar : getPropertyEditorRegistrars()) {
-            registrar.registerCustomEditors(wrapper);
+    private static Class<?> findPropertyType(BeanWrapper bw, String propertyName) {
+        if (propertyName.indexOf(PropertyAccessor.NESTED_PROPERTY_SEPARATOR_CHAR) >= 0 ||
+                propertyName.indexOf(PropertyAccessor.PROPERTY_KEY_PREFIX_CHAR) >= 0) {
+            return null;
         }
-        // 2. 同步BeanFactory持有的
-        Map<Class<?>, PropertyEditor> customEditors = getCustomEditors();
-        Set<Class<?>> keys = customEditors.keySet();
-        for (Class<?> type : keys) {
-            wrapper.registerCustomEditor(type, customEditors.get(type));
+        try {
+            return bw.getPropertyDescriptor(propertyName).getPropertyType();
+        } catch (BeansException ex) {
+            // 写入时再报错
+            return null;
         }
     }
 
+    /**
+     * value是否不需要经过resolveValueIfNecessary解析
+     */
+    private boolean isLiteral(Object value) {
+        return !(value instanceof RuntimeBeanReference || value instanceof ManagedList || value instanceof ManagedSet ||
+                value instanceof ManagedMap || value instanceof ManagedProperties || value instanceof Expression);
+    }
+
+    /**
+     * 创建一个使用此工厂的BeanIntrospector、ConversionService和PropertyEditor的BeanWrapper，还没有设置被包装的bean
+     */
+    private BeanWrapper createBeanWrapper() {
+        BeanWrapper beanWrapper = new BeanWrapper();
+        beanWrapper.setBeanIntrospector(beanIntrospector);
+        beanWrapper.setConversionService(getConversionService());
+        registerPropertyEditors(beanWrapper);
+        return beanWrapper;
+    }
+
+    /**
+     * 让BeanWrapper引用BeanFactory持有的PropertyEditor快照，不再逐个复制
+     */
+    private void registerPropertyEditors(BeanWrapper wrapper) {
+        wrapper.setSharedEditors(getPropertyEditorSnapshot());
+    }
+
     /**
      * 调用bean的初始化方法
      */
-    private void invokeInitMethods(Object bean, BeanDefinition mbd) throws Exception {
+    private void invokeInitMethods(String beanName, Object bean, BeanDefinition mbd) throws Exception {
         if (bean instanceof InitializingBean) {
             ((InitializingBean) bean).afterPropertiesSet();
         }
-        if (mbd.getInitMethodName() != null) {
-            bean.getClass().getMethod(mbd.getInitMethodName()).invoke(bean);
-        }
+        instantiationStrategy.invokeInitMethod(beanName, mbd, bean);
     }
 
     /**
@@ -389,7 +610,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         if (bean instanceof DisposableBean) {
             ((DisposableBean) bean).destroy();
         }
-        if (mbd.getDestroyMethodName() != null) {
+        if (mbd != null && mbd.getDestroyMethodName() != null) {
             bean.getClass().getMethod(mbd.getDestroyMethodName()).invoke(bean);
         }
     }
@@ -399,6 +620,15 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      */
     private Object resolveValueIfNecessary(String beanName, BeanDefinition mbd,
                                            String argName, Object value) throws BeansException {
+        return resolveValueIfNecessary(beanName, mbd, argName, value, null);
+    }
+
+    /**
+     * 同上，requiredType是接收value的属性或者参数的类型，不知道时为null。
+     * 只有requiredType恰好是List/Set/Map/Collection接口时，只包含字面量的集合才会共享同一个不可变的实例
+     */
+    private Object resolveValueIfNecessary(String beanName, BeanDefinition mbd, String argName,
+                                           Object value, Class<?> requiredType) throws BeansException {
         // value是指向另一个bean的引用
         if (value instanceof RuntimeBeanReference) {
             RuntimeBeanReference ref = (RuntimeBeanReference) value;
@@ -406,9 +636,30 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         }
         // value是<list>标签定义的列表
         else if (value instanceof ManagedList) {
-            return resolveManagedList(beanName, mbd, argName, (ManagedList) value);
+            return resolveManagedList(beanName, mbd, argName, (ManagedList<?>) value,
+                    acceptsShared(requiredType, List.class));
+        }
+        // value是<set>标签定义的集合
+        else if (value instanceof ManagedSet) {
+            return resolveManagedSet(beanName, mbd, argName, (ManagedSet<?>) value,
+                    acceptsShared(requiredType, Set.class));
+        }
+        // value是<map>标签定义的Map
+        else if (value instanceof ManagedMap) {
+            return resolveManagedMap(beanName, mbd, argName, (ManagedMap<?, ?>) value,
+                    requiredType == Map.class);
+        }
+        // value是<props>标签定义的Properties，Properties是可变的，复制一份
+        else if (value instanceof ManagedProperties) {
+            Properties copy = new Properties();
+            copy.putAll((ManagedProperties) value);
+            return copy;
+        }
+        // value是#{...}表达式，解析时已经生成语法树，第一次计算时编译
+        else if (value instanceof Expression) {
+            return evaluateExpression(beanName, argName, (Expression) value);
         } else {
-            // 内部bean/map/set等这里就不做支持了
+            // 内部bean这里就不做支持了
             return value;
         }
     }
@@ -427,14 +678,148 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     }
 
     /**
-     * 解析<list>中的每一个元素
+     * 计算一个表达式的值。
+     */
+    private Object evaluateExpression(String beanName, String argName, Expression expression) throws BeansException {
+        try {
+            return expression.getValue(expressionContext);
+        } catch (BeansException ex) {
+            throw new BeansException("无法计算[" + beanName + "]的[" + argName + "]的表达式[" +
+                    expression.getExpressionString() + "]: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 接收集合的类型是否恰好是collectionType接口或者Collection，这时可以传入不可变的共享实例；
+     * 具体的集合类型(比如ArrayList)以及不知道类型时，每个bean各有一份可变的集合
+     */
+    private static boolean acceptsShared(Class<?> requiredType, Class<?> collectionType) {
+        return (requiredType == collectionType || requiredType == Collection.class);
+    }
+
+    /**
+     * 解析<list>中的每一个元素。只包含字面量并且shareable时只解析一次，之后创建的bean共享同一个不可变的列表
      */
-    private List<Object> resolveManagedList(String beanName, BeanDefinition mbd,
-                                            String argName, ManagedList<?> ml) throws BeansException {
-        List<Object> resolved = new ArrayList<>();
+    private List<Object> resolveManagedList(String beanName, BeanDefinition mbd, String argName,
+                                            ManagedList<?> ml, boolean shareable) throws BeansException {
+        @SuppressWarnings("unchecked")
+        List<Object> shared = (List<Object>) ml.getResolvedLiterals();
+        if (shared != null && shareable) {
+            return shared;
+        }
+        if (shared != null) {
+            return new ArrayList<>(shared);
+        }
+        if (shareable && isAllLiteral(ml)) {
+            shared = Collections.unmodifiableList(new ArrayList<>(ml));
+            ml.setResolvedLiterals(shared);
+            return shared;
+        }
+        List<Object> resolved = new ArrayList<>(ml.size());
         for (int i = 0; i < ml.size(); i++) {
             resolved.add(resolveValueIfNecessary(beanName, mbd, argName + "[" + i + "]", ml.get(i)));
         }
         return resolved;
     }
+
+    /**
+     * 解析<set>中的每一个元素，规则同resolveManagedList
+     */
+    private Set<Object> resolveManagedSet(String beanName, BeanDefinition mbd, String argName,
+                                          ManagedSet<?> ms, boolean shareable) throws BeansException {
+        @SuppressWarnings("unchecked")
+        Set<Object> shared = (Set<Object>) ms.getResolvedLiterals();
+        if (shared != null && shareable) {
+            return shared;
+        }
+        if (shared != null) {
+            return new LinkedHashSet<>(shared);
+        }
+        if (shareable && isAllLiteral(ms)) {
+            shared = Collections.unmodifiableSet(new LinkedHashSet<>(ms));
+            ms.setResolvedLiterals(shared);
+            return shared;
+        }
+        Set<Object> resolved = new LinkedHashSet<>(hashCapacity(ms.size()));
+        int i = 0;
+        for (Object element : ms) {
+            resolved.add(resolveValueIfNecessary(beanName, mbd, argName + "[" + i++ + "]", element));
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析<map>中的每一个key和value，规则同resolveManagedList
+     */
+    private Map<Object, Object> resolveManagedMap(String beanName, BeanDefinition mbd, String argName,
+                                                  ManagedMap<?, ?> mm, boolean shareable) throws BeansException {
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> shared = (Map<Object, Object>) mm.getResolvedLiterals();
+        if (shared != null && shareable) {
+            return shared;
+        }
+        if (shared != null) {
+            return new LinkedHashMap<>(shared);
+        }
+        if (shareable && isAllLiteral(mm.keySet()) && isAllLiteral(mm.values())) {
+            shared = Collections.unmodifiableMap(new LinkedHashMap<>(mm));
+            mm.setResolvedLiterals(shared);
+            return shared;
+        }
+        Map<Object, Object> resolved = new LinkedHashMap<>(hashCapacity(mm.size()));
+        for (Map.Entry<?, ?> entry : mm.entrySet()) {
+            Object key = resolveValueIfNecessary(beanName, mbd, argName + "[key]", entry.getKey());
+            resolved.put(key, resolveValueIfNecessary(beanName, mbd, argName + "[" + key + "]", entry.getValue()));
+        }
+        return resolved;
+    }
+
+    private boolean isAllLiteral(Collection<?> values) {
+        for (Object value : values) {
+            if (!isLiteral(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 放入size个元素也不需要扩容的HashMap/HashSet容量
+     */
+    private static int hashCapacity(int size) {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 需要自动装配的属性及其类型，按属性名排序。
+     * 同时记录了计算时的bean的类、BeanIntrospector和显式配置的属性名，用来判断是否还有效。
+     */
+    private static final class InjectionMetadata {
+
+        private final Class<?> beanClass;
+
+        private final BeanIntrospector introspector;
+
+        private final String[] explicitPropertyNames;
+
+        private final String[] propertyNames;
+
+        private final Class<?>[] propertyTypes;
+
+        InjectionMetadata(Class<?> beanClass, BeanIntrospector introspector, String[] explicitPropertyNames,
+                          String[] propertyNames, Class<?>[] propertyTypes) {
+            this.beanClass = beanClass;
+            this.introspector = introspector;
+            this.explicitPropertyNames = explicitPropertyNames;
+            this.propertyNames = propertyNames;
+            this.propertyTypes = propertyTypes;
+        }
+
+        boolean matches(Class<?> beanClass, BeanIntrospector introspector, MutablePropertyValues pvs) {
+            return (this.beanClass == beanClass && this.introspector == introspector &&
+                    (pvs != null ? pvs.hasPropertyNames(explicitPropertyNames) : explicitPropertyNames.length == 0));
+        }
+    }
 }
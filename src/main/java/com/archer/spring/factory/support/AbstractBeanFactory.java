@@ -6,8 +6,12 @@
 
 package com.archer.spring.factory.support;
 
+import com.archer.spring.convert.ConversionService;
+import com.archer.spring.convert.DefaultConversionService;
+import com.archer.spring.factory.BeanHandle;
 import com.archer.spring.factory.BeansException;
 import com.archer.spring.factory.PropertyEditorRegistrar;
+import com.archer.spring.factory.PropertyEditorSnapshot;
 import com.archer.spring.factory.config.ConfigurableBeanFactory;
 import com.archer.spring.factory.FactoryBean;
 import com.archer.spring.factory.config.BeanDefinition;
@@ -16,6 +20,7 @@ import com.archer.spring.utils.ClassUtils;
 
 import java.beans.PropertyEditor;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * BeanFactory模板类。
@@ -24,21 +29,27 @@ import java.util.*;
  * 管理的，因此ConfigurableBeanFactory.getBeanDefinition方法
  * 的也需要子类来填充具体实现。
  */
-public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
+public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport implements ConfigurableBeanFactory {
 
     /// MARK - Properties
 
-    // 单实例bean的缓存，需保证其线程安全
-    private final Map<String, Object> singletonMap = Collections.synchronizedMap(new HashMap<>());
-
     // 保存自定义的PropertyEditor
     private final Map<Class<?>, PropertyEditor> customEditors = new HashMap<>();
 
-    // 保存所有的bean后置处理器
-    private final List<BeanPostProcessor> beanPostProcessors = new ArrayList<>();
+    // 保存所有的bean后置处理器，创建bean时可能有多个线程同时遍历
+    private final List<BeanPostProcessor> beanPostProcessors = new CopyOnWriteArrayList<>();
+
+    // 保存所有的PropertyEditorRegistrar，按添加的顺序执行
+    private final Set<PropertyEditorRegistrar> propertyEditorRegistrars = new LinkedHashSet<>();
+
+    // customEditors和propertyEditorRegistrars的快照，为null表示需要重新构建
+    private volatile PropertyEditorSnapshot propertyEditorSnapshot;
 
-    // 保存所有的PropertyEditorRegistrar
-    private final Set<PropertyEditorRegistrar> propertyEditorRegistrars = new HashSet<>();
+    // 类型转换服务，所有BeanWrapper共享
+    private volatile ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    // 每次销毁单例都会递增，BeanHandle据此判断缓存的单例是否还有效
+    private volatile int singletonGeneration;
 
     /// MARK - Getters & Setters
 
@@ -51,24 +62,31 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
     }
 
     public Set<PropertyEditorRegistrar> getPropertyEditorRegistrars() {
-        return propertyEditorRegistrars;
+        return Collections.unmodifiableSet(propertyEditorRegistrars);
     }
 
-    /// MARK - Initializers
-
-    public AbstractBeanFactory() { }
-
-    /// MARK - Public methods
-
     /**
-     * 添加一个singleton bean到缓存中。
-     * 如果两个bean之间存在循环依赖，只要遵循
-     * 先创建再缓存后设置(依赖)的步骤，就可以解决。
+     * 返回自定义PropertyEditor的快照，所有BeanWrapper共享同一份，
+     * 只有在注册了新的PropertyEditor或PropertyEditorRegistrar之后才会重新构建。
      */
-    public void addSingleton(String beanName, Object singletonBean) {
-        singletonMap.put(beanName, singletonBean);
+    public PropertyEditorSnapshot getPropertyEditorSnapshot() {
+        PropertyEditorSnapshot snapshot = propertyEditorSnapshot;
+        if (snapshot == null) {
+            synchronized (customEditors) {
+                snapshot = propertyEditorSnapshot;
+                if (snapshot == null) {
+                    snapshot = PropertyEditorSnapshot.build(propertyEditorRegistrars, customEditors);
+                    propertyEditorSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
     }
 
+    /// MARK - Initializers
+
+    public AbstractBeanFactory() { }
+
     /// MARK - BeanFactory
 
     @Override
@@ -76,7 +94,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
         // 处理一下是FactoryBean的情况
         String resolvedBeanName = getResolvedBeanName(beanName);
         // 查一下缓存，看看是否已经创建了
-        Object bean = singletonMap.get(resolvedBeanName);
+        Object bean = getSingleton(resolvedBeanName);
         // 缓存命中
         if (bean != null) {
             // 可能是FactoryBean，根据请求的是
@@ -89,24 +107,16 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
         BeanDefinition mbd = getBeanDefinition(resolvedBeanName);
         if (mbd != null) {
             if (mbd.isSingleton()) {
-                // "先检查后执行"这类操作基本上都不是线程安全的
-                // Collection.synchronizedMap是以自身作为锁，这里也用同一把锁来保护
-                synchronized (singletonMap) {
-                    // getBean()方法并没有被整个同步住，因此这里再检查一下
-                    bean = singletonMap.get(resolvedBeanName);
-                    // 确实没有才创建
-                    if (bean == null) {
-                        System.out.println("正在创建singleton bean[" + resolvedBeanName + "]");
-                        bean = createBean(resolvedBeanName, mbd);
-                        // 加入缓存
-                        addSingleton(resolvedBeanName, bean);
-                    }
-                }
+                // 持有这个bean自己的创建锁再去创建，
+                // 创建其他bean的线程不会被阻塞
+                bean = getSingleton(resolvedBeanName, () -> {
+                    System.out.println("正在创建singleton bean[" + resolvedBeanName + "]");
+                    return createBean(resolvedBeanName, mbd);
+                });
                 // 这个bean可能是FactoryBean
                 return getBeanFromSharedInstance(beanName, bean);
             } else {
-                System.out.println("正在创建prototype bean[" + beanName + "]");
-                return createBean(beanName, mbd);
+                return createPrototype(beanName, mbd);
             }
         }
         return null;
@@ -122,11 +132,24 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
         return (T) bean;
     }
 
+    @Override
+    public <T> BeanHandle<T> getBeanHandle(String beanName, Class<T> requiredType) throws BeansException {
+        Objects.requireNonNull(requiredType, "requiredType不能为空");
+        String resolvedBeanName = getResolvedBeanName(beanName);
+        BeanDefinition mbd = null;
+        if (containsBeanDefinition(resolvedBeanName)) {
+            mbd = getBeanDefinition(resolvedBeanName);
+        } else if (!containsSingleton(resolvedBeanName)) {
+            throw new BeansException("找不到[" + beanName + "]对应的bean");
+        }
+        return new DefaultBeanHandle<>(beanName, resolvedBeanName, mbd, requiredType);
+    }
+
     @Override
     public boolean containsBean(String beanName) {
         String resolvedBeanName = getResolvedBeanName(beanName);
         // 先看看缓存是否命中
-        if (singletonMap.containsKey(resolvedBeanName)) {
+        if (containsSingleton(resolvedBeanName)) {
             return true;
         }
         // 再查询一下是否有对应的BeanDefinition
@@ -138,7 +161,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
     public boolean isSingleton(String beanName) throws BeansException {
         String resolvedBeanName = getResolvedBeanName(beanName);
         // 先看看缓存是否命中
-        if (singletonMap.containsKey(resolvedBeanName)) {
+        if (containsSingleton(resolvedBeanName)) {
             return true;
         }
         // 再查询一下对应的BeanDefinition
@@ -154,13 +177,29 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 
     @Override
     public void addPropertyEditorRegistrar(PropertyEditorRegistrar registrar) {
-        propertyEditorRegistrars.add(registrar);
+        synchronized (customEditors) {
+            propertyEditorRegistrars.add(registrar);
+            propertyEditorSnapshot = null;
+        }
     }
 
     @Override
     public void registerCustomEditor(Class<?> requiredType, Class<? extends PropertyEditor> propertyEditorClass) {
         PropertyEditor propertyEditor = ClassUtils.instantiateClass(propertyEditorClass);
-        customEditors.put(requiredType, propertyEditor);
+        synchronized (customEditors) {
+            customEditors.put(requiredType, propertyEditor);
+            propertyEditorSnapshot = null;
+        }
+    }
+
+    @Override
+    public void setConversionService(ConversionService conversionService) {
+        this.conversionService = conversionService;
+    }
+
+    @Override
+    public ConversionService getConversionService() {
+        return conversionService;
     }
 
     @Override
@@ -173,23 +212,20 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
         if (isFactoryBean(beanName)) {
             throw new BeansException("不能直接注册以&开头的bean");
         }
-        synchronized (singletonMap) {
-            if (singletonMap.containsKey(beanName)) {
-                throw new BeansException("已经注册有名称为[" + beanName + "]的bean了");
-            }
-            addSingleton(beanName, singletonObject);
-        }
+        super.registerSingleton(beanName, singletonObject);
     }
 
     @Override
     public void destroySingletons() {
-        synchronized (singletonMap) {
-            Set<String> keySet = singletonMap.keySet();
-            for (String key : keySet) {
-                destroySingleton(key, singletonMap.get(key));
+        for (String beanName : getSingletonNames()) {
+            Object singletonObject = removeSingleton(beanName);
+            if (singletonObject != null) {
+                destroySingleton(beanName, singletonObject);
             }
-            singletonMap.clear();
         }
+        // 单例全部移除之后再递增，BeanHandle在getBean之前读取generation，
+        // 在这之前拿到的旧单例一定会被判定为过期
+        singletonGeneration++;
     }
 
     @Override
@@ -216,14 +252,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
     /// MARK - Public
 
     public String[] getSingletonNames(Class<?> type) {
-        Set<String> matches = new HashSet<>();
-        for (String name : singletonMap.keySet()) {
-            Object sharedObj = singletonMap.get(name);
-            if (type == null || type.isAssignableFrom(sharedObj.getClass())) {
-                matches.add(name);
-            }
-        }
-        return matches.toArray(new String[0]);
+        return getSingletonNamesForType(type).clone();
     }
 
     /// MARK - Internal
@@ -240,15 +269,22 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
      */
     private String getResolvedBeanName(String beanName) {
         Objects.requireNonNull(beanName, "bean name不能为空。");
-        // FactoryBean本身是单例，是会进入singletonMap的
-        // 但它生产的对象却不会，因此在实现FactoryBean的getObject()方法时
-        // 需要保证返回的是单例。
+        // FactoryBean本身是单例，是会进入单例缓存的，
+        // 它生产的单例则保存在FactoryBeanRegistrySupport的缓存中
         if (beanName.startsWith(FactoryBean.FACTORY_BEAN_PREFIX)) {
             beanName = beanName.substring(FactoryBean.FACTORY_BEAN_PREFIX.length());
         }
         return beanName;
     }
 
+    /**
+     * 创建一个prototype bean
+     */
+    private Object createPrototype(String beanName, BeanDefinition mbd) {
+        System.out.println("正在创建prototype bean[" + beanName + "]");
+        return createBean(beanName, mbd);
+    }
+
     /**
      * 根据sharedInstance的类型和beanName来确定最终返回的对象
      */
@@ -261,20 +297,93 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
         }
         // 是FactoryBean的话要分一下情况
         if (isInstanceOfFactoryBean) {
-            // 请求FactoryBean生产的对象
-           if (!isPrefixed) {
-               try {
-                 sharedInstance = ((FactoryBean) sharedInstance).getObject();
-               } catch (Exception e) {
-                   throw new BeansException("[&" + beanName + "]对应的FactoryBean创建对象时抛出了异常");
-               }
-               if (sharedInstance == null) {
-                   throw new BeansException("无法从[&" + beanName + "]对应的FactoryBean中生产出对象");
-               }
-           }
+            // 请求FactoryBean生产的对象，单例的话只会生产一次
+            if (!isPrefixed) {
+                sharedInstance = getObjectFromFactoryBean((FactoryBean) sharedInstance, beanName);
+            }
         }
         // 不是FactoryBean或者请求FactoryBean
         // 本身，这种的话就直接返回了
         return sharedInstance;
     }
+
+    /// MARK - Internal class
+
+    /**
+     * BeanHandle的默认实现，bean name和BeanDefinition在创建句柄时就已经解析好了。
+     */
+    private class DefaultBeanHandle<T> implements BeanHandle<T> {
+
+        // 请求的bean name，可能带有&前缀
+        private final String beanName;
+
+        // 剔除&前缀后的bean name
+        private final String resolvedBeanName;
+
+        // 对应的BeanDefinition，直接注册的单例没有BeanDefinition
+        private final BeanDefinition mbd;
+
+        private final Class<T> requiredType;
+
+        // 缓存的单例及缓存时的singletonGeneration，只有确定每次获取都是同一个对象时才会缓存。
+        // 两者放在同一个对象里一起发布，并发的get不会把一次的bean和另一次的generation配在一起
+        private volatile CachedSingleton<T> cached;
+
+        DefaultBeanHandle(String beanName, String resolvedBeanName, BeanDefinition mbd, Class<T> requiredType) {
+            this.beanName = beanName;
+            this.resolvedBeanName = resolvedBeanName;
+            this.mbd = mbd;
+            this.requiredType = requiredType;
+        }
+
+        @Override
+        public String getBeanName() {
+            return beanName;
+        }
+
+        @Override
+        public T get() throws BeansException {
+            // 快速路径：两次volatile读，没有任何查找和分配
+            CachedSingleton<T> cached = this.cached;
+            if (cached != null && cached.generation == singletonGeneration) {
+                return cached.bean;
+            }
+            // prototype直接创建，跳过名称解析和BeanDefinition查找
+            if (mbd != null && !mbd.isSingleton()) {
+                return checkType(createPrototype(resolvedBeanName, mbd));
+            }
+            int generation = singletonGeneration;
+            T bean = checkType(getBean(beanName));
+            // 非单例的FactoryBean每次生产的对象都不一样，不能缓存
+            Object sharedInstance = getSingleton(resolvedBeanName);
+            if (isFactoryBean(beanName) || !(sharedInstance instanceof FactoryBean) ||
+                    ((FactoryBean) sharedInstance).isSingleton()) {
+                this.cached = new CachedSingleton<>(bean, generation);
+            }
+            return bean;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T checkType(Object bean) {
+            if (!requiredType.isInstance(bean)) {
+                throw new BeansException("[" + bean + "]不是" + requiredType.getName() + "类型");
+            }
+            return (T) bean;
+        }
+    }
+
+    /**
+     * DefaultBeanHandle缓存的单例。
+     */
+    private static final class CachedSingleton<T> {
+
+        private final T bean;
+
+        private final int generation;
+
+        CachedSingleton(T bean, int generation) {
+            this.bean = bean;
+            this.generation = generation;
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/22.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型到bean name的索引。
+ *
+ * 加入一个bean时，把它的名称登记到它的类型的每一个父类和接口下，
+ * 按类型查询时直接取出对应的名称，不需要再挨个调用isAssignableFrom。
+ * 查询结果以数组快照的形式缓存，加入或移除bean时只作废受影响的那些类型的快照。
+ */
+final class BeanTypeIndex {
+
+    /// MARK - Properties
+
+    private static final String[] NO_NAMES = new String[0];
+
+    // 每个类的所有父类和接口(包括它自己)
+    private final Map<Class<?>, Class<?>[]> assignableTypesCache = new ConcurrentHashMap<>(64);
+
+    // 类型 -> 可以赋值给此类型的bean name，按加入的顺序排列
+    private final Map<Class<?>, Set<String>> namesByType = new HashMap<>(64);
+
+    // bean name -> 登记时的类型
+    private final Map<String, Class<?>> typeByName = new HashMap<>(64);
+
+    // 查询结果的快照
+    private final Map<Class<?>, String[]> snapshots = new ConcurrentHashMap<>(64);
+
+    // 每次修改都会递增，用来判断依赖于此索引的缓存是否过期
+    private volatile int version;
+
+    /// MARK - Internal
+
+    /**
+     * 登记一个bean，同名的bean已存在时先移除旧的。
+     */
+    synchronized void add(String beanName, Class<?> type) {
+        if (typeByName.containsKey(beanName)) {
+            remove(beanName);
+        }
+        typeByName.put(beanName, type);
+        for (Class<?> assignableType : getAssignableTypes(type)) {
+            namesByType.computeIfAbsent(assignableType, key -> new LinkedHashSet<>()).add(beanName);
+            snapshots.remove(assignableType);
+        }
+        version++;
+    }
+
+    /**
+     * 移除一个bean。
+     */
+    synchronized void remove(String beanName) {
+        Class<?> type = typeByName.remove(beanName);
+        if (type == null) {
+            return;
+        }
+        for (Class<?> assignableType : getAssignableTypes(type)) {
+            Set<String> names = namesByType.get(assignableType);
+            if (names != null) {
+                names.remove(beanName);
+                if (names.isEmpty()) {
+                    namesByType.remove(assignableType);
+                }
+            }
+            snapshots.remove(assignableType);
+        }
+        version++;
+    }
+
+    /**
+     * 返回类型可以赋值给type的bean的名称，type为null时返回全部，基本类型没有任何bean可以匹配。
+     * 返回的数组是共享的快照，调用方不能修改。
+     */
+    String[] getNames(Class<?> type) {
+        if (type != null && type.isPrimitive()) {
+            return NO_NAMES;
+        }
+        Class<?> key = (type == null ? Object.class : type);
+        String[] names = snapshots.get(key);
+        if (names == null) {
+            synchronized (this) {
+                Set<String> matches = namesByType.get(key);
+                names = (matches == null ? new String[0] : matches.toArray(new String[0]));
+                snapshots.put(key, names);
+            }
+        }
+        return names;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * 返回clazz的所有父类和接口，包括它自己和Object。
+     */
+    private Class<?>[] getAssignableTypes(Class<?> clazz) {
+        Class<?>[] types = assignableTypesCache.get(clazz);
+        if (types == null) {
+            Set<Class<?>> result = new LinkedHashSet<>();
+            for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+                collectInterfaces(current, result);
+            }
+            result.add(Object.class);
+            types = result.toArray(new Class<?>[0]);
+            assignableTypesCache.put(clazz, types);
+        }
+        return types;
+    }
+
+    private static void collectInterfaces(Class<?> clazz, Set<Class<?>> result) {
+        if (result.add(clazz)) {
+            for (Class<?> ifc : clazz.getInterfaces()) {
+                collectInterfaces(ifc, result);
+            }
+        }
+    }
+}
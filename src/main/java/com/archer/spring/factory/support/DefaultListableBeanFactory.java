@@ -8,10 +8,18 @@ package com.archer.spring.factory.support;
 
 import com.archer.spring.factory.BeansException;
 import com.archer.spring.factory.FactoryBean;
+import com.archer.spring.factory.ObjectProvider;
 import com.archer.spring.factory.config.BeanDefinition;
 import com.archer.spring.factory.config.ConfigurableListableBeanFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 基础的BeanFactory实现。
@@ -27,6 +35,53 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     // 容器中所有的BeanDefinition
     private Map<String, BeanDefinition> registeredBeanDefinitions = new HashMap<>();
 
+    // BeanDefinition中的类型到bean name的索引
+    private final BeanTypeIndex beanDefinitionTypeIndex = new BeanTypeIndex();
+
+    // 只包含单例的getBeansOfType的结果，key是查询的类型
+    private final Map<Class<?>, CachedBeansOfType> singletonBeansOfTypeCache = new ConcurrentHashMap<>(16);
+
+    // 同上，但结果中包含FactoryBean生产的对象
+    private final Map<Class<?>, CachedBeansOfType> singletonBeansOfTypeWithFactoryBeansCache = new ConcurrentHashMap<>(16);
+
+    // 是否根据依赖关系并行地预实例化单例，默认串行
+    private boolean parallelPreInstantiation = false;
+
+    // 并行预实例化时使用的线程数
+    private int preInstantiationParallelism = Runtime.getRuntime().availableProcessors();
+
+    // 最近一次预实例化的统计信息
+    private volatile PreInstantiationStatistics preInstantiationStatistics;
+
+    /// MARK - Getters & Setters
+
+    public boolean isParallelPreInstantiation() {
+        return parallelPreInstantiation;
+    }
+
+    /**
+     * 开启后，preInstantiateSingletons会根据bean之间的依赖关系，
+     * 把互不依赖的单例放到ForkJoinPool中并行创建。
+     */
+    public void setParallelPreInstantiation(boolean parallelPreInstantiation) {
+        this.parallelPreInstantiation = parallelPreInstantiation;
+    }
+
+    public int getPreInstantiationParallelism() {
+        return preInstantiationParallelism;
+    }
+
+    public void setPreInstantiationParallelism(int preInstantiationParallelism) {
+        if (preInstantiationParallelism < 1) {
+            throw new IllegalArgumentException("并行度至少为1");
+        }
+        this.preInstantiationParallelism = preInstantiationParallelism;
+    }
+
+    public PreInstantiationStatistics getPreInstantiationStatistics() {
+        return preInstantiationStatistics;
+    }
+
     /// MARK - Initializers
 
     public DefaultListableBeanFactory() { }
@@ -48,8 +103,10 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     }
 
     @Override
-    protected Map<String, Object> findMatchingBeans(Class<?> requiredType) throws BeansException {
-        return getBeansOfType(requiredType, true, true);
+    protected Map<String, Class<?>> findAutowireCandidates(Class<?> requiredType) throws BeansException {
+        Map<String, Class<?>> candidates = new LinkedHashMap<>();
+        candidateStream(requiredType).forEach(candidate -> candidates.put(candidate.getKey(), candidate.getValue()));
+        return candidates;
     }
 
     /// MARK - BeanDefinitionRegistry
@@ -61,27 +118,33 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         }
         beanDefinitionNames.add(beanName);
         registeredBeanDefinitions.put(beanName, beanDefinition);
+        beanDefinitionTypeIndex.add(beanName, beanDefinition.getBeanClass());
     }
 
     /// MARK - ConfigurableListableBeanFactory
 
     @Override
     public void preInstantiateSingletons() {
+        List<String> beanNames = new ArrayList<>();
         for (String beanName : beanDefinitionNames) {
             if (containsBeanDefinition(beanName)) {
                 BeanDefinition bd = getBeanDefinition(beanName);
                 if (bd.isSingleton() && !bd.isLazyInit()) {
-                    if (FactoryBean.class.isAssignableFrom(bd.getBeanClass())) {
-                        FactoryBean factory = (FactoryBean) getBean( FactoryBean.FACTORY_BEAN_PREFIX + beanName);
-                        if (factory.isSingleton()) {
-                            getBean(beanName);
-                        }
-                    } else {
-                        getBean(beanName);
-                    }
+                    beanNames.add(beanName);
                 }
             }
         }
+        if (parallelPreInstantiation && preInstantiationParallelism > 1 && beanNames.size() > 1) {
+            preInstantiateInParallel(beanNames);
+        } else {
+            long start = System.nanoTime();
+            for (String beanName : beanNames) {
+                preInstantiateSingleton(beanName);
+            }
+            long elapsed = System.nanoTime() - start;
+            preInstantiationStatistics = new PreInstantiationStatistics(false, beanNames.size(),
+                    beanNames.size(), 0, 0, 1, elapsed, elapsed);
+        }
     }
 
     @Override
@@ -96,19 +159,77 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 
     @Override
     public String[] getBeanDefinitionNames(Class<?> type) {
-        List<String> matches = new ArrayList<>();
-        for (String beanName : beanDefinitionNames) {
-            if (type == null ||
-                    type.isAssignableFrom(getBeanDefinition(beanName).getBeanClass())) {
-                matches.add(beanName);
-            }
-        }
-        return matches.toArray(new String[0]);
+        return beanDefinitionTypeIndex.getNames(type).clone();
     }
 
     @Override
     public Map<String, Object> getBeansOfType(Class<?> type, boolean includePrototypes, boolean includeFactoryBeans) throws BeansException {
-        String[] beanNames = getBeanDefinitionNames(type);
+        // 包含prototype的查询每次都会创建新的对象，没法缓存
+        if (includePrototypes || type == null) {
+            return doGetBeansOfType(type, includePrototypes, includeFactoryBeans);
+        }
+        Map<Class<?>, CachedBeansOfType> cache = (includeFactoryBeans ?
+                singletonBeansOfTypeWithFactoryBeansCache : singletonBeansOfTypeCache);
+        // 先记下版本，查询过程中创建的单例会让版本变化，下次查询时再重新计算一次
+        int definitionVersion = beanDefinitionTypeIndex.getVersion();
+        int singletonVersion = getSingletonTypeIndexVersion();
+        CachedBeansOfType cached = cache.get(type);
+        if (cached == null || !cached.isValid(definitionVersion, singletonVersion)) {
+            cached = new CachedBeansOfType(definitionVersion, singletonVersion,
+                    doGetBeansOfType(type, false, includeFactoryBeans));
+            cache.put(type, cached);
+        }
+        return new HashMap<>(cached.beans);
+    }
+
+    @Override
+    public <T> ObjectProvider<T> getBeanProvider(Class<T> type) throws BeansException {
+        Objects.requireNonNull(type, "类型不能为空");
+        return new DefaultObjectProvider<>(type);
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 按定义的顺序返回与requiredType兼容的bean的名称及其类型，元素在被消费时才计算。
+     * 只根据BeanDefinition和FactoryBean.getObjectType()判断，最多只会创建FactoryBean本身。
+     * 这里用Stream.concat而不是flatMap，是为了让findFirst、limit这样的短路操作真正生效。
+     */
+    private Stream<Map.Entry<String, Class<?>>> candidateStream(Class<?> requiredType) {
+        Stream<Map.Entry<String, Class<?>>> definitions = Arrays.stream(beanDefinitionTypeIndex.getNames(requiredType))
+                .map(beanName -> candidate(beanName, getBeanDefinition(beanName).getBeanClass()))
+                // FactoryBean按它生产的对象来匹配，下面单独处理
+                .filter(candidate -> !FactoryBean.class.isAssignableFrom(candidate.getValue()));
+        // 通过registerSingleton直接注册的单例
+        Stream<Map.Entry<String, Class<?>>> singletons = Arrays.stream(getSingletonNamesForType(requiredType))
+                .filter(beanName -> !containsBeanDefinition(beanName))
+                .map(beanName -> candidate(beanName, getSingleton(beanName)))
+                .filter(candidate -> candidate.getValue() != null && !FactoryBean.class.isAssignableFrom(candidate.getValue()));
+        // 只创建FactoryBean本身，根据getObjectType()判断它生产的对象是否匹配
+        Stream<String> factoryNames = Stream.concat(Arrays.stream(beanDefinitionTypeIndex.getNames(FactoryBean.class)),
+                Arrays.stream(getSingletonNamesForType(FactoryBean.class)).filter(beanName -> !containsBeanDefinition(beanName)));
+        Stream<Map.Entry<String, Class<?>>> factoryProducts = factoryNames
+                .map(factoryName -> {
+                    FactoryBean factory = (FactoryBean) getBean(FactoryBean.FACTORY_BEAN_PREFIX + factoryName);
+                    return candidate(factoryName, factory.getObjectType());
+                })
+                .filter(candidate -> candidate.getValue() != null && requiredType.isAssignableFrom(candidate.getValue()));
+        return Stream.concat(Stream.concat(definitions, singletons), factoryProducts);
+    }
+
+    private static Map.Entry<String, Class<?>> candidate(String beanName, Class<?> type) {
+        return new AbstractMap.SimpleImmutableEntry<>(beanName, type);
+    }
+
+    private static Map.Entry<String, Class<?>> candidate(String beanName, Object singletonObject) {
+        return candidate(beanName, singletonObject != null ? singletonObject.getClass() : null);
+    }
+
+    /**
+     * 按类型查找bean，不经过缓存。
+     */
+    private Map<String, Object> doGetBeansOfType(Class<?> type, boolean includePrototypes, boolean includeFactoryBeans) {
+        String[] beanNames = beanDefinitionTypeIndex.getNames(type);
         Map<String, Object> result = new HashMap<>();
         for (String beanName : beanNames) {
             if (includePrototypes || isSingleton(beanName)) {
@@ -116,13 +237,13 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             }
         }
 
-        String[] singletonNames = getSingletonNames(type);
+        String[] singletonNames = getSingletonNamesForType(type);
         for (String beanName : singletonNames) {
             result.put(beanName, getBean(beanName));
         }
 
         if (includeFactoryBeans) {
-            String[] factoryNames = getBeanDefinitionNames(FactoryBean.class);
+            String[] factoryNames = beanDefinitionTypeIndex.getNames(FactoryBean.class);
             for (String factoryName : factoryNames) {
                 try {
                     FactoryBean factory = (FactoryBean) getBean(FactoryBean.FACTORY_BEAN_PREFIX + factoryName);
@@ -143,4 +264,169 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 
         return result;
     }
+
+    /**
+     * 预实例化一个单例，是FactoryBean的话，它生产的单例也一并创建。
+     */
+    private void preInstantiateSingleton(String beanName) {
+        BeanDefinition bd = getBeanDefinition(beanName);
+        if (FactoryBean.class.isAssignableFrom(bd.getBeanClass())) {
+            FactoryBean factory = (FactoryBean) getBean(FactoryBean.FACTORY_BEAN_PREFIX + beanName);
+            if (factory.isSingleton()) {
+                getBean(beanName);
+            }
+        } else {
+            getBean(beanName);
+        }
+    }
+
+    /**
+     * 根据依赖图并行地预实例化单例。
+     * 每个分量在它依赖的分量都完成后才开始创建，含有循环依赖的分量在一个线程内串行创建。
+     * 依赖图之外的隐式依赖可能导致跨线程的循环等待，这样失败的bean最后会串行地重试一遍。
+     */
+    private void preInstantiateInParallel(List<String> beanNames) {
+        long start = System.nanoTime();
+        SingletonDependencyGraph graph = SingletonDependencyGraph.build(this, beanNames);
+        List<SingletonDependencyGraph.Component> components = graph.getComponents();
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxConcurrency = new AtomicInteger();
+        LongAdder busyNanos = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(preInstantiationParallelism);
+        try {
+            Map<SingletonDependencyGraph.Component, CompletableFuture<Void>> futures = new HashMap<>();
+            // 分量是按依赖在前的顺序排列的，依赖的future总是已经存在
+            for (SingletonDependencyGraph.Component component : components) {
+                Runnable task = () -> {
+                    maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    long taskStart = System.nanoTime();
+                    try {
+                        for (String beanName : component.getBeanNames()) {
+                            preInstantiateSingleton(beanName);
+                        }
+                    } finally {
+                        busyNanos.add(System.nanoTime() - taskStart);
+                        running.decrementAndGet();
+                    }
+                };
+                CompletableFuture<Void> future;
+                if (component.getDependencies().isEmpty()) {
+                    future = CompletableFuture.runAsync(task, pool);
+                } else {
+                    CompletableFuture<?>[] dependencies = component.getDependencies().stream()
+                            .map(futures::get).toArray(CompletableFuture[]::new);
+                    future = CompletableFuture.allOf(dependencies).thenRunAsync(task, pool);
+                }
+                futures.put(component, future);
+            }
+            // 等所有任务结束，失败的留给下面串行重试
+            for (CompletableFuture<Void> future : futures.values()) {
+                try {
+                    future.join();
+                } catch (Exception ignore) { }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 串行地补上并行阶段没能创建的bean，真正的创建错误会在这里抛出
+        int fallbackCount = 0;
+        for (String beanName : beanNames) {
+            if (!containsSingleton(beanName)) {
+                fallbackCount++;
+                preInstantiateSingleton(beanName);
+            }
+        }
+
+        int cyclicCount = 0;
+        for (SingletonDependencyGraph.Component component : components) {
+            if (component.isCyclic()) {
+                cyclicCount++;
+            }
+        }
+        preInstantiationStatistics = new PreInstantiationStatistics(true, beanNames.size(), components.size(),
+                cyclicCount, fallbackCount, maxConcurrency.get(), System.nanoTime() - start, busyNanos.sum());
+        System.out.println("并行预实例化单例完成: " + preInstantiationStatistics);
+    }
+
+    /// MARK - Internal class
+
+    /**
+     * ObjectProvider的默认实现，每次调用都会重新查找候选的bean，
+     * 因此之后注册的bean也能被找到。
+     */
+    private final class DefaultObjectProvider<T> implements ObjectProvider<T> {
+
+        private final Class<T> requiredType;
+
+        DefaultObjectProvider(Class<T> requiredType) {
+            this.requiredType = requiredType;
+        }
+
+        @Override
+        public T getObject() throws BeansException {
+            T object = getIfAvailable();
+            if (object == null) {
+                throw new BeansException("找不到类型为[" + requiredType.getName() + "]的bean");
+            }
+            return object;
+        }
+
+        @Override
+        public T getIfAvailable() throws BeansException {
+            List<String> beanNames = findAtMostTwo();
+            if (beanNames.size() > 1) {
+                throw new BeansException("类型为[" + requiredType.getName() + "]的bean不止一个，至少有" + beanNames);
+            }
+            return (beanNames.isEmpty() ? null : getBean(beanNames.get(0), requiredType));
+        }
+
+        @Override
+        public T getIfUnique() throws BeansException {
+            List<String> beanNames = findAtMostTwo();
+            return (beanNames.size() == 1 ? getBean(beanNames.get(0), requiredType) : null);
+        }
+
+        @Override
+        public Stream<String> beanNames() {
+            return candidateStream(requiredType).map(Map.Entry::getKey);
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return beanNames().map(beanName -> getBean(beanName, requiredType));
+        }
+
+        /**
+         * 判断是否唯一只需要找到两个候选。
+         */
+        private List<String> findAtMostTwo() {
+            return beanNames().limit(2).collect(Collectors.toList());
+        }
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 缓存的getBeansOfType结果，以及计算时两个类型索引的版本。
+     */
+    private static final class CachedBeansOfType {
+
+        private final int definitionVersion;
+
+        private final int singletonVersion;
+
+        private final Map<String, Object> beans;
+
+        CachedBeansOfType(int definitionVersion, int singletonVersion, Map<String, Object> beans) {
+            this.definitionVersion = definitionVersion;
+            this.singletonVersion = singletonVersion;
+            this.beans = beans;
+        }
+
+        boolean isValid(int definitionVersion, int singletonVersion) {
+            return this.definitionVersion == definitionVersion && this.singletonVersion == singletonVersion;
+        }
+    }
 }
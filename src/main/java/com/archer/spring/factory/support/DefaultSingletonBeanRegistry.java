@@ -0,0 +1,448 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.ObjectFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单例bean的注册中心，也是AbstractBeanFactory的基类。
+ *
+ * 读取是无锁的，单例都保存在ConcurrentHashMap中，缓存命中时不需要任何同步。
+ * 创建则以bean为粒度加锁，每个bean name对应一把ReentrantLock，因此创建不同bean的
+ * 线程之间互不阻塞。锁是可重入的，同一线程内的循环引用照样可以通过提前缓存来解决。
+ * 这里用ReentrantLock而不是synchronized，等待的如果是虚拟线程，也不会钉住载体线程。
+ *
+ * 单例分三级缓存：
+ * 1. singletonObjects 完整初始化好的单例，所有线程可见；
+ * 2. earlySingletonObjects 提前暴露的引用，用来解决循环依赖；
+ * 3. singletonFactories 生成提前暴露的引用的工厂，第一次被循环引用时才调用。
+ * 后两级缓存只对持有创建锁的线程(也就是正在创建这个bean的线程)可见，
+ * 其他线程看不到还没有填充属性、没有经过后置处理的半成品，只会等待创建锁。
+ *
+ * 两个线程分别持有A、B的创建锁又互相等待对方时会形成死锁。等待锁的线程会周期性地检查等待链，
+ * 发现成环时，如果等待的bean已经提前暴露了引用，就直接拿走这个引用，不再等待创建锁，
+ * 效果和在单个线程中先创建了那个bean一样，合法的循环依赖不会因为线程的时序而失败。
+ * 环上没有任何一个bean提前暴露了引用(比如都是构造函数注入)时，无论按什么顺序都无法创建，这时抛出BeansException。
+ *
+ * 创建成功后单例都从缓存中读取，不再需要创建锁，没有线程在等待的锁会被移除。
+ */
+public class DefaultSingletonBeanRegistry {
+
+    /// MARK - Properties
+
+    // 等待创建锁时，两次死锁检测之间的间隔
+    private static final long DEADLOCK_CHECK_INTERVAL_MILLIS = 10;
+
+    // 完整的单实例bean的缓存
+    private final Map<String, Object> singletonObjects = new ConcurrentHashMap<>(64);
+
+    // 提前暴露的单实例bean的缓存，只对正在创建它的线程可见
+    private final Map<String, Object> earlySingletonObjects = new ConcurrentHashMap<>(16);
+
+    // 生成提前暴露的引用的工厂，只对正在创建它的线程可见
+    private final Map<String, ObjectFactory<?>> singletonFactories = new ConcurrentHashMap<>(16);
+
+    // 每个bean name对应的创建锁
+    private final Map<String, CreationLock> creationLocks = new ConcurrentHashMap<>(64);
+
+    // 每个线程正在等待的创建锁，用于死锁检测
+    private final Map<Thread, Waiter> waitingLocks = new ConcurrentHashMap<>();
+
+    // 跨线程交出提前暴露的引用时持有，保证期间环上的其他线程都还阻塞着
+    private final Object earlyReferenceMonitor = new Object();
+
+    // 每个bean的创建锁的竞争情况
+    private final Map<String, SingletonCreationMetrics> creationMetrics = new ConcurrentHashMap<>(64);
+
+    // 单例的实际类型到bean name的索引
+    private final BeanTypeIndex singletonTypeIndex = new BeanTypeIndex();
+
+    /// MARK - Public methods
+
+    /**
+     * 添加一个完整的singleton bean到缓存中。
+     */
+    public void addSingleton(String beanName, Object singletonObject) {
+        singletonObjects.put(beanName, singletonObject);
+        earlySingletonObjects.remove(beanName);
+        singletonFactories.remove(beanName);
+        singletonTypeIndex.add(beanName, singletonObject.getClass());
+    }
+
+    /**
+     * 添加一个生成提前暴露的引用的工厂。
+     * 如果两个bean之间存在循环依赖，只要遵循
+     * 先创建再暴露后设置(依赖)的步骤，就可以解决。
+     */
+    public void addSingletonFactory(String beanName, ObjectFactory<?> singletonFactory) {
+        Objects.requireNonNull(singletonFactory, "singletonFactory不能为空");
+        if (!singletonObjects.containsKey(beanName)) {
+            singletonFactories.put(beanName, singletonFactory);
+            earlySingletonObjects.remove(beanName);
+        }
+    }
+
+    /**
+     * 直接注册一个单例，如果已经存在同名的单例则抛出异常。
+     */
+    public void registerSingleton(String beanName, Object singletonObject) throws BeansException {
+        Objects.requireNonNull(beanName, "bean name不能为空");
+        Objects.requireNonNull(singletonObject, "单例对象不能为空");
+        if (singletonObjects.putIfAbsent(beanName, singletonObject) != null) {
+            throw new BeansException("已经注册有名称为[" + beanName + "]的bean了");
+        }
+        singletonTypeIndex.add(beanName, singletonObject.getClass());
+    }
+
+    /**
+     * 返回缓存的单例，没有的话返回null。不会加锁。
+     * 当前线程正在创建这个bean的话，会返回提前暴露的引用。
+     */
+    public Object getSingleton(String beanName) {
+        return getSingleton(beanName, true);
+    }
+
+    /**
+     * 返回缓存的单例，没有的话持有beanName对应的创建锁，
+     * 通过singletonFactory创建并缓存起来。
+     */
+    public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) throws BeansException {
+        Object singletonObject = singletonObjects.get(beanName);
+        if (singletonObject != null) {
+            return singletonObject;
+        }
+        return executeWithCreationLock(beanName, true, () -> {
+            // 等待期间可能已经被其他线程创建好了，再检查一下
+            Object created = singletonObjects.get(beanName);
+            if (created == null) {
+                // 当前线程重入了这个bean的创建，却又拿不到提前暴露的引用(比如构造函数之间的循环依赖)
+                if (creationLocks.get(beanName).getHoldCount() > 1) {
+                    throw new BeansException("[" + beanName + "]正在创建中，存在无法解决的循环依赖");
+                }
+                long start = System.nanoTime();
+                boolean succeeded = false;
+                try {
+                    created = singletonFactory.getObject();
+                    succeeded = true;
+                } finally {
+                    if (!succeeded) {
+                        // 创建失败，清理掉可能提前暴露的半成品
+                        earlySingletonObjects.remove(beanName);
+                        singletonFactories.remove(beanName);
+                    }
+                }
+                creationMetrics.get(beanName).recordCreation(System.nanoTime() - start);
+                addSingleton(beanName, created);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * 是否缓存有beanName对应的单例。
+     */
+    public boolean containsSingleton(String beanName) {
+        return singletonObjects.containsKey(beanName);
+    }
+
+    /**
+     * 返回所有已缓存的单例的名称。
+     */
+    public String[] getSingletonNames() {
+        return singletonObjects.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * 返回实际类型可以赋值给type的单例的名称，type为null时返回全部。
+     * 返回的数组是共享的，不要修改它。
+     */
+    public String[] getSingletonNamesForType(Class<?> type) {
+        return singletonTypeIndex.getNames(type);
+    }
+
+    /**
+     * 返回各个单例bean的创建锁的竞争情况，key是bean name。
+     */
+    public Map<String, SingletonCreationMetrics> getSingletonCreationMetrics() {
+        return Collections.unmodifiableMap(creationMetrics);
+    }
+
+    /// MARK - Protected
+
+    /**
+     * 返回缓存的单例，不会加锁。
+     * 只有当前线程正在创建这个bean时才会去查看提前暴露的引用，
+     * allowEarlyReference决定是否可以调用工厂生成这个引用。
+     */
+    protected Object getSingleton(String beanName, boolean allowEarlyReference) {
+        Object singletonObject = singletonObjects.get(beanName);
+        if (singletonObject == null && isSingletonCurrentlyInCreationByCurrentThread(beanName)) {
+            // 下面两级缓存只有持有创建锁的线程会访问；跨线程交出引用时持有者阻塞在等待链上，也不会同时访问
+            singletonObject = earlySingletonObjects.get(beanName);
+            if (singletonObject == null && allowEarlyReference) {
+                ObjectFactory<?> singletonFactory = singletonFactories.remove(beanName);
+                if (singletonFactory != null) {
+                    singletonObject = singletonFactory.getObject();
+                    earlySingletonObjects.put(beanName, singletonObject);
+                }
+            }
+        }
+        return singletonObject;
+    }
+
+    /**
+     * 持有beanName对应的创建锁执行action，同一个bean的action不会并发执行。
+     */
+    protected <T> T executeWithCreationLock(String beanName, ObjectFactory<T> action) throws BeansException {
+        return executeWithCreationLock(beanName, false, action);
+    }
+
+    /**
+     * 当前线程是否正在创建beanName对应的单例。
+     */
+    protected boolean isSingletonCurrentlyInCreationByCurrentThread(String beanName) {
+        CreationLock lock = creationLocks.get(beanName);
+        return (lock != null && lock.isHeldByCurrentThread());
+    }
+
+    /**
+     * 从缓存中移除beanName对应的单例，返回被移除的对象。
+     */
+    protected Object removeSingleton(String beanName) {
+        earlySingletonObjects.remove(beanName);
+        singletonFactories.remove(beanName);
+        Object singletonObject = singletonObjects.remove(beanName);
+        if (singletonObject != null) {
+            singletonTypeIndex.remove(beanName);
+        }
+        CreationLock lock = creationLocks.get(beanName);
+        if (lock != null) {
+            pruneCreationLock(lock);
+        }
+        return singletonObject;
+    }
+
+    /**
+     * 单例的类型索引的版本，每次加入或移除单例都会变化。
+     * 依赖于"某个类型有哪些单例"的缓存可以据此判断是否过期。
+     */
+    protected int getSingletonTypeIndexVersion() {
+        return singletonTypeIndex.getVersion();
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 持有beanName对应的创建锁执行action。acceptEarlyReference为true时，如果等待创建锁时出现了跨线程的循环依赖，
+     * 直接返回这个bean提前暴露的引用，不执行action。
+     */
+    private <T> T executeWithCreationLock(String beanName, boolean acceptEarlyReference,
+                                          ObjectFactory<T> action) throws BeansException {
+        SingletonCreationMetrics metrics = creationMetrics.computeIfAbsent(beanName, name -> new SingletonCreationMetrics());
+        CreationLock lock;
+        while (true) {
+            lock = creationLocks.computeIfAbsent(beanName, CreationLock::new);
+            Object earlyReference = acquireCreationLock(lock, metrics, acceptEarlyReference);
+            if (earlyReference != null) {
+                @SuppressWarnings("unchecked")
+                T result = (T) earlyReference;
+                return result;
+            }
+            if (creationLocks.get(beanName) == lock) {
+                break;
+            }
+            // 拿到锁之前它已经被移除了，换成当前的锁，保证同一个bean只有一把有效的锁
+            lock.unlock();
+        }
+        T result;
+        try {
+            result = action.getObject();
+        } finally {
+            lock.unlock();
+        }
+        // 结果已经缓存，之后的请求都走无锁的缓存
+        pruneCreationLock(lock);
+        return result;
+    }
+
+    /**
+     * 没有线程持有或者等待lock时把它从creationLocks中移除，防止creationLocks随着创建过的bean无限增长。
+     * 刚刚拿到lock还没来得及加锁的线程，加锁后发现它已被移除，会换成新的锁。
+     */
+    private void pruneCreationLock(CreationLock lock) {
+        if (!lock.isLocked() && !lock.hasQueuedThreads()) {
+            creationLocks.remove(lock.getBeanName(), lock);
+        }
+    }
+
+    /**
+     * 获取创建锁，需要等待的话记录等待时间，并周期性地做死锁检测。
+     * 返回null表示已经持有创建锁，否则返回从环上拿到的提前暴露的引用，这时没有持有创建锁。
+     */
+    private Object acquireCreationLock(CreationLock lock, SingletonCreationMetrics metrics, boolean acceptEarlyReference) {
+        if (lock.tryLock()) {
+            metrics.recordAcquisition();
+            return null;
+        }
+        Thread current = Thread.currentThread();
+        long start = System.nanoTime();
+        waitingLocks.put(current, new Waiter(lock, acceptEarlyReference));
+        try {
+            do {
+                Object earlyReference = checkForDeadlock(lock, current, acceptEarlyReference);
+                if (earlyReference != null) {
+                    return earlyReference;
+                }
+            } while (!lock.tryLock(DEADLOCK_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            current.interrupt();
+            throw new BeansException("等待[" + lock.getBeanName() + "]的创建锁时线程被中断", e);
+        } finally {
+            waitingLocks.remove(current);
+        }
+        metrics.recordContendedAcquisition(System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * 沿着"锁的持有者正在等待的锁"一路找下去，回到当前线程说明出现了死锁。
+     * 出现死锁时，能拿到lock对应的bean提前暴露的引用就返回它；否则只要环上还有其他线程能拿到引用，就继续等待它解开；
+     * 都拿不到的话抛出BeansException。
+     */
+    private Object checkForDeadlock(CreationLock lock, Thread current, boolean acceptEarlyReference) {
+        if (!isWaitingInCycle(lock, current)) {
+            return null;
+        }
+        synchronized (earlyReferenceMonitor) {
+            // 在监视器内重新确认。环上的线程都在互相等待，只能从这里脱身，因此交出引用期间它们不会继续创建
+            if (!isWaitingInCycle(lock, current)) {
+                return null;
+            }
+            if (acceptEarlyReference) {
+                Object earlyReference = takeEarlyReference(lock.getBeanName());
+                if (earlyReference != null) {
+                    // 在监视器内退出等待，其他线程看到的环随之解开
+                    waitingLocks.remove(current);
+                    return earlyReference;
+                }
+            }
+            if (!isResolvableCycle(lock, current)) {
+                throw new BeansException("检测到无法解决的跨线程循环依赖，[" + lock.getBeanName() +
+                        "]正在被另一个线程创建，而环上的bean都没有提前暴露引用");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从lock出发沿等待链能否回到current。
+     */
+    private boolean isWaitingInCycle(CreationLock lock, Thread current) {
+        CreationLock next = lock;
+        // 等待链的长度不会超过等待中的线程数，这里做个上限，防止意外的无限循环
+        for (int depth = 0; next != null && depth <= waitingLocks.size(); depth++) {
+            Thread owner = next.owner();
+            if (owner == null) {
+                return false;
+            }
+            if (owner == current) {
+                return true;
+            }
+            Waiter waiter = waitingLocks.get(owner);
+            next = (waiter != null ? waiter.lock : null);
+        }
+        return false;
+    }
+
+    /**
+     * 环上是否有线程可以拿到它等待的bean提前暴露的引用。
+     */
+    private boolean isResolvableCycle(CreationLock lock, Thread current) {
+        CreationLock next = lock;
+        boolean acceptEarlyReference = waitingLocks.get(current).acceptEarlyReference;
+        for (int depth = 0; next != null && depth <= waitingLocks.size(); depth++) {
+            if (acceptEarlyReference && hasEarlyReference(next.getBeanName())) {
+                return true;
+            }
+            Thread owner = next.owner();
+            if (owner == null || owner == current) {
+                return false;
+            }
+            Waiter waiter = waitingLocks.get(owner);
+            if (waiter == null) {
+                return false;
+            }
+            next = waiter.lock;
+            acceptEarlyReference = waiter.acceptEarlyReference;
+        }
+        return false;
+    }
+
+    private boolean hasEarlyReference(String beanName) {
+        return earlySingletonObjects.containsKey(beanName) || singletonFactories.containsKey(beanName);
+    }
+
+    /**
+     * 在earlyReferenceMonitor内调用，取得另一个线程正在创建的bean提前暴露的引用。
+     * 那个线程之后检查earlySingletonObjects时会看到同一个引用。
+     */
+    private Object takeEarlyReference(String beanName) {
+        Object earlyReference = earlySingletonObjects.get(beanName);
+        if (earlyReference == null) {
+            ObjectFactory<?> singletonFactory = singletonFactories.remove(beanName);
+            if (singletonFactory != null) {
+                earlyReference = singletonFactory.getObject();
+                earlySingletonObjects.put(beanName, earlyReference);
+            }
+        }
+        return earlyReference;
+    }
+
+    /**
+     * 一个正在等待创建锁的线程。
+     */
+    private static final class Waiter {
+
+        private final CreationLock lock;
+
+        // 是否可以用提前暴露的引用代替等待
+        private final boolean acceptEarlyReference;
+
+        Waiter(CreationLock lock, boolean acceptEarlyReference) {
+            this.lock = lock;
+            this.acceptEarlyReference = acceptEarlyReference;
+        }
+    }
+
+    /**
+     * 单个bean的创建锁，暴露出持有者以便做死锁检测。
+     */
+    private static class CreationLock extends ReentrantLock {
+
+        private final String beanName;
+
+        CreationLock(String beanName) {
+            this.beanName = beanName;
+        }
+
+        String getBeanName() {
+            return beanName;
+        }
+
+        Thread owner() {
+            return getOwner();
+        }
+    }
+}
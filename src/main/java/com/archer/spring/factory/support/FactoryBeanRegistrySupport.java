@@ -0,0 +1,96 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/22.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.FactoryBean;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在DefaultSingletonBeanRegistry的基础上，负责从FactoryBean中获取对象。
+ *
+ * 单例FactoryBean生产的对象会被缓存起来，getObject()只会被调用一次，
+ * 并发请求时也是如此，实现FactoryBean时不再需要自己去做缓存。
+ */
+public abstract class FactoryBeanRegistrySupport extends DefaultSingletonBeanRegistry {
+
+    /// MARK - Properties
+
+    // 单例FactoryBean生产的对象的缓存，key是FactoryBean的bean name(不带&)
+    private final Map<String, Object> factoryBeanObjectCache = new ConcurrentHashMap<>(16);
+
+    // 正在从FactoryBean中获取的对象，只会被持有对应创建锁的线程访问
+    private final Set<String> objectsCurrentlyInCreation = ConcurrentHashMap.newKeySet();
+
+    /// MARK - Protected
+
+    /**
+     * 从FactoryBean中获取对象，单例FactoryBean的对象会被缓存起来。
+     */
+    protected Object getObjectFromFactoryBean(FactoryBean factory, String beanName) throws BeansException {
+        if (factory.isSingleton() && containsSingleton(beanName)) {
+            Object object = factoryBeanObjectCache.get(beanName);
+            if (object != null) {
+                return object;
+            }
+            return executeWithCreationLock(beanName, () -> {
+                // 等待期间可能已经被其他线程创建好了，再检查一下
+                Object created = factoryBeanObjectCache.get(beanName);
+                if (created == null) {
+                    if (!objectsCurrentlyInCreation.add(beanName)) {
+                        throw new BeansException("[&" + beanName + "]的getObject()方法又请求了它自己生产的对象");
+                    }
+                    try {
+                        created = postProcessObjectFromFactoryBean(doGetObjectFromFactoryBean(factory, beanName), beanName);
+                    } finally {
+                        objectsCurrentlyInCreation.remove(beanName);
+                    }
+                    factoryBeanObjectCache.put(beanName, created);
+                }
+                return created;
+            });
+        }
+        // 每次都生产一个新的对象
+        return postProcessObjectFromFactoryBean(doGetObjectFromFactoryBean(factory, beanName), beanName);
+    }
+
+    /**
+     * 对FactoryBean生产的对象进行后置处理，默认原样返回。
+     */
+    protected Object postProcessObjectFromFactoryBean(Object object, String beanName) throws BeansException {
+        return object;
+    }
+
+    @Override
+    protected Object removeSingleton(String beanName) {
+        factoryBeanObjectCache.remove(beanName);
+        return super.removeSingleton(beanName);
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 调用FactoryBean.getObject()。
+     */
+    private Object doGetObjectFromFactoryBean(FactoryBean factory, String beanName) throws BeansException {
+        Object object;
+        try {
+            object = factory.getObject();
+        } catch (BeansException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BeansException("[&" + beanName + "]对应的FactoryBean创建对象时抛出了异常", e);
+        }
+        if (object == null) {
+            throw new BeansException("无法从[&" + beanName + "]对应的FactoryBean中生产出对象");
+        }
+        return object;
+    }
+}
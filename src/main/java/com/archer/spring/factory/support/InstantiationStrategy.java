@@ -0,0 +1,47 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.factory.BeanWrapper;
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.MutablePropertyValues;
+import com.archer.spring.factory.config.BeanDefinition;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * 创建bean时真正和对象打交道的三个步骤：实例化、属性赋值和调用初始化方法。
+ *
+ * 选择哪个构造函数、属性值从哪来这些决策仍由BeanFactory负责，
+ * 实现类只决定怎么执行，比如通过反射，或者预先编译好的MethodHandle。
+ * @see SimpleInstantiationStrategy
+ * @see TieredInstantiationStrategy
+ */
+public interface InstantiationStrategy {
+
+    /**
+     * 通过无参构造函数创建bean。
+     */
+    Object instantiate(String beanName, BeanDefinition bd) throws BeansException;
+
+    /**
+     * 通过指定的构造函数和已经准备好的参数创建bean。
+     */
+    Object instantiate(String beanName, BeanDefinition bd, Constructor<?> ctor, Object[] args) throws BeansException;
+
+    /**
+     * 把已经解析好的属性值赋给bw包装的bean，类型转换仍由bw负责。
+     */
+    void applyPropertyValues(String beanName, BeanDefinition bd, BeanWrapper bw,
+                             MutablePropertyValues pvs) throws BeansException;
+
+    /**
+     * 调用BeanDefinition中配置的初始化方法，没有配置的话什么都不做。
+     */
+    void invokeInitMethod(String beanName, BeanDefinition bd, Object bean) throws Exception;
+
+}
@@ -12,4 +12,33 @@ import java.util.ArrayList;
  * 用来标识<list>标签读取的结果。
  */
 public class ManagedList<E> extends ArrayList<E> {
+
+    // 只包含字面量时解析出的不可变列表，由所有创建的bean共享
+    private transient volatile Object resolvedLiterals;
+
+    // 缓存resolvedLiterals时的modCount，之后增删元素就不再有效
+    private transient int resolvedModCount;
+
+    public ManagedList() { }
+
+    public ManagedList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        // set不会改变modCount
+        resolvedLiterals = null;
+        return super.set(index, element);
+    }
+
+    Object getResolvedLiterals() {
+        Object resolved = resolvedLiterals;
+        return (resolved != null && resolvedModCount == modCount ? resolved : null);
+    }
+
+    void setResolvedLiterals(Object resolvedLiterals) {
+        this.resolvedModCount = modCount;
+        this.resolvedLiterals = resolvedLiterals;
+    }
 }
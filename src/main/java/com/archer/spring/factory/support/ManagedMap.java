@@ -0,0 +1,52 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/31.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 用来标识<map>标签读取的结果，保持<entry>的声明顺序。key和value都可以是RuntimeBeanReference等需要解析的值。
+ */
+public class ManagedMap<K, V> extends LinkedHashMap<K, V> {
+
+    // 只包含字面量时解析出的不可变Map，由所有创建的bean共享。
+    // 通过put、putAll、remove、clear修改时清除，通过keySet、entrySet等视图修改时不会清除
+    private transient volatile Object resolvedLiterals;
+
+    @Override
+    public V put(K key, V value) {
+        resolvedLiterals = null;
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        resolvedLiterals = null;
+        super.putAll(map);
+    }
+
+    @Override
+    public V remove(Object key) {
+        resolvedLiterals = null;
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        resolvedLiterals = null;
+        super.clear();
+    }
+
+    Object getResolvedLiterals() {
+        return resolvedLiterals;
+    }
+
+    void setResolvedLiterals(Object resolvedLiterals) {
+        this.resolvedLiterals = resolvedLiterals;
+    }
+}
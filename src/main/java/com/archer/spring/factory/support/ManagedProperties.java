@@ -0,0 +1,16 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/31.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.Properties;
+
+/**
+ * 用来标识<props>标签读取的结果，key和value都是字符串。
+ * Properties本身是可变的，每次注入时复制一份，不在bean之间共享。
+ */
+public class ManagedProperties extends Properties {
+}
@@ -0,0 +1,68 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/31.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * 用来标识<set>标签读取的结果，保持元素的声明顺序。
+ */
+public class ManagedSet<E> extends LinkedHashSet<E> {
+
+    // 只包含字面量时解析出的不可变集合，由所有创建的bean共享，修改元素时清除
+    private transient volatile Object resolvedLiterals;
+
+    @Override
+    public boolean add(E element) {
+        resolvedLiterals = null;
+        return super.add(element);
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        resolvedLiterals = null;
+        return super.remove(element);
+    }
+
+    @Override
+    public void clear() {
+        resolvedLiterals = null;
+        super.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        // removeAll、retainAll、removeIf都通过迭代器删除元素
+        Iterator<E> iterator = super.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                resolvedLiterals = null;
+                iterator.remove();
+            }
+        };
+    }
+
+    Object getResolvedLiterals() {
+        return resolvedLiterals;
+    }
+
+    void setResolvedLiterals(Object resolvedLiterals) {
+        this.resolvedLiterals = resolvedLiterals;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/21.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次预实例化单例的统计信息。
+ *
+ * 实际并行度 = 各个bean创建耗时之和 / 总耗时，串行执行时约等于1。
+ */
+public class PreInstantiationStatistics {
+
+    /// MARK - Properties
+
+    // 是否以并行模式执行
+    private final boolean parallel;
+
+    // 预实例化的bean的数量
+    private final int beanCount;
+
+    // 依赖图中的分量数
+    private final int componentCount;
+
+    // 含有循环依赖、只能串行创建的分量数
+    private final int cyclicComponentCount;
+
+    // 并行创建失败后又串行重试的bean的数量
+    private final int sequentialFallbackCount;
+
+    // 同一时刻正在创建的bean的最大数量
+    private final int maxConcurrency;
+
+    // 总耗时，纳秒
+    private final long elapsedNanos;
+
+    // 各个bean创建耗时之和，纳秒
+    private final long busyNanos;
+
+    /// MARK - Initializers
+
+    PreInstantiationStatistics(boolean parallel, int beanCount, int componentCount, int cyclicComponentCount,
+                               int sequentialFallbackCount, int maxConcurrency, long elapsedNanos, long busyNanos) {
+        this.parallel = parallel;
+        this.beanCount = beanCount;
+        this.componentCount = componentCount;
+        this.cyclicComponentCount = cyclicComponentCount;
+        this.sequentialFallbackCount = sequentialFallbackCount;
+        this.maxConcurrency = maxConcurrency;
+        this.elapsedNanos = elapsedNanos;
+        this.busyNanos = busyNanos;
+    }
+
+    /// MARK - Getters
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getBeanCount() {
+        return beanCount;
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    public int getCyclicComponentCount() {
+        return cyclicComponentCount;
+    }
+
+    public int getSequentialFallbackCount() {
+        return sequentialFallbackCount;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * 实际达到的并行度。
+     */
+    public double getAchievedParallelism() {
+        return (elapsedNanos == 0 ? 1.0 : (double) busyNanos / elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "PreInstantiationStatistics{" +
+                "parallel=" + parallel +
+                ", beanCount=" + beanCount +
+                ", componentCount=" + componentCount +
+                ", cyclicComponentCount=" + cyclicComponentCount +
+                ", sequentialFallbackCount=" + sequentialFallbackCount +
+                ", maxConcurrency=" + maxConcurrency +
+                ", elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) +
+                ", achievedParallelism=" + String.format("%.2f", getAchievedParallelism()) +
+                '}';
+    }
+}
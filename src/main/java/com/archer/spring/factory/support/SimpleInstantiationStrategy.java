@@ -0,0 +1,44 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.factory.BeanWrapper;
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.MutablePropertyValues;
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.utils.ClassUtils;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * 直接通过反射完成实例化、属性赋值和初始化方法的调用。
+ */
+public class SimpleInstantiationStrategy implements InstantiationStrategy {
+
+    @Override
+    public Object instantiate(String beanName, BeanDefinition bd) throws BeansException {
+        return ClassUtils.instantiateClass(bd.getBeanClass());
+    }
+
+    @Override
+    public Object instantiate(String beanName, BeanDefinition bd, Constructor<?> ctor, Object[] args) throws BeansException {
+        return ClassUtils.instantiateClass(ctor, args);
+    }
+
+    @Override
+    public void applyPropertyValues(String beanName, BeanDefinition bd, BeanWrapper bw,
+                                    MutablePropertyValues pvs) throws BeansException {
+        bw.setPropertyValues(pvs);
+    }
+
+    @Override
+    public void invokeInitMethod(String beanName, BeanDefinition bd, Object bean) throws Exception {
+        if (bd.getInitMethodName() != null) {
+            bean.getClass().getMethod(bd.getInitMethodName()).invoke(bean);
+        }
+    }
+}
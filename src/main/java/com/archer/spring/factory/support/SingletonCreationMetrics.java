@@ -0,0 +1,101 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个单例bean的创建锁的竞争情况。
+ *
+ * 每次有线程因为其他线程正在创建同一个bean而不得不等待时，
+ * 都会记录一次等待及其耗时，用来定位是哪个bean的初始化拖慢了其他线程。
+ */
+public class SingletonCreationMetrics {
+
+    /// MARK - Properties
+
+    // 获取创建锁的次数
+    private final LongAdder acquisitions = new LongAdder();
+
+    // 需要等待才能获取到创建锁的次数
+    private final LongAdder contendedAcquisitions = new LongAdder();
+
+    // 累计等待时间，纳秒
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    // 单次最长等待时间，纳秒
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    // 创建此bean花费的时间，纳秒
+    private volatile long creationNanos;
+
+    /// MARK - Getters
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getAverageWaitNanos() {
+        long contended = getContendedAcquisitions();
+        return (contended == 0 ? 0 : getTotalWaitNanos() / contended);
+    }
+
+    public long getCreationNanos() {
+        return creationNanos;
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 记录一次无需等待的获取。
+     */
+    void recordAcquisition() {
+        acquisitions.increment();
+    }
+
+    /**
+     * 记录一次需要等待的获取。
+     */
+    void recordContendedAcquisition(long waitNanos) {
+        acquisitions.increment();
+        contendedAcquisitions.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * 记录创建bean的耗时。
+     */
+    void recordCreation(long nanos) {
+        creationNanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SingletonCreationMetrics{" +
+                "acquisitions=" + getAcquisitions() +
+                ", contendedAcquisitions=" + getContendedAcquisitions() +
+                ", totalWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(getTotalWaitNanos()) +
+                ", maxWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(getMaxWaitNanos()) +
+                ", creationMillis=" + TimeUnit.NANOSECONDS.toMillis(getCreationNanos()) +
+                '}';
+    }
+}
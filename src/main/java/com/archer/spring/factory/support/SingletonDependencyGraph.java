@@ -0,0 +1,279 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/21.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.expression.Expression;
+import com.archer.spring.factory.ConstructorArgumentValues;
+import com.archer.spring.factory.PropertyValue;
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.utils.ClassUtils;
+
+import java.beans.Introspector;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 单例bean之间的依赖图，用于并行地预实例化单例。
+ *
+ * 依赖关系来自三个地方：
+ * 1. 属性值和构造函数参数中的RuntimeBeanReference和表达式引用的bean(包括集合中的)；
+ * 2. depends-on；
+ * 3. 自动装配时可能的候选bean，这里宁多勿少，多出来的边最多让并行度低一点。
+ *
+ * 依赖图按强连通分量缩点，得到的分量之间构成一个有向无环图。
+ * 包含循环依赖的分量只能在一个线程里按定义顺序依次创建。
+ */
+final class SingletonDependencyGraph {
+
+    /// MARK - Properties
+
+    // 按依赖在前的顺序排列的分量
+    private final List<Component> components = new ArrayList<>();
+
+    /// MARK - Initializers
+
+    private SingletonDependencyGraph() { }
+
+    /// MARK - Public methods
+
+    /**
+     * 为beanNames中的bean构建依赖图，只保留beanNames之间的依赖。
+     */
+    static SingletonDependencyGraph build(DefaultListableBeanFactory beanFactory, List<String> beanNames) {
+        Set<String> targets = new HashSet<>(beanNames);
+        Map<String, Set<String>> dependencies = new HashMap<>(beanNames.size() * 2);
+        for (String beanName : beanNames) {
+            Set<String> references = new LinkedHashSet<>();
+            collectDependencies(beanFactory, beanFactory.getBeanDefinition(beanName), references);
+            references.retainAll(targets);
+            references.remove(beanName);
+            dependencies.put(beanName, references);
+        }
+        SingletonDependencyGraph graph = new SingletonDependencyGraph();
+        new Tarjan(beanNames, dependencies, graph.components).run();
+        return graph;
+    }
+
+    /**
+     * 返回所有分量，依赖总是排在被依赖者之前。
+     */
+    List<Component> getComponents() {
+        return components;
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 收集一个BeanDefinition可能依赖的bean名称。
+     */
+    private static void collectDependencies(DefaultListableBeanFactory beanFactory,
+                                            BeanDefinition bd, Set<String> result) {
+        if (bd.getDependsOn() != null) {
+            result.addAll(Arrays.asList(bd.getDependsOn()));
+        }
+        if (bd.getPropertyValues() != null) {
+            for (PropertyValue pv : bd.getPropertyValues().getPropertyValues()) {
+                collectReferences(pv.getValue(), result);
+            }
+        }
+        ConstructorArgumentValues cargs = bd.getConstructorArgumentValues();
+        if (cargs != null) {
+            for (ConstructorArgumentValues.ValueHolder valueHolder : cargs.getIndexedArgumentValues().values()) {
+                collectReferences(valueHolder.getValue(), result);
+            }
+            for (ConstructorArgumentValues.ValueHolder valueHolder : cargs.getGenericArgumentValues()) {
+                collectReferences(valueHolder.getValue(), result);
+            }
+        }
+        collectAutowireCandidates(beanFactory, bd, result);
+    }
+
+    /**
+     * 收集属性值中出现的bean引用。
+     */
+    private static void collectReferences(Object value, Set<String> result) {
+        if (value instanceof RuntimeBeanReference) {
+            result.add(((RuntimeBeanReference) value).getBeanName());
+        } else if (value instanceof Expression) {
+            result.addAll(((Expression) value).getBeanReferences());
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectReferences(element, result);
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                collectReferences(entry.getKey(), result);
+                collectReferences(entry.getValue(), result);
+            }
+        }
+    }
+
+    /**
+     * 收集自动装配时可能用到的bean。
+     */
+    private static void collectAutowireCandidates(DefaultListableBeanFactory beanFactory,
+                                                  BeanDefinition bd, Set<String> result) {
+        int autowireMode = bd.getResolvedAutowireMode();
+        if (autowireMode == BeanDefinition.AUTOWIRE_CONSTRUCTOR) {
+            for (Constructor<?> ctor : bd.getBeanClass().getConstructors()) {
+                for (Class<?> parameterType : ctor.getParameterTypes()) {
+                    result.addAll(Arrays.asList(beanFactory.getBeanDefinitionNames(parameterType)));
+                }
+            }
+        } else if (autowireMode == BeanDefinition.AUTOWIRE_BY_NAME ||
+                autowireMode == BeanDefinition.AUTOWIRE_BY_TYPE) {
+            for (Method method : bd.getBeanClass().getMethods()) {
+                if (!isObjectSetter(method)) {
+                    continue;
+                }
+                String propertyName = Introspector.decapitalize(method.getName().substring(3));
+                if (bd.getPropertyValues() != null && bd.getPropertyValues().contains(propertyName)) {
+                    continue;
+                }
+                if (autowireMode == BeanDefinition.AUTOWIRE_BY_NAME) {
+                    result.add(propertyName);
+                } else {
+                    result.addAll(Arrays.asList(beanFactory.getBeanDefinitionNames(method.getParameterTypes()[0])));
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否是参数不是简单类型的setter。
+     */
+    private static boolean isObjectSetter(Method method) {
+        return method.getName().length() > 3 && method.getName().startsWith("set") &&
+                method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers()) &&
+                !ClassUtils.isSimpleProperty(method.getParameterTypes()[0]);
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 依赖图中的一个强连通分量。
+     */
+    static final class Component {
+
+        // 分量中的bean，按定义顺序排列
+        private final List<String> beanNames;
+
+        // 分量内部是否存在循环依赖
+        private final boolean cyclic;
+
+        // 此分量依赖的其他分量
+        private final Set<Component> dependencies = new LinkedHashSet<>();
+
+        Component(List<String> beanNames, boolean cyclic) {
+            this.beanNames = beanNames;
+            this.cyclic = cyclic;
+        }
+
+        List<String> getBeanNames() {
+            return beanNames;
+        }
+
+        boolean isCyclic() {
+            return cyclic;
+        }
+
+        Set<Component> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * Tarjan强连通分量算法。分量产生的顺序恰好是依赖在前。
+     */
+    private static final class Tarjan {
+
+        private final List<String> beanNames;
+
+        private final Map<String, Set<String>> dependencies;
+
+        private final List<Component> output;
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private final Map<String, Integer> lowLinks = new HashMap<>();
+
+        private final Deque<String> stack = new ArrayDeque<>();
+
+        private final Set<String> onStack = new HashSet<>();
+
+        private final Map<String, Component> componentOf = new HashMap<>();
+
+        // bean在定义顺序中的位置
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        private int index = 0;
+
+        Tarjan(List<String> beanNames, Map<String, Set<String>> dependencies, List<Component> output) {
+            this.beanNames = beanNames;
+            this.dependencies = dependencies;
+            this.output = output;
+        }
+
+        void run() {
+            for (int i = 0; i < beanNames.size(); i++) {
+                positions.put(beanNames.get(i), i);
+            }
+            for (String beanName : beanNames) {
+                if (!indexes.containsKey(beanName)) {
+                    strongConnect(beanName);
+                }
+            }
+            // 分量都已确定，再把bean之间的依赖换算成分量之间的依赖
+            for (Component component : output) {
+                for (String beanName : component.getBeanNames()) {
+                    for (String dependency : dependencies.get(beanName)) {
+                        Component target = componentOf.get(dependency);
+                        if (target != component) {
+                            component.getDependencies().add(target);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void strongConnect(String beanName) {
+            indexes.put(beanName, index);
+            lowLinks.put(beanName, index);
+            index++;
+            stack.push(beanName);
+            onStack.add(beanName);
+
+            for (String dependency : dependencies.get(beanName)) {
+                if (!indexes.containsKey(dependency)) {
+                    strongConnect(dependency);
+                    lowLinks.put(beanName, Math.min(lowLinks.get(beanName), lowLinks.get(dependency)));
+                } else if (onStack.contains(dependency)) {
+                    lowLinks.put(beanName, Math.min(lowLinks.get(beanName), indexes.get(dependency)));
+                }
+            }
+
+            if (lowLinks.get(beanName).equals(indexes.get(beanName))) {
+                List<String> ordered = new ArrayList<>();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    ordered.add(member);
+                } while (!member.equals(beanName));
+                // 分量内部按定义顺序排列，保证回退成串行时和原来的顺序一致
+                ordered.sort(Comparator.comparing(positions::get));
+                Component component = new Component(ordered, ordered.size() > 1);
+                for (String name : ordered) {
+                    componentOf.put(name, component);
+                }
+                output.add(component);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.support;
+
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.utils.LambdaUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 分层的创建策略。
+ *
+ * 一开始和SimpleInstantiationStrategy一样走反射，一个prototype bean被创建的次数
+ * 达到promotionThreshold后，会为它编译一份创建配方：构造函数和初始化方法在这时一次性
+ * 查找好，并通过LambdaUtils编译成直接调用它们的Supplier/Consumer，之后的创建不再有
+ * getMethod这样的反射查找，也不再经过Method.invoke的参数检查。
+ * 属性赋值交给BeanWrapper，它的属性访问器本身就是编译好的。
+ *
+ * 单例只会创建一次，不值得编译；编译失败的bean(比如非公有的类)会一直使用反射。
+ */
+public class TieredInstantiationStrategy extends SimpleInstantiationStrategy {
+
+    /// MARK - Properties
+
+    // 默认创建多少次之后切换到编译好的配方
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 64;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    // 创建多少次之后切换到编译好的配方
+    private final int promotionThreshold;
+
+    // 每个prototype bean的创建情况，key是bean name
+    private final Map<String, CreationProfile> profiles = new ConcurrentHashMap<>(64);
+
+    /// MARK - Getters & Setters
+
+    public int getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * beanName对应的bean是否已经切换到了编译好的配方。
+     */
+    public boolean isPromoted(String beanName) {
+        CreationProfile profile = profiles.get(beanName);
+        return (profile != null && profile.recipe != null);
+    }
+
+    /// MARK - Initializers
+
+    public TieredInstantiationStrategy() {
+        this(DEFAULT_PROMOTION_THRESHOLD);
+    }
+
+    public TieredInstantiationStrategy(int promotionThreshold) {
+        if (promotionThreshold < 1) {
+            throw new IllegalArgumentException("promotionThreshold至少为1");
+        }
+        this.promotionThreshold = promotionThreshold;
+    }
+
+    /// MARK - InstantiationStrategy
+
+    @Override
+    public Object instantiate(String beanName, BeanDefinition bd) throws BeansException {
+        CreationRecipe recipe = recordCreation(beanName, bd, null);
+        if (recipe != null && recipe.constructor.getParameterCount() == 0) {
+            return recipe.newInstance(new Object[0]);
+        }
+        return super.instantiate(beanName, bd);
+    }
+
+    @Override
+    public Object instantiate(String beanName, BeanDefinition bd, Constructor<?> ctor, Object[] args) throws BeansException {
+        CreationRecipe recipe = recordCreation(beanName, bd, ctor);
+        if (recipe != null && recipe.constructor.equals(ctor)) {
+            return recipe.newInstance(args);
+        }
+        return super.instantiate(beanName, bd, ctor, args);
+    }
+
+    @Override
+    public void invokeInitMethod(String beanName, BeanDefinition bd, Object bean) throws Exception {
+        CreationRecipe recipe = getRecipe(beanName, bd, bean.getClass());
+        if (recipe == null) {
+            super.invokeInitMethod(beanName, bd, bean);
+        } else if (recipe.initMethod != null) {
+            recipe.invokeInitMethod(bean);
+        }
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 记录一次创建，次数达到阈值时编译配方。返回可用的配方，还没有的话返回null。
+     * ctor是这次创建使用的构造函数，为null表示使用无参构造函数。
+     */
+    private CreationRecipe recordCreation(String beanName, BeanDefinition bd, Constructor<?> ctor) {
+        if (bd.isSingleton()) {
+            return null;
+        }
+        CreationProfile profile = profiles.get(beanName);
+        // BeanDefinition被替换了，之前的统计和配方都作废
+        if (profile == null || profile.beanDefinition != bd) {
+            profile = new CreationProfile(bd);
+            profiles.put(beanName, profile);
+        }
+        CreationRecipe recipe = profile.recipe;
+        if (recipe == null && !profile.unsupported &&
+                profile.creations.incrementAndGet() == promotionThreshold) {
+            try {
+                recipe = CreationRecipe.compile(bd, ctor);
+                profile.recipe = recipe;
+                System.out.println("[" + beanName + "]已经创建了" + promotionThreshold + "次，切换到编译好的创建配方");
+            } catch (ReflectiveOperationException | BeansException ex) {
+                profile.unsupported = true;
+                System.out.println("无法为[" + beanName + "]编译创建配方，继续使用反射: " + ex);
+            }
+        }
+        return recipe;
+    }
+
+    /**
+     * 返回beanName对应的配方，要求配方仍然对应bd和beanClass。
+     */
+    private CreationRecipe getRecipe(String beanName, BeanDefinition bd, Class<?> beanClass) {
+        CreationProfile profile = profiles.get(beanName);
+        if (profile == null || profile.beanDefinition != bd) {
+            return null;
+        }
+        CreationRecipe recipe = profile.recipe;
+        return (recipe != null && recipe.beanClass == beanClass ? recipe : null);
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 一个prototype bean的创建次数以及编译好的配方。
+     */
+    private static final class CreationProfile {
+
+        private final BeanDefinition beanDefinition;
+
+        private final AtomicInteger creations = new AtomicInteger();
+
+        private volatile CreationRecipe recipe;
+
+        // 编译失败过，不再尝试
+        private volatile boolean unsupported;
+
+        CreationProfile(BeanDefinition beanDefinition) {
+            this.beanDefinition = beanDefinition;
+        }
+    }
+
+    /**
+     * 编译好的创建配方。
+     */
+    private static final class CreationRecipe {
+
+        private final Class<?> beanClass;
+
+        private final Constructor<?> constructor;
+
+        // 无参构造函数对应的Supplier，有参的构造函数为null
+        private final Supplier<?> instantiator;
+
+        // 有参构造函数对应的MethodHandle，(Object[])Object
+        private final MethodHandle constructorHandle;
+
+        // 没有配置初始化方法的话为null
+        private final Consumer<Object> initMethod;
+
+        private CreationRecipe(Class<?> beanClass, Constructor<?> constructor, Supplier<?> instantiator,
+                               MethodHandle constructorHandle, Consumer<Object> initMethod) {
+            this.beanClass = beanClass;
+            this.constructor = constructor;
+            this.instantiator = instantiator;
+            this.constructorHandle = constructorHandle;
+            this.initMethod = initMethod;
+        }
+
+        static CreationRecipe compile(BeanDefinition bd, Constructor<?> ctor) throws ReflectiveOperationException {
+            Class<?> beanClass = bd.getBeanClass();
+            if (ctor == null) {
+                ctor = beanClass.getConstructor();
+            }
+            Supplier<?> instantiator = null;
+            MethodHandle constructorHandle = null;
+            int parameterCount = ctor.getParameterCount();
+            if (parameterCount == 0) {
+                instantiator = LambdaUtils.compileConstructor(ctor);
+            } else {
+                if (!LambdaUtils.isCompilable(ctor)) {
+                    throw new IllegalAccessException("无法编译[" + ctor + "]");
+                }
+                // 参数个数不固定，没有现成的函数式接口，使用展开数组参数的MethodHandle
+                constructorHandle = lookup.unreflectConstructor(ctor)
+                        .asType(MethodType.genericMethodType(parameterCount))
+                        .asSpreader(Object[].class, parameterCount);
+            }
+            Consumer<Object> initMethod = null;
+            if (bd.getInitMethodName() != null) {
+                initMethod = LambdaUtils.compileInvoker(beanClass.getMethod(bd.getInitMethodName()));
+            }
+            return new CreationRecipe(beanClass, ctor, instantiator, constructorHandle, initMethod);
+        }
+
+        // 编译好的Supplier会把构造函数抛出的受检异常原样抛出，和反射一样包装成BeansException
+        Object newInstance(Object[] args) throws BeansException {
+            try {
+                if (instantiator != null) {
+                    return instantiator.get();
+                }
+                return (Object) constructorHandle.invokeExact(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new BeansException("无法生成新对象", t);
+            }
+        }
+
+        // 和Method.invoke一样，初始化方法抛出的异常包装成InvocationTargetException
+        void invokeInitMethod(Object bean) throws InvocationTargetException {
+            try {
+                initMethod.accept(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+}
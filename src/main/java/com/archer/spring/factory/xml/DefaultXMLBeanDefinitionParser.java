@@ -6,17 +6,26 @@
 
 package com.archer.spring.factory.xml;
 
+import com.archer.spring.expression.ExpressionException;
+import com.archer.spring.expression.ExpressionParser;
 import com.archer.spring.factory.BeansException;
 import com.archer.spring.factory.ConstructorArgumentValues;
 import com.archer.spring.factory.MutablePropertyValues;
 import com.archer.spring.factory.PropertyValue;
 import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.config.PropertyPlaceholderConfigurer;
 import com.archer.spring.factory.support.BeanDefinitionRegistry;
 import com.archer.spring.factory.support.ManagedList;
+import com.archer.spring.factory.support.ManagedMap;
+import com.archer.spring.factory.support.ManagedProperties;
+import com.archer.spring.factory.support.ManagedSet;
 import com.archer.spring.factory.support.RuntimeBeanReference;
 import com.archer.spring.utils.StringUtils;
 import org.w3c.dom.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * XMLBeanDefinitionParser的默认实现。
  */
@@ -41,7 +50,17 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
     private static final String REF_ELEMENT = "ref";
     private static final String BEAN_REF_ATTRIBUTE = "bean";
     private static final String LIST_ELEMENT = "list";
+    private static final String SET_ELEMENT = "set";
+    private static final String MAP_ELEMENT = "map";
+    private static final String ENTRY_ELEMENT = "entry";
+    private static final String KEY_ELEMENT = "key";
+    private static final String KEY_ATTRIBUTE = "key";
+    private static final String KEY_REF_ATTRIBUTE = "key-ref";
+    private static final String VALUE_REF_ATTRIBUTE = "value-ref";
+    private static final String PROPS_ELEMENT = "props";
+    private static final String PROP_ELEMENT = "prop";
     private static final String VALUE_ELEMENT = "value";
+    private static final String VALUE_ATTRIBUTE = "value";
     private static final String NULL_ELEMENT = "null";
 
     private static final String LAZY_INIT_ATTRIBUTE = "lazy-init";
@@ -52,6 +71,9 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
     private static final String AUTOWIRE_CONSTRUCTOR_VALUE = "constructor";
     private static final String AUTOWIRE_AUTODETECT_VALUE = "autodetect";
 
+    // 解析<value>和value属性中的#{...}，相同的表达式共享解析和编译的结果
+    private final ExpressionParser expressionParser = new ExpressionParser();
+
     /// MARK - XMLBeanDefinitionParser
 
     @Override
@@ -187,7 +209,11 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
      * 解析<property>标签，获取值
      */
     private Object getPropertyValue(String beanName, Element element) {
-       // 获取<property>下的子标签，从中提取值
+        // 值直接写在value属性上
+        if (element.hasAttribute(VALUE_ATTRIBUTE)) {
+            return parseTextValue(beanName, element.getAttribute(VALUE_ATTRIBUTE));
+        }
+        // 获取<property>下的子标签，从中提取值
         NodeList nodes = element.getChildNodes();
         Element poiElement = null;
         for (int i = 0; i < nodes.getLength(); ++i) {
@@ -197,7 +223,7 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
             }
         }
         if (poiElement == null) {
-            throw new BeansException("[" + beanName + "]下的<property>标签至少有一个<value>、<list>或<ref>");
+            throw new BeansException("[" + beanName + "]下的<property>标签需要value属性或者至少有一个<value>、<list>或<ref>");
         }
         return parsePropertySubElement(beanName, poiElement);
     }
@@ -206,8 +232,8 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
      * 解析带有属性值的标签，提取值
      */
     private Object parsePropertySubElement(String beanName, Element element) {
-        // <property>标签下有<value>/<list>/<ref>三种标签标识了属性值
-        // <set>/<map>/inner bean这些这里就不做支持了
+        // <property>标签下有<value>/<list>/<set>/<map>/<props>/<ref>这些标签标识了属性值
+        // inner bean这里就不做支持了
         if (element.getTagName().equals(REF_ELEMENT)) {
             // 如果是<ref>，它指向另一个bean的定义
             String beanRef = element.getAttribute(BEAN_REF_ATTRIBUTE);
@@ -219,6 +245,15 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
         } else if (element.getTagName().equals(LIST_ELEMENT)) {
             // 是一个List
             return getList(beanName, element);
+        } else if (element.getTagName().equals(SET_ELEMENT)) {
+            // 是一个Set
+            return getSet(beanName, element);
+        } else if (element.getTagName().equals(MAP_ELEMENT)) {
+            // 是一个Map
+            return getMap(beanName, element);
+        } else if (element.getTagName().equals(PROPS_ELEMENT)) {
+            // 是一个Properties
+            return getProps(beanName, element);
         } else if (element.getTagName().equals(VALUE_ELEMENT)) {
             // 是字面值
             return getTextValue(beanName, element);
@@ -234,16 +269,106 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
      */
     private ManagedList<Object> getList(String beanName, Element element) {
         // 返回一个包装<list>的对象
-        ManagedList<Object> list = new ManagedList<>();
+        List<Element> children = getChildElements(element);
+        ManagedList<Object> list = new ManagedList<>(children.size());
+        for (Element child : children) {
+            // <list>下的子元素类型和<property>是一致的
+            list.add(parsePropertySubElement(beanName, child));
+        }
+        return list;
+    }
+
+    /**
+     * 解析<set>标签，返回代表其值的ManagedSet
+     */
+    private ManagedSet<Object> getSet(String beanName, Element element) {
+        ManagedSet<Object> set = new ManagedSet<>();
+        for (Element child : getChildElements(element)) {
+            // <set>下的子元素类型和<list>是一致的
+            set.add(parsePropertySubElement(beanName, child));
+        }
+        return set;
+    }
+
+    /**
+     * 解析<map>标签，返回代表其值的ManagedMap。每个<entry>的key由key属性、key-ref属性或者<key>子标签给出，
+     * value由value属性、value-ref属性或者除<key>以外的子标签给出
+     */
+    private ManagedMap<Object, Object> getMap(String beanName, Element element) {
+        ManagedMap<Object, Object> map = new ManagedMap<>();
+        for (Element entry : getChildElements(element)) {
+            if (!entry.getTagName().equals(ENTRY_ELEMENT)) {
+                throw new BeansException("[" + beanName + "] - <map>标签下只能有<entry>标签，发现了<" + entry.getTagName() + ">");
+            }
+            Object key = null;
+            Object value = null;
+            boolean hasKey = false;
+            boolean hasValue = false;
+            if (entry.hasAttribute(KEY_ATTRIBUTE)) {
+                key = parseTextValue(beanName, entry.getAttribute(KEY_ATTRIBUTE));
+                hasKey = true;
+            } else if (entry.hasAttribute(KEY_REF_ATTRIBUTE)) {
+                key = new RuntimeBeanReference(entry.getAttribute(KEY_REF_ATTRIBUTE));
+                hasKey = true;
+            }
+            if (entry.hasAttribute(VALUE_ATTRIBUTE)) {
+                value = parseTextValue(beanName, entry.getAttribute(VALUE_ATTRIBUTE));
+                hasValue = true;
+            } else if (entry.hasAttribute(VALUE_REF_ATTRIBUTE)) {
+                value = new RuntimeBeanReference(entry.getAttribute(VALUE_REF_ATTRIBUTE));
+                hasValue = true;
+            }
+            for (Element child : getChildElements(entry)) {
+                if (child.getTagName().equals(KEY_ELEMENT)) {
+                    List<Element> keyElements = getChildElements(child);
+                    if (hasKey || keyElements.size() != 1) {
+                        throw new BeansException("[" + beanName + "] - <entry>标签只能指定一个key");
+                    }
+                    key = parsePropertySubElement(beanName, keyElements.get(0));
+                    hasKey = true;
+                } else {
+                    if (hasValue) {
+                        throw new BeansException("[" + beanName + "] - <entry>标签只能指定一个value");
+                    }
+                    value = parsePropertySubElement(beanName, child);
+                    hasValue = true;
+                }
+            }
+            if (!hasKey || !hasValue) {
+                throw new BeansException("[" + beanName + "] - <entry>标签必须同时指定key和value");
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * 解析<props>标签，返回代表其值的ManagedProperties，<prop>的key属性是属性名，文本是属性值
+     */
+    private ManagedProperties getProps(String beanName, Element element) {
+        ManagedProperties props = new ManagedProperties();
+        for (Element prop : getChildElements(element)) {
+            String key = prop.getAttribute(KEY_ATTRIBUTE);
+            if (!prop.getTagName().equals(PROP_ELEMENT) || !StringUtils.hasText(key)) {
+                throw new BeansException("[" + beanName + "] - <props>标签下只能有带key属性的<prop>标签");
+            }
+            props.setProperty(key, prop.getTextContent().trim());
+        }
+        return props;
+    }
+
+    /**
+     * element下的所有子标签
+     */
+    private static List<Element> getChildElements(Element element) {
         NodeList nodes = element.getChildNodes();
+        List<Element> children = new ArrayList<>(nodes.getLength());
         for (int i = 0; i < nodes.getLength(); ++i) {
             if (nodes.item(i) instanceof Element) {
-                // <list>下的子元素类型和<property>是一致的
-                Element node = (Element) nodes.item(i);
-                list.add(parsePropertySubElement(beanName, node));
+                children.add((Element) nodes.item(i));
             }
         }
-        return list;
+        return children;
     }
 
     /**
@@ -259,7 +384,22 @@ public class DefaultXMLBeanDefinitionParser implements XMLBeanDefinitionParser {
             throw new BeansException("[" + beanName + "] - <value>标签下有且只能有字符串字面量");
         }
         Text t = (Text) nodes.item(0);
-        return t.getData();
+        return parseTextValue(beanName, t.getData());
+    }
+
+    /**
+     * 包含#{...}的字面值解析成Expression，在创建bean时计算；其他的原样返回。
+     * 同时包含${...}时占位符替换之前无法解析，留给PropertyPlaceholderConfigurer替换后再解析
+     */
+    private Object parseTextValue(String beanName, String text) {
+        if (!ExpressionParser.isTemplate(text) || text.contains(PropertyPlaceholderConfigurer.DEFAULT_PLACEHOLDER_PREFIX)) {
+            return text;
+        }
+        try {
+            return expressionParser.parseTemplate(text);
+        } catch (ExpressionException e) {
+            throw new BeansException("[" + beanName + "] - 无法解析表达式: " + e.getMessage(), e);
+        }
     }
 
     /**
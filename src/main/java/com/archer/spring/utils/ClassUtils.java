@@ -9,6 +9,7 @@ package com.archer.spring.utils;
 import com.archer.spring.factory.BeansException;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -39,8 +40,10 @@ public abstract class ClassUtils {
      */
     public static <T> T instantiateClass(Class<T> clazz) throws BeansException {
         try {
-            return clazz.newInstance();
-        } catch (InstantiationException | IllegalAccessException ex) {
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException ex) {
+            throw new BeansException("无法生成新对象", ex.getTargetException());
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException ex) {
             throw new BeansException("[" + clazz.getName() + "]不能是抽象类且必须有公有的参数为空的构造函数。", ex);
         }
     }
@@ -51,8 +54,10 @@ public abstract class ClassUtils {
     public static <T> T instantiateClass(Constructor<T> ctor, Object... args) throws BeansException {
         try {
             return ctor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new BeansException("无法生成新对象", e.getTargetException());
         } catch (Exception e) {
-            throw new BeansException("无法生成新对象");
+            throw new BeansException("无法生成新对象", e);
         }
     }
 
@@ -111,4 +116,17 @@ public abstract class ClassUtils {
         return clazz.isPrimitive() || String.class.equals(clazz);
     }
 
+    /**
+     * 检查clazz是否是由classLoader或者它的子加载器加载的
+     */
+    public static boolean isUnderneathClassLoader(Class<?> clazz, ClassLoader classLoader) {
+        Objects.requireNonNull(clazz, "类型不能为空");
+        for (ClassLoader cl = clazz.getClassLoader(); cl != null; cl = cl.getParent()) {
+            if (cl == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
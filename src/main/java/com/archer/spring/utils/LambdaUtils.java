@@ -0,0 +1,214 @@
+/*
+ * Github: https://github.com/AnyOptional
+ * Created by Archer on 2019/10/24.
+ * All rights reserved.
+ */
+
+package com.archer.spring.utils;
+
+import com.archer.spring.factory.BeansException;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 通过LambdaMetafactory把构造函数和方法编译成函数式接口的实例。
+ *
+ * 生成的类直接调用目标成员，和手写的lambda一样可以被JIT内联，
+ * 既没有Method.invoke的参数检查和数组包装，也没有保存在字段里的MethodHandle
+ * 无法被当做常量优化的问题。代价是每个成员第一次编译时要生成一个类，
+ * 所以只适合反复调用的成员。
+ *
+ * 生成的类是在LambdaUtils所在的类加载器中解析符号的，因此只支持公有类中的公有成员，
+ * 而且涉及的类型都必须能从这个类加载器中看到，不满足时抛出BeansException，
+ * 调用方应当退回到反射。
+ */
+public abstract class LambdaUtils {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * 是否可以为member生成lambda。
+     */
+    public static boolean isCompilable(Executable member) {
+        if (!Modifier.isPublic(member.getModifiers()) ||
+                !Modifier.isPublic(member.getDeclaringClass().getModifiers()) ||
+                !isVisible(member.getDeclaringClass())) {
+            return false;
+        }
+        for (Class<?> parameterType : member.getParameterTypes()) {
+            if (!isVisible(parameterType)) {
+                return false;
+            }
+        }
+        return !(member instanceof Method) || isVisible(((Method) member).getReturnType());
+    }
+
+    /**
+     * 把无参构造函数编译成Supplier。
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> compileConstructor(Constructor<T> ctor) throws BeansException {
+        checkCompilable(ctor, 0);
+        return spin(Supplier.class, "get", MethodType.methodType(Object.class),
+                unreflect(ctor), MethodType.methodType(ctor.getDeclaringClass()));
+    }
+
+    /**
+     * 把只有一个参数的实例方法(通常是setter)编译成BiConsumer，返回值被忽略，
+     * 基本类型的参数由生成的代码负责拆箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static BiConsumer<Object, Object> compileSetter(Method method) throws BeansException {
+        checkCompilable(method, 1);
+        return spin(BiConsumer.class, "accept", MethodType.methodType(void.class, Object.class, Object.class),
+                unreflect(method), MethodType.methodType(void.class, method.getDeclaringClass(),
+                        wrap(method.getParameterTypes()[0])));
+    }
+
+    /**
+     * 把参数类型为int的setter编译成ObjIntConsumer，调用时不需要装箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static ObjIntConsumer<Object> compileIntSetter(Method method) throws BeansException {
+        return spinPrimitiveSetter(ObjIntConsumer.class, method, int.class);
+    }
+
+    /**
+     * 把参数类型为long的setter编译成ObjLongConsumer，调用时不需要装箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static ObjLongConsumer<Object> compileLongSetter(Method method) throws BeansException {
+        return spinPrimitiveSetter(ObjLongConsumer.class, method, long.class);
+    }
+
+    /**
+     * 把参数类型为double的setter编译成ObjDoubleConsumer，调用时不需要装箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static ObjDoubleConsumer<Object> compileDoubleSetter(Method method) throws BeansException {
+        return spinPrimitiveSetter(ObjDoubleConsumer.class, method, double.class);
+    }
+
+    /**
+     * 把参数类型为boolean的setter编译成ObjBooleanConsumer，调用时不需要装箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static ObjBooleanConsumer<Object> compileBooleanSetter(Method method) throws BeansException {
+        return spinPrimitiveSetter(ObjBooleanConsumer.class, method, boolean.class);
+    }
+
+    /**
+     * 把无参的实例方法(通常是getter)编译成Function，基本类型的返回值会被装箱。
+     */
+    @SuppressWarnings("unchecked")
+    public static Function<Object, Object> compileGetter(Method method) throws BeansException {
+        checkCompilable(method, 0);
+        return spin(Function.class, "apply", MethodType.methodType(Object.class, Object.class),
+                unreflect(method), MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+    }
+
+    /**
+     * 把无参的实例方法(通常是初始化方法)编译成Consumer，返回值被忽略。
+     */
+    @SuppressWarnings("unchecked")
+    public static Consumer<Object> compileInvoker(Method method) throws BeansException {
+        checkCompilable(method, 0);
+        return spin(Consumer.class, "accept", MethodType.methodType(void.class, Object.class),
+                unreflect(method), MethodType.methodType(void.class, method.getDeclaringClass()));
+    }
+
+    /// MARK - Internal
+
+    private static void checkCompilable(Executable member, int parameterCount) throws BeansException {
+        if (member.getParameterCount() != parameterCount || !isCompilable(member) ||
+                (member instanceof Method && Modifier.isStatic(member.getModifiers()))) {
+            throw new BeansException("无法为[" + member + "]生成lambda");
+        }
+    }
+
+    /**
+     * 为参数类型恰好是primitiveType的setter生成functionalInterface的实例，
+     * functionalInterface的方法签名必须是(Object, primitiveType)void。
+     */
+    private static <T> T spinPrimitiveSetter(Class<T> functionalInterface, Method method,
+                                             Class<?> primitiveType) throws BeansException {
+        checkCompilable(method, 1);
+        if (method.getParameterTypes()[0] != primitiveType) {
+            throw new BeansException("[" + method + "]的参数类型不是" + primitiveType);
+        }
+        return spin(functionalInterface, "accept", MethodType.methodType(void.class, Object.class, primitiveType),
+                unreflect(method), MethodType.methodType(void.class, method.getDeclaringClass(), primitiveType));
+    }
+
+    /**
+     * 从LambdaUtils的类加载器能否看到同一个clazz。
+     */
+    private static boolean isVisible(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive()) {
+            return true;
+        }
+        ClassLoader classLoader = LambdaUtils.class.getClassLoader();
+        try {
+            return (Class.forName(clazz.getName(), false, classLoader) == clazz);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return (type == void.class ? type : MethodType.methodType(type).wrap().returnType());
+    }
+
+    private static MethodHandle unreflect(Executable member) throws BeansException {
+        try {
+            if (member instanceof Constructor) {
+                return lookup.unreflectConstructor((Constructor<?>) member);
+            }
+            return lookup.unreflect((Method) member);
+        } catch (IllegalAccessException ex) {
+            throw new BeansException("无法访问[" + member + "]", ex);
+        }
+    }
+
+    private static <T> T spin(Class<T> functionalInterface, String methodName, MethodType erasedType,
+                              MethodHandle implementation, MethodType instantiatedType) throws BeansException {
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, methodName,
+                    MethodType.methodType(functionalInterface), erasedType, implementation, instantiatedType);
+            return functionalInterface.cast(callSite.getTarget().invoke());
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new BeansException("无法为[" + implementation + "]生成lambda", t);
+        }
+    }
+
+    /// MARK - Functional interfaces
+
+    /**
+     * JDK没有提供的(T, boolean)形式的Consumer。
+     */
+    @FunctionalInterface
+    public interface ObjBooleanConsumer<T> {
+
+        void accept(T t, boolean value);
+    }
+}
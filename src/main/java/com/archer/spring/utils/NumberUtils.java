@@ -25,6 +25,27 @@ public abstract class NumberUtils {
 
     private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
 
+    // double能精确表示的最大的10的幂是10^22
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+
+    // float能精确表示的最大的10的幂是10^10
+    private static final int MAX_EXACT_FLOAT_POWER_OF_TEN = 10;
+
+    private static final float[] FLOAT_POWERS_OF_TEN = new float[MAX_EXACT_FLOAT_POWER_OF_TEN + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        FLOAT_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < FLOAT_POWERS_OF_TEN.length; i++) {
+            FLOAT_POWERS_OF_TEN[i] = FLOAT_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
     /**
      * 将给定的Number对象转换为指定的类型。
      */
@@ -82,24 +103,25 @@ public abstract class NumberUtils {
     public static <T extends Number> T parseNumber(String text, Class<T> targetClass) {
         Objects.requireNonNull(text);
         Objects.requireNonNull(targetClass);
-        String trimmed = StringUtils.trimAllWhitespace(text);
 
+        // 基本类型直接解析原字符串，不生成去掉空格后的副本
         if (Byte.class == targetClass) {
-            return (T) (isHexNumber(trimmed) ? Byte.decode(trimmed) : Byte.valueOf(trimmed));
+            return (T) Byte.valueOf(parseByte(text));
         } else if (Short.class == targetClass) {
-            return (T) (isHexNumber(trimmed) ? Short.decode(trimmed) : Short.valueOf(trimmed));
+            return (T) Short.valueOf(parseShort(text));
         } else if (Integer.class == targetClass) {
-            return (T) (isHexNumber(trimmed) ? Integer.decode(trimmed) : Integer.valueOf(trimmed));
+            return (T) Integer.valueOf(parseInt(text));
         } else if (Long.class == targetClass) {
-            return (T) (isHexNumber(trimmed) ? Long.decode(trimmed) : Long.valueOf(trimmed));
-        } else if (BigInteger.class == targetClass) {
-            return (T) (isHexNumber(trimmed) ? decodeBigInteger(trimmed) : new BigInteger(trimmed));
+            return (T) Long.valueOf(parseLong(text));
         } else if (Float.class == targetClass) {
-            return (T) Float.valueOf(trimmed);
+            return (T) Float.valueOf(parseFloat(text));
         } else if (Double.class == targetClass) {
-            return (T) Double.valueOf(trimmed);
+            return (T) Double.valueOf(parseDouble(text));
+        } else if (BigInteger.class == targetClass) {
+            String trimmed = StringUtils.trimAllWhitespace(text);
+            return (T) (isHexNumber(trimmed) ? decodeBigInteger(trimmed) : new BigInteger(trimmed));
         } else if (BigDecimal.class == targetClass || Number.class == targetClass) {
-            return (T) new BigDecimal(trimmed);
+            return (T) new BigDecimal(StringUtils.trimAllWhitespace(text));
         } else {
             throw new IllegalArgumentException(
                     "Cannot convert String [" + text + "] to target class [" + targetClass.getName() + "]");
@@ -139,6 +161,255 @@ public abstract class NumberUtils {
         }
     }
 
+    /// MARK - Primitive parsers
+
+    /**
+     * 和parseNumber(text, Byte.class)的规则一致，但直接返回byte，不装箱。
+     */
+    public static byte parseByte(CharSequence text) {
+        return parseByte(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseByte(text)，不会生成中间的字符串。
+     */
+    public static byte parseByte(CharSequence text, int start, int end) {
+        return (byte) parseIntegral(text, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    /**
+     * 和parseNumber(text, Short.class)的规则一致，但直接返回short，不装箱。
+     */
+    public static short parseShort(CharSequence text) {
+        return parseShort(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseShort(text)，不会生成中间的字符串。
+     */
+    public static short parseShort(CharSequence text, int start, int end) {
+        return (short) parseIntegral(text, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * 和parseNumber(text, Integer.class)的规则一致，但直接返回int，不装箱。
+     */
+    public static int parseInt(CharSequence text) {
+        return parseInt(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseInt(text)，不会生成中间的字符串。
+     */
+    public static int parseInt(CharSequence text, int start, int end) {
+        return (int) parseIntegral(text, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 和parseNumber(text, Long.class)的规则一致，但直接返回long，不装箱。
+     */
+    public static long parseLong(CharSequence text) {
+        return parseLong(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseLong(text)，不会生成中间的字符串。
+     */
+    public static long parseLong(CharSequence text, int start, int end) {
+        return parseIntegral(text, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 和parseNumber(text, Float.class)的规则一致，但直接返回float，不装箱。
+     */
+    public static float parseFloat(CharSequence text) {
+        return parseFloat(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseFloat(text)。
+     * 简单的小数不会生成中间的字符串，指数、十六进制等其它格式交给Float.parseFloat。
+     */
+    public static float parseFloat(CharSequence text, int start, int end) {
+        double value = parseSimpleDecimal(text, start, end, true);
+        return (Double.isNaN(value) ? Float.parseFloat(stripWhitespace(text, start, end)) : (float) value);
+    }
+
+    /**
+     * 和parseNumber(text, Double.class)的规则一致，但直接返回double，不装箱。
+     */
+    public static double parseDouble(CharSequence text) {
+        return parseDouble(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseDouble(text)。
+     * 简单的小数不会生成中间的字符串，指数、十六进制等其它格式交给Double.parseDouble。
+     */
+    public static double parseDouble(CharSequence text, int start, int end) {
+        double value = parseSimpleDecimal(text, start, end, false);
+        return (Double.isNaN(value) ? Double.parseDouble(stripWhitespace(text, start, end)) : value);
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 解析整数，范围是[min, max]，要求min == -max - 1。
+     * 和原先先trimAllWhitespace、再按isHexNumber选择decode或valueOf的结果完全一致：
+     * 忽略所有空白字符；只有可选的负号后面紧跟0x、0X或#时才按十六进制解析，
+     * 此时前缀后面不能再有符号；否则按十进制解析，允许一个正号或负号。
+     * 数字按Character.digit识别，超出范围时抛出NumberFormatException。
+     */
+    private static long parseIntegral(CharSequence text, int start, int end, long min, long max) {
+        checkRange(text, start, end);
+        int index = skipWhitespace(text, start, end);
+        if (index == end) {
+            throw invalidNumber(text, start, end);
+        }
+        char first = text.charAt(index);
+        boolean negative = (first == '-');
+        int radix = 10;
+        int afterSign = (negative ? skipWhitespace(text, index + 1, end) : index);
+        int afterPrefix = skipHexPrefix(text, afterSign, end);
+        if (afterPrefix >= 0) {
+            radix = 16;
+            index = afterPrefix;
+            if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                throw invalidNumber(text, start, end);
+            }
+        } else if (negative || first == '+') {
+            index = skipWhitespace(text, index + 1, end);
+        }
+        // 只有符号或者前缀
+        if (index == end) {
+            throw invalidNumber(text, start, end);
+        }
+
+        // 和Long.parseLong一样按负数累加，这样min也能被表示
+        long limit = (negative ? min : -max);
+        long multiplyMin = limit / radix;
+        long result = 0;
+        for (; index < end; index = skipWhitespace(text, index + 1, end)) {
+            int digit = Character.digit(text.charAt(index), radix);
+            if (digit < 0 || result < multiplyMin) {
+                throw invalidNumber(text, start, end);
+            }
+            result *= radix;
+            if (result < limit + digit) {
+                throw invalidNumber(text, start, end);
+            }
+            result -= digit;
+        }
+        return (negative ? result : -result);
+    }
+
+    /**
+     * 如果index处(忽略空白字符)是0x、0X或#，返回前缀之后第一个非空白字符的位置，否则返回-1。
+     */
+    private static int skipHexPrefix(CharSequence text, int index, int end) {
+        if (index == end) {
+            return -1;
+        }
+        char c = text.charAt(index);
+        if (c == '#') {
+            return skipWhitespace(text, index + 1, end);
+        }
+        if (c == '0') {
+            int next = skipWhitespace(text, index + 1, end);
+            if (next < end && (text.charAt(next) == 'x' || text.charAt(next) == 'X')) {
+                return skipWhitespace(text, next + 1, end);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析形如-123.45这样没有指数的小数，其它格式返回NaN，交给JDK的解析方法。
+     * 尾数和10的幂都能被精确表示时(double不超过15位有效数字和22位小数，float不超过7位和10位)，
+     * 一次除法的结果就是正确舍入的，和Double.parseDouble/Float.parseFloat完全一致，
+     * 但不像它们那样需要分配缓冲区。
+     */
+    private static double parseSimpleDecimal(CharSequence text, int start, int end, boolean single) {
+        checkRange(text, start, end);
+        int maxDigits = (single ? 7 : 15);
+        int maxScale = (single ? MAX_EXACT_FLOAT_POWER_OF_TEN : MAX_EXACT_POWER_OF_TEN);
+        int index = skipWhitespace(text, start, end);
+        boolean negative = false;
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = (text.charAt(index) == '-');
+            index = skipWhitespace(text, index + 1, end);
+        }
+        long mantissa = 0;
+        boolean hasDigit = false;
+        // 有效数字的位数
+        int digits = 0;
+        // 小数点后的位数，没有小数点时为-1
+        int scale = -1;
+        for (; index < end; index = skipWhitespace(text, index + 1, end)) {
+            char c = text.charAt(index);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (mantissa > 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > maxDigits) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        // 没有任何数字，或者小数位太多，10的幂无法精确表示
+        if (!hasDigit || scale > maxScale) {
+            return Double.NaN;
+        }
+        double value;
+        if (single) {
+            value = (scale > 0 ? (float) mantissa / FLOAT_POWERS_OF_TEN[scale] : (float) mantissa);
+        } else {
+            value = (scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa);
+        }
+        return (negative ? -value : value);
+    }
+
+    private static int skipWhitespace(CharSequence text, int index, int end) {
+        while (index < end && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * 去掉text[start, end)中所有的空白字符，只在交给JDK解析时使用。
+     */
+    private static String stripWhitespace(CharSequence text, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void checkRange(CharSequence text, int start, int end) {
+        Objects.requireNonNull(text);
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("start = " + start + ", end = " + end + ", length = " + text.length());
+        }
+    }
+
+    private static NumberFormatException invalidNumber(CharSequence text, int start, int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+
     private static long checkedLongValue(Number number, Class<? extends Number> targetClass) {
         BigInteger bigInt = null;
         if (number instanceof BigInteger) {
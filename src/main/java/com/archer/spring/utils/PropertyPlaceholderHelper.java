@@ -0,0 +1,292 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/29.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.utils;
+
+import com.sun.istack.internal.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 替换字符串中形如${name}、${name:default}的占位符。
+ * 占位符可以嵌套，比如${db.${env}.url}、${port:${default.port}}；替换进来的值中如果还有占位符，也会继续替换。
+ *
+ * 每个不同的字符串只解析一次，编译成由文本和占位符组成的模板并缓存在此实例上，
+ * 之后替换时只需要依次拼接，不再逐字符扫描。不包含前缀的字符串不生成模板，原样返回。
+ * 可以在多个线程中使用。
+ */
+public class PropertyPlaceholderHelper {
+
+    /// MARK - Properties
+
+    // 不包含占位符的字符串
+    private static final Template LITERAL = new Template(new Object[0]);
+
+    private final String placeholderPrefix;
+
+    private final String placeholderSuffix;
+
+    // 占位符和默认值之间的分隔符，为null时不支持默认值
+    @Nullable
+    private final String valueSeparator;
+
+    // 找不到的占位符是原样保留还是抛出异常
+    private final boolean ignoreUnresolvablePlaceholders;
+
+    private final Map<String, Template> templateCache = new ConcurrentHashMap<>(256);
+
+    /// MARK - Initializers
+
+    public PropertyPlaceholderHelper(String placeholderPrefix, String placeholderSuffix) {
+        this(placeholderPrefix, placeholderSuffix, null, true);
+    }
+
+    public PropertyPlaceholderHelper(String placeholderPrefix, String placeholderSuffix,
+                                     @Nullable String valueSeparator, boolean ignoreUnresolvablePlaceholders) {
+        Objects.requireNonNull(placeholderPrefix, "placeholderPrefix不能为空");
+        Objects.requireNonNull(placeholderSuffix, "placeholderSuffix不能为空");
+        if (placeholderPrefix.isEmpty() || placeholderSuffix.isEmpty()) {
+            throw new IllegalArgumentException("placeholderPrefix和placeholderSuffix不能是空字符串");
+        }
+        this.placeholderPrefix = placeholderPrefix;
+        this.placeholderSuffix = placeholderSuffix;
+        this.valueSeparator = valueSeparator;
+        this.ignoreUnresolvablePlaceholders = ignoreUnresolvablePlaceholders;
+    }
+
+    /// MARK - Replace
+
+    /**
+     * 用properties中的值替换value中的占位符。
+     */
+    public String replacePlaceholders(String value, Properties properties) {
+        Objects.requireNonNull(properties, "properties不能为空");
+        return replacePlaceholders(value, properties::getProperty);
+    }
+
+    /**
+     * 用resolver返回的值替换value中的占位符。
+     * 找不到的占位符在ignoreUnresolvablePlaceholders为false时抛出IllegalArgumentException，
+     * 循环引用的占位符总是抛出IllegalArgumentException。
+     */
+    public String replacePlaceholders(String value, PlaceholderResolver resolver) {
+        Objects.requireNonNull(value, "value不能为空");
+        Objects.requireNonNull(resolver, "PlaceholderResolver不能为空");
+        Template template = compile(value);
+        if (template == LITERAL) {
+            return value;
+        }
+        return template.resolve(this, value, resolver, null);
+    }
+
+    /**
+     * value是否包含占位符前缀，不包含的话replacePlaceholders一定原样返回。
+     */
+    public boolean containsPlaceholder(String value) {
+        return value.contains(placeholderPrefix);
+    }
+
+    /**
+     * 缓存的模板个数。
+     */
+    public int getTemplateCount() {
+        return templateCache.size();
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 返回value编译后的模板。
+     */
+    private Template compile(String value) {
+        if (!value.contains(placeholderPrefix)) {
+            return LITERAL;
+        }
+        Template template = templateCache.get(value);
+        if (template == null) {
+            template = parse(value, 0, value.length());
+            Template existing = templateCache.putIfAbsent(value, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * 把value[start, end)解析成文本和占位符交替的模板。没有配对的后缀的前缀按普通文本处理。
+     */
+    private Template parse(String value, int start, int end) {
+        List<Object> parts = new ArrayList<>();
+        int literalStart = start;
+        int index = value.indexOf(placeholderPrefix, start);
+        while (index >= 0 && index < end) {
+            int suffixIndex = findPlaceholderEndIndex(value, index, end);
+            if (suffixIndex < 0) {
+                break;
+            }
+            if (index > literalStart) {
+                parts.add(value.substring(literalStart, index));
+            }
+            parts.add(parsePlaceholder(value, index + placeholderPrefix.length(), suffixIndex));
+            literalStart = suffixIndex + placeholderSuffix.length();
+            index = value.indexOf(placeholderPrefix, literalStart);
+        }
+        if (literalStart < end) {
+            parts.add(value.substring(literalStart, end));
+        }
+        return new Template(parts.toArray());
+    }
+
+    /**
+     * 解析前缀和后缀之间的部分，按第一个不在嵌套占位符中的分隔符分成名字和默认值。
+     */
+    private Placeholder parsePlaceholder(String value, int start, int end) {
+        int separatorIndex = -1;
+        if (valueSeparator != null) {
+            int nesting = 0;
+            for (int i = start; i < end; i++) {
+                if (value.startsWith(placeholderPrefix, i)) {
+                    nesting++;
+                    i += placeholderPrefix.length() - 1;
+                } else if (nesting > 0 && value.startsWith(placeholderSuffix, i)) {
+                    nesting--;
+                    i += placeholderSuffix.length() - 1;
+                } else if (nesting == 0 && value.startsWith(valueSeparator, i)) {
+                    separatorIndex = i;
+                    break;
+                }
+            }
+        }
+        String text = value.substring(start, end);
+        if (separatorIndex < 0) {
+            return new Placeholder(text, parse(value, start, end), null);
+        }
+        return new Placeholder(text, parse(value, start, separatorIndex),
+                parse(value, separatorIndex + valueSeparator.length(), end));
+    }
+
+    /**
+     * 和prefixIndex处的前缀配对的后缀的位置，找不到时返回-1。
+     */
+    private int findPlaceholderEndIndex(String value, int prefixIndex, int end) {
+        int index = prefixIndex + placeholderPrefix.length();
+        int nesting = 0;
+        while (index < end) {
+            if (value.startsWith(placeholderSuffix, index)) {
+                if (nesting == 0) {
+                    return (index + placeholderSuffix.length() <= end ? index : -1);
+                }
+                nesting--;
+                index += placeholderSuffix.length();
+            } else if (value.startsWith(placeholderPrefix, index)) {
+                nesting++;
+                index += placeholderPrefix.length();
+            } else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    /// MARK - Internal static class
+
+    /**
+     * 根据占位符的名字返回对应的值。
+     */
+    @FunctionalInterface
+    public interface PlaceholderResolver {
+
+        /**
+         * 返回placeholderName对应的值，没有的话返回null。
+         */
+        @Nullable
+        String resolvePlaceholder(String placeholderName);
+    }
+
+    /**
+     * 编译后的字符串，parts中是String(文本)或者Placeholder。
+     */
+    private static final class Template {
+
+        private final Object[] parts;
+
+        Template(Object[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * visiting是正在替换的占位符，用来检查循环引用，第一次遇到占位符时才创建。
+         */
+        String resolve(PropertyPlaceholderHelper helper, String original,
+                       PlaceholderResolver resolver, Set<String> visiting) {
+            // 只有一个占位符时不需要拼接
+            if (parts.length == 1) {
+                Object part = parts[0];
+                return (part instanceof String ? (String) part :
+                        ((Placeholder) part).resolve(helper, original, resolver, visiting));
+            }
+            StringBuilder sb = new StringBuilder(original.length() + 16);
+            for (Object part : parts) {
+                if (part instanceof String) {
+                    sb.append((String) part);
+                } else {
+                    sb.append(((Placeholder) part).resolve(helper, original, resolver, visiting));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 一个占位符，名字和默认值本身也可能包含占位符。
+     */
+    private static final class Placeholder {
+
+        // 前缀和后缀之间的原始文本，原样保留时使用
+        private final String text;
+
+        private final Template name;
+
+        @Nullable
+        private final Template defaultValue;
+
+        Placeholder(String text, Template name, @Nullable Template defaultValue) {
+            this.text = text;
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+
+        String resolve(PropertyPlaceholderHelper helper, String original,
+                       PlaceholderResolver resolver, Set<String> visiting) {
+            String placeholderName = name.resolve(helper, original, resolver, visiting);
+            if (visiting == null) {
+                visiting = new HashSet<>(4);
+            }
+            if (!visiting.add(placeholderName)) {
+                throw new IllegalArgumentException("循环引用的占位符[" + placeholderName + "]，位于[" + original + "]");
+            }
+            try {
+                String value = resolver.resolvePlaceholder(placeholderName);
+                if (value != null) {
+                    // 值中可能还有占位符
+                    Template template = helper.compile(value);
+                    return (template == LITERAL ? value : template.resolve(helper, value, resolver, visiting));
+                }
+                if (defaultValue != null) {
+                    return defaultValue.resolve(helper, original, resolver, visiting);
+                }
+                if (helper.ignoreUnresolvablePlaceholders) {
+                    return helper.placeholderPrefix + text + helper.placeholderSuffix;
+                }
+                throw new IllegalArgumentException("无法解析占位符[" + placeholderName + "]，位于[" + original + "]");
+            } finally {
+                visiting.remove(placeholderName);
+            }
+        }
+    }
+}
@@ -6,12 +6,13 @@
 
 package com.archer.spring.utils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.StringTokenizer;
-
 public abstract class StringUtils {
 
+    // 表示true和false的字面量，数字没有大小写之分，和equals比较的结果一样
+    private static final String[] TRUE_VALUES = { "true", "on", "yes", "1" };
+
+    private static final String[] FALSE_VALUES = { "false", "off", "no", "0" };
+
     /**
      * 检查str是否包含字符。
      */
@@ -51,21 +52,64 @@ public abstract class StringUtils {
     }
 
     /**
-     * 将s按照delimiters分割成数组。
+     * 将s按照delimiters分割成数组，规则和StringTokenizer一致。
+     * 先数出token的个数再直接填充数组，不需要中间的List。
      */
     public static String[] split(String s, String delimiters, boolean trimTokens, boolean ignoreEmptyTokens) {
-        StringTokenizer st = new StringTokenizer(s, delimiters);
-        List<String> tokens = new ArrayList<>();
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            if (trimTokens) {
-                token = token.trim();
+        TextTokenizer tokenizer = new TextTokenizer(delimiters, trimTokens, ignoreEmptyTokens).reset(s);
+        int count = 0;
+        while (tokenizer.next()) {
+            count++;
+        }
+        String[] tokens = new String[count];
+        tokenizer.reset(s);
+        for (int i = 0; tokenizer.next(); i++) {
+            tokens[i] = tokenizer.getToken();
+        }
+        return tokens;
+    }
+
+    /**
+     * text[start, end)去掉开头的空白后的起始位置，空白和String.trim()一样指不大于' '的字符。
+     */
+    public static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * text[start, end)去掉末尾的空白后的结束位置，空白和String.trim()一样指不大于' '的字符。
+     */
+    public static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * text[start, end)是否和candidate相等，忽略大小写，规则和String.equalsIgnoreCase一致。
+     */
+    public static boolean regionEqualsIgnoreCase(CharSequence text, int start, int end, String candidate) {
+        int length = end - start;
+        if (length != candidate.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c1 = text.charAt(start + i);
+            char c2 = candidate.charAt(i);
+            if (c1 == c2) {
+                continue;
             }
-            if (!(ignoreEmptyTokens && token.length() == 0)) {
-                tokens.add(token);
+            char u1 = Character.toUpperCase(c1);
+            char u2 = Character.toUpperCase(c2);
+            if (u1 != u2 && Character.toLowerCase(u1) != Character.toLowerCase(u2)) {
+                return false;
             }
         }
-        return tokens.toArray(new String[0]);
+        return true;
     }
 
     /**
@@ -77,8 +121,17 @@ public abstract class StringUtils {
         }
 
         int len = str.length();
-        StringBuilder sb = new StringBuilder(str.length());
-        for (int i = 0; i < len; i++) {
+        int first = 0;
+        while (first < len && !Character.isWhitespace(str.charAt(first))) {
+            first++;
+        }
+        // 没有空格时直接返回原字符串，不复制
+        if (first == len) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(len);
+        sb.append(str, 0, first);
+        for (int i = first + 1; i < len; i++) {
             char c = str.charAt(i);
             if (!Character.isWhitespace(c)) {
                 sb.append(c);
@@ -86,4 +139,39 @@ public abstract class StringUtils {
         }
         return sb.toString();
     }
+
+    /**
+     * 按CustomBooleanEditor的规则把字符串解析成boolean，不接受空字符串。
+     * true/on/yes/1表示true，false/off/no/0表示false，忽略大小写和首尾的空格。
+     */
+    public static boolean parseBoolean(CharSequence text) {
+        return parseBoolean(text, 0, text.length());
+    }
+
+    /**
+     * 解析text[start, end)，规则同parseBoolean(text)，不会生成中间的字符串。
+     */
+    public static boolean parseBoolean(CharSequence text, int start, int end) {
+        int from = trimStart(text, start, end);
+        int to = trimEnd(text, from, end);
+        if (matchesAny(text, from, to, TRUE_VALUES)) {
+            return true;
+        }
+        if (matchesAny(text, from, to, FALSE_VALUES)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Invalid boolean value [" + text.subSequence(start, end) + "]");
+    }
+
+    /**
+     * text[start, end)是否和candidates中的某一个相等，忽略大小写。
+     */
+    public static boolean matchesAny(CharSequence text, int start, int end, String[] candidates) {
+        for (String candidate : candidates) {
+            if (regionEqualsIgnoreCase(text, start, end, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Github: https://github.com/AnyOptional
+ * Created by Archer on 2019/10/27.
+ * All rights reserved.
+ */
+
+package com.archer.spring.utils;
+
+import java.util.Objects;
+
+/**
+ * 按分隔符切分字符序列的分词器，规则和StringTokenizer一致：
+ * delimiters中的每个字符都是分隔符，连续的分隔符之间不会产生空的token。
+ *
+ * 和StringTokenizer不同，它只记录当前token在原序列中的范围，
+ * 配合NumberUtils、StringUtils中按范围解析的方法，不需要为每个token生成String；
+ * reset之后可以切分新的序列，同一个实例可以反复使用。
+ * 不是线程安全的。
+ */
+public final class TextTokenizer {
+
+    /// MARK - Properties
+
+    private final String delimiters;
+
+    // 是否去掉token首尾的空白，规则同String.trim()
+    private final boolean trimTokens;
+
+    // 去掉空白后为空的token是否跳过
+    private final boolean ignoreEmptyTokens;
+
+    private CharSequence text;
+
+    // 下一次查找的起始位置
+    private int position;
+
+    private int end;
+
+    private int tokenStart;
+
+    private int tokenEnd;
+
+    /// MARK - Initializers
+
+    public TextTokenizer(String delimiters, boolean trimTokens, boolean ignoreEmptyTokens) {
+        Objects.requireNonNull(delimiters, "delimiters不能为空");
+        this.delimiters = delimiters;
+        this.trimTokens = trimTokens;
+        this.ignoreEmptyTokens = ignoreEmptyTokens;
+    }
+
+    /// MARK - Tokenize
+
+    /**
+     * 开始切分text。
+     */
+    public TextTokenizer reset(CharSequence text) {
+        return reset(text, 0, text.length());
+    }
+
+    /**
+     * 开始切分text[start, end)。
+     */
+    public TextTokenizer reset(CharSequence text, int start, int end) {
+        Objects.requireNonNull(text, "text不能为空");
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("start = " + start + ", end = " + end + ", length = " + text.length());
+        }
+        this.text = text;
+        this.position = start;
+        this.end = end;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+        return this;
+    }
+
+    /**
+     * 移动到下一个token，没有更多的token时返回false。
+     */
+    public boolean next() {
+        if (text == null) {
+            throw new IllegalStateException("需要先调用reset");
+        }
+        while (true) {
+            while (position < end && isDelimiter(text.charAt(position))) {
+                position++;
+            }
+            if (position == end) {
+                tokenStart = end;
+                tokenEnd = end;
+                return false;
+            }
+            int start = position;
+            while (position < end && !isDelimiter(text.charAt(position))) {
+                position++;
+            }
+            int stop = position;
+            if (trimTokens) {
+                start = StringUtils.trimStart(text, start, stop);
+                stop = StringUtils.trimEnd(text, start, stop);
+            }
+            if (start == stop && ignoreEmptyTokens) {
+                continue;
+            }
+            tokenStart = start;
+            tokenEnd = stop;
+            return true;
+        }
+    }
+
+    /**
+     * 当前token在原序列中的起始位置。
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * 当前token在原序列中的结束位置(不包含)。
+     */
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * 把当前token生成String。
+     */
+    public String getToken() {
+        return text.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /// MARK - Internal
+
+    private boolean isDelimiter(char c) {
+        return delimiters.indexOf(c) >= 0;
+    }
+}
@@ -7,6 +7,7 @@
 package com.archer.spring.context;
 
 import com.archer.spring.context.support.ClassPathXMLApplicationContext;
+import com.archer.spring.factory.BeanWrapper;
 import com.archer.spring.pojo.Capital;
 import org.junit.Test;
 
@@ -35,4 +36,16 @@ public class ApplicationContextTests {
         context.close();
     }
 
+    @Test
+    public void testCloseKeepsSharedIntrospectionCache() {
+        ConfigurableApplicationContext context = new ClassPathXMLApplicationContext("classpath:config.xml");
+        context.getBean("capital", Capital.class);
+        new BeanWrapper(Capital.class);
+        // 类加载器就是加载框架的类加载器，关闭时不能清理其他ApplicationContext还在使用的缓存
+        context.close();
+        long misses = BeanWrapper.getIntrospectionCacheStatistics().getMissCount();
+        new BeanWrapper(Capital.class);
+        assertEquals(misses, BeanWrapper.getIntrospectionCacheStatistics().getMissCount());
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/29.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.context;
+
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.ConstructorArgumentValues;
+import com.archer.spring.factory.MutablePropertyValues;
+import com.archer.spring.factory.PropertyValue;
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.config.PropertyPlaceholderConfigurer;
+import com.archer.spring.factory.pojo.Ticket;
+import com.archer.spring.factory.pojo.Timetable;
+import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.support.ManagedList;
+import com.archer.spring.utils.PropertyPlaceholderHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PropertyPlaceholderConfigurerTests {
+
+    @Test
+    public void testPlaceholderHelper() {
+        PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper("${", "}", ":", false);
+        Properties properties = new Properties();
+        properties.setProperty("env", "prod");
+        properties.setProperty("db.prod.url", "jdbc:${db.host}/main");
+        properties.setProperty("db.host", "10.0.0.1");
+        properties.setProperty("loop", "${loop}");
+
+        assertEquals("jdbc:10.0.0.1/main", helper.replacePlaceholders("${db.${env}.url}", properties));
+        assertEquals("port=8080;", helper.replacePlaceholders("port=${port:${default.port:8080}};", properties));
+        assertEquals("${ no placeholder", helper.replacePlaceholders("${ no placeholder", properties));
+        String literal = "plain text";
+        assertSame(literal, helper.replacePlaceholders(literal, properties));
+        // 同一个字符串只编译一次
+        int templates = helper.getTemplateCount();
+        helper.replacePlaceholders("${db.${env}.url}", properties);
+        assertEquals(templates, helper.getTemplateCount());
+
+        for (String invalid : new String[] { "${missing}", "${loop}" }) {
+            try {
+                helper.replacePlaceholders(invalid, properties);
+                fail(invalid);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        PropertyPlaceholderHelper lenient = new PropertyPlaceholderHelper("${", "}");
+        assertEquals("a-${missing:x}", lenient.replacePlaceholders("a-${missing:x}", properties));
+    }
+
+    @Test
+    public void testPropertyPlaceholderConfigurer() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        for (int i = 0; i < 3; i++) {
+            MutablePropertyValues pvs = new MutablePropertyValues();
+            pvs.addPropertyValue(new PropertyValue("seat", "${seat.base}" + i));
+            pvs.addPropertyValue(new PropertyValue("holder", new String("${holder:guest}")));
+            beanFactory.registerBeanDefinition("ticket-" + i, new BeanDefinition(Ticket.class, pvs));
+        }
+        ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+        ManagedList<Object> departures = new ManagedList<>();
+        departures.addAll(Arrays.asList("${first}", "${first}5", "30"));
+        cargs.addIndexedArgumentValue(0, departures);
+        beanFactory.registerBeanDefinition("timetable", new BeanDefinition(Timetable.class, cargs));
+
+        Properties properties = new Properties();
+        properties.setProperty("seat.base", "1");
+        properties.setProperty("first", "1");
+        System.setProperty("first", "2");
+        try {
+            PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+            configurer.setProperties(properties);
+            configurer.setSystemPropertiesMode(PropertyPlaceholderConfigurer.SYSTEM_PROPERTIES_MODE_OVERRIDE);
+            configurer.postProcessBeanFactory(beanFactory);
+        } finally {
+            System.clearProperty("first");
+        }
+
+        assertEquals(12, beanFactory.getBean("ticket-2", Ticket.class).getSeat());
+        // 相同的结果共享同一个实例
+        String holder = beanFactory.getBean("ticket-0", Ticket.class).getHolder();
+        assertEquals("guest", holder);
+        assertSame(holder, beanFactory.getBean("ticket-1", Ticket.class).getHolder());
+        // 系统属性覆盖了properties
+        assertEquals(Arrays.asList(2, 25, 30), beanFactory.getBean("timetable", Timetable.class).getDepartures());
+
+        DefaultListableBeanFactory unresolvable = new DefaultListableBeanFactory();
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("holder", "${no.such.placeholder}"));
+        unresolvable.registerBeanDefinition("ticket", new BeanDefinition(Ticket.class, pvs));
+        try {
+            new PropertyPlaceholderConfigurer().postProcessBeanFactory(unresolvable);
+            fail();
+        } catch (BeansException expected) {
+        }
+    }
+}
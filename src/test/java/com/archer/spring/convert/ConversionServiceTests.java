@@ -0,0 +1,194 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/25.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.convert;
+
+import com.archer.spring.factory.BeanWrapper;
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.pojo.Car;
+import com.archer.spring.pojo.Person;
+import org.junit.Test;
+
+import java.beans.PropertyEditor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ConversionServiceTests {
+
+    @Test
+    public void testDefaultConverters() {
+        DefaultConversionService conversionService = new DefaultConversionService();
+        assertEquals(42, conversionService.convert("42", int.class));
+        assertEquals(255, conversionService.convert("0xFF", Integer.class));
+        assertNull(conversionService.convert("", Integer.class));
+        assertEquals(new BigDecimal("1.5"), conversionService.convert("1.5", BigDecimal.class));
+        assertEquals(3L, conversionService.convert(3, long.class));
+        assertEquals(Boolean.TRUE, conversionService.convert("yes", boolean.class));
+        assertEquals('x', conversionService.convert("x", char.class));
+        assertEquals(String.class, conversionService.convert("java.lang.String", Class.class));
+        try {
+            conversionService.convert("abc", int.class);
+            fail();
+        } catch (ConversionFailedException expected) {
+        }
+    }
+
+    @Test
+    public void testDefaultConvertersMatchDefaultEditors() {
+        DefaultConversionService conversionService = new DefaultConversionService();
+        BeanWrapper wrapper = new BeanWrapper(new Person());
+        Class<?>[] types = { Class.class, boolean.class, Boolean.class, byte.class, Byte.class,
+                short.class, Short.class, int.class, Integer.class, long.class, Long.class,
+                float.class, Float.class, double.class, Double.class, BigInteger.class, BigDecimal.class };
+        String[] inputs = { "", " ", "\t\n", " 1 ", " true ", " java.lang.String " };
+        for (Class<?> type : types) {
+            PropertyEditor editor = wrapper.findDefaultEditor(type);
+            assertNotNull(editor);
+            assertTrue(conversionService.isDefaultConverter(String.class, type));
+            for (String input : inputs) {
+                String message = "[" + input + "] -> " + type.getName();
+                assertEquals(message, convertWithEditor(editor, input), convertWithConversionService(conversionService, input, type));
+            }
+        }
+    }
+
+    // 转换失败时返回FAILED
+    private static final Object FAILED = new Object() {
+        @Override
+        public String toString() {
+            return "FAILED";
+        }
+    };
+
+    private static Object convertWithEditor(PropertyEditor editor, String input) {
+        synchronized (editor) {
+            try {
+                editor.setAsText(input);
+                return editor.getValue();
+            } catch (IllegalArgumentException ex) {
+                return FAILED;
+            }
+        }
+    }
+
+    private static Object convertWithConversionService(ConversionService conversionService, String input, Class<?> type) {
+        try {
+            return conversionService.convert(input, type);
+        } catch (ConversionFailedException ex) {
+            return FAILED;
+        }
+    }
+
+    @Test
+    public void testConverterLookup() {
+        DefaultConversionService conversionService = new DefaultConversionService();
+        // 没有的Converter也会被缓存，注册之后缓存失效
+        assertFalse(conversionService.canConvert(StringBuilder.class, Person.class));
+        assertFalse(conversionService.canConvert(StringBuilder.class, Person.class));
+        // 按父接口查找
+        conversionService.addConverter(CharSequence.class, Person.class, source -> {
+            Person person = new Person();
+            person.setName(source.toString());
+            return person;
+        });
+        assertTrue(conversionService.canConvert(StringBuilder.class, Person.class));
+        assertEquals("saber", ((Person) conversionService.convert(new StringBuilder("saber"), Person.class)).getName());
+        // 可以直接赋值的不需要Converter
+        assertTrue(conversionService.canConvert(Integer.class, Number.class));
+    }
+
+    @Test
+    public void testConcurrentConversion() throws Exception {
+        // 同时转换不同的值，互相之间不能看到对方的结果
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    BeanWrapper wrapper = new BeanWrapper(new Person());
+                    wrapper.setConversionService(DefaultConversionService.getSharedInstance());
+                    for (int i = 0; i < 2000; i++) {
+                        int age = seed * 10000 + i;
+                        wrapper.setPropertyValue("age", String.valueOf(age));
+                        if (!Integer.valueOf(age).equals(wrapper.getPropertyValue("age"))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = BeansException.class)
+    public void testConversionFailureInBeanWrapper() {
+        BeanWrapper wrapper = new BeanWrapper(new Person());
+        wrapper.setConversionService(new DefaultConversionService());
+        wrapper.setPropertyValue("age", "twenty");
+    }
+
+    @Test
+    public void testClearClassLoader() throws Exception {
+        WeakReference<Class<?>> isolated = convertWithIsolatedClass();
+        // 缓存不再持有这个类，它和它的类加载器都可以被回收
+        for (int i = 0; i < 20 && isolated.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull(isolated.get());
+    }
+
+    private static WeakReference<Class<?>> convertWithIsolatedClass() throws Exception {
+        IsolatedClassLoader classLoader = new IsolatedClassLoader(ConversionServiceTests.class.getClassLoader());
+        Class<?> carClass = classLoader.define(Car.class);
+        assertNotSame(Car.class, carClass);
+
+        // 成功和失败的查找结果都会被缓存
+        DefaultConversionService conversionService = DefaultConversionService.getSharedInstance();
+        assertFalse(conversionService.canConvert(String.class, carClass));
+        assertFalse(conversionService.canConvert(carClass, Integer.class));
+        assertTrue(conversionService.canConvert(carClass, Object.class));
+
+        BeanWrapper.clearClassLoader(classLoader);
+        return new WeakReference<>(carClass);
+    }
+
+    // 重新定义一份已有的类，模拟另一个类加载器加载的应用类
+    private static class IsolatedClassLoader extends ClassLoader {
+
+        IsolatedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(Class<?> clazz) throws IOException {
+            String resource = clazz.getName().replace('.', '/') + ".class";
+            try (InputStream in = getParent().getResourceAsStream(resource)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) != -1; ) {
+                    out.write(buffer, 0, n);
+                }
+                byte[] bytes = out.toByteArray();
+                return defineClass(clazz.getName(), bytes, 0, bytes.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/30.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.expression;
+
+import com.archer.spring.factory.BeansException;
+import com.archer.spring.factory.MutablePropertyValues;
+import com.archer.spring.factory.PropertyValue;
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.config.PropertyPlaceholderConfigurer;
+import com.archer.spring.factory.pojo.Ticket;
+import com.archer.spring.factory.pojo.Timetable;
+import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.xml.DefaultXMLBeanDefinitionReader;
+import com.archer.spring.io.ClassPathResource;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ExpressionTests {
+
+    // 静态常量字段引用的数组仍然可以被修改
+    public static final int[] GATES = { 1, 2, 3 };
+
+    @Test
+    public void testEvaluateExpression() {
+        ExpressionParser parser = new ExpressionParser();
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("config", Collections.singletonMap("size", 4));
+        beans.put("names", Arrays.asList("a", "b", "c"));
+        EvaluationContext context = beans::get;
+
+        assertEquals(7, parser.parseExpression("1 + 2 * 3").getValue(null));
+        assertEquals(-1.5, parser.parseExpression("-(3 / 2.0)").getValue(null));
+        assertEquals(3000000000L, parser.parseExpression("1500000000 * 2L").getValue(null));
+        assertEquals("it's 2", parser.parseExpression("'it''s ' + (5 % 3)").getValue(null));
+        assertEquals(true, parser.parseExpression("1 < 2 && !(2 >= 3) or null.x").getValue(null));
+        assertEquals("big", parser.parseExpression("@config.size * 10 > 30 ? 'big' : 'small'").getValue(context));
+        assertEquals("c", parser.parseExpression("names[config['size'] - 2]").getValue(context));
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                parser.parseExpression("T(Runtime).getRuntime().availableProcessors()").getValue(null));
+        assertEquals(7L, parser.parseExpression("T(java.lang.Math).max(3L, 7)").getValue(null));
+        assertEquals(7, parser.parseExpression("T(Math).max(3, 7)").getValue(null));
+        assertEquals(Integer.MAX_VALUE - 1, parser.parseExpression("T(Integer).MAX_VALUE - 1").getValue(null));
+        assertEquals("size=4!", parser.parseTemplate("size=#{config.size}!").getValue(context));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("config", "names")),
+                parser.parseExpression("names.size() + @config.size").getBeanReferences());
+
+        // 同一个表达式只解析一次，第一次计算后就不再编译
+        Expression expression = parser.parseExpression("names.get(1).toUpperCase()");
+        assertSame(expression, parser.parseExpression("names.get(1).toUpperCase()"));
+        assertFalse(((CompiledExpression) expression).isCompiled());
+        assertEquals("B", expression.getValue(context));
+        assertTrue(((CompiledExpression) expression).isCompiled());
+        beans.put("names", new ArrayList<>(Arrays.asList("x", "y")));
+        assertEquals("Y", expression.getValue(context));
+
+        Expression gate = parser.parseExpression("T(com.archer.spring.expression.ExpressionTests).GATES[1] * 10");
+        assertEquals(20, gate.getValue(null));
+        GATES[1] = 5;
+        try {
+            assertEquals(50, gate.getValue(null));
+        } finally {
+            GATES[1] = 2;
+        }
+
+        for (String invalid : new String[] { "1 +", "(1", "'open", "T(no.such.Type)", "1 $ 2" }) {
+            try {
+                parser.parseExpression(invalid);
+                fail(invalid);
+            } catch (ExpressionException expected) {
+            }
+        }
+        for (String invalid : new String[] { "1 / 0", "'a' - 1", "names.missing", "names.get('x')" }) {
+            try {
+                parser.parseExpression(invalid).getValue(context);
+                fail(invalid);
+            } catch (ExpressionException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testExpressionsInBeanDefinitions() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        new DefaultXMLBeanDefinitionReader(beanFactory).loadBeanDefinitions(new ClassPathResource("expression.xml"));
+
+        Object seat = beanFactory.getBeanDefinition("ticket").getPropertyValues().getPropertyValue("seat").getValue();
+        assertTrue(seat instanceof CompiledExpression);
+        for (int i = 0; i < 3; i++) {
+            Ticket ticket = beanFactory.getBean("ticket", Ticket.class);
+            assertEquals(Runtime.getRuntime().availableProcessors() * 2, ticket.getSeat());
+            assertEquals("owner-byd", ticket.getHolder());
+            assertEquals(250.5, ticket.getFare(), 0);
+            assertEquals(7L, ticket.getSerial());
+            assertTrue(ticket.isRefundable());
+        }
+        // 创建原型时复用同一个已编译的表达式
+        assertSame(seat, beanFactory.getBeanDefinition("ticket").getPropertyValues().getPropertyValue("seat").getValue());
+        assertTrue(((CompiledExpression) seat).isCompiled());
+        assertEquals(Arrays.asList(360, Integer.MAX_VALUE - 1, 1),
+                beanFactory.getBean("timetable", Timetable.class).getDepartures());
+
+        // 占位符替换后再解析表达式
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("seat", "#{${base} * 2}"));
+        beanFactory.registerBeanDefinition("placeholder", new BeanDefinition(Ticket.class, pvs));
+        MutablePropertyValues missing = new MutablePropertyValues();
+        missing.addPropertyValue(new PropertyValue("holder", new ExpressionParser().parseTemplate("#{@missing}")));
+        beanFactory.registerBeanDefinition("missing", new BeanDefinition(Ticket.class, missing));
+        // 没有占位符的字符串保持原样，不会因为和其他定义中的字符串相同而被解析成表达式
+        for (String name : new String[] { "plain-1", "plain-2" }) {
+            MutablePropertyValues plain = new MutablePropertyValues();
+            plain.addPropertyValue(new PropertyValue("holder", new String("#{'owner'}")));
+            beanFactory.registerBeanDefinition(name, new BeanDefinition(Ticket.class, plain));
+        }
+        Properties properties = new Properties();
+        properties.setProperty("base", "21");
+        PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+        configurer.setProperties(properties);
+        configurer.postProcessBeanFactory(beanFactory);
+        assertEquals(42, beanFactory.getBean("placeholder", Ticket.class).getSeat());
+        assertEquals("#{'owner'}", beanFactory.getBean("plain-1", Ticket.class).getHolder());
+        assertEquals("#{'owner'}", beanFactory.getBean("plain-2", Ticket.class).getHolder());
+        try {
+            beanFactory.getBean("missing");
+            fail();
+        } catch (BeansException expected) {
+        }
+    }
+}
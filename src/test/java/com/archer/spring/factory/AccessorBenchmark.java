@@ -0,0 +1,120 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.pojo.Person;
+import com.archer.spring.utils.LambdaUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 属性访问的基准测试，不是单元测试，需要手动运行：
+ *
+ *   java -cp target/classes:target/test-classes com.archer.spring.factory.AccessorBenchmark
+ *
+ * 每一项先预热，再取5轮中最好的一轮，结果输出到System.err。对Person的String属性name分别测试：
+ * 1. descriptor：每次从PropertyDescriptor取出Method再Method.invoke，也就是BeanWrapper原来的做法。
+ * 2. reflection：缓存好的Method直接Method.invoke。
+ * 3. compiled：LambdaUtils编译出的Function/BiConsumer，也就是BeanWrapper现在使用的访问器。
+ * 4. BeanWrapper：getPropertyValue/setPropertyValue，访问器已经编译过了。
+ */
+public class AccessorBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int OPERATIONS = 5_000_000;
+
+    private static final String[] NAMES = { "archer", "saber", "lancer", "rider" };
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        // 轮流访问几个对象，避免JIT把对同一个对象的重复写入合并掉
+        Person[] persons = new Person[NAMES.length];
+        BeanWrapper[] wrappers = new BeanWrapper[NAMES.length];
+        for (int i = 0; i < persons.length; i++) {
+            persons[i] = new Person();
+            persons[i].setName(NAMES[i]);
+            wrappers[i] = new BeanWrapper(persons[i]);
+        }
+        PropertyDescriptor pd = new PropertyDescriptor("name", Person.class);
+        Method readMethod = pd.getReadMethod();
+        Method writeMethod = pd.getWriteMethod();
+        Function<Object, Object> getter = LambdaUtils.compileGetter(readMethod);
+        BiConsumer<Object, Object> setter = LambdaUtils.compileSetter(writeMethod);
+
+        report("get descriptor ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += pd.getReadMethod().invoke(persons[i & 3]).hashCode();
+            }
+        });
+        report("get reflection ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += readMethod.invoke(persons[i & 3]).hashCode();
+            }
+        });
+        report("get compiled   ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += getter.apply(persons[i & 3]).hashCode();
+            }
+        });
+        report("get BeanWrapper", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += wrappers[i & 3].getPropertyValue("name").hashCode();
+            }
+        });
+        report("set descriptor ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                pd.getWriteMethod().invoke(persons[i & 3], NAMES[(i >> 2) & 3]);
+            }
+        });
+        report("set reflection ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                writeMethod.invoke(persons[i & 3], NAMES[(i >> 2) & 3]);
+            }
+        });
+        report("set compiled   ", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                setter.accept(persons[i & 3], NAMES[(i >> 2) & 3]);
+            }
+        });
+        report("set BeanWrapper", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                wrappers[i & 3].setPropertyValue("name", NAMES[(i >> 2) & 3]);
+            }
+        });
+        for (Person person : persons) {
+            sink += person.getName().hashCode();
+        }
+        System.out.println(sink);
+    }
+
+    /// MARK - Internal
+
+    /**
+     * 执行一轮OPERATIONS次操作。
+     */
+    private interface Round {
+        void run() throws Exception;
+    }
+
+    private static void report(String name, Round round) throws Exception {
+        long best = Long.MAX_VALUE;
+        // 前ROUNDS轮用来预热
+        for (int i = -ROUNDS; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            if (i >= 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.err.printf("%s %6.1fns/op%n", name, (double) best / OPERATIONS);
+    }
+}
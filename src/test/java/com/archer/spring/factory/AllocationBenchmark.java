@@ -0,0 +1,71 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.factory.pojo.Ticket;
+import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.xml.DefaultXMLBeanDefinitionReader;
+import com.archer.spring.factory.xml.XMLBeanDefinitionReader;
+import com.archer.spring.io.ClassPathResource;
+import com.archer.spring.pojo.Capital;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 快速路径上的内存分配，不是单元测试，需要手动运行：
+ *
+ *   java -cp target/classes:target/test-classes com.archer.spring.factory.AllocationBenchmark
+ *
+ * 结果依赖JIT的逃逸分析，在-Xint或者挂了覆盖率agent时没有意义，所以不放在单元测试里。
+ * 每一项预热后执行一百万次，输出当前线程分配的字节数到System.err，正常应该接近0：
+ * 哪怕每次调用只分配一个最小的对象，一百万次也会有十几MB。
+ * 1. BeanHandle：已经缓存了单例的BeanHandle.get()。
+ * 2. primitive：BeanWrapper把字符串注入基本类型属性，不装箱也不经过PropertyEditor。
+ */
+public class AllocationBenchmark {
+
+    private static final int WARMUP = 100_000;
+
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XMLBeanDefinitionReader reader = new DefaultXMLBeanDefinitionReader(beanFactory);
+        reader.loadBeanDefinitions(new ClassPathResource("config.xml"));
+        BeanHandle<Capital> capital = beanFactory.getBeanHandle("capital", Capital.class);
+        report("BeanHandle", capital::get);
+
+        BeanWrapper wrapper = new BeanWrapper(new Ticket());
+        report("primitive ", () -> {
+            wrapper.setPropertyValue("seat", "1234");
+            wrapper.setPropertyValue("fare", "12.5");
+        });
+    }
+
+    /// MARK - Internal
+
+    private static void report(String name, Runnable action) {
+        long threadId = Thread.currentThread().getId();
+        // 预热，让JIT编译快速路径
+        for (int i = 0; i < WARMUP; i++) {
+            action.run();
+        }
+        // 测量本身也会分配少量内存，先算出这部分开销
+        long overhead = threadMXBean.getThreadAllocatedBytes(threadId);
+        overhead = threadMXBean.getThreadAllocatedBytes(threadId) - overhead;
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.run();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        System.err.printf("%s %8d bytes / %d calls%n", name, allocated, ITERATIONS);
+    }
+}
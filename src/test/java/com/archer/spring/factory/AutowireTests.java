@@ -6,12 +6,22 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.config.BeanPostProcessor;
+import com.archer.spring.factory.pojo.CountingFactoryBean;
+import com.archer.spring.factory.pojo.QQCoin;
+import com.archer.spring.factory.pojo.Receipt;
 import com.archer.spring.factory.pojo.Tencent;
 import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.support.RuntimeBeanReference;
 import com.archer.spring.factory.xml.DefaultXMLBeanDefinitionReader;
 import com.archer.spring.factory.xml.XMLBeanDefinitionReader;
 import com.archer.spring.io.ClassPathResource;
 import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class AutowireTests {
@@ -27,4 +37,116 @@ public class AutowireTests {
         assertNotNull(tencent.getCoin());
         assertEquals(tencent.getCoin().getCount(), 256);
     }
+
+    @Test
+    public void testAmbiguousCandidatesAreNotInstantiated() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        List<String> created = new ArrayList<>();
+        beanFactory.addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String name) {
+                created.add(name);
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String name) {
+                return bean;
+            }
+        });
+        for (String coinName : new String[] { "coin1", "coin2" }) {
+            ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+            cargs.addIndexedArgumentValue(0, "128", "int");
+            BeanDefinition bd = new BeanDefinition(QQCoin.class, cargs);
+            bd.setSingleton(false);
+            beanFactory.registerBeanDefinition(coinName, bd);
+        }
+        BeanDefinition tencent = new BeanDefinition(Tencent.class);
+        tencent.setAutowireMode(BeanDefinition.AUTOWIRE_CONSTRUCTOR);
+        beanFactory.registerBeanDefinition("tencent", tencent);
+
+        try {
+            beanFactory.getBean("tencent");
+            fail("存在两个候选bean，应该抛出异常");
+        } catch (BeansException expected) {
+            assertTrue(expected.getMessage().contains("coin1"));
+        }
+        // 判断出有歧义不需要创建任何候选的bean
+        assertTrue(created.isEmpty());
+    }
+
+    @Test
+    public void testAutowireFactoryBeanProduct() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("content", new BeanDefinition(CountingFactoryBean.class));
+        BeanDefinition receipt = new BeanDefinition(Receipt.class, new MutablePropertyValues());
+        receipt.setAutowireMode(BeanDefinition.AUTOWIRE_BY_TYPE);
+        beanFactory.registerBeanDefinition("receipt", receipt);
+
+        Receipt bean = beanFactory.getBean("receipt", Receipt.class);
+        assertSame(beanFactory.getBean("content"), bean.getContent());
+        assertEquals(1, beanFactory.getBean("&content", CountingFactoryBean.class).getCount());
+    }
+
+    @Test
+    public void testResolvedConstructorIsCached() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+        cargs.addIndexedArgumentValue(0, "128", "int");
+        BeanDefinition coin = new BeanDefinition(QQCoin.class, cargs);
+        coin.setSingleton(false);
+        beanFactory.registerBeanDefinition("coin", coin);
+        BeanDefinition tencent = new BeanDefinition(Tencent.class);
+        tencent.setAutowireMode(BeanDefinition.AUTOWIRE_CONSTRUCTOR);
+        tencent.setSingleton(false);
+        beanFactory.registerBeanDefinition("tencent", tencent);
+
+        Tencent first = beanFactory.getBean("tencent", Tencent.class);
+        assertNotNull(tencent.getResolvedConstructor());
+        assertNotNull(coin.getResolvedConstructor());
+        Tencent second = beanFactory.getBean("tencent", Tencent.class);
+        // 缓存的是参数来源而不是参数值，prototype的依赖每次都是新的
+        assertNotSame(first.getCoin(), second.getCoin());
+        assertEquals(128, second.getCoin().getCount());
+
+        // 修改影响构造函数选择的属性后，缓存失效
+        tencent.setAutowireMode(BeanDefinition.AUTOWIRE_CONSTRUCTOR);
+        assertNull(tencent.getResolvedConstructor());
+        assertEquals(128, beanFactory.getBean("tencent", Tencent.class).getCoin().getCount());
+    }
+
+    @Test
+    public void testInjectionMetadataRespectsExplicitProperties() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("content", new BeanDefinition(CountingFactoryBean.class));
+        BeanDefinition receipt = new BeanDefinition(Receipt.class, new MutablePropertyValues());
+        receipt.setAutowireMode(BeanDefinition.AUTOWIRE_BY_TYPE);
+        receipt.setSingleton(false);
+        beanFactory.registerBeanDefinition("receipt", receipt);
+        for (int i = 0; i < 3; i++) {
+            assertSame(beanFactory.getBean("content"), beanFactory.getBean("receipt", Receipt.class).getContent());
+        }
+        // 计算结果缓存在BeanDefinition上，之后的创建直接复用
+        Object metadata = receipt.getResolvedInjectionMetadata();
+        assertNotNull(metadata);
+        beanFactory.getBean("receipt");
+        assertSame(metadata, receipt.getResolvedInjectionMetadata());
+        // 换了BeanIntrospector之后重新计算
+        beanFactory.setBeanIntrospector(StandardBeanIntrospector.INSTANCE);
+        beanFactory.getBean("receipt");
+        assertNotSame(metadata, receipt.getResolvedInjectionMetadata());
+
+        // 同一个类显式配置了content之后，不能再复用上面缓存的自动装配属性，否则会因为有两个候选而失败
+        beanFactory.registerSingleton("draft", new StringBuilder("draft"));
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("content", new RuntimeBeanReference("draft")));
+        BeanDefinition draftReceipt = new BeanDefinition(Receipt.class, pvs);
+        draftReceipt.setAutowireMode(BeanDefinition.AUTOWIRE_BY_TYPE);
+        beanFactory.registerBeanDefinition("draftReceipt", draftReceipt);
+        assertSame(beanFactory.getBean("draft"), beanFactory.getBean("draftReceipt", Receipt.class).getContent());
+
+        // 直接修改BeanDefinition中的MutablePropertyValues，缓存的结果也不能再用
+        receipt.getPropertyValues().addPropertyValue(new PropertyValue("content", new RuntimeBeanReference("draft")));
+        assertSame(beanFactory.getBean("draft"), beanFactory.getBean("receipt", Receipt.class).getContent());
+    }
 }
@@ -6,13 +6,46 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.config.BeanPostProcessor;
+import com.archer.spring.factory.config.PropertyPlaceholderConfigurer;
+import com.archer.spring.factory.pojo.CountingFactoryBean;
+import com.archer.spring.factory.pojo.QQCoin;
+import com.archer.spring.factory.pojo.SlowInitBean;
+import com.archer.spring.factory.pojo.SlowInitMethodBean;
+import com.archer.spring.factory.pojo.SlowPeer;
+import com.archer.spring.factory.pojo.Ticket;
+import com.archer.spring.factory.pojo.Timetable;
+import com.archer.spring.factory.pojo.Turnstile;
 import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.support.ManagedList;
+import com.archer.spring.factory.support.RuntimeBeanReference;
+import com.archer.spring.factory.support.SingletonCreationMetrics;
+import com.archer.spring.factory.support.TieredInstantiationStrategy;
 import com.archer.spring.factory.xml.DefaultXMLBeanDefinitionReader;
 import com.archer.spring.factory.xml.XMLBeanDefinitionReader;
 import com.archer.spring.io.ClassPathResource;
+import com.archer.spring.factory.support.PreInstantiationStatistics;
 import com.archer.spring.pojo.Capital;
+import com.archer.spring.pojo.Car;
+import com.archer.spring.pojo.Country;
 import org.junit.Test;
 
+import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
 import static org.junit.Assert.*;
 
 public class BeanFactoryTests {
@@ -26,4 +59,472 @@ public class BeanFactoryTests {
         assertNotNull(capital);
         System.out.println(capital);
     }
+
+    @Test
+    public void testConcurrentSingletonCreation() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("slow", new BeanDefinition(SlowInitBean.class));
+        beanFactory.registerBeanDefinition("fast", new BeanDefinition(Object.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> beanFactory.getBean("slow"));
+            Thread.sleep(50);
+            Future<Object> second = executor.submit(() -> beanFactory.getBean("slow"));
+
+            // 创建其他bean不会被正在创建的slow阻塞
+            long start = System.nanoTime();
+            assertNotNull(beanFactory.getBean("fast"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+
+            // 同时请求slow的线程拿到的是同一个对象
+            assertSame(first.get(), second.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        SingletonCreationMetrics metrics = beanFactory.getSingletonCreationMetrics().get("slow");
+        assertEquals(1, metrics.getContendedAcquisitions());
+        assertTrue(metrics.getMaxWaitNanos() > 0);
+    }
+
+    @Test
+    public void testEarlyReferenceInvisibleToOtherThreads() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        BeanDefinition slowInit = new BeanDefinition(SlowInitMethodBean.class);
+        slowInit.setInitMethodName("initMethod");
+        beanFactory.registerBeanDefinition("slow-init", slowInit);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> creator = executor.submit(() -> beanFactory.getBean("slow-init"));
+            Thread.sleep(50);
+            // 创建线程还在执行初始化方法，这里只能等它完成，而不是拿到半成品
+            SlowInitMethodBean bean = beanFactory.getBean("slow-init", SlowInitMethodBean.class);
+            assertTrue(bean.isInitialized());
+            assertSame(creator.get(), bean);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentCircularSingletons() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        for (String[] pair : new String[][] { { "east", "west" }, { "west", "east" } }) {
+            MutablePropertyValues pvs = new MutablePropertyValues();
+            pvs.addPropertyValue(new PropertyValue("peer", new RuntimeBeanReference(pair[1])));
+            beanFactory.registerBeanDefinition(pair[0], new BeanDefinition(SlowPeer.class, pvs));
+        }
+
+        // 两个线程各自持有一个bean的创建锁又去请求另一个，合法的循环依赖不应该因为时序而失败
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> east = executor.submit(() -> beanFactory.getBean("east"));
+            Future<Object> west = executor.submit(() -> beanFactory.getBean("west"));
+            SlowPeer eastPeer = (SlowPeer) east.get();
+            SlowPeer westPeer = (SlowPeer) west.get();
+            assertSame(westPeer, eastPeer.getPeer());
+            assertSame(eastPeer, westPeer.getPeer());
+            assertSame(eastPeer, beanFactory.getBean("east"));
+            assertSame(westPeer, beanFactory.getBean("west"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelPreInstantiation() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XMLBeanDefinitionReader reader = new DefaultXMLBeanDefinitionReader(beanFactory);
+        reader.loadBeanDefinitions(new ClassPathResource("config.xml"));
+        for (int i = 0; i < 4; i++) {
+            beanFactory.registerBeanDefinition("slow-" + i, new BeanDefinition(SlowInitBean.class));
+        }
+        beanFactory.setParallelPreInstantiation(true);
+        beanFactory.setPreInstantiationParallelism(4);
+        beanFactory.preInstantiateSingletons();
+
+        PreInstantiationStatistics statistics = beanFactory.getPreInstantiationStatistics();
+        assertTrue(statistics.isParallel());
+        // country和capital互相依赖，只能串行创建
+        assertEquals(1, statistics.getCyclicComponentCount());
+        assertTrue(statistics.getMaxConcurrency() > 1);
+        assertTrue(statistics.getAchievedParallelism() > 1.5);
+
+        Capital capital = beanFactory.getBean("capital", Capital.class);
+        assertSame(beanFactory.getBean("country", Country.class), capital.getCountry());
+        assertSame(capital, capital.getCountry().getCapital());
+    }
+
+    @Test
+    public void testFactoryBeanObjectCache() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("product", new BeanDefinition(CountingFactoryBean.class));
+        List<String> processed = new CopyOnWriteArrayList<>();
+        beanFactory.addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String name) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String name) {
+                processed.add(name + ":" + bean.getClass().getSimpleName());
+                return bean;
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> beanFactory.getBean("product")));
+            }
+            Object product = futures.get(0).get();
+            for (Future<Object> future : futures) {
+                assertSame(product, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        CountingFactoryBean factory = beanFactory.getBean("&product", CountingFactoryBean.class);
+        assertEquals(1, factory.getCount());
+        assertTrue(processed.contains("product:StringBuilder"));
+
+        // 非单例的FactoryBean每次都会生产新的对象
+        factory.setSingleton(false);
+        assertNotSame(beanFactory.getBean("product"), beanFactory.getBean("product"));
+        assertEquals(3, factory.getCount());
+    }
+
+    @Test
+    public void testTypeIndex() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XMLBeanDefinitionReader reader = new DefaultXMLBeanDefinitionReader(beanFactory);
+        reader.loadBeanDefinitions(new ClassPathResource("config.xml"));
+
+        assertArrayEquals(new String[] { "byd", "bmw" }, beanFactory.getBeanDefinitionNames(Car.class));
+        assertEquals(7, beanFactory.getBeanDefinitionNames(Object.class).length);
+        assertArrayEquals(beanFactory.getBeanDefinitionNames(), beanFactory.getBeanDefinitionNames(Object.class));
+        assertEquals(0, beanFactory.getBeanDefinitionNames(Runnable.class).length);
+
+        // 基本类型不会匹配任何bean，也不会因此创建bean
+        beanFactory.registerSingleton("builder", new StringBuilder());
+        assertEquals(0, beanFactory.getBeanDefinitionNames(int.class).length);
+        assertEquals(0, beanFactory.getSingletonNames(int.class).length);
+        assertTrue(beanFactory.getBeansOfType(int.class, true, true).isEmpty());
+        assertTrue(beanFactory.getBeansOfType(boolean.class, false, true).isEmpty());
+        assertEquals(0, beanFactory.getSingletonNames(Country.class).length);
+
+        Map<String, Object> countries = beanFactory.getBeansOfType(Country.class, false, false);
+        assertEquals(1, countries.size());
+        assertSame(countries.get("country"), beanFactory.getBeansOfType(Country.class, false, false).get("country"));
+
+        // 新注册的单例要能被查到
+        Country another = new Country();
+        beanFactory.registerSingleton("another", another);
+        assertArrayEquals(new String[] { "country", "another" }, beanFactory.getSingletonNames(Country.class));
+        countries = beanFactory.getBeansOfType(Country.class, false, false);
+        assertEquals(2, countries.size());
+        assertSame(another, countries.get("another"));
+
+        // 销毁之后查到的是新创建的单例
+        Object country = countries.get("country");
+        beanFactory.destroySingletons();
+        assertEquals(0, beanFactory.getSingletonNames(Country.class).length);
+        countries = beanFactory.getBeansOfType(Country.class, false, false);
+        assertEquals(1, countries.size());
+        assertNotSame(country, countries.get("country"));
+    }
+
+    @Test
+    public void testBeanProvider() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XMLBeanDefinitionReader reader = new DefaultXMLBeanDefinitionReader(beanFactory);
+        reader.loadBeanDefinitions(new ClassPathResource("config.xml"));
+        List<String> created = new CopyOnWriteArrayList<>();
+        beanFactory.addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String name) {
+                created.add(name);
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String name) {
+                return bean;
+            }
+        });
+
+        ObjectProvider<Car> cars = beanFactory.getBeanProvider(Car.class);
+        assertEquals(Arrays.asList("byd", "bmw"), cars.beanNames().collect(Collectors.toList()));
+        assertNull(cars.getIfUnique());
+        try {
+            cars.getObject();
+            fail("存在两个Car，应该抛出异常");
+        } catch (BeansException expected) { }
+        // 只查看名称和判断唯一性都不会创建bean
+        assertTrue(created.isEmpty());
+
+        // 短路操作只创建消费到的bean
+        Car first = cars.stream().findFirst().orElse(null);
+        assertEquals("BYD", first.getBrand());
+        assertEquals(Collections.singletonList("byd"), created);
+
+        assertNull(beanFactory.getBeanProvider(Runnable.class).getIfAvailable());
+        AtomicReference<Capital> capital = new AtomicReference<>();
+        beanFactory.getBeanProvider(Capital.class).ifUnique(capital::set);
+        assertSame(beanFactory.getBean("capital"), capital.get());
+    }
+
+    @Test
+    public void testTieredInstantiation() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        TieredInstantiationStrategy strategy = new TieredInstantiationStrategy(3);
+        beanFactory.setInstantiationStrategy(strategy);
+
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("seat", "42"));
+        pvs.addPropertyValue(new PropertyValue("holder", "archer"));
+        BeanDefinition ticket = new BeanDefinition(Ticket.class, pvs);
+        ticket.setSingleton(false);
+        ticket.setInitMethodName("open");
+        beanFactory.registerBeanDefinition("ticket", ticket);
+
+        ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+        cargs.addIndexedArgumentValue(0, "256", "int");
+        BeanDefinition coin = new BeanDefinition(QQCoin.class, cargs);
+        coin.setSingleton(false);
+        beanFactory.registerBeanDefinition("coin", coin);
+
+        for (int i = 0; i < 10; i++) {
+            Ticket created = beanFactory.getBean("ticket", Ticket.class);
+            assertEquals(42, created.getSeat());
+            assertEquals("archer", created.getHolder());
+            assertTrue(created.isOpened());
+            assertEquals(256, beanFactory.getBean("coin", QQCoin.class).getCount());
+            assertEquals(i >= 2, strategy.isPromoted("ticket"));
+            assertEquals(i >= 2, strategy.isPromoted("coin"));
+        }
+
+        // 单例不会被编译
+        beanFactory.registerBeanDefinition("single", new BeanDefinition(Ticket.class));
+        for (int i = 0; i < 10; i++) {
+            beanFactory.getBean("single");
+        }
+        assertFalse(strategy.isPromoted("single"));
+    }
+
+    @Test
+    public void testTieredInstantiationWrapsCheckedExceptions() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        TieredInstantiationStrategy strategy = new TieredInstantiationStrategy(3);
+        beanFactory.setInstantiationStrategy(strategy);
+        BeanDefinition turnstile = new BeanDefinition(Turnstile.class);
+        turnstile.setSingleton(false);
+        turnstile.setInitMethodName("unlock");
+        beanFactory.registerBeanDefinition("turnstile", turnstile);
+
+        // 编译前后，构造函数和初始化方法抛出的受检异常都要以同样的方式包装
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(beanFactory.getBean("turnstile"));
+                Turnstile.jammed = true;
+                try {
+                    beanFactory.getBean("turnstile");
+                    fail();
+                } catch (BeansException ex) {
+                    assertTrue(ex.getCause() instanceof IOException);
+                }
+                Turnstile.jammed = false;
+                Turnstile.locked = true;
+                try {
+                    beanFactory.getBean("turnstile");
+                    fail();
+                } catch (BeansException ex) {
+                    assertTrue(ex.getCause() instanceof InvocationTargetException);
+                    assertTrue(ex.getCause().getCause() instanceof IOException);
+                }
+                Turnstile.locked = false;
+            }
+            assertTrue(strategy.isPromoted("turnstile"));
+        } finally {
+            Turnstile.jammed = false;
+            Turnstile.locked = false;
+        }
+    }
+
+    @Test
+    public void testPropertyEditorSnapshot() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        AtomicInteger registrations = new AtomicInteger();
+        beanFactory.addPropertyEditorRegistrar(registry -> {
+            registrations.incrementAndGet();
+            // 价格按万为单位书写
+            registry.registerCustomEditor(double.class, new PropertyEditorSupport() {
+                @Override
+                public void setAsText(String text) {
+                    setValue(Double.parseDouble(text) * 10000);
+                }
+            });
+        });
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("price", "15"));
+        BeanDefinition car = new BeanDefinition(Car.class, pvs);
+        car.setSingleton(false);
+        beanFactory.registerBeanDefinition("car", car);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(150000, beanFactory.getBean("car", Car.class).getPrice(), 0);
+        }
+        // PropertyEditorRegistrar只在构建快照时执行一次
+        assertEquals(1, registrations.get());
+        PropertyEditorSnapshot snapshot = beanFactory.getPropertyEditorSnapshot();
+        assertSame(snapshot, beanFactory.getPropertyEditorSnapshot());
+
+        // 注册新的PropertyEditor后重新构建
+        beanFactory.registerCustomEditor(String.class, PropertyEditorSupport.class);
+        assertNotSame(snapshot, beanFactory.getPropertyEditorSnapshot());
+        assertEquals(2, registrations.get());
+        assertTrue(beanFactory.getPropertyEditorSnapshot().containsEditor(String.class));
+    }
+
+    @Test
+    public void testLiteralConversionIsCached() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        AtomicInteger conversions = new AtomicInteger();
+        beanFactory.addPropertyEditorRegistrar(registry -> registry.registerCustomEditor(int.class, new PropertyEditorSupport() {
+            @Override
+            public void setAsText(String text) {
+                conversions.incrementAndGet();
+                setValue(Integer.parseInt(text));
+            }
+        }));
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("seat", "12"));
+        pvs.addPropertyValue(new PropertyValue("stops", "3"));
+        BeanDefinition ticket = new BeanDefinition(Ticket.class, pvs);
+        ticket.setSingleton(false);
+        beanFactory.registerBeanDefinition("ticket", ticket);
+
+        Ticket first = beanFactory.getBean("ticket", Ticket.class);
+        int afterFirst = conversions.get();
+        Ticket second = beanFactory.getBean("ticket", Ticket.class);
+        // 字面量只在第一次创建时转换
+        assertEquals(afterFirst, conversions.get());
+        assertEquals(12, second.getSeat());
+        // 数组每次都是新的副本
+        assertArrayEquals(new int[] { 3 }, second.getStops());
+        assertNotSame(first.getStops(), second.getStops());
+        first.getStops()[0] = 4;
+        assertEquals(3, beanFactory.getBean("ticket", Ticket.class).getStops()[0]);
+
+        // PropertyEditor变了之后重新转换
+        beanFactory.registerCustomEditor(String.class, PropertyEditorSupport.class);
+        beanFactory.getBean("ticket", Ticket.class);
+        assertTrue(conversions.get() > afterFirst);
+    }
+
+    @Test
+    public void testGenericCollectionConversion() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+        cargs.addIndexedArgumentValue(0, managedList("5", "10", "15"));
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("trains", managedList("1", "2", "2")));
+        pvs.addPropertyValue(new PropertyValue("platforms", managedList("3", " 4 ", "0x10")));
+        Map<String, String> fares = new LinkedHashMap<>();
+        fares.put("adult", "12.5");
+        fares.put("child", "6");
+        pvs.addPropertyValue(new PropertyValue("fares", fares));
+        BeanDefinition timetable = new BeanDefinition(Timetable.class, pvs, cargs);
+        timetable.setSingleton(false);
+        beanFactory.registerBeanDefinition("timetable", timetable);
+
+        // 第二次使用缓存的构造函数
+        for (int i = 0; i < 2; i++) {
+            Timetable bean = beanFactory.getBean("timetable", Timetable.class);
+            assertEquals(Arrays.asList(5, 10, 15), bean.getDepartures());
+            assertEquals(new ArrayList<>(Arrays.asList(1L, 2L)), new ArrayList<>(bean.getTrains()));
+            assertArrayEquals(new int[] { 3, 4, 16 }, bean.getPlatforms());
+            assertEquals(Double.valueOf(12.5), bean.getFares().get("adult"));
+            assertEquals(Double.valueOf(6), bean.getFares().get("child"));
+        }
+
+        // 元素已经是需要的类型时不复制
+        BeanWrapper wrapper = new BeanWrapper(new Timetable(null));
+        Map<String, Double> typed = new LinkedHashMap<>();
+        typed.put("adult", 1.0);
+        wrapper.setPropertyValue("fares", typed);
+        assertSame(typed, ((Timetable) wrapper.getWrappedInstance()).getFares());
+
+        try {
+            wrapper.setPropertyValue("platforms", Arrays.asList("1", "x"));
+            fail();
+        } catch (BeansException expected) {
+        }
+        try {
+            wrapper.setPropertyValue("trains", Collections.singleton("x"));
+            fail();
+        } catch (BeansException expected) {
+        }
+    }
+
+    @Test
+    public void testManagedCollections() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        new DefaultXMLBeanDefinitionReader(beanFactory).loadBeanDefinitions(new ClassPathResource("collections.xml"));
+        Properties properties = new Properties();
+        properties.setProperty("station.first", "North");
+        properties.setProperty("spare.key", "spare");
+        PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+        configurer.setProperties(properties);
+        configurer.postProcessBeanFactory(beanFactory);
+
+        Timetable first = beanFactory.getBean("timetable", Timetable.class);
+        Timetable second = beanFactory.getBean("timetable", Timetable.class);
+        assertEquals(Arrays.asList(5, 35), first.getDepartures());
+        assertEquals(new ArrayList<>(Arrays.asList(1001L, 1002L)), new ArrayList<>(first.getTrains()));
+        assertEquals(Double.valueOf(12.5), first.getFares().get("adult"));
+        assertEquals(Double.valueOf(6.25), first.getFares().get("child"));
+        assertSame(beanFactory.getBean("byd"), first.getVehicles().get("bus"));
+        assertTrue(first.getVehicles().containsKey("spare"));
+        assertEquals("none", first.getNotices().getProperty("delay"));
+        assertEquals("3", first.getNotices().getProperty("platform"));
+        // Properties是可变的，每个bean各有一份
+        assertNotSame(first.getNotices(), second.getNotices());
+
+        // 只有字面量的集合只解析一次，所有原型共享同一个不可变的实例
+        assertEquals(Arrays.asList("North", "Central"), first.getStations());
+        assertSame(first.getStations(), second.getStations());
+        try {
+            first.getStations().add("South");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        // 声明成ArrayList的属性仍然得到各自可变的ArrayList
+        assertEquals(Arrays.asList("K1", "K2"), first.getRoutes());
+        assertNotSame(first.getRoutes(), second.getRoutes());
+        first.getRoutes().add("K3");
+        assertEquals(2, second.getRoutes().size());
+        // 有bean引用的Map每次重新解析
+        assertNotSame(first.getVehicles(), second.getVehicles());
+
+        // 修改定义中的集合后缓存失效
+        @SuppressWarnings("unchecked")
+        ManagedList<Object> stations = (ManagedList<Object>) beanFactory.getBeanDefinition("timetable")
+                .getPropertyValues().getPropertyValue("stations").getValue();
+        stations.set(1, "South");
+        assertEquals(Arrays.asList("North", "South"), beanFactory.getBean("timetable", Timetable.class).getStations());
+        stations.add("West");
+        assertEquals(3, beanFactory.getBean("timetable", Timetable.class).getStations().size());
+    }
+
+    private static ManagedList<Object> managedList(Object... values) {
+        ManagedList<Object> list = new ManagedList<>();
+        list.addAll(Arrays.asList(values));
+        return list;
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/22.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.pojo.CountingFactoryBean;
+import com.archer.spring.factory.pojo.Shutter;
+import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.xml.DefaultXMLBeanDefinitionReader;
+import com.archer.spring.factory.xml.XMLBeanDefinitionReader;
+import com.archer.spring.io.ClassPathResource;
+import com.archer.spring.pojo.Capital;
+import com.archer.spring.pojo.Car;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BeanHandleTests {
+
+    private DefaultListableBeanFactory createBeanFactory() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XMLBeanDefinitionReader reader = new DefaultXMLBeanDefinitionReader(beanFactory);
+        reader.loadBeanDefinitions(new ClassPathResource("config.xml"));
+        return beanFactory;
+    }
+
+    @Test
+    public void testBeanHandle() {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        BeanHandle<Capital> capital = beanFactory.getBeanHandle("capital", Capital.class);
+        assertSame(beanFactory.getBean("capital"), capital.get());
+        assertSame(capital.get(), capital.get());
+
+        // prototype每次都是新的对象
+        BeanHandle<Car> byd = beanFactory.getBeanHandle("byd", Car.class);
+        assertNotSame(byd.get(), byd.get());
+        assertEquals("BYD", byd.get().getBrand());
+
+        // 销毁单例之后句柄会重新解析
+        Capital before = capital.get();
+        beanFactory.destroySingletons();
+        assertNotSame(before, capital.get());
+    }
+
+    @Test
+    public void testHandleUsedDuringDestroy() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("left", new BeanDefinition(Shutter.class));
+        beanFactory.registerBeanDefinition("right", new BeanDefinition(Shutter.class));
+        BeanHandle<Shutter> left = beanFactory.getBeanHandle("left", Shutter.class);
+        BeanHandle<Shutter> right = beanFactory.getBeanHandle("right", Shutter.class);
+        Shutter oldLeft = left.get();
+        Shutter oldRight = right.get();
+        // 先销毁的那个会通过句柄拿到另一个还没有被移除的旧单例
+        oldLeft.setOnDestroy(right::get);
+        oldRight.setOnDestroy(left::get);
+
+        beanFactory.destroySingletons();
+        assertNotSame(oldLeft, left.get());
+        assertNotSame(oldRight, right.get());
+        assertSame(beanFactory.getBean("left"), left.get());
+        assertSame(beanFactory.getBean("right"), right.get());
+    }
+
+    @Test
+    public void testFactoryBeanHandle() {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        beanFactory.registerBeanDefinition("product", new BeanDefinition(CountingFactoryBean.class));
+        BeanHandle<CountingFactoryBean> factory = beanFactory.getBeanHandle("&product", CountingFactoryBean.class);
+        BeanHandle<StringBuilder> product = beanFactory.getBeanHandle("product", StringBuilder.class);
+        assertSame(product.get(), product.get());
+        assertEquals(1, factory.get().getCount());
+    }
+
+    @Test(expected = BeansException.class)
+    public void testMissingBean() {
+        createBeanFactory().getBeanHandle("missing", Object.class);
+    }
+
+    @Test(expected = BeansException.class)
+    public void testTypeMismatch() {
+        createBeanFactory().getBeanHandle("capital", Car.class).get();
+    }
+}
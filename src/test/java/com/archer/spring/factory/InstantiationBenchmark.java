@@ -0,0 +1,136 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory;
+
+import com.archer.spring.factory.config.BeanDefinition;
+import com.archer.spring.factory.pojo.QQCoin;
+import com.archer.spring.factory.pojo.Tencent;
+import com.archer.spring.factory.pojo.Ticket;
+import com.archer.spring.factory.support.DefaultListableBeanFactory;
+import com.archer.spring.factory.support.InstantiationStrategy;
+import com.archer.spring.factory.support.RuntimeBeanReference;
+import com.archer.spring.factory.support.SimpleInstantiationStrategy;
+import com.archer.spring.factory.support.TieredInstantiationStrategy;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * prototype创建的基准测试，不是单元测试，需要手动运行：
+ *
+ *   java -cp target/classes:target/test-classes com.archer.spring.factory.InstantiationBenchmark
+ *
+ * 每一项先预热，再取5轮中最好的一轮，结果输出到System.err。
+ * 1. getBean：构造函数的解析结果缓存在BeanDefinition上，"uncached"每次创建前都清掉缓存，
+ *    用来对比缓存前后构造函数注入的创建速度。
+ * 2. strategy：只测InstantiationStrategy的三个阶段(实例化、属性赋值、初始化方法)，
+ *    对比反射和编译好的配方。
+ */
+public class InstantiationBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int CREATIONS = 200_000;
+
+    // 和真实的容器一样放一些无关的bean definition
+    private static final int FILLERS = 30;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        // QQCoin、Tencent在生命周期回调里会打印日志，这里丢弃掉
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            benchmarkGetBean("coin", false);
+            benchmarkGetBean("coin", true);
+            benchmarkGetBean("tencent", false);
+            benchmarkGetBean("tencent", true);
+            benchmarkStrategy(new SimpleInstantiationStrategy());
+            benchmarkStrategy(new TieredInstantiationStrategy());
+        } finally {
+            System.setOut(out);
+        }
+        System.out.println(sink);
+    }
+
+    /// MARK - Benchmarks
+
+    private static void benchmarkGetBean(String beanName, boolean uncached) {
+        DefaultListableBeanFactory beanFactory = newBeanFactory();
+        BeanDefinition bd = beanFactory.getBeanDefinition(beanName);
+        long best = Long.MAX_VALUE;
+        for (int round = -ROUNDS; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CREATIONS; i++) {
+                if (uncached) {
+                    bd.clearResolvedConstructor();
+                }
+                sink += beanFactory.getBean(beanName).hashCode();
+            }
+            // 前ROUNDS轮用来预热
+            if (round >= 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.err.printf("getBean  %-8s %-9s %8d/s%n", beanName,
+                uncached ? "uncached" : "cached", CREATIONS * 1_000_000_000L / best);
+    }
+
+    private static void benchmarkStrategy(InstantiationStrategy strategy) {
+        MutablePropertyValues pvs = new MutablePropertyValues();
+        pvs.addPropertyValue(new PropertyValue("seat", "42"));
+        pvs.addPropertyValue(new PropertyValue("holder", "archer"));
+        BeanDefinition bd = new BeanDefinition(Ticket.class, pvs);
+        bd.setSingleton(false);
+        bd.setInitMethodName("open");
+        long best = Long.MAX_VALUE;
+        try {
+            for (int round = -ROUNDS; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < CREATIONS; i++) {
+                    Object bean = strategy.instantiate("ticket", bd);
+                    strategy.applyPropertyValues("ticket", bd, new BeanWrapper(bean), pvs);
+                    strategy.invokeInitMethod("ticket", bd, bean);
+                    sink += bean.hashCode();
+                }
+                if (round >= 0) {
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            }
+        } catch (Exception ex) {
+            throw new BeansException("基准测试失败", ex);
+        }
+        System.err.printf("strategy %-28s %5dns/creation%n",
+                strategy.getClass().getSimpleName(), best / CREATIONS);
+    }
+
+    /// MARK - Internal
+
+    private static DefaultListableBeanFactory newBeanFactory() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        for (int i = 0; i < FILLERS; i++) {
+            beanFactory.registerBeanDefinition("filler" + i, new BeanDefinition(Ticket.class));
+        }
+        ConstructorArgumentValues cargs = new ConstructorArgumentValues();
+        cargs.addIndexedArgumentValue(0, "256", "int");
+        BeanDefinition coin = new BeanDefinition(QQCoin.class, cargs);
+        coin.setSingleton(false);
+        beanFactory.registerBeanDefinition("coin", coin);
+
+        ConstructorArgumentValues tencentArgs = new ConstructorArgumentValues();
+        tencentArgs.addIndexedArgumentValue(0, new RuntimeBeanReference("coin"));
+        BeanDefinition tencent = new BeanDefinition(Tencent.class, tencentArgs);
+        tencent.setSingleton(false);
+        beanFactory.registerBeanDefinition("tencent", tencent);
+        return beanFactory;
+    }
+}
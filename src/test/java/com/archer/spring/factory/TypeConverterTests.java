@@ -6,9 +6,23 @@
 
 package com.archer.spring.factory;
 
+import com.archer.spring.factory.pojo.Gate;
+import com.archer.spring.factory.pojo.Journey;
+import com.archer.spring.factory.pojo.Ticket;
 import com.archer.spring.pojo.Car;
+import com.archer.spring.pojo.Country;
 import com.archer.spring.pojo.Person;
 import org.junit.Test;
+
+import java.beans.PropertyDescriptor;
+import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.*;
 
 public class TypeConverterTests {
@@ -32,4 +46,318 @@ public class TypeConverterTests {
         assertEquals(saber.getAge(), 22);
         assertEquals(saber.getName(), "saber");
     }
+
+    @Test
+    public void testCompiledAccessors() {
+        // 超过编译阈值前后读写的结果应当一致
+        BeanWrapper wrapper = new BeanWrapper(Ticket.class);
+        for (int i = 0; i < 64; i++) {
+            Ticket ticket = new Ticket();
+            wrapper.setWrappedInstance(ticket);
+            wrapper.setPropertyValue("seat", String.valueOf(i));
+            wrapper.setPropertyValue("holder", "holder-" + i);
+            assertEquals(i, ticket.getSeat());
+            assertEquals(i, wrapper.getPropertyValue("seat"));
+            assertEquals("holder-" + i, wrapper.getPropertyValue("holder"));
+            assertEquals(false, wrapper.getPropertyValue("opened"));
+        }
+        // 基本类型的属性仍然不接受空值
+        try {
+            wrapper.setPropertyValue("seat", null);
+            fail();
+        } catch (BeansException expected) {
+        }
+    }
+
+    @Test
+    public void testCompiledAccessorsWrapCheckedExceptions() throws IOException {
+        // 编译前后，getter/setter抛出的受检异常都包装成BeansException
+        BeanWrapper wrapper = new BeanWrapper(Gate.class);
+        for (int i = 0; i < 64; i++) {
+            Gate gate = new Gate();
+            wrapper.setWrappedInstance(gate);
+            assertCheckedCause(() -> wrapper.getPropertyValue("code"));
+            wrapper.setPropertyValue("code", "G" + i);
+            wrapper.setPropertyValue("lane", String.valueOf(i));
+            assertEquals("G" + i, gate.getCode());
+            assertEquals(i, gate.getLane());
+            assertCheckedCause(() -> wrapper.setPropertyValue("code", "jammed"));
+            assertCheckedCause(() -> wrapper.setPropertyValue("lane", "-1"));
+        }
+    }
+
+    private static void assertCheckedCause(Runnable action) {
+        try {
+            action.run();
+            fail();
+        } catch (BeansException ex) {
+            Throwable cause = ex.getCause();
+            assertTrue(cause instanceof InvocationTargetException);
+            assertTrue(cause.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testIntrospectionCache() throws Exception {
+        new BeanWrapper(Person.class);
+        IntrospectionCacheStatistics before = BeanWrapper.getIntrospectionCacheStatistics();
+        new BeanWrapper(Person.class);
+        IntrospectionCacheStatistics after = BeanWrapper.getIntrospectionCacheStatistics();
+        assertEquals(before.getHitCount() + 1, after.getHitCount());
+        assertEquals(before.getMissCount(), after.getMissCount());
+
+        // 交替使用两种策略时各自的结果都留在缓存中
+        for (int i = 0; i < 3; i++) {
+            BeanWrapper wrapper = new BeanWrapper();
+            wrapper.setBeanIntrospector(i % 2 == 0 ? StandardBeanIntrospector.INSTANCE : SimpleBeanIntrospector.INSTANCE);
+            wrapper.setWrappedInstance(new Person());
+        }
+        IntrospectionCacheStatistics alternated = BeanWrapper.getIntrospectionCacheStatistics();
+        BeanWrapper standard = new BeanWrapper();
+        standard.setBeanIntrospector(StandardBeanIntrospector.INSTANCE);
+        standard.setWrappedInstance(new Person());
+        new BeanWrapper(Person.class);
+        assertEquals(alternated.getMissCount(), BeanWrapper.getIntrospectionCacheStatistics().getMissCount());
+
+        // 由独立的类加载器加载的类不能被强引用，并且可以按类加载器清除
+        URL location = Ticket.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { location }, ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> ticketClass = loader.loadClass(Ticket.class.getName());
+            assertNotSame(Ticket.class, ticketClass);
+            int strongSize = BeanWrapper.getIntrospectionCacheStatistics().getStrongCacheSize();
+            BeanWrapper wrapper = new BeanWrapper(ticketClass);
+            wrapper.setPropertyValue("seat", "7");
+            assertEquals(7, wrapper.getPropertyValue("seat"));
+            IntrospectionCacheStatistics loaded = BeanWrapper.getIntrospectionCacheStatistics();
+            assertEquals(strongSize, loaded.getStrongCacheSize());
+
+            BeanWrapper.clearClassLoader(loader);
+            IntrospectionCacheStatistics cleared = BeanWrapper.getIntrospectionCacheStatistics();
+            assertEquals(loaded.getSoftCacheSize() - 1, cleared.getSoftCacheSize());
+            new BeanWrapper(ticketClass);
+            assertEquals(cleared.getMissCount() + 1, BeanWrapper.getIntrospectionCacheStatistics().getMissCount());
+        }
+    }
+
+    @Test
+    public void testSimpleBeanIntrospector() {
+        // 没有BeanInfo类时，两种策略找到的属性应当完全一致
+        for (Class<?> clazz : new Class<?>[] { Car.class, Person.class, Country.class, Ticket.class }) {
+            PropertyDescriptor[] expected = StandardBeanIntrospector.INSTANCE.getPropertyDescriptors(clazz);
+            PropertyDescriptor[] actual = SimpleBeanIntrospector.INSTANCE.getPropertyDescriptors(clazz);
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getName(), actual[i].getName());
+                assertEquals(expected[i].getPropertyType(), actual[i].getPropertyType());
+                assertEquals(expected[i].getReadMethod(), actual[i].getReadMethod());
+                assertEquals(expected[i].getWriteMethod(), actual[i].getWriteMethod());
+            }
+        }
+
+        BeanWrapper wrapper = new BeanWrapper();
+        wrapper.setBeanIntrospector(StandardBeanIntrospector.INSTANCE);
+        wrapper.setWrappedInstance(new Person());
+        wrapper.setPropertyValue("age", "18");
+        assertEquals(18, wrapper.getPropertyValue("age"));
+        wrapper.setBeanIntrospector(SimpleBeanIntrospector.INSTANCE);
+        assertEquals(18, wrapper.getPropertyValue("age"));
+    }
+
+    @Test
+    public void testPrimitiveFastPath() {
+        // 快速路径上不分配内存的检查依赖JIT，见AllocationBenchmark，这里只检查结果
+        Ticket ticket = new Ticket();
+        BeanWrapper wrapper = new BeanWrapper(ticket);
+        // 超过编译阈值前后，解析规则都和默认的PropertyEditor一致
+        for (int i = 0; i < 32; i++) {
+            wrapper.setPropertyValue("seat", " 1 2 ");
+            wrapper.setPropertyValue("serial", "0x10");
+            wrapper.setPropertyValue("fare", "-0.1");
+            wrapper.setPropertyValue("refundable", " Yes ");
+            assertEquals(12, ticket.getSeat());
+            assertEquals(16L, ticket.getSerial());
+            assertEquals(-0.1, ticket.getFare(), 0);
+            assertTrue(ticket.isRefundable());
+        }
+        wrapper.setPropertyValue("fare", "1e3");
+        assertEquals(1000.0, ticket.getFare(), 0);
+        for (String invalid : new String[] { null, "", "12a", "1.5" }) {
+            try {
+                wrapper.setPropertyValue("seat", invalid);
+                fail();
+            } catch (BeansException expected) {
+            }
+        }
+
+        // 注册了PropertyEditor之后不再走快速路径
+        wrapper.registerCustomEditor(int.class, new PropertyEditorSupport() {
+            @Override
+            public void setAsText(String text) {
+                setValue(Integer.parseInt(text) * 2);
+            }
+        });
+        wrapper.setPropertyValue("seat", "21");
+        assertEquals(42, ticket.getSeat());
+    }
+
+    @Test
+    public void testNestedPropertyPaths() {
+        Journey journey = new Journey();
+        journey.setTickets(new Ticket[] { new Ticket(), new Ticket() });
+        journey.setBack(new Journey());
+        journey.getBack().setTickets(new Ticket[] { new Ticket() });
+        journey.getTransfers().add(new Ticket());
+        BeanWrapper wrapper = new BeanWrapper(journey);
+
+        // 超过编译阈值前后结果一致
+        for (int i = 0; i < 32; i++) {
+            wrapper.setPropertyValue("tickets[1].seat", String.valueOf(i));
+            wrapper.setPropertyValue("back.tickets[0].holder", "holder-" + i);
+            wrapper.setPropertyValue(new PropertyValue("transfers[0].fare", "2.5"));
+            assertEquals(i, journey.getTickets()[1].getSeat());
+            assertEquals(i, wrapper.getPropertyValue("tickets[1].seat"));
+            assertEquals("holder-" + i, journey.getBack().getTickets()[0].getHolder());
+            assertEquals(2.5, journey.getTransfers().get(0).getFare(), 0);
+        }
+
+        // 数组元素按元素类型转换，List可以追加，Map的key可以加引号
+        wrapper.setPropertyValue("tickets[0].stops", new int[3]);
+        wrapper.setPropertyValue("tickets[0].stops[2]", "7");
+        assertEquals(7, journey.getTickets()[0].getStops()[2]);
+        Ticket transfer = new Ticket();
+        wrapper.setPropertyValue("transfers[1]", transfer);
+        assertSame(transfer, wrapper.getPropertyValue("transfers[1]"));
+        wrapper.setPropertyValue("notes['gate 2']", "closed");
+        wrapper.setPropertyValue("notes[gate]", "open");
+        assertEquals("closed", journey.getNotes().get("gate 2"));
+        assertEquals("open", wrapper.getPropertyValue("notes[\"gate\"]"));
+        assertEquals(int.class, wrapper.getPropertyDescriptor("back.tickets[0].seat").getPropertyType());
+
+        // List和Map的元素、Map的key按声明的泛型类型转换
+        wrapper.setPropertyValue("distances[0]", "120");
+        wrapper.setPropertyValue("distances[1]", 80L);
+        wrapper.setPropertyValue("distances[0]", "150");
+        wrapper.setPropertyValue("remaining[1024]", "5");
+        wrapper.setPropertyValue("back.remaining['7']", 3);
+        assertEquals(Arrays.asList(150, 80), journey.getDistances());
+        assertEquals(Integer.valueOf(5), journey.getRemaining().get(1024L));
+        assertEquals(Integer.valueOf(3), journey.getBack().getRemaining().get(7L));
+        assertEquals(5, wrapper.getPropertyValue("remaining[1024]"));
+
+        // 同一条路径上遇到不同的类
+        journey.getTickets()[1] = new Ticket() { };
+        wrapper.setPropertyValue("tickets[1].seat", "99");
+        assertEquals(99, journey.getTickets()[1].getSeat());
+
+        for (String invalid : new String[] { "back.back.tickets", "tickets[2].seat", "tickets[x]", "notes[gate].seat",
+                "tickets[0", "tickets.", ".tickets", "tickets[0]seat", "tickets[]", "distances[9]", "remaining[x]" }) {
+            try {
+                wrapper.setPropertyValue(invalid, "1");
+                fail(invalid);
+            } catch (BeansException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testPropertyBinder() {
+        PropertyBinder binder = new PropertyBinder();
+        Map<String, Object> values = new HashMap<>();
+        values.put("tickets[1].seat", "12");
+        values.put("tickets[0].stops[10]", "3");
+        values.put("tickets[0].stops[2]", "1");
+        values.put("back.tickets[0].fare", "9.5");
+        values.put("notes[gate]", "B7");
+        values.put("transfers[0].refundable", "yes");
+        values.put("back.notes[gate]", "A1");
+        values.put("tickets[1].refundable", "maybe");
+        values.put("tickets[1].opened", "true");
+        values.put("tickets[0].price", "1");
+        values.put("tickets[0", "1");
+        values.put("notes[gate].seat", "1");
+
+        for (int i = 0; i < 3; i++) {
+            Journey journey = new Journey();
+            journey.setTickets(new Ticket[] { new Ticket(), new Ticket() });
+            journey.getTickets()[0].setStops(new int[11]);
+            journey.setBack(new Journey());
+            journey.getBack().setTickets(new Ticket[] { new Ticket() });
+            journey.getTransfers().add(new Ticket());
+
+            BindResult<Journey> result = binder.bind(values, journey);
+            assertSame(journey, result.getTarget());
+            assertEquals(7, result.getBoundCount());
+            assertEquals(1, journey.getTickets()[0].getStops()[2]);
+            assertEquals(3, journey.getTickets()[0].getStops()[10]);
+            assertEquals(12, journey.getTickets()[1].getSeat());
+            assertEquals(9.5, journey.getBack().getTickets()[0].getFare(), 0);
+            assertTrue(journey.getTransfers().get(0).isRefundable());
+            assertEquals("B7", journey.getNotes().get("gate"));
+            assertEquals("A1", journey.getBack().getNotes().get("gate"));
+
+            // 只读的opened、不存在的price、格式不对的路径都是未知的key
+            assertEquals(Arrays.asList("notes[gate].seat", "tickets[0", "tickets[0].price", "tickets[1].opened"),
+                    result.getUnknownKeys());
+            assertEquals(Collections.singleton("tickets[1].refundable"), result.getFailures().keySet());
+            try {
+                result.getValidTarget();
+                fail();
+            } catch (BeansException expected) {
+            }
+        }
+
+        // 集合和Map的元素按声明的类型转换，转换失败的key记在BindResult中
+        Map<String, String> typed = new HashMap<>();
+        typed.put("distances[0]", "120");
+        typed.put("distances[1]", "80");
+        typed.put("distances[2]", "far");
+        typed.put("remaining[1024]", "5");
+        typed.put("remaining[x]", "1");
+        typed.put("back.distances[0]", "7");
+        for (int i = 0; i < 3; i++) {
+            Journey journey = new Journey();
+            journey.setBack(new Journey());
+            BindResult<Journey> result = binder.bind(typed, journey);
+            assertEquals(4, result.getBoundCount());
+            assertEquals(Arrays.asList(120, 80), journey.getDistances());
+            assertEquals(Collections.singletonList(7), journey.getBack().getDistances());
+            assertEquals(Collections.singletonMap(1024L, 5), journey.getRemaining());
+            assertEquals(new HashSet<>(Arrays.asList("distances[2]", "remaining[x]")), result.getFailures().keySet());
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("seat", "3");
+        properties.setProperty("holder", "archer");
+        Ticket ticket = binder.bind(properties, Ticket.class).getValidTarget();
+        assertEquals(3, ticket.getSeat());
+        assertEquals("archer", ticket.getHolder());
+    }
+
+    @Test
+    public void testPropertyBinderPlanEviction() {
+        AtomicInteger conversions = new AtomicInteger();
+        PropertyBinder binder = new PropertyBinder();
+        binder.setSharedEditors(PropertyEditorSnapshot.build(Collections.emptyList(),
+                Collections.singletonMap(int.class, new PropertyEditorSupport() {
+                    @Override
+                    public void setAsText(String text) {
+                        conversions.incrementAndGet();
+                        setValue(Integer.parseInt(text));
+                    }
+                })));
+        // 远多于缓存上限的key集合，每一组绑定两次，第二次复用计划里记住的转换结果
+        int keySets = 200;
+        for (int i = 0; i < keySets; i++) {
+            Map<String, String> values = new HashMap<>();
+            values.put("seat", "7");
+            // 不存在的属性也是key集合的一部分
+            values.put("extra" + i, "1");
+            for (int j = 0; j < 2; j++) {
+                BindResult<Ticket> result = binder.bind(values, Ticket.class);
+                assertEquals(7, result.getTarget().getSeat());
+                assertEquals(Collections.singletonList("extra" + i), result.getUnknownKeys());
+            }
+        }
+        assertEquals(keySets, conversions.get());
+    }
 }
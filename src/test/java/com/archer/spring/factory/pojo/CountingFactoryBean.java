@@ -0,0 +1,45 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/22.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import com.archer.spring.factory.FactoryBean;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 记录getObject()被调用次数的FactoryBean
+public class CountingFactoryBean implements FactoryBean {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private boolean singleton = true;
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public void setSingleton(boolean singleton) {
+        this.singleton = singleton;
+    }
+
+    @Override
+    public Object getObject() throws Exception {
+        count.incrementAndGet();
+        // 生产过程很慢，便于制造并发
+        Thread.sleep(100);
+        return new StringBuilder("product");
+    }
+
+    @Override
+    public Class getObjectType() {
+        return StringBuilder.class;
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return singleton;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import java.io.IOException;
+
+// 闸机，getter和setter会抛出受检异常，用来检验编译后的访问器如何包装异常
+public class Gate {
+
+    private String code;
+
+    private int lane;
+
+    public String getCode() throws IOException {
+        if (code == null) {
+            throw new IOException("闸机还没有编号");
+        }
+        return code;
+    }
+
+    public void setCode(String code) throws IOException {
+        if ("jammed".equals(code)) {
+            throw new IOException("闸机卡住了");
+        }
+        this.code = code;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public void setLane(int lane) throws IOException {
+        if (lane < 0) {
+            throw new IOException("没有这个通道");
+        }
+        this.lane = lane;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/28.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 一次行程，用来检验嵌套和带下标的属性路径
+public class Journey {
+
+    private Ticket[] tickets;
+
+    // 换乘的车票
+    private List<Ticket> transfers = new ArrayList<>();
+
+    private Map<String, String> notes = new HashMap<>();
+
+    // 每一段的里程
+    private List<Integer> distances = new ArrayList<>();
+
+    // 车次 -> 余票
+    private Map<Long, Integer> remaining = new HashMap<>();
+
+    // 返程
+    private Journey back;
+
+    public Ticket[] getTickets() {
+        return tickets;
+    }
+
+    public void setTickets(Ticket[] tickets) {
+        this.tickets = tickets;
+    }
+
+    public List<Ticket> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Ticket> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Map<String, String> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(Map<String, String> notes) {
+        this.notes = notes;
+    }
+
+    public List<Integer> getDistances() {
+        return distances;
+    }
+
+    public void setDistances(List<Integer> distances) {
+        this.distances = distances;
+    }
+
+    public Map<Long, Integer> getRemaining() {
+        return remaining;
+    }
+
+    public void setRemaining(Map<Long, Integer> remaining) {
+        this.remaining = remaining;
+    }
+
+    public Journey getBack() {
+        return back;
+    }
+
+    public void setBack(Journey back) {
+        this.back = back;
+    }
+}
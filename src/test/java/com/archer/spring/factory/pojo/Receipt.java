@@ -0,0 +1,21 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+// 按类型自动装配FactoryBean生产的对象
+public class Receipt {
+
+    private StringBuilder content;
+
+    public StringBuilder getContent() {
+        return content;
+    }
+
+    public void setContent(StringBuilder content) {
+        this.content = content;
+    }
+}
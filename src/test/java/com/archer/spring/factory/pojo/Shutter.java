@@ -0,0 +1,26 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import com.archer.spring.factory.DisposableBean;
+
+// 卷帘门，销毁时执行一段回调，用来检验销毁过程中其他bean的行为
+public class Shutter implements DisposableBean {
+
+    private Runnable onDestroy;
+
+    public void setOnDestroy(Runnable onDestroy) {
+        this.onDestroy = onDestroy;
+    }
+
+    @Override
+    public void destroy() {
+        if (onDestroy != null) {
+            onDestroy.run();
+        }
+    }
+}
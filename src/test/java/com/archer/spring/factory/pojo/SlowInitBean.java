@@ -0,0 +1,16 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+// 创建很慢的bean，用来测试并发创建
+public class SlowInitBean {
+
+    public SlowInitBean() throws InterruptedException {
+        Thread.sleep(300);
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/20.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+// 初始化方法很慢的bean，用来测试其他线程能否看到半成品
+public class SlowInitMethodBean {
+
+    private volatile boolean initialized;
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public void initMethod() throws InterruptedException {
+        Thread.sleep(300);
+        initialized = true;
+    }
+
+}
@@ -0,0 +1,25 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+// 创建很慢并且互相引用的bean，用来测试两个线程同时创建一对循环依赖的单例
+public class SlowPeer {
+
+    private SlowPeer peer;
+
+    public SlowPeer() throws InterruptedException {
+        Thread.sleep(200);
+    }
+
+    public SlowPeer getPeer() {
+        return peer;
+    }
+
+    public void setPeer(SlowPeer peer) {
+        this.peer = peer;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/23.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+// 频繁创建的prototype，用来检验编译好的创建配方
+public class Ticket {
+
+    private int seat;
+
+    private String holder;
+
+    private boolean opened;
+
+    // 途经的站点
+    private int[] stops;
+
+    private long serial;
+
+    private double fare;
+
+    private boolean refundable;
+
+    public int getSeat() {
+        return seat;
+    }
+
+    public void setSeat(int seat) {
+        this.seat = seat;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public void setHolder(String holder) {
+        this.holder = holder;
+    }
+
+    public int[] getStops() {
+        return stops;
+    }
+
+    public void setStops(int[] stops) {
+        this.stops = stops;
+    }
+
+    public long getSerial() {
+        return serial;
+    }
+
+    public void setSerial(long serial) {
+        this.serial = serial;
+    }
+
+    public double getFare() {
+        return fare;
+    }
+
+    public void setFare(double fare) {
+        this.fare = fare;
+    }
+
+    public boolean isRefundable() {
+        return refundable;
+    }
+
+    public void setRefundable(boolean refundable) {
+        this.refundable = refundable;
+    }
+
+    public boolean isOpened() {
+        return opened;
+    }
+
+    public void open() {
+        this.opened = true;
+    }
+}
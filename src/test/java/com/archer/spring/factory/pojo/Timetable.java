@@ -0,0 +1,100 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/29.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+// 时刻表，用来检验集合、Map和数组按泛型参数转换元素
+public class Timetable {
+
+    // 发车时间，按构造函数参数的泛型类型转换
+    private final List<Integer> departures;
+
+    private Set<Long> trains;
+
+    private Map<String, Double> fares;
+
+    private int[] platforms;
+
+    private List<String> stations;
+
+    // 声明成具体的集合类型并且元素不需要转换，每个bean要有自己的一份
+    private ArrayList<Object> routes;
+
+    // 值可能是其他bean
+    private Map<String, Object> vehicles;
+
+    private Properties notices;
+
+    public Timetable(List<Integer> departures) {
+        this.departures = departures;
+    }
+
+    public List<Integer> getDepartures() {
+        return departures;
+    }
+
+    public Set<Long> getTrains() {
+        return trains;
+    }
+
+    public void setTrains(Set<Long> trains) {
+        this.trains = trains;
+    }
+
+    public Map<String, Double> getFares() {
+        return fares;
+    }
+
+    public void setFares(Map<String, Double> fares) {
+        this.fares = fares;
+    }
+
+    public int[] getPlatforms() {
+        return platforms;
+    }
+
+    public void setPlatforms(int[] platforms) {
+        this.platforms = platforms;
+    }
+
+    public List<String> getStations() {
+        return stations;
+    }
+
+    public void setStations(List<String> stations) {
+        this.stations = stations;
+    }
+
+    public Map<String, Object> getVehicles() {
+        return vehicles;
+    }
+
+    public void setVehicles(Map<String, Object> vehicles) {
+        this.vehicles = vehicles;
+    }
+
+    public Properties getNotices() {
+        return notices;
+    }
+
+    public void setNotices(Properties notices) {
+        this.notices = notices;
+    }
+
+    public ArrayList<Object> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(ArrayList<Object> routes) {
+        this.routes = routes;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/11/02.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.factory.pojo;
+
+import java.io.IOException;
+
+// 旋转门，构造函数和初始化方法会抛出受检异常，用来检验编译后的创建配方如何包装异常
+public class Turnstile {
+
+    // 为true时构造函数抛出异常
+    public static volatile boolean jammed;
+
+    // 为true时初始化方法抛出异常
+    public static volatile boolean locked;
+
+    public Turnstile() throws IOException {
+        if (jammed) {
+            throw new IOException("旋转门卡住了");
+        }
+    }
+
+    public void unlock() throws IOException {
+        if (locked) {
+            throw new IOException("旋转门打不开");
+        }
+    }
+}
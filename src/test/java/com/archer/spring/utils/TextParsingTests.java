@@ -0,0 +1,234 @@
+/*
+ *  Github: https://github.com/AnyOptional
+ *  Created by Archer on 2019/10/27.
+ *  All rights reserved.
+ */
+
+package com.archer.spring.utils;
+
+import com.archer.spring.factory.propertyeditor.CustomBooleanEditor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按范围解析的方法和原先基于String的实现逐一对比，原先的实现作为参照抄在下面。
+ */
+public class TextParsingTests {
+
+    private static final int ROUNDS = 200_000;
+
+    // 随机字符串的字符集，覆盖符号、进制前缀、小数点、指数、空白和非ASCII的数字
+    private static final String ALPHABET = "0123456789012345678901234567890-+xX#.eEaAfF \t\nNIy٣ ";
+
+    private static final String[] BOUNDARIES = {
+            "127", "128", "-128", "-129", "32767", "32768", "-32768", "-32769",
+            "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+            "0x7f", "0x80", "-0x80", "-0x81", "0x7FFFFFFF", "0x80000000", "-0x80000000", "#FFFF", "-#8000",
+            "0x7fffffffffffffff", "-0x8000000000000000", "0x8000000000000000",
+            "0x", "-0x", "#", "-#", "0x-1", "0x+1", "+0x1", "--1", "+-1", "+", "-", "", " ", " 1 2 3 ",
+            "010", "-010", "0 x 1 f", "1.", ".5", "-.5", "1e3", "1.5f", "0x1p3", "NaN", "-Infinity",
+            "3.4028235e38", "1.4e-45", "0.1", "0.30000000000000004", "123456789012345", "1234567890123456",
+            "0.0000000000000000000001", "0.00000000000000000000001", "16777217", "1234567.8", "-0", "-0.0"
+    };
+
+    @Test
+    public void testIntegralParity() {
+        forEachSample(text -> {
+            assertParity(text, outcome(() -> legacyByte(text)), outcome(() -> NumberUtils.parseByte(text)));
+            assertParity(text, outcome(() -> legacyShort(text)), outcome(() -> NumberUtils.parseShort(text)));
+            assertParity(text, outcome(() -> legacyInt(text)), outcome(() -> NumberUtils.parseInt(text)));
+            assertParity(text, outcome(() -> legacyLong(text)), outcome(() -> NumberUtils.parseLong(text)));
+            return null;
+        });
+    }
+
+    @Test
+    public void testFloatingParity() {
+        forEachSample(text -> {
+            String trimmed = StringUtils.trimAllWhitespace(text);
+            assertParity(text, outcome(() -> Float.valueOf(trimmed)), outcome(() -> NumberUtils.parseFloat(text)));
+            assertParity(text, outcome(() -> Double.valueOf(trimmed)), outcome(() -> NumberUtils.parseDouble(text)));
+            return null;
+        });
+        // 快速路径能处理的小数要和JDK逐位一致
+        Random random = new Random(42);
+        for (int i = 0; i < ROUNDS; i++) {
+            String text = (random.nextBoolean() ? "-" : "") + random.nextInt(10_000_000) + "." +
+                    Long.toString(Math.abs(random.nextLong()) % 100_000_000L);
+            assertEquals(text, Double.doubleToRawLongBits(Double.parseDouble(text)),
+                    Double.doubleToRawLongBits(NumberUtils.parseDouble(text)));
+            assertEquals(text, Float.floatToRawIntBits(Float.parseFloat(text)),
+                    Float.floatToRawIntBits(NumberUtils.parseFloat(text)));
+        }
+    }
+
+    @Test
+    public void testRangeParsing() {
+        String text = "seat=12,fare=-0.5,open= yes ";
+        assertEquals(12, NumberUtils.parseInt(text, 5, 7));
+        assertEquals(-0.5, NumberUtils.parseDouble(text, 13, 17), 0);
+        assertTrue(StringUtils.parseBoolean(text, 23, text.length()));
+        try {
+            NumberUtils.parseInt(text, 5, 8);
+            fail();
+        } catch (NumberFormatException expected) {
+        }
+        try {
+            NumberUtils.parseInt(text, 7, 5);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void testBooleanParity() {
+        String[] samples = { "true", " TRUE ", "On", "yes", "1", "false", "\tOFF", "No", "0", "",
+                " ", "t", "truee", "01", "y", " yes" };
+        for (String text : samples) {
+            assertParity(text, outcome(() -> legacyBoolean(text, false)), outcome(() -> StringUtils.parseBoolean(text)));
+            for (boolean allowEmpty : new boolean[] { true, false }) {
+                CustomBooleanEditor editor = new CustomBooleanEditor(allowEmpty);
+                assertParity(text, outcome(() -> legacyBoolean(text, allowEmpty)), outcome(() -> {
+                    editor.setAsText(text);
+                    return editor.getValue();
+                }));
+            }
+        }
+    }
+
+    @Test
+    public void testSplitParity() {
+        Random random = new Random(7);
+        String alphabet = "ab,; \t";
+        TextTokenizer tokenizer = new TextTokenizer(",; ", true, false);
+        for (int i = 0; i < ROUNDS / 10; i++) {
+            String text = randomText(random, alphabet, 12);
+            for (int flags = 0; flags < 4; flags++) {
+                boolean trim = (flags & 1) != 0;
+                boolean ignoreEmpty = (flags & 2) != 0;
+                assertArrayEquals(text, legacySplit(text, ",; ", trim, ignoreEmpty),
+                        StringUtils.split(text, ",; ", trim, ignoreEmpty));
+            }
+            // 同一个分词器可以反复使用
+            List<String> tokens = new ArrayList<>();
+            for (tokenizer.reset(text); tokenizer.next(); ) {
+                tokens.add(tokenizer.getToken());
+            }
+            assertEquals(text, Arrays.asList(legacySplit(text, ",; ", true, false)), tokens);
+        }
+    }
+
+    /// MARK - Helpers
+
+    private static void forEachSample(Function<String, Void> check) {
+        for (String boundary : BOUNDARIES) {
+            check.apply(boundary);
+        }
+        Random random = new Random(2019);
+        for (int i = 0; i < ROUNDS; i++) {
+            check.apply(randomText(random, ALPHABET, 1 + random.nextInt(12)));
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static void assertParity(String text, Object expected, Object actual) {
+        assertEquals("[" + text + "]", expected, actual);
+    }
+
+    /**
+     * 解析结果，抛出IllegalArgumentException(包括NumberFormatException)时统一记为同一个标记。
+     */
+    private static Object outcome(ThrowingSupplier supplier) {
+        try {
+            Object value = supplier.get();
+            // 按二进制位比较，这样-0.0和0.0也能区分开
+            if (value instanceof Float) {
+                return "float:" + Float.floatToRawIntBits((Float) value);
+            }
+            if (value instanceof Double) {
+                return "double:" + Double.doubleToRawLongBits((Double) value);
+            }
+            return value;
+        } catch (IllegalArgumentException ex) {
+            return IllegalArgumentException.class;
+        }
+    }
+
+    private interface ThrowingSupplier {
+
+        Object get();
+    }
+
+    /// MARK - Legacy implementations
+
+    private static boolean isHexNumber(String value) {
+        int index = (value.startsWith("-") ? 1 : 0);
+        return (value.startsWith("0x", index) || value.startsWith("0X", index) || value.startsWith("#", index));
+    }
+
+    private static Byte legacyByte(String text) {
+        String trimmed = StringUtils.trimAllWhitespace(text);
+        return (isHexNumber(trimmed) ? Byte.decode(trimmed) : Byte.valueOf(trimmed));
+    }
+
+    private static Short legacyShort(String text) {
+        String trimmed = StringUtils.trimAllWhitespace(text);
+        return (isHexNumber(trimmed) ? Short.decode(trimmed) : Short.valueOf(trimmed));
+    }
+
+    private static Integer legacyInt(String text) {
+        String trimmed = StringUtils.trimAllWhitespace(text);
+        return (isHexNumber(trimmed) ? Integer.decode(trimmed) : Integer.valueOf(trimmed));
+    }
+
+    private static Long legacyLong(String text) {
+        String trimmed = StringUtils.trimAllWhitespace(text);
+        return (isHexNumber(trimmed) ? Long.decode(trimmed) : Long.valueOf(trimmed));
+    }
+
+    private static Boolean legacyBoolean(String text, boolean allowEmpty) {
+        String input = (text != null ? text.trim() : null);
+        if (allowEmpty && !StringUtils.hasText(input)) {
+            return null;
+        } else if ("true".equalsIgnoreCase(input) || "on".equalsIgnoreCase(input) ||
+                "yes".equalsIgnoreCase(input) || "1".equals(input)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(input) || "off".equalsIgnoreCase(input) ||
+                "no".equalsIgnoreCase(input) || "0".equals(input)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("Invalid boolean value [" + text + "]");
+    }
+
+    private static String[] legacySplit(String s, String delimiters, boolean trimTokens, boolean ignoreEmptyTokens) {
+        StringTokenizer st = new StringTokenizer(s, delimiters);
+        List<String> tokens = new ArrayList<>();
+        while (st.hasMoreTokens()) {
+            String token = st.nextToken();
+            if (trimTokens) {
+                token = token.trim();
+            }
+            if (!(ignoreEmptyTokens && token.length() == 0)) {
+                tokens.add(token);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+}